@@ -0,0 +1,230 @@
+// 简化项目结构，移除包声明
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 多世界并行模拟
+ * 在同一个CompiledMap上创建大量互相独立的模拟（世界），每个世界有自己的输入来源，
+ * 由ForkJoinPool把世界按连续的区间分给各个核心推进。地图几何只有一份，所有世界共享；
+ * 每个世界的可变状态（玩家和WorldState）只由处理它所在区间的线程访问，推进期间线程之间不需要同步。
+ * 可用于机器人训练、回归测试和模糊测试。
+ *
+ * 用法: BatchRunner [地图文件] [--worlds 世界数] [--ticks 每个世界的tick数] [--threads 线程数]
+ *                   [--seed 随机种子] [--fixed-point] [--scaling]
+ */
+public class BatchRunner {
+    private static final String DEFAULT_MAP_PATH = "maps/default.json";
+    // 每个线程大约分到的任务数，任务过大时个别世界较慢会让其他线程空等
+    private static final int TASKS_PER_THREAD = 8;
+    // 随机输入保持同一按键组合的tick数
+    private static final int RANDOM_HOLD_TICKS = 12;
+    
+    /**
+     * 每个世界的输入来源
+     * 同一个世界总是由同一个线程按tick顺序调用，不同的世界可能在不同线程上同时调用。
+     */
+    public interface InputSource {
+        /**
+         * @param world 世界编号
+         * @param tick 这个世界当前的tick
+         * @return 这一帧的输入位掩码（见KeyBindings.ACTION_*）
+         */
+        int next(int world, long tick);
+    }
+    
+    private final CompiledMap map;
+    private final Simulation[] worlds;
+    private final InputSource inputs;
+    private final ForkJoinPool pool;
+    private final int leafSize;
+    
+    /**
+     * @param map 所有世界共享的地图
+     * @param worldCount 世界数
+     * @param fixedPoint 是否使用定点物理模式
+     * @param inputs 输入来源
+     * @param pool 执行推进的线程池
+     */
+    public BatchRunner(CompiledMap map, int worldCount, boolean fixedPoint, InputSource inputs, ForkJoinPool pool) {
+        this.map = map;
+        this.inputs = inputs;
+        this.pool = pool;
+        worlds = new Simulation[worldCount];
+        for (int i = 0; i < worldCount; i++) {
+            worlds[i] = new Simulation(map, map.getDefaultStartX(), map.getDefaultStartY(), fixedPoint);
+        }
+        leafSize = Math.max(1, worldCount / (pool.getParallelism() * TASKS_PER_THREAD));
+    }
+    
+    /**
+     * 把所有世界各推进若干tick，返回时全部完成
+     */
+    public void run(int ticks) {
+        pool.invoke(new StepTask(0, worlds.length, ticks));
+    }
+    
+    /**
+     * 推进一段连续的世界：任务足够小时在当前线程上逐个世界推进，否则一分为二
+     */
+    private class StepTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private final int from, to;
+        private final int ticks;
+        
+        StepTask(int from, int to, int ticks) {
+            this.from = from;
+            this.to = to;
+            this.ticks = ticks;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from <= leafSize) {
+                // 一个世界连续推进完所有tick，它的状态在这段时间内一直留在当前核心的缓存里
+                for (int i = from; i < to; i++) {
+                    Simulation world = worlds[i];
+                    for (int t = 0; t < ticks; t++) {
+                        world.step(inputs.next(i, world.getTick()));
+                    }
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new StepTask(from, middle, ticks), new StepTask(middle, to, ticks));
+        }
+    }
+    
+    /**
+     * 重新开始所有世界（不重新加载地图）
+     */
+    public void reset() {
+        for (Simulation world : worlds) {
+            world.reset();
+        }
+    }
+    
+    public CompiledMap getMap() {
+        return map;
+    }
+    
+    public int size() {
+        return worlds.length;
+    }
+    
+    public Simulation getWorld(int index) {
+        return worlds[index];
+    }
+    
+    /**
+     * 所有世界的状态哈希的组合，用于比较两次批量运行的结果
+     */
+    public long combinedStateHash() {
+        long hash = 0;
+        for (Simulation world : worlds) {
+            hash = hash * 31 + world.stateHash();
+        }
+        return hash;
+    }
+    
+    /**
+     * 随机输入：由种子、世界编号和时间段决定，每RANDOM_HOLD_TICKS个tick换一次按键组合。
+     * 不保存任何状态，可以被任意线程调用，同样的种子总是得到同样的输入。
+     */
+    public static InputSource randomInputs(long seed) {
+        return (world, tick) -> {
+            long z = seed + world * 0x9E3779B97F4A7C15L + (tick / RANDOM_HOLD_TICKS) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            z ^= z >>> 31;
+            // 只使用玩家操作的输入位（移动、跳跃、冲刺、攀爬）
+            return (int) z & (KeyBindings.ACTION_CLIMB * 2 - 1);
+        };
+    }
+    
+    public static void main(String[] args) {
+        String mapPath = DEFAULT_MAP_PATH;
+        int worldCount = 1000;
+        int ticks = 60 * Simulation.TICKS_PER_SECOND;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 1;
+        boolean fixedPoint = false;
+        boolean scaling = false;
+        for (int i = 0; i < args.length; i++) {
+            if ("--worlds".equals(args[i]) && i + 1 < args.length) {
+                worldCount = Integer.parseInt(args[++i]);
+            } else if ("--ticks".equals(args[i]) && i + 1 < args.length) {
+                ticks = Integer.parseInt(args[++i]);
+            } else if ("--threads".equals(args[i]) && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if ("--seed".equals(args[i]) && i + 1 < args.length) {
+                seed = Long.parseLong(args[++i]);
+            } else if ("--fixed-point".equals(args[i])) {
+                fixedPoint = true;
+            } else if ("--scaling".equals(args[i])) {
+                scaling = true;
+            } else {
+                mapPath = args[i];
+            }
+        }
+        // 成千上万个世界的游戏事件没有意义，只会占满事件日志的缓冲区
+        GameEventLog.setLevel(GameEventLog.OFF);
+        
+        CompiledMap map;
+        try {
+            map = CompiledMap.compileUnshared(JsonMapLoader.loadMapFromJson(mapPath));
+        } catch (IOException e) {
+            System.err.println("加载地图失败: " + e.getMessage());
+            return;
+        }
+        System.out.println(String.format("地图: %s, %d 个世界, 每个世界 %d ticks, %s物理",
+            map.getName(), worldCount, ticks, fixedPoint ? "定点" : "浮点"));
+        
+        InputSource inputs = randomInputs(seed);
+        if (!scaling) {
+            runOnce(map, worldCount, ticks, threads, fixedPoint, inputs, 0);
+            return;
+        }
+        // 依次使用1、2、4……个线程，比较吞吐量
+        double baseline = 0;
+        for (int n = 1; ; n = Math.min(n * 2, threads)) {
+            double ticksPerSecond = runOnce(map, worldCount, ticks, n, fixedPoint, inputs, baseline);
+            if (baseline == 0) {
+                baseline = ticksPerSecond;
+            }
+            if (n == threads) {
+                break;
+            }
+        }
+    }
+    
+    /**
+     * 运行一次并输出吞吐量
+     * @param baseline 单线程的吞吐量，为0时不输出加速比
+     * @return 每秒推进的总tick数
+     */
+    private static double runOnce(CompiledMap map, int worldCount, int ticks, int threads, boolean fixedPoint,
+                                  InputSource inputs, double baseline) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            BatchRunner runner = new BatchRunner(map, worldCount, fixedPoint, inputs, pool);
+            // 先推进一小段让JIT完成编译，再重新开始计时
+            runner.run(Math.min(ticks, Simulation.TICKS_PER_SECOND));
+            runner.reset();
+            
+            long startTime = System.nanoTime();
+            runner.run(ticks);
+            long elapsed = System.nanoTime() - startTime;
+            
+            double ticksPerSecond = (double) worldCount * ticks / (elapsed / 1e9);
+            String speedup = baseline > 0 ? String.format(", 加速比 %.2f", ticksPerSecond / baseline) : "";
+            System.out.println(String.format("%d 线程: 耗时 %.1fms, %.0f ticks/s%s, 状态哈希 %016x",
+                threads, elapsed / 1e6, ticksPerSecond, speedup, runner.combinedStateHash()));
+            return ticksPerSecond;
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
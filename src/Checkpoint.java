@@ -6,12 +6,11 @@ import java.awt.Graphics;
 /**
  * 重生点类
  * 包含激活框和重生点，用于角色重生和场景转换
+ * 重生点对象只描述几何和默认激活状态，游戏中的激活状态保存在WorldState中
  */
 public class Checkpoint extends MapElement {
     private int respawnOffsetX, respawnOffsetY; // 重生点相对于激活框的偏移
-    private boolean isActivated; // 是否已激活
-    private final boolean defaultActivated; // 是否默认激活
-    private long activationTime; // 激活时间（毫秒）
+    private boolean defaultActivated; // 是否默认激活
     
     // 颜色定义
     private static final Color INACTIVE_BOX_COLOR = new Color(128, 128, 128, 100); // 灰色半透明
@@ -36,15 +35,26 @@ public class Checkpoint extends MapElement {
         this.respawnOffsetX = respawnOffsetX;
         this.respawnOffsetY = respawnOffsetY;
         this.defaultActivated = defaultActivated;
-        this.isActivated = defaultActivated;
-        this.activationTime = defaultActivated ? System.currentTimeMillis() : 0;
+    }
+    
+    @Override
+    public MapElement copy() {
+        return new Checkpoint(x, y, width, height, respawnOffsetX, respawnOffsetY, defaultActivated);
     }
     
     /**
-     * 渲染重生点
+     * 渲染重生点（默认激活状态）
      */
     @Override
     public void render(Graphics g) {
+        render(g, defaultActivated);
+    }
+    
+    /**
+     * 渲染重生点
+     * @param isActivated 是否已激活
+     */
+    public void render(Graphics g, boolean isActivated) {
         // 绘制激活框
         Color boxColor = isActivated ? ACTIVE_BOX_COLOR : INACTIVE_BOX_COLOR;
         g.setColor(boxColor);
@@ -86,14 +96,6 @@ public class Checkpoint extends MapElement {
                playerY + playerHeight > y;
     }
     
-    /**
-     * 激活重生点
-     */
-    public void activate() {
-        isActivated = true;
-        activationTime = System.currentTimeMillis();
-    }
-    
     /**
      * 获取重生点X坐标
      */
@@ -108,13 +110,6 @@ public class Checkpoint extends MapElement {
         return y + respawnOffsetY;
     }
     
-    /**
-     * 是否已激活
-     */
-    public boolean isActivated() {
-        return isActivated;
-    }
-    
     /**
      * 是否默认激活
      */
@@ -123,10 +118,10 @@ public class Checkpoint extends MapElement {
     }
     
     /**
-     * 获取激活时间
+     * 设置是否默认激活
      */
-    public long getActivationTime() {
-        return activationTime;
+    public void setDefaultActivated(boolean defaultActivated) {
+        this.defaultActivated = defaultActivated;
     }
     
     /**
@@ -168,8 +163,8 @@ public class Checkpoint extends MapElement {
      */
     @Override
     public String getInfo() {
-        return String.format("Checkpoint: 激活框(%d,%d,%dx%d) 重生点(%d,%d) 激活状态:%s 默认激活:%s", 
+        return String.format("Checkpoint: 激活框(%d,%d,%dx%d) 重生点(%d,%d) 默认激活:%s", 
             x, y, width, height, getRespawnX(), getRespawnY(), 
-            isActivated ? "是" : "否", defaultActivated ? "是" : "否");
+            defaultActivated ? "是" : "否");
     }
 }
@@ -0,0 +1,168 @@
+// 简化项目结构，移除包声明
+
+/**
+ * 碰撞检测的宽相位索引（均匀网格）
+ * 编译地图时把实心物块、平台和尖刺（能量豆另建一个索引）按包围盒登记到覆盖的格子中，
+ * 以压缩行的形式保存在基本类型数组里，之后只读，共享同一个CompiledMap的所有模拟可以在不同线程上同时查询。
+ *
+ * 元素编号：各组元素依次排列，{@link #getKind}和{@link #getIndex}给出类型（所在的组）和在CompiledMap对应数组中的下标。
+ * 跨越多个格子的元素只在它与查询矩形相交部分的左上角所在的格子中报告一次，查询不需要去重用的临时状态。
+ * 查询结果按报告所在的格子（先行后列）排列，同一格子中按元素编号排列。
+ *
+ * 格子边长通常为64像素；地图范围很大时格子边长逐次加倍，直到格子总数不超过MAX_CELLS，
+ * 范围和格子坐标都用long计算，很宽或很高的地图也不会溢出或耗尽内存。
+ */
+public final class CollisionGrid {
+    public static final int SOLID_BLOCK = 0;
+    public static final int PLATFORM = 1;
+    public static final int SPIKE = 2;
+    private static final int CELL_SHIFT = 6; // 格子边长64像素，约为玩家尺寸加一个tick的最大位移
+    private static final long MAX_CELLS = 1L << 22;
+    
+    private final int cellShift;
+    private final long originX, originY; // 第一个格子的左上角
+    private final int columns, rows;
+    private final int[] cellStart; // 格子i的元素是cellItems[cellStart[i] .. cellStart[i+1])
+    private final int[] cellItems;
+    // 按元素编号保存
+    private final int[] left, top, right, bottom;
+    private final int[] firstColumn, firstRow; // 元素左上角所在的格子
+    private final byte[] kinds;
+    private final int[] indices;
+    
+    /**
+     * @param groups 各组元素，第k组的类型为k（碰撞用的索引依次传入实心物块、平台、尖刺）
+     */
+    CollisionGrid(MapElement[]... groups) {
+        int count = 0;
+        for (MapElement[] group : groups) {
+            count += group.length;
+        }
+        left = new int[count];
+        top = new int[count];
+        right = new int[count];
+        bottom = new int[count];
+        kinds = new byte[count];
+        indices = new int[count];
+        int id = 0;
+        for (int kind = 0; kind < groups.length; kind++) {
+            id = add(id, groups[kind], kind);
+        }
+        
+        long minX = 0, minY = 0, maxX = 0, maxY = 0;
+        for (int i = 0; i < count; i++) {
+            minX = Math.min(minX, left[i]);
+            minY = Math.min(minY, top[i]);
+            maxX = Math.max(maxX, right[i]);
+            maxY = Math.max(maxY, bottom[i]);
+        }
+        int shift = CELL_SHIFT;
+        while ((((maxX - minX) >> shift) + 2) * (((maxY - minY) >> shift) + 2) > MAX_CELLS) {
+            shift++;
+        }
+        cellShift = shift;
+        originX = minX >> cellShift << cellShift;
+        originY = minY >> cellShift << cellShift;
+        columns = (int) ((maxX - originX) >> cellShift) + 1;
+        rows = (int) ((maxY - originY) >> cellShift) + 1;
+        firstColumn = new int[count];
+        firstRow = new int[count];
+        long entries = 0;
+        for (int i = 0; i < count; i++) {
+            firstColumn[i] = column(left[i]);
+            firstRow[i] = row(top[i]);
+            entries += (long) (column(right[i]) - firstColumn[i] + 1) * (row(bottom[i]) - firstRow[i] + 1);
+        }
+        if (entries > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("地图元素覆盖的格子过多: " + entries);
+        }
+        
+        // 先统计每个格子的元素数，再按前缀和填入
+        cellStart = new int[columns * rows + 1];
+        for (int i = 0; i < count; i++) {
+            for (int row = firstRow[i]; row <= row(bottom[i]); row++) {
+                for (int column = firstColumn[i]; column <= column(right[i]); column++) {
+                    cellStart[row * columns + column + 1]++;
+                }
+            }
+        }
+        for (int cell = 0; cell < columns * rows; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+        cellItems = new int[cellStart[columns * rows]];
+        int[] fill = new int[columns * rows];
+        for (int i = 0; i < count; i++) {
+            for (int row = firstRow[i]; row <= row(bottom[i]); row++) {
+                for (int column = firstColumn[i]; column <= column(right[i]); column++) {
+                    int cell = row * columns + column;
+                    cellItems[cellStart[cell] + fill[cell]++] = i;
+                }
+            }
+        }
+    }
+    
+    private int add(int id, MapElement[] elements, int kind) {
+        for (int i = 0; i < elements.length; i++, id++) {
+            MapElement element = elements[i];
+            left[id] = element.getX();
+            top[id] = element.getY();
+            // 右边界和下边界超出int范围时取int的最大值
+            right[id] = (int) Math.min(Integer.MAX_VALUE, (long) element.getX() + element.getWidth());
+            bottom[id] = (int) Math.min(Integer.MAX_VALUE, (long) element.getY() + element.getHeight());
+            kinds[id] = (byte) kind;
+            indices[id] = i;
+        }
+        return id;
+    }
+    
+    private int column(int x) {
+        return (int) Math.max(0, Math.min(columns - 1, (x - originX) >> cellShift));
+    }
+    
+    private int row(int y) {
+        return (int) Math.max(0, Math.min(rows - 1, (y - originY) >> cellShift));
+    }
+    
+    /**
+     * 查询包围盒与矩形[queryLeft, queryRight] x [queryTop, queryBottom]（含边界）相交的元素
+     * @param out 输出元素编号，最多写入out.length个
+     * @return 相交的元素总数，大于out.length时调用者需要换用更大的数组重新查询
+     */
+    public int query(int queryLeft, int queryTop, int queryRight, int queryBottom, int[] out) {
+        int count = 0;
+        int queryColumn = column(queryLeft), lastColumn = column(queryRight);
+        int queryRow = row(queryTop), lastRow = row(queryBottom);
+        for (int row = queryRow; row <= lastRow; row++) {
+            for (int column = queryColumn; column <= lastColumn; column++) {
+                int cell = row * columns + column;
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    int id = cellItems[k];
+                    if (left[id] > queryRight || right[id] < queryLeft || top[id] > queryBottom || bottom[id] < queryTop) {
+                        continue;
+                    }
+                    // 只在相交部分左上角所在的格子中报告
+                    if (Math.max(firstColumn[id], queryColumn) != column || Math.max(firstRow[id], queryRow) != row) {
+                        continue;
+                    }
+                    if (count < out.length) {
+                        out[count] = id;
+                    }
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+    
+    public int getKind(int id) { return kinds[id]; }
+    public int getIndex(int id) { return indices[id]; }
+    public int getLeft(int id) { return left[id]; }
+    public int getTop(int id) { return top[id]; }
+    public int getRight(int id) { return right[id]; }
+    public int getBottom(int id) { return bottom[id]; }
+    
+    /**
+     * 登记的元素数
+     */
+    public int size() { return kinds.length; }
+}
@@ -0,0 +1,164 @@
+// 简化项目结构，移除包声明
+
+import java.util.List;
+
+/**
+ * 编译后的地图（只读）
+ * 从MapDesign.MapData复制出所有地图元素（地图不会再被修改时可以直接使用，见compileUnshared），
+ * 之后不再修改，编辑器继续修改原地图也不会影响已编译的地图。
+ * 重生点是否激活、能量豆是否被消耗等运行状态不在这里，而是保存在每个模拟各自的{@link WorldState}中，
+ * 因此同一个CompiledMap可以同时被多个模拟（包括不同线程上的模拟）共享，重新开始也不需要重新加载地图。
+ *
+ * 重生点、能量豆和实体在各自数组中的下标就是它们在WorldState中的编号。
+ * 划分了房间的地图还会编译出每个房间的活动视图，见{@link RoomTable}。
+ * 返回的数组不做复制，调用者不能修改。
+ */
+public final class CompiledMap {
+    private final String name;
+    private final Platform[] platforms;
+    private final SolidBlock[] solidBlocks;
+    private final Spike[] spikes;
+    private final Checkpoint[] checkpoints;
+    private final EnergyBean[] energyBeans;
+    private final MapEntity[] entities;
+    private final EntityTable entityTable;
+    private final MapRoom[] rooms;
+    private final RoomTable roomTable;
+    private final MapElement[] staticElements; // 平台、实心物块和尖刺
+    private final MapElement[] mapElements; // 统一的地图元素数组，能量豆在最后
+    private final long[] defaultActivationTimes; // 默认激活的重生点为1，其余为0
+    private final CollisionGrid collisionGrid;
+    private final CollisionGrid energyBeanGrid;
+    private final double[] defaultStart;
+    private final long hash;
+    
+    private CompiledMap(MapDesign.MapData map, boolean copy) {
+        name = map.name;
+        platforms = copyAll(map.platforms, new Platform[map.platforms.size()], copy);
+        solidBlocks = copyAll(map.solidBlocks, new SolidBlock[map.solidBlocks.size()], copy);
+        spikes = copyAll(map.spikes, new Spike[map.spikes.size()], copy);
+        checkpoints = copyAll(map.checkpoints, new Checkpoint[map.checkpoints.size()], copy);
+        energyBeans = copyAll(map.energyBeans, new EnergyBean[map.energyBeans.size()], copy);
+        // MapEntity不可修改，不需要复制
+        entities = map.entities.toArray(new MapEntity[0]);
+        entityTable = new EntityTable(entities);
+        
+        staticElements = new MapElement[platforms.length + solidBlocks.length + spikes.length];
+        int index = 0;
+        index = append(staticElements, index, platforms);
+        index = append(staticElements, index, solidBlocks);
+        append(staticElements, index, spikes);
+        
+        mapElements = new MapElement[staticElements.length + checkpoints.length + energyBeans.length];
+        index = append(mapElements, 0, staticElements);
+        index = append(mapElements, index, checkpoints);
+        append(mapElements, index, energyBeans);
+        
+        defaultActivationTimes = new long[checkpoints.length];
+        for (int i = 0; i < checkpoints.length; i++) {
+            defaultActivationTimes[i] = checkpoints[i].isDefaultActivated() ? 1 : 0;
+        }
+        collisionGrid = new CollisionGrid(solidBlocks, platforms, spikes);
+        energyBeanGrid = new CollisionGrid(energyBeans);
+        rooms = map.rooms.toArray(new MapRoom[0]);
+        roomTable = new RoomTable(rooms, platforms, solidBlocks, spikes, checkpoints, energyBeans, entities, entityTable,
+            staticElements, mapElements);
+        defaultStart = Simulation.getDefaultStart(map);
+        hash = Simulation.hashMap(map);
+    }
+    
+    /**
+     * 编译地图：复制所有元素（在调用线程上执行，调用期间地图不能被修改）
+     */
+    public static CompiledMap compile(MapDesign.MapData map) {
+        return new CompiledMap(map, true);
+    }
+    
+    /**
+     * 编译只由调用者持有、之后不再修改的地图（刚从文件加载或由MapSnapshot.toMapData创建的地图）：
+     * 直接使用其中的元素，不做复制。可以在后台线程调用，编辑器中的地图应先在界面线程上创建快照。
+     */
+    public static CompiledMap compileUnshared(MapDesign.MapData map) {
+        return new CompiledMap(map, false);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <T extends MapElement> T[] copyAll(List<T> elements, T[] copies, boolean copy) {
+        if (!copy) {
+            return elements.toArray(copies);
+        }
+        for (int i = 0; i < copies.length; i++) {
+            copies[i] = (T) elements.get(i).copy();
+        }
+        return copies;
+    }
+    
+    private static int append(MapElement[] target, int index, MapElement[] elements) {
+        System.arraycopy(elements, 0, target, index, elements.length);
+        return index + elements.length;
+    }
+    
+    public String getName() { return name; }
+    public Platform[] getPlatforms() { return platforms; }
+    public SolidBlock[] getSolidBlocks() { return solidBlocks; }
+    public Spike[] getSpikes() { return spikes; }
+    public Checkpoint[] getCheckpoints() { return checkpoints; }
+    public EnergyBean[] getEnergyBeans() { return energyBeans; }
+    public MapEntity[] getEntities() { return entities; }
+    
+    /**
+     * 按组件拆开的实体定义，见WorldState
+     */
+    EntityTable getEntityTable() { return entityTable; }
+    
+    /**
+     * 地图中定义的房间，没有划分房间时为空数组
+     */
+    public MapRoom[] getRooms() { return rooms; }
+    
+    /**
+     * 房间划分和每个房间的活动视图，没有划分房间时只有一个房间，见WorldState
+     */
+    RoomTable getRoomTable() { return roomTable; }
+    
+    /**
+     * 不带运行状态的元素（平台、实心物块和尖刺）
+     */
+    public MapElement[] getStaticElements() { return staticElements; }
+    
+    /**
+     * 统一的地图元素数组：静态元素、重生点、能量豆依次排列
+     */
+    public MapElement[] getMapElements() { return mapElements; }
+    
+    /**
+     * 统一数组中第一个能量豆的位置，能量豆的编号为统一数组中的位置减去这个值
+     */
+    public int getFirstEnergyBeanIndex() { return mapElements.length - energyBeans.length; }
+    
+    /**
+     * 实心物块、平台和尖刺的宽相位索引，用于连续碰撞检测
+     */
+    public CollisionGrid getCollisionGrid() { return collisionGrid; }
+    
+    /**
+     * 能量豆的宽相位索引，用于离散碰撞检测（getIndex为能量豆编号）
+     */
+    public CollisionGrid getEnergyBeanGrid() { return energyBeanGrid; }
+    
+    /**
+     * 每个重生点的初始激活计数（默认激活为1，否则为0），见WorldState
+     */
+    long[] getDefaultActivationTimes() { return defaultActivationTimes; }
+    
+    /**
+     * 地图的默认起点，见Simulation.getDefaultStart
+     */
+    public double getDefaultStartX() { return defaultStart[0]; }
+    public double getDefaultStartY() { return defaultStart[1]; }
+    
+    /**
+     * 地图内容的哈希，见Simulation.hashMap
+     */
+    public long getHash() { return hash; }
+}
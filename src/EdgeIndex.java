@@ -0,0 +1,226 @@
+// 简化项目结构，移除包声明
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * 元素边缘索引（用于编辑器的吸附对齐）
+ * 把所有元素的左边、水平中心、右边和上边、垂直中心、下边分别放进两个有序的long数组，
+ * 每一项为 (坐标 << 32) | 元素编号。查找附近的边缘只需二分查找，不必遍历元素列表。
+ * 索引监听模型变化，只记录变化的编号，在下一次拖拽开始时调用{@link #refresh()}合并到有序数组中；
+ * 拖拽过程中被移动的元素通过排除集合跳过，不需要更新索引。
+ */
+public class EdgeIndex implements EditorModel.Listener {
+    // 地面上沿，与Player保持一致；作为编号为-1的水平边缘参与吸附
+    private static final int GROUND_TOP = 1030;
+    private static final int NO_ELEMENT = -1;
+    
+    /**
+     * 吸附结果
+     */
+    public static class Snap {
+        // 候选坐标需要移动的距离
+        public final int offset;
+        // 对齐到的边缘坐标（用于绘制参考线）
+        public final int guide;
+        
+        Snap(int offset, int guide) {
+            this.offset = offset;
+            this.guide = guide;
+        }
+    }
+    
+    private final EditorModel model;
+    private long[] xEdges;
+    private long[] yEdges;
+    // 上次刷新以来增加、删除或修改过的元素编号
+    private final BitSet changedIds = new BitSet();
+    
+    /**
+     * 为模型建立索引并开始监听模型变化
+     */
+    public EdgeIndex(EditorModel model) {
+        this.model = model;
+        rebuild();
+        model.addListener(this);
+    }
+    
+    /**
+     * 停止监听模型（切换地图时调用）
+     */
+    public void dispose() {
+        model.removeListener(this);
+    }
+    
+    /**
+     * 把上次刷新以来的模型变化合并到索引中
+     * 变化的元素较少时删除它们的旧边缘并归并新边缘，否则整体重建
+     */
+    public void refresh() {
+        if (changedIds.isEmpty()) {
+            return;
+        }
+        int changed = changedIds.cardinality();
+        if (changed > model.size() / 8) {
+            rebuild();
+        } else {
+            long[] addedX = new long[changed * 3];
+            long[] addedY = new long[changed * 3];
+            int count = 0;
+            for (int id = changedIds.nextSetBit(0); id >= 0; id = changedIds.nextSetBit(id + 1)) {
+                if (model.exists(id)) {
+                    putEdges(model.get(id), id, addedX, addedY, count++);
+                }
+            }
+            addedX = Arrays.copyOf(addedX, count * 3);
+            addedY = Arrays.copyOf(addedY, count * 3);
+            Arrays.sort(addedX);
+            Arrays.sort(addedY);
+            xEdges = merge(xEdges, changedIds, addedX);
+            yEdges = merge(yEdges, changedIds, addedY);
+        }
+        changedIds.clear();
+    }
+    
+    private void rebuild() {
+        int count = model.size();
+        long[] xs = new long[count * 3];
+        long[] ys = new long[count * 3 + 1];
+        int n = 0;
+        for (int id = 0, limit = model.getIdLimit(); id < limit; id++) {
+            if (model.exists(id)) {
+                putEdges(model.get(id), id, xs, ys, n++);
+            }
+        }
+        ys[count * 3] = pack(GROUND_TOP, NO_ELEMENT);
+        Arrays.sort(xs);
+        Arrays.sort(ys);
+        xEdges = xs;
+        yEdges = ys;
+    }
+    
+    private static void putEdges(MapElement element, int id, long[] xs, long[] ys, int slot) {
+        int x = element.getX();
+        int y = element.getY();
+        int width = element.getWidth();
+        int height = element.getHeight();
+        xs[slot * 3] = pack(x, id);
+        xs[slot * 3 + 1] = pack(x + width / 2, id);
+        xs[slot * 3 + 2] = pack(x + width, id);
+        ys[slot * 3] = pack(y, id);
+        ys[slot * 3 + 1] = pack(y + height / 2, id);
+        ys[slot * 3 + 2] = pack(y + height, id);
+    }
+    
+    /**
+     * 去掉属于removed中编号的边缘，同时归并有序的added
+     */
+    private static long[] merge(long[] edges, BitSet removed, long[] added) {
+        long[] result = new long[edges.length + added.length];
+        int n = 0;
+        int j = 0;
+        for (long edge : edges) {
+            int id = (int) edge;
+            if (id != NO_ELEMENT && removed.get(id)) {
+                continue;
+            }
+            while (j < added.length && added[j] < edge) {
+                result[n++] = added[j++];
+            }
+            result[n++] = edge;
+        }
+        while (j < added.length) {
+            result[n++] = added[j++];
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+    
+    @Override
+    public void elementAdded(int id) {
+        changedIds.set(id);
+    }
+    
+    @Override
+    public void elementRemoved(int id, MapElement element) {
+        changedIds.set(id);
+    }
+    
+    @Override
+    public void elementChanged(int id, int oldX, int oldY, int oldWidth, int oldHeight) {
+        changedIds.set(id);
+    }
+    
+    @Override
+    public void batchChanged(BitSet ids, Rectangle region) {
+        changedIds.or(ids);
+    }
+    
+    /**
+     * 为一组X坐标（如左边、中心、右边）查找距离最近的竖直边缘
+     * @param candidates 候选坐标
+     * @param threshold 最大吸附距离
+     * @param excluded 不参与吸附的元素编号（正在移动的元素），可以为null
+     * @return 吸附结果，范围内没有边缘时返回null
+     */
+    public Snap snapX(int[] candidates, int threshold, BitSet excluded) {
+        return snap(xEdges, candidates, threshold, excluded);
+    }
+    
+    /**
+     * 为一组Y坐标（如上边、中心、下边）查找距离最近的水平边缘
+     * @see #snapX(int[], int, BitSet)
+     */
+    public Snap snapY(int[] candidates, int threshold, BitSet excluded) {
+        return snap(yEdges, candidates, threshold, excluded);
+    }
+    
+    private static Snap snap(long[] edges, int[] candidates, int threshold, BitSet excluded) {
+        Snap best = null;
+        for (int candidate : candidates) {
+            long low = (long) candidate - threshold;
+            long high = (long) candidate + threshold;
+            for (int i = lowerBound(edges, low); i < edges.length; i++) {
+                long edge = edges[i] >> 32;
+                if (edge > high) {
+                    break;
+                }
+                int id = (int) edges[i];
+                if (id != NO_ELEMENT && excluded != null && excluded.get(id)) {
+                    continue;
+                }
+                int offset = (int) (edge - candidate);
+                if (best == null || Math.abs(offset) < Math.abs(best.offset)) {
+                    best = new Snap(offset, (int) edge);
+                }
+                // 边缘按坐标升序排列，越过候选坐标之后只会越来越远
+                if (edge >= candidate) {
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+    
+    /**
+     * 第一个坐标不小于value的位置
+     */
+    private static int lowerBound(long[] edges, long value) {
+        long key = Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, value)) << 32;
+        int low = 0;
+        int high = edges.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (edges[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    private static long pack(int coordinate, int id) {
+        return (long) coordinate << 32 | (id & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,425 @@
+// 简化项目结构，移除包声明
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * 编辑历史（撤销/重做）
+ * 只记录紧凑的编辑命令（创建、删除、移动、对齐、调整尺寸、修改重生点），不保存整张地图的快照，
+ * 内存占用与编辑内容的大小成正比，并按字节数限制历史总量。
+ */
+public class EditHistory {
+    private static final long DEFAULT_MAX_BYTES = 8L * 1024 * 1024;
+    
+    // 估算内存占用用的常量（对象头、引用和数组开销）
+    private static final int COMMAND_BYTES = 32;
+    private static final int ELEMENT_BYTES = 64;
+    
+    /**
+     * 编辑命令
+     */
+    public abstract static class Command {
+        /**
+         * 撤销命令
+         */
+        abstract void undo(EditorModel model);
+        
+        /**
+         * 重新执行命令
+         */
+        abstract void redo(EditorModel model);
+        
+        /**
+         * 估算命令占用的字节数
+         */
+        abstract long estimateBytes();
+        
+        /**
+         * 尝试把紧随其后的命令合并到本命令中（用于连续拖拽）
+         * @return 是否已合并
+         */
+        boolean mergeWith(Command next) {
+            return false;
+        }
+    }
+    
+    /**
+     * 创建元素
+     */
+    public static class CreateCommand extends Command {
+        private final int id;
+        private final MapElement element;
+        
+        public CreateCommand(int id, MapElement element) {
+            this.id = id;
+            this.element = element;
+        }
+        
+        @Override
+        void undo(EditorModel model) {
+            model.remove(id);
+        }
+        
+        @Override
+        void redo(EditorModel model) {
+            model.restore(id, element, model.getCount(EditorModel.kindOf(element)));
+        }
+        
+        @Override
+        long estimateBytes() {
+            return COMMAND_BYTES + ELEMENT_BYTES;
+        }
+    }
+    
+    /**
+     * 删除元素
+     */
+    public static class DeleteCommand extends Command {
+        private final int id;
+        private final MapElement element;
+        private final int position;
+        
+        /**
+         * 在删除之前创建，记录元素在类型列表中的位置
+         */
+        public DeleteCommand(EditorModel model, int id) {
+            this.id = id;
+            this.element = model.get(id);
+            this.position = model.getPosition(id);
+        }
+        
+        @Override
+        void undo(EditorModel model) {
+            model.restore(id, element, position);
+        }
+        
+        @Override
+        void redo(EditorModel model) {
+            model.remove(id);
+        }
+        
+        @Override
+        long estimateBytes() {
+            return COMMAND_BYTES + ELEMENT_BYTES;
+        }
+    }
+    
+    /**
+     * 移动一个或多个元素
+     */
+    public static class MoveCommand extends Command {
+        private final int[] ids;
+        private int deltaX, deltaY;
+        
+        public MoveCommand(int[] ids, int deltaX, int deltaY) {
+            this.ids = ids;
+            this.deltaX = deltaX;
+            this.deltaY = deltaY;
+        }
+        
+        @Override
+        void undo(EditorModel model) {
+            apply(model, -deltaX, -deltaY);
+        }
+        
+        @Override
+        void redo(EditorModel model) {
+            apply(model, deltaX, deltaY);
+        }
+        
+        private void apply(EditorModel model, int dx, int dy) {
+            for (int id : ids) {
+                MapElement element = model.get(id);
+                model.move(id, element.getX() + dx, element.getY() + dy);
+            }
+        }
+        
+        @Override
+        boolean mergeWith(Command next) {
+            if (next instanceof MoveCommand) {
+                MoveCommand move = (MoveCommand) next;
+                // 同一次拖拽共享同一个编号数组
+                if (move.ids == ids) {
+                    deltaX += move.deltaX;
+                    deltaY += move.deltaY;
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        @Override
+        long estimateBytes() {
+            return COMMAND_BYTES + 16 + 4L * ids.length;
+        }
+    }
+    
+    /**
+     * 把多个元素分别放到新位置（对齐、分布）
+     * 位置保存在平行的int数组中，数千个元素也只占用几十KB
+     */
+    public static class PositionCommand extends Command {
+        private final int[] ids;
+        private final int[] oldX, oldY, newX, newY;
+        
+        public PositionCommand(int[] ids, int[] oldX, int[] oldY, int[] newX, int[] newY) {
+            this.ids = ids;
+            this.oldX = oldX;
+            this.oldY = oldY;
+            this.newX = newX;
+            this.newY = newY;
+        }
+        
+        @Override
+        void undo(EditorModel model) {
+            for (int i = 0; i < ids.length; i++) {
+                model.move(ids[i], oldX[i], oldY[i]);
+            }
+        }
+        
+        @Override
+        void redo(EditorModel model) {
+            for (int i = 0; i < ids.length; i++) {
+                model.move(ids[i], newX[i], newY[i]);
+            }
+        }
+        
+        @Override
+        long estimateBytes() {
+            return COMMAND_BYTES + 5 * 16 + 20L * ids.length;
+        }
+    }
+    
+    /**
+     * 调整元素位置和尺寸
+     */
+    public static class ResizeCommand extends Command {
+        private final int id;
+        private final int oldX, oldY, oldWidth, oldHeight;
+        private final int newX, newY, newWidth, newHeight;
+        
+        public ResizeCommand(int id, int oldX, int oldY, int oldWidth, int oldHeight,
+                             int newX, int newY, int newWidth, int newHeight) {
+            this.id = id;
+            this.oldX = oldX;
+            this.oldY = oldY;
+            this.oldWidth = oldWidth;
+            this.oldHeight = oldHeight;
+            this.newX = newX;
+            this.newY = newY;
+            this.newWidth = newWidth;
+            this.newHeight = newHeight;
+        }
+        
+        @Override
+        void undo(EditorModel model) {
+            model.setBounds(id, oldX, oldY, oldWidth, oldHeight);
+        }
+        
+        @Override
+        void redo(EditorModel model) {
+            model.setBounds(id, newX, newY, newWidth, newHeight);
+        }
+        
+        @Override
+        long estimateBytes() {
+            return COMMAND_BYTES + 8 * 4;
+        }
+    }
+    
+    /**
+     * 修改重生点属性
+     */
+    public static class CheckpointCommand extends Command {
+        private final int id;
+        private final int oldOffsetX, oldOffsetY, newOffsetX, newOffsetY;
+        private final boolean oldDefaultActivated, newDefaultActivated;
+        
+        public CheckpointCommand(int id, int oldOffsetX, int oldOffsetY, boolean oldDefaultActivated,
+                                 int newOffsetX, int newOffsetY, boolean newDefaultActivated) {
+            this.id = id;
+            this.oldOffsetX = oldOffsetX;
+            this.oldOffsetY = oldOffsetY;
+            this.oldDefaultActivated = oldDefaultActivated;
+            this.newOffsetX = newOffsetX;
+            this.newOffsetY = newOffsetY;
+            this.newDefaultActivated = newDefaultActivated;
+        }
+        
+        @Override
+        void undo(EditorModel model) {
+            apply(model, oldOffsetX, oldOffsetY, oldDefaultActivated);
+        }
+        
+        @Override
+        void redo(EditorModel model) {
+            apply(model, newOffsetX, newOffsetY, newDefaultActivated);
+        }
+        
+        private void apply(EditorModel model, int offsetX, int offsetY, boolean defaultActivated) {
+            model.setCheckpointProperties(id, offsetX, offsetY, defaultActivated);
+        }
+        
+        @Override
+        long estimateBytes() {
+            return COMMAND_BYTES + 4 * 4 + 2;
+        }
+    }
+    
+    /**
+     * 组合命令：把批量操作作为一条历史记录
+     */
+    public static class CompositeCommand extends Command {
+        private final Command[] commands;
+        
+        public CompositeCommand(Command[] commands) {
+            this.commands = commands;
+        }
+        
+        @Override
+        void undo(EditorModel model) {
+            // 按相反顺序撤销，保证交换删除的位置可以精确还原
+            for (int i = commands.length - 1; i >= 0; i--) {
+                commands[i].undo(model);
+            }
+        }
+        
+        @Override
+        void redo(EditorModel model) {
+            for (Command command : commands) {
+                command.redo(model);
+            }
+        }
+        
+        @Override
+        long estimateBytes() {
+            long bytes = COMMAND_BYTES + 16 + 4L * commands.length;
+            for (Command command : commands) {
+                bytes += command.estimateBytes();
+            }
+            return bytes;
+        }
+    }
+    
+    private final Deque<Command> undoStack = new ArrayDeque<>();
+    private final Deque<Command> redoStack = new ArrayDeque<>();
+    private final long maxBytes;
+    private long undoBytes = 0;
+    private long redoBytes = 0;
+    private boolean mergeOpen = false;
+    
+    public EditHistory() {
+        this(DEFAULT_MAX_BYTES);
+    }
+    
+    /**
+     * 构造函数
+     * @param maxBytes 历史记录的最大估算字节数
+     */
+    public EditHistory(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+    
+    /**
+     * 记录一条已经执行过的命令
+     * 如果上一条命令仍处于合并状态（同一次拖拽），尝试合并为一条记录
+     */
+    public void record(Command command) {
+        clearRedo();
+        Command top = undoStack.peekLast();
+        if (mergeOpen && top != null) {
+            long before = top.estimateBytes();
+            if (top.mergeWith(command)) {
+                undoBytes += top.estimateBytes() - before;
+                return;
+            }
+        }
+        undoStack.addLast(command);
+        undoBytes += command.estimateBytes();
+        mergeOpen = true;
+        trim();
+    }
+    
+    /**
+     * 结束当前的合并（例如鼠标释放），之后的命令将成为新的历史记录
+     */
+    public void endMerge() {
+        mergeOpen = false;
+    }
+    
+    /**
+     * 撤销
+     * @return 是否有可撤销的命令
+     */
+    public boolean undo(EditorModel model) {
+        mergeOpen = false;
+        Command command = undoStack.pollLast();
+        if (command == null) {
+            return false;
+        }
+        long bytes = command.estimateBytes();
+        undoBytes -= bytes;
+        command.undo(model);
+        redoStack.addLast(command);
+        redoBytes += bytes;
+        return true;
+    }
+    
+    /**
+     * 重做
+     * @return 是否有可重做的命令
+     */
+    public boolean redo(EditorModel model) {
+        mergeOpen = false;
+        Command command = redoStack.pollLast();
+        if (command == null) {
+            return false;
+        }
+        long bytes = command.estimateBytes();
+        redoBytes -= bytes;
+        command.redo(model);
+        undoStack.addLast(command);
+        undoBytes += bytes;
+        return true;
+    }
+    
+    public boolean canUndo() {
+        return !undoStack.isEmpty();
+    }
+    
+    public boolean canRedo() {
+        return !redoStack.isEmpty();
+    }
+    
+    /**
+     * 清空历史（新建或加载地图时）
+     */
+    public void clear() {
+        undoStack.clear();
+        redoStack.clear();
+        undoBytes = 0;
+        redoBytes = 0;
+        mergeOpen = false;
+    }
+    
+    /**
+     * 当前历史占用的估算字节数
+     */
+    public long getEstimatedBytes() {
+        return undoBytes + redoBytes;
+    }
+    
+    private void clearRedo() {
+        redoStack.clear();
+        redoBytes = 0;
+    }
+    
+    /**
+     * 超出字节上限时丢弃最早的记录（至少保留最近一条）
+     */
+    private void trim() {
+        while (undoBytes > maxBytes && undoStack.size() > 1) {
+            undoBytes -= undoStack.pollFirst().estimateBytes();
+        }
+    }
+}
@@ -0,0 +1,402 @@
+// 简化项目结构，移除包声明
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.BitSet;
+import javax.swing.JComponent;
+
+/**
+ * 编辑器画布的离屏缓存层
+ * 缓存网格、地面和所有未选中的元素；选中的元素每次绘制时实时画在缓存之上。
+ * 模型变化时只让受影响的区域失效，并只重绘画布的对应区域，
+ * 因此拖拽选中元素时不需要重画整张地图。
+ * 缓存按屏幕坐标保存当前视口下的画面：平移时滚动复用，缩放时整体失效。
+ * 缩小到一定比例后进入简化显示：较大的元素画成单色矩形，
+ * 细小的元素按四叉树节点汇总为密度方块，绘制开销不随缩小倍数增长。
+ */
+public class EditorCanvasCache implements EditorModel.Listener {
+    private static final int GRID_SIZE = 20;
+    private static final int MIN_GRID_PIXELS = 16; // 网格线的最小屏幕间距
+    private static final int GROUND_TOP = 1030; // 地面Y坐标，与Player保持一致
+    private static final int GROUND_HEIGHT = 50;
+    private static final Color GRID_COLOR = new Color(200, 200, 200, 100);
+    private static final Color GROUND_COLOR = new Color(34, 139, 34);
+    
+    // 绘制范围超出元素边界的余量：描边（世界坐标），选中高亮和调整手柄（屏幕像素）
+    private static final int PAINT_MARGIN = 2;
+    private static final int SCREEN_MARGIN = 6;
+    // 重生点十字的半径
+    private static final int CROSS_SIZE = 8;
+    
+    // 低于此缩放比例时使用简化显示
+    private static final double LOD_ZOOM = 0.5;
+    // 密度方块的最小屏幕边长
+    private static final int LOD_TILE_PIXELS = 4;
+    private static final Color[] DENSITY_COLORS = new Color[16];
+    static {
+        for (int i = 0; i < DENSITY_COLORS.length; i++) {
+            DENSITY_COLORS[i] = new Color(70, 45, 20, 60 + i * 12);
+        }
+    }
+    
+    private final JComponent canvas;
+    private final EditorViewport viewport;
+    private EditorModel model;
+    private BufferedImage image;
+    
+    // 待重建的区域（屏幕坐标），null表示缓存有效
+    private Rectangle dirty;
+    
+    // 缓存中未绘制的元素编号（上次绘制时的选中集合）
+    private final BitSet excluded = new BitSet();
+    
+    // 重建区域时收集的排序键（类型 << 32 | 类型列表位置）
+    private long[] sortKeys = new long[256];
+    private int sortKeyCount;
+    
+    public EditorCanvasCache(JComponent canvas, EditorModel model, EditorViewport viewport) {
+        this.canvas = canvas;
+        this.viewport = viewport;
+        setModel(model);
+    }
+    
+    /**
+     * 切换模型（新建或加载地图时）
+     */
+    public void setModel(EditorModel model) {
+        if (this.model != null) {
+            this.model.removeListener(this);
+        }
+        this.model = model;
+        model.addListener(this);
+        excluded.clear();
+        invalidateAll();
+    }
+    
+    /**
+     * 使整个缓存失效
+     */
+    public void invalidateAll() {
+        dirty = new Rectangle(0, 0, Integer.MAX_VALUE / 2, Integer.MAX_VALUE / 2);
+        canvas.repaint();
+    }
+    
+    /**
+     * 使世界坐标中的指定区域失效并请求重绘该区域
+     */
+    public void invalidate(Rectangle worldRegion) {
+        addDirty(toScreen(worldRegion));
+    }
+    
+    private void addDirty(Rectangle screenRegion) {
+        if (dirty == null) {
+            dirty = new Rectangle(screenRegion);
+        } else {
+            dirty.add(screenRegion);
+        }
+        canvas.repaint(screenRegion);
+    }
+    
+    /**
+     * 画面平移后滚动缓存，只重建新露出的区域
+     * @param dx 画面向右移动的像素数
+     * @param dy 画面向下移动的像素数
+     */
+    public void scroll(int dx, int dy) {
+        if (image == null) {
+            return;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (Math.abs(dx) >= width || Math.abs(dy) >= height) {
+            invalidateAll();
+            return;
+        }
+        Graphics g = image.getGraphics();
+        g.copyArea(0, 0, width, height, dx, dy);
+        g.dispose();
+        if (dirty != null) {
+            dirty.translate(dx, dy);
+        }
+        if (dx != 0) {
+            addDirty(new Rectangle(dx > 0 ? 0 : width + dx, 0, Math.abs(dx), height));
+        }
+        if (dy != 0) {
+            addDirty(new Rectangle(0, dy > 0 ? 0 : height + dy, width, Math.abs(dy)));
+        }
+        canvas.repaint();
+    }
+    
+    /**
+     * 是否处于简化显示
+     */
+    public boolean isLevelOfDetail() {
+        return viewport.getZoom() < LOD_ZOOM;
+    }
+    
+    /**
+     * 世界矩形 -> 需要重绘的屏幕矩形（含高亮和手柄的余量）
+     */
+    public Rectangle toScreen(Rectangle worldRegion) {
+        Rectangle screen = viewport.toScreen(worldRegion);
+        screen.grow(SCREEN_MARGIN, SCREEN_MARGIN);
+        return screen;
+    }
+    
+    /**
+     * 绘制缓存层，并在其上实时绘制选中的元素
+     * @param selected 当前选中的元素编号
+     */
+    public void paint(Graphics g, BitSet selected) {
+        int width = Math.max(1, canvas.getWidth());
+        int height = Math.max(1, canvas.getHeight());
+        if (image == null || image.getWidth() != width || image.getHeight() != height) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            dirty = new Rectangle(0, 0, width, height);
+        }
+        
+        syncExcluded(selected);
+        if (dirty != null) {
+            Rectangle region = dirty.intersection(new Rectangle(0, 0, width, height));
+            dirty = null;
+            if (!region.isEmpty()) {
+                rebuild(region);
+            }
+        }
+        
+        g.drawImage(image, 0, 0, null);
+        
+        // 选中的元素不在缓存中，只绘制与重绘区域相交的部分
+        Rectangle clip = g.getClipBounds();
+        Graphics2D world = (Graphics2D) g.create();
+        world.transform(viewport.getTransform());
+        boolean levelOfDetail = isLevelOfDetail();
+        for (int id = selected.nextSetBit(0); id >= 0; id = selected.nextSetBit(id + 1)) {
+            MapElement element = model.get(id);
+            if (element != null && (clip == null || clip.intersects(toScreen(paintBounds(element))))) {
+                if (levelOfDetail) {
+                    fillElement(g, element);
+                } else {
+                    element.render(world);
+                }
+            }
+        }
+        world.dispose();
+    }
+    
+    /**
+     * 选中集合变化时，使进入和离开选中集合的元素所在区域失效
+     */
+    private void syncExcluded(BitSet selected) {
+        if (excluded.equals(selected)) {
+            return;
+        }
+        BitSet changed = (BitSet) excluded.clone();
+        changed.xor(selected);
+        for (int id = changed.nextSetBit(0); id >= 0; id = changed.nextSetBit(id + 1)) {
+            MapElement element = model.get(id);
+            if (element != null) {
+                invalidate(paintBounds(element));
+            }
+        }
+        excluded.clear();
+        excluded.or(selected);
+    }
+    
+    /**
+     * 重建缓存中的一个区域
+     * @param region 屏幕坐标
+     */
+    private void rebuild(Rectangle region) {
+        Graphics2D g = image.createGraphics();
+        g.clip(region);
+        g.setColor(canvas.getBackground());
+        g.fillRect(region.x, region.y, region.width, region.height);
+        drawGrid(g, region);
+        
+        Rectangle world = viewport.toWorld(region);
+        world.grow(PAINT_MARGIN, PAINT_MARGIN);
+        Rectangle ground = viewport.toScreen(new Rectangle(world.x, GROUND_TOP, world.width, GROUND_HEIGHT));
+        g.setColor(GROUND_COLOR);
+        g.fillRect(ground.x, ground.y, ground.width, ground.height);
+        
+        if (isLevelOfDetail()) {
+            rebuildLevelOfDetail(g, world);
+        } else {
+            rebuildFull(g, world);
+        }
+        g.dispose();
+    }
+    
+    /**
+     * 完整绘制区域内的元素
+     */
+    private void rebuildFull(Graphics2D g, Rectangle world) {
+        // 收集区域内的元素，按类型和列表顺序绘制，与MapData.renderAll的叠放顺序一致
+        sortKeyCount = 0;
+        model.findInRect(world.x, world.y, world.width, world.height, id -> {
+            if (!excluded.get(id) && model.getKind(id) != EditorModel.KIND_CHECKPOINT) {
+                addSortKey(id);
+            }
+            return true;
+        });
+        // 重生点的十字可能在激活框之外，单独检查
+        for (int i = 0; i < model.getCount(EditorModel.KIND_CHECKPOINT); i++) {
+            int id = model.getId(EditorModel.KIND_CHECKPOINT, i);
+            if (!excluded.get(id) && world.intersects(paintBounds(model.get(id)))) {
+                addSortKey(id);
+            }
+        }
+        
+        Arrays.sort(sortKeys, 0, sortKeyCount);
+        g.transform(viewport.getTransform());
+        for (int i = 0; i < sortKeyCount; i++) {
+            long key = sortKeys[i];
+            model.get(model.getId((int) (key >>> 32), (int) key)).render(g);
+        }
+    }
+    
+    /**
+     * 简化绘制：细小元素按四叉树节点汇总为密度方块，其余元素画成单色矩形
+     */
+    private void rebuildLevelOfDetail(Graphics2D g, Rectangle world) {
+        double zoom = viewport.getZoom();
+        int cellSize = 1;
+        while (cellSize * zoom < LOD_TILE_PIXELS) {
+            cellSize <<= 1;
+        }
+        model.findDensity(world.x, world.y, world.width, world.height, cellSize, id -> {
+            if (!excluded.get(id)) {
+                fillElement(g, model.get(id));
+            }
+            return true;
+        }, (x, y, size, count) -> {
+            int screenX = viewport.toScreenX(x);
+            int screenY = viewport.toScreenY(y);
+            g.setColor(DENSITY_COLORS[Math.min(count, DENSITY_COLORS.length) - 1]);
+            g.fillRect(screenX, screenY, Math.max(1, viewport.toScreenX((double) x + size) - screenX),
+                Math.max(1, viewport.toScreenY((double) y + size) - screenY));
+        });
+    }
+    
+    /**
+     * 把元素画成单色矩形（至少1像素）
+     */
+    private void fillElement(Graphics g, MapElement element) {
+        int screenX = viewport.toScreenX(element.getX());
+        int screenY = viewport.toScreenY(element.getY());
+        g.setColor(element.getColor());
+        g.fillRect(screenX, screenY,
+            Math.max(1, viewport.toScreenX(element.getX() + element.getWidth()) - screenX),
+            Math.max(1, viewport.toScreenY(element.getY() + element.getHeight()) - screenY));
+    }
+    
+    private void addSortKey(int id) {
+        if (sortKeyCount == sortKeys.length) {
+            sortKeys = Arrays.copyOf(sortKeys, sortKeyCount * 2);
+        }
+        sortKeys[sortKeyCount++] = ((long) model.getKind(id) << 32) | model.getPosition(id);
+    }
+    
+    /**
+     * 绘制区域内的网格线
+     * 缩小时网格间距按5倍放大，保证网格线之间至少相隔MIN_GRID_PIXELS像素
+     */
+    private void drawGrid(Graphics g, Rectangle region) {
+        g.setColor(GRID_COLOR);
+        long step = GRID_SIZE;
+        while (step * viewport.getZoom() < MIN_GRID_PIXELS) {
+            step *= 5;
+        }
+        int top = region.y;
+        int bottom = region.y + region.height;
+        int left = region.x;
+        int right = region.x + region.width;
+        
+        long firstX = (long) Math.floor(viewport.toWorldX(left) / step) * step;
+        for (long worldX = firstX; ; worldX += step) {
+            int x = viewport.toScreenX(worldX);
+            if (x >= right) {
+                break;
+            }
+            g.drawLine(x, top, x, bottom);
+        }
+        
+        long firstY = (long) Math.floor(viewport.toWorldY(top) / step) * step;
+        for (long worldY = firstY; ; worldY += step) {
+            int y = viewport.toScreenY(worldY);
+            if (y >= bottom) {
+                break;
+            }
+            g.drawLine(left, y, right, y);
+        }
+    }
+    
+    /**
+     * 元素绘制时可能覆盖的范围
+     */
+    public static Rectangle paintBounds(MapElement element) {
+        return paintBounds(element, element.getX(), element.getY(), element.getWidth(), element.getHeight());
+    }
+    
+    /**
+     * 元素在指定位置和尺寸下绘制时可能覆盖的范围
+     */
+    private static Rectangle paintBounds(MapElement element, int x, int y, int width, int height) {
+        Rectangle bounds = new Rectangle(x, y, width, height);
+        if (element instanceof Checkpoint) {
+            Checkpoint checkpoint = (Checkpoint) element;
+            bounds.add(new Rectangle(x + checkpoint.getRespawnOffsetX() - CROSS_SIZE,
+                y + checkpoint.getRespawnOffsetY() - CROSS_SIZE, 2 * CROSS_SIZE, 2 * CROSS_SIZE));
+        }
+        bounds.grow(PAINT_MARGIN, PAINT_MARGIN);
+        return bounds;
+    }
+    
+    @Override
+    public void batchChanged(BitSet ids, Rectangle region) {
+        Rectangle bounds = new Rectangle(region);
+        bounds.grow(CROSS_SIZE + PAINT_MARGIN, CROSS_SIZE + PAINT_MARGIN);
+        BitSet cached = (BitSet) ids.clone();
+        cached.andNot(excluded);
+        if (cached.isEmpty()) {
+            // 只涉及选中的元素（不在缓存中），只需重绘
+            canvas.repaint(toScreen(bounds));
+        } else {
+            invalidate(bounds);
+        }
+    }
+    
+    @Override
+    public void elementAdded(int id) {
+        invalidate(paintBounds(model.get(id)));
+    }
+    
+    @Override
+    public void elementRemoved(int id, MapElement element) {
+        invalidate(paintBounds(element));
+    }
+    
+    @Override
+    public void elementChanged(int id, int oldX, int oldY, int oldWidth, int oldHeight) {
+        MapElement element = model.get(id);
+        if (element instanceof Checkpoint && oldX == element.getX() && oldY == element.getY()
+                && oldWidth == element.getWidth() && oldHeight == element.getHeight()) {
+            // 重生点属性变化，原来的十字位置未知
+            invalidateAll();
+            return;
+        }
+        Rectangle region = paintBounds(element, oldX, oldY, oldWidth, oldHeight);
+        region.add(paintBounds(element));
+        if (excluded.get(id)) {
+            // 选中的元素不在缓存中，只需重绘新旧位置
+            canvas.repaint(toScreen(region));
+        } else {
+            invalidate(region);
+        }
+    }
+}
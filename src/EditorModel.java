@@ -0,0 +1,454 @@
+// 简化项目结构，移除包声明
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * 编辑器地图模型
+ * 包装MapDesign.MapData，为每个元素分配紧凑的整数编号并维护空间索引。
+ * 编辑器对地图的增删改都通过此类进行，保证元素列表与索引始终同步。
+ * 批量修改（beginBatch/endBatch之间）不逐个通知监听器，结束时合并为一次batchChanged。
+ */
+public class EditorModel {
+    // 元素类型，顺序与元素列表和点选优先级一致
+    public static final int KIND_PLATFORM = 0;
+    public static final int KIND_SOLID_BLOCK = 1;
+    public static final int KIND_SPIKE = 2;
+    public static final int KIND_CHECKPOINT = 3;
+    public static final int KIND_ENERGY_BEAN = 4;
+    public static final int KIND_COUNT = 5;
+    
+    /**
+     * 模型变化监听器
+     * 行事件以（类型, 类型列表位置）描述元素列表的变化，元素事件以编号描述几何变化
+     */
+    public interface Listener {
+        /** 类型列表中 [first, last] 位置插入了新行 */
+        default void rowsAdded(int kind, int first, int last) { }
+        
+        /** 类型列表中 [first, last] 位置的行被删除 */
+        default void rowsRemoved(int kind, int first, int last) { }
+        
+        /** 类型列表中 [first, last] 位置的行内容变化 */
+        default void rowsChanged(int kind, int first, int last) { }
+        
+        /** 元素被加入地图 */
+        default void elementAdded(int id) { }
+        
+        /** 元素被移出地图 */
+        default void elementRemoved(int id, MapElement element) { }
+        
+        /** 元素的位置、尺寸或属性变化，参数为变化前的位置和尺寸 */
+        default void elementChanged(int id, int oldX, int oldY, int oldWidth, int oldHeight) { }
+        
+        /**
+         * 批量修改结束（代替批量期间的所有行事件和元素事件）
+         * @param ids 增加、删除或修改过的元素编号（只在回调期间有效）
+         * @param region 这些元素修改前后覆盖的范围，包括重生点位置
+         */
+        default void batchChanged(BitSet ids, Rectangle region) { }
+    }
+    
+    private final MapDesign.MapData map;
+    private final QuadTree index = new QuadTree();
+    private final List<Listener> listeners = new ArrayList<>();
+    
+    // 编号 -> 元素、类型、在类型列表中的位置
+    private MapElement[] elements = new MapElement[64];
+    private int[] kindOf = new int[64];
+    private int[] positionOf = new int[64];
+    
+    // 类型列表位置 -> 编号（与MapData中的各个列表平行）
+    private final int[][] idsByKind = new int[KIND_COUNT][16];
+    
+    // 编号不回收，撤销删除时元素可以恢复原编号
+    private int nextId = 0;
+    
+    // 修改计数，每次增删改加一（用于判断地图是否有未保存的修改）
+    private long modCount = 0;
+    
+    // 批量修改的嵌套层数、涉及的编号和范围
+    private int batchDepth = 0;
+    private final BitSet batchIds = new BitSet();
+    private Rectangle batchRegion = null;
+    
+    public EditorModel(MapDesign.MapData map) {
+        this.map = map;
+        for (int kind = 0; kind < KIND_COUNT; kind++) {
+            List<? extends MapElement> list = listOf(kind);
+            for (int i = 0; i < list.size(); i++) {
+                register(nextId++, list.get(i), kind, i);
+            }
+        }
+    }
+    
+    /**
+     * 添加监听器
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * 移除监听器
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * 开始批量修改，可以嵌套
+     */
+    public void beginBatch() {
+        batchDepth++;
+    }
+    
+    /**
+     * 结束批量修改；最外层结束时把期间的所有变化合并为一次通知
+     */
+    public void endBatch() {
+        if (--batchDepth > 0 || batchIds.isEmpty()) {
+            return;
+        }
+        Rectangle region = batchRegion;
+        batchRegion = null;
+        for (Listener listener : listeners) {
+            listener.batchChanged(batchIds, region);
+        }
+        batchIds.clear();
+    }
+    
+    /**
+     * 修改计数，地图每次被修改都会增加
+     */
+    public long getModCount() {
+        return modCount;
+    }
+    
+    /**
+     * 获取底层地图数据
+     */
+    public MapDesign.MapData getMap() {
+        return map;
+    }
+    
+    /**
+     * 添加元素
+     * @return 新元素的编号
+     */
+    public int add(MapElement element) {
+        int kind = kindOf(element);
+        List<MapElement> list = mutableListOf(kind);
+        list.add(element);
+        int id = nextId++;
+        int position = list.size() - 1;
+        register(id, element, kind, position);
+        modCount++;
+        if (batchDepth > 0) {
+            addToBatch(id, element, element.getX(), element.getY(), element.getWidth(), element.getHeight());
+            return id;
+        }
+        for (Listener listener : listeners) {
+            listener.rowsAdded(kind, position, position);
+            listener.elementAdded(id);
+        }
+        return id;
+    }
+    
+    /**
+     * 以原编号恢复已删除的元素（用于撤销删除）
+     * 与remove的交换删除互逆：原来位于该位置的元素被移到列表末尾
+     * @param position 元素删除前在类型列表中的位置
+     */
+    public void restore(int id, MapElement element, int position) {
+        if (exists(id)) {
+            throw new IllegalStateException("编号仍在使用: " + id);
+        }
+        int kind = kindOf(element);
+        List<MapElement> list = mutableListOf(kind);
+        int size = list.size();
+        boolean displace = position < size;
+        if (displace) {
+            MapElement displaced = list.get(position);
+            int displacedId = idsByKind[kind][position];
+            list.set(position, element);
+            list.add(displaced);
+            ensureKindCapacity(kind, size + 1);
+            idsByKind[kind][size] = displacedId;
+            positionOf[displacedId] = size;
+        } else {
+            list.add(element);
+            position = size;
+        }
+        register(id, element, kind, position);
+        modCount++;
+        if (batchDepth > 0) {
+            addToBatch(id, element, element.getX(), element.getY(), element.getWidth(), element.getHeight());
+            return;
+        }
+        for (Listener listener : listeners) {
+            if (displace) {
+                listener.rowsChanged(kind, position, position);
+            }
+            listener.rowsAdded(kind, size, size);
+            listener.elementAdded(id);
+        }
+    }
+    
+    /**
+     * 删除元素
+     * 用类型列表中的最后一个元素填补空位，删除为O(1)
+     */
+    public void remove(int id) {
+        MapElement element = elements[id];
+        if (element == null) {
+            return;
+        }
+        int kind = kindOf[id];
+        int position = positionOf[id];
+        List<MapElement> list = mutableListOf(kind);
+        int lastPosition = list.size() - 1;
+        
+        if (position != lastPosition) {
+            MapElement last = list.get(lastPosition);
+            int lastId = idsByKind[kind][lastPosition];
+            list.set(position, last);
+            idsByKind[kind][position] = lastId;
+            positionOf[lastId] = position;
+        }
+        list.remove(lastPosition);
+        
+        index.remove(id);
+        elements[id] = null;
+        modCount++;
+        if (batchDepth > 0) {
+            addToBatch(id, element, element.getX(), element.getY(), element.getWidth(), element.getHeight());
+            return;
+        }
+        for (Listener listener : listeners) {
+            if (position != lastPosition) {
+                listener.rowsChanged(kind, position, position);
+            }
+            listener.rowsRemoved(kind, lastPosition, lastPosition);
+            listener.elementRemoved(id, element);
+        }
+    }
+    
+    /**
+     * 移动元素
+     */
+    public void move(int id, int x, int y) {
+        MapElement element = elements[id];
+        setBounds(id, x, y, element.getWidth(), element.getHeight());
+    }
+    
+    /**
+     * 设置元素位置和尺寸
+     */
+    public void setBounds(int id, int x, int y, int width, int height) {
+        MapElement element = elements[id];
+        int oldX = element.getX(), oldY = element.getY();
+        int oldWidth = element.getWidth(), oldHeight = element.getHeight();
+        element.setPosition(x, y);
+        element.setSize(width, height);
+        index.update(id, x, y, width, height);
+        fireChanged(id, oldX, oldY, oldWidth, oldHeight);
+    }
+    
+    /**
+     * 设置重生点属性
+     */
+    public void setCheckpointProperties(int id, int respawnOffsetX, int respawnOffsetY, boolean defaultActivated) {
+        Checkpoint checkpoint = (Checkpoint) elements[id];
+        if (batchDepth > 0) {
+            // 记录修改前的重生点位置
+            addToBatch(id, checkpoint, checkpoint.getX(), checkpoint.getY(), checkpoint.getWidth(), checkpoint.getHeight());
+        }
+        checkpoint.setRespawnOffset(respawnOffsetX, respawnOffsetY);
+        checkpoint.setDefaultActivated(defaultActivated);
+        fireChanged(id, checkpoint.getX(), checkpoint.getY(), checkpoint.getWidth(), checkpoint.getHeight());
+    }
+    
+    private void fireChanged(int id, int oldX, int oldY, int oldWidth, int oldHeight) {
+        modCount++;
+        if (batchDepth > 0) {
+            MapElement element = elements[id];
+            addToBatch(id, element, oldX, oldY, oldWidth, oldHeight);
+            addToBatch(id, element, element.getX(), element.getY(), element.getWidth(), element.getHeight());
+            return;
+        }
+        int kind = kindOf[id];
+        int position = positionOf[id];
+        for (Listener listener : listeners) {
+            listener.rowsChanged(kind, position, position);
+            listener.elementChanged(id, oldX, oldY, oldWidth, oldHeight);
+        }
+    }
+    
+    /**
+     * 获取元素
+     * @return 元素，编号无效时返回null
+     */
+    public MapElement get(int id) {
+        return id >= 0 && id < nextId ? elements[id] : null;
+    }
+    
+    /**
+     * 编号是否对应现存元素
+     */
+    public boolean exists(int id) {
+        return get(id) != null;
+    }
+    
+    /**
+     * 获取元素类型
+     */
+    public int getKind(int id) {
+        return kindOf[id];
+    }
+    
+    /**
+     * 获取元素在类型列表中的位置
+     */
+    public int getPosition(int id) {
+        return positionOf[id];
+    }
+    
+    /**
+     * 按类型列表位置获取编号
+     */
+    public int getId(int kind, int position) {
+        return idsByKind[kind][position];
+    }
+    
+    /**
+     * 获取指定类型的元素数量
+     */
+    public int getCount(int kind) {
+        return listOf(kind).size();
+    }
+    
+    /**
+     * 编号上限（所有有效编号都小于此值）
+     */
+    public int getIdLimit() {
+        return nextId;
+    }
+    
+    /**
+     * 元素总数
+     */
+    public int size() {
+        return index.size();
+    }
+    
+    /**
+     * 查找指定位置的元素
+     * 多个元素重叠时按类型顺序优先（平台、实心物块、尖刺、重生点、能量豆）
+     * @return 元素编号，没有时返回-1
+     */
+    public int findAt(int x, int y) {
+        int[] best = {-1};
+        index.queryPoint(x, y, id -> {
+            if (best[0] < 0 || kindOf[id] < kindOf[best[0]]
+                    || (kindOf[id] == kindOf[best[0]] && positionOf[id] < positionOf[best[0]])) {
+                best[0] = id;
+            }
+            return true;
+        });
+        return best[0];
+    }
+    
+    /**
+     * 查找与矩形相交的所有元素
+     * @param visitor 对每个元素编号调用，返回false时停止
+     */
+    public void findInRect(int x, int y, int width, int height, IntPredicate visitor) {
+        index.query(x, y, width, height, visitor);
+    }
+    
+    /**
+     * 按密度查询矩形区域（缩小显示时使用）
+     * @see QuadTree#queryDensity
+     */
+    public void findDensity(int x, int y, int width, int height, int cellSize,
+                            IntPredicate itemVisitor, QuadTree.DensityVisitor cellVisitor) {
+        index.queryDensity(x, y, width, height, cellSize, itemVisitor, cellVisitor);
+    }
+    
+    /**
+     * 获取元素类型
+     */
+    public static int kindOf(MapElement element) {
+        if (element instanceof Platform) {
+            return KIND_PLATFORM;
+        } else if (element instanceof SolidBlock) {
+            return KIND_SOLID_BLOCK;
+        } else if (element instanceof Spike) {
+            return KIND_SPIKE;
+        } else if (element instanceof Checkpoint) {
+            return KIND_CHECKPOINT;
+        } else if (element instanceof EnergyBean) {
+            return KIND_ENERGY_BEAN;
+        }
+        throw new IllegalArgumentException("未知的地图元素类型: " + element.getElementType());
+    }
+    
+    /**
+     * 把元素在指定位置和尺寸下覆盖的范围加入本次批量修改
+     */
+    private void addToBatch(int id, MapElement element, int x, int y, int width, int height) {
+        batchIds.set(id);
+        if (batchRegion == null) {
+            batchRegion = new Rectangle(x, y, width, height);
+        } else {
+            batchRegion.add(new Rectangle(x, y, width, height));
+        }
+        if (element instanceof Checkpoint) {
+            Checkpoint checkpoint = (Checkpoint) element;
+            batchRegion.add(x + checkpoint.getRespawnOffsetX(), y + checkpoint.getRespawnOffsetY());
+        }
+    }
+    
+    private void register(int id, MapElement element, int kind, int position) {
+        if (id >= elements.length) {
+            int capacity = Math.max(id + 1, elements.length * 2);
+            elements = Arrays.copyOf(elements, capacity);
+            kindOf = Arrays.copyOf(kindOf, capacity);
+            positionOf = Arrays.copyOf(positionOf, capacity);
+        }
+        ensureKindCapacity(kind, position + 1);
+        elements[id] = element;
+        kindOf[id] = kind;
+        positionOf[id] = position;
+        idsByKind[kind][position] = id;
+        index.insert(id, element.getX(), element.getY(), element.getWidth(), element.getHeight());
+    }
+    
+    private void ensureKindCapacity(int kind, int capacity) {
+        if (capacity > idsByKind[kind].length) {
+            idsByKind[kind] = Arrays.copyOf(idsByKind[kind], Math.max(capacity, idsByKind[kind].length * 2));
+        }
+    }
+    
+    private List<? extends MapElement> listOf(int kind) {
+        switch (kind) {
+            case KIND_PLATFORM: return map.platforms;
+            case KIND_SOLID_BLOCK: return map.solidBlocks;
+            case KIND_SPIKE: return map.spikes;
+            case KIND_CHECKPOINT: return map.checkpoints;
+            case KIND_ENERGY_BEAN: return map.energyBeans;
+            default: throw new IllegalArgumentException("未知的元素类型: " + kind);
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private List<MapElement> mutableListOf(int kind) {
+        // 各类型列表只会放入对应类型的元素（由kindOf保证）
+        return (List<MapElement>) listOf(kind);
+    }
+}
@@ -0,0 +1,106 @@
+// 简化项目结构，移除包声明
+
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+
+/**
+ * 编辑器视口
+ * 保存缩放比例和平移量，负责世界坐标与画布（屏幕）坐标的相互转换：
+ * 屏幕坐标 = 世界坐标 * 缩放 - 原点偏移。
+ * 原点偏移以整数像素保存，平移时画面整体移动整数个像素，缓存可以直接滚动复用。
+ */
+public class EditorViewport {
+    public static final double MIN_ZOOM = 1.0 / 256;
+    public static final double MAX_ZOOM = 8.0;
+    
+    private double zoom = 1.0;
+    private int originX = 0;
+    private int originY = 0;
+    
+    public double getZoom() {
+        return zoom;
+    }
+    
+    /**
+     * 以屏幕上的一点为中心缩放，该点下的世界坐标保持不变
+     * @return 缩放比例是否改变
+     */
+    public boolean zoomAt(int screenX, int screenY, double factor) {
+        double newZoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+        if (newZoom == zoom) {
+            return false;
+        }
+        double worldX = toWorldX(screenX);
+        double worldY = toWorldY(screenY);
+        zoom = newZoom;
+        originX = (int) Math.round(worldX * zoom - screenX);
+        originY = (int) Math.round(worldY * zoom - screenY);
+        return true;
+    }
+    
+    /**
+     * 平移画面
+     * @param dx 画面向右移动的像素数
+     * @param dy 画面向下移动的像素数
+     */
+    public void pan(int dx, int dy) {
+        originX -= dx;
+        originY -= dy;
+    }
+    
+    /**
+     * 恢复100%缩放，世界原点位于画布左上角
+     */
+    public void reset() {
+        zoom = 1.0;
+        originX = 0;
+        originY = 0;
+    }
+    
+    public double toWorldX(int screenX) {
+        return (screenX + originX) / zoom;
+    }
+    
+    public double toWorldY(int screenY) {
+        return (screenY + originY) / zoom;
+    }
+    
+    public int toScreenX(double worldX) {
+        return (int) Math.floor(worldX * zoom) - originX;
+    }
+    
+    public int toScreenY(double worldY) {
+        return (int) Math.floor(worldY * zoom) - originY;
+    }
+    
+    /**
+     * 世界矩形 -> 覆盖它的屏幕矩形
+     */
+    public Rectangle toScreen(Rectangle world) {
+        int x1 = toScreenX(world.x);
+        int y1 = toScreenY(world.y);
+        int x2 = (int) Math.ceil(((double) world.x + world.width) * zoom) - originX;
+        int y2 = (int) Math.ceil(((double) world.y + world.height) * zoom) - originY;
+        return new Rectangle(x1, y1, x2 - x1 + 1, y2 - y1 + 1);
+    }
+    
+    /**
+     * 屏幕矩形 -> 覆盖它的世界矩形
+     */
+    public Rectangle toWorld(Rectangle screen) {
+        int x1 = (int) Math.floor(toWorldX(screen.x));
+        int y1 = (int) Math.floor(toWorldY(screen.y));
+        int x2 = (int) Math.ceil(toWorldX(screen.x + screen.width));
+        int y2 = (int) Math.ceil(toWorldY(screen.y + screen.height));
+        return new Rectangle(x1, y1, x2 - x1, y2 - y1);
+    }
+    
+    /**
+     * 世界坐标到屏幕坐标的绘制变换
+     */
+    public AffineTransform getTransform() {
+        AffineTransform transform = AffineTransform.getTranslateInstance(-originX, -originY);
+        transform.scale(zoom, zoom);
+        return transform;
+    }
+}
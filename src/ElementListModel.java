@@ -0,0 +1,131 @@
+// 简化项目结构，移除包声明
+
+import java.awt.Component;
+import java.awt.Rectangle;
+import java.util.BitSet;
+import javax.swing.AbstractListModel;
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.JList;
+
+/**
+ * 编辑器元素列表模型
+ * 直接以EditorModel为数据源，行按类型顺序排列（平台、实心物块、尖刺、重生点、能量豆）。
+ * 不保存任何格式化后的文本：只有被绘制的行才会格式化，
+ * 模型变化时只发出受影响行的增加、删除和变化事件；批量修改结束时合并为一次事件。
+ */
+public class ElementListModel extends AbstractListModel<MapElement> implements EditorModel.Listener {
+    private static final long serialVersionUID = 1L;
+    private static final String[] KIND_NAMES = {"平台", "实心物块", "尖刺", "重生点", "能量豆"};
+    
+    private final EditorModel model;
+    
+    // 已通知给JList的行数
+    private int reportedSize;
+    
+    public ElementListModel(EditorModel model) {
+        this.model = model;
+        this.reportedSize = model.size();
+        model.addListener(this);
+    }
+    
+    /**
+     * 停止监听模型（切换地图时调用）
+     */
+    public void dispose() {
+        model.removeListener(this);
+    }
+    
+    @Override
+    public int getSize() {
+        return model.size();
+    }
+    
+    @Override
+    public MapElement getElementAt(int row) {
+        return model.get(getIdAt(row));
+    }
+    
+    /**
+     * 行号 -> 元素编号
+     */
+    public int getIdAt(int row) {
+        int kind = 0;
+        while (kind < EditorModel.KIND_COUNT - 1 && row >= model.getCount(kind)) {
+            row -= model.getCount(kind);
+            kind++;
+        }
+        return model.getId(kind, row);
+    }
+    
+    /**
+     * 元素编号 -> 行号
+     */
+    public int getRowOf(int id) {
+        return rowOf(model.getKind(id), model.getPosition(id));
+    }
+    
+    /**
+     * 格式化一行的显示文本
+     */
+    public String format(int row) {
+        int id = getIdAt(row);
+        MapElement element = model.get(id);
+        return String.format("%s %d: (%d,%d) %dx%d", KIND_NAMES[model.getKind(id)], model.getPosition(id) + 1,
+            element.getX(), element.getY(), element.getWidth(), element.getHeight());
+    }
+    
+    private int rowOf(int kind, int position) {
+        int row = position;
+        for (int k = 0; k < kind; k++) {
+            row += model.getCount(k);
+        }
+        return row;
+    }
+    
+    @Override
+    public void rowsAdded(int kind, int first, int last) {
+        reportedSize += last - first + 1;
+        fireIntervalAdded(this, rowOf(kind, first), rowOf(kind, last));
+    }
+    
+    @Override
+    public void rowsRemoved(int kind, int first, int last) {
+        reportedSize -= last - first + 1;
+        fireIntervalRemoved(this, rowOf(kind, first), rowOf(kind, last));
+    }
+    
+    @Override
+    public void rowsChanged(int kind, int first, int last) {
+        fireContentsChanged(this, rowOf(kind, first), rowOf(kind, last));
+    }
+    
+    @Override
+    public void batchChanged(BitSet ids, Rectangle region) {
+        // 批量修改可能改变任意行，按行数变化补发增删事件后整体刷新
+        int size = model.size();
+        if (size > reportedSize) {
+            fireIntervalAdded(this, reportedSize, size - 1);
+        } else if (size < reportedSize) {
+            fireIntervalRemoved(this, size, reportedSize - 1);
+        }
+        reportedSize = size;
+        if (size > 0) {
+            fireContentsChanged(this, 0, size - 1);
+        }
+    }
+    
+    /**
+     * 列表单元格渲染器，在绘制时才格式化文本
+     */
+    public static class Renderer extends DefaultListCellRenderer {
+        private static final long serialVersionUID = 1L;
+        
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                      boolean isSelected, boolean cellHasFocus) {
+            ElementListModel listModel = (ElementListModel) list.getModel();
+            String text = index >= 0 && index < listModel.getSize() ? listModel.format(index) : "";
+            return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+        }
+    }
+}
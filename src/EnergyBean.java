@@ -9,17 +9,15 @@ import java.awt.Polygon;
 /**
  * 能量豆类
  * 玩家接触时恢复冲刺数和体力，被消耗后一段时间恢复
+ * 能量豆对象只描述位置和大小，游戏中是否被消耗保存在WorldState中
  */
 public class EnergyBean extends MapElement {
     private static final int DEFAULT_SIZE = 20; // 默认大小
-    private static final int RECOVERY_TIME = 120; // 恢复时间（帧数，约2秒）
+    public static final int RECOVERY_TIME = 120; // 恢复时间（帧数，约2秒）
     private static final Color FILL_COLOR = new Color(144, 238, 144); // 淡绿色
     private static final Color BORDER_COLOR = Color.WHITE; // 白色边框
     private static final Color CONSUMED_BORDER_COLOR = Color.WHITE; // 被消耗后的白色虚线边框
     
-    private boolean isConsumed = false; // 是否被消耗
-    private int recoveryTimer = 0; // 恢复计时器
-    
     /**
      * 构造函数
      * @param x X坐标
@@ -39,59 +37,26 @@ public class EnergyBean extends MapElement {
         super(x, y, size, size, FILL_COLOR);
     }
     
-    /**
-     * 更新能量豆状态
-     * @param deltaTime 时间增量
-     */
-    public void update(double deltaTime) {
-        if (isConsumed) {
-            recoveryTimer++;
-            if (recoveryTimer >= RECOVERY_TIME) {
-                // 恢复能量豆
-                isConsumed = false;
-                recoveryTimer = 0;
-            }
-        }
-    }
-    
-    /**
-     * 消耗能量豆
-     * @return 是否成功消耗（只有未被消耗时才能消耗）
-     */
-    public boolean consume() {
-        if (!isConsumed) {
-            isConsumed = true;
-            recoveryTimer = 0;
-            return true;
-        }
-        return false;
-    }
-    
-    /**
-     * 检查是否被消耗
-     * @return 是否被消耗
-     */
-    public boolean isConsumed() {
-        return isConsumed;
+    @Override
+    public MapElement copy() {
+        return new EnergyBean(x, y, width);
     }
     
     /**
-     * 获取恢复进度（0.0-1.0）
-     * @return 恢复进度
+     * 渲染能量豆（未被消耗的状态）
+     * @param g 图形上下文
      */
-    public double getRecoveryProgress() {
-        if (!isConsumed) {
-            return 1.0;
-        }
-        return (double) recoveryTimer / RECOVERY_TIME;
+    @Override
+    public void render(Graphics g) {
+        render(g, false);
     }
     
     /**
      * 渲染能量豆
      * @param g 图形上下文
+     * @param isConsumed 是否被消耗
      */
-    @Override
-    public void render(Graphics g) {
+    public void render(Graphics g, boolean isConsumed) {
         Graphics2D g2d = (Graphics2D) g.create();
         
         // 计算菱形顶点
@@ -160,8 +125,7 @@ public class EnergyBean extends MapElement {
      */
     @Override
     public String getInfo() {
-        String status = isConsumed ? "已消耗" : "可用";
-        return String.format("%s: 位置(%d,%d) 尺寸(%dx%d) 状态(%s) 恢复进度(%.1f%%)", 
-            getElementType(), x, y, width, height, status, getRecoveryProgress() * 100);
+        return String.format("%s: 位置(%d,%d) 尺寸(%dx%d)", 
+            getElementType(), x, y, width, height);
     }
 }
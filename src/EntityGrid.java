@@ -0,0 +1,152 @@
+// 简化项目结构，移除包声明
+
+import java.util.Arrays;
+
+/**
+ * 实体的宽相位索引（松散均匀网格），每个WorldState一份
+ * 每个实体只登记在它左上角所在的格子里，格子中的实体用保存在基本类型数组中的双向链表串起来；
+ * 查询时把范围向左、向上扩大最大的实体尺寸，就能找到所有与查询矩形相交的实体。
+ * 实体移动时只有左上角跨过格子边界才需要从一个链表移到另一个链表，不需要重建索引，也不分配对象。
+ * 每个实体只在一个格子里，查询结果不会重复。
+ *
+ * 坐标为定点（1/256像素）。活动范围之外的位置归到边缘的格子，结果仍然正确，只是边缘格子里的实体会多一些。
+ * 活动范围很大时格子边长逐次加倍，直到格子总数不超过MAX_CELLS，范围用long计算。
+ */
+public final class EntityGrid {
+    private static final int CELL_SHIFT = 6 + EntityTable.SUBPIXEL_SHIFT; // 格子边长64像素
+    private static final long MAX_CELLS = 1L << 20;
+    private static final int NONE = -1;
+    
+    private final int cellShift;
+    private final long originX, originY; // 第一个格子的左上角
+    private final int columns, rows;
+    private final int expandX, expandY; // 查询时向左上方扩大的范围（最大的实体尺寸）
+    private final int[] cellHead; // 每个格子链表的第一个实体
+    private final int[] next, previous;
+    private final int[] cellOf; // 实体所在的格子，不在网格中时为NONE
+    private final int[] left, top; // 当前左上角
+    private final int[] widths, heights; // 尺寸不变，直接使用EntityTable的数组
+    
+    /**
+     * @param table 实体定义，活动范围由起点、终点和尺寸确定
+     * @param fallLimit 下落物块最多落到的y（定点），超过后由调用者移出网格
+     */
+    EntityGrid(EntityTable table, int fallLimit) {
+        int count = table.count;
+        long minX = 0, minY = 0, maxX = 0, maxY = 0;
+        for (int i = 0; i < count; i++) {
+            minX = Math.min(minX, Math.min(table.startX[i], table.endX[i]));
+            minY = Math.min(minY, Math.min(table.startY[i], table.endY[i]));
+            maxX = Math.max(maxX, Math.max(table.startX[i], table.endX[i]));
+            maxY = Math.max(maxY, Math.max(table.startY[i], table.endY[i]));
+            if (table.kinds[i] == MapEntity.FALLING_BLOCK) {
+                maxY = Math.max(maxY, fallLimit);
+            }
+        }
+        int shift = CELL_SHIFT;
+        while ((((maxX - minX) >> shift) + 2) * (((maxY - minY) >> shift) + 2) > MAX_CELLS) {
+            shift++;
+        }
+        cellShift = shift;
+        originX = minX >> cellShift << cellShift;
+        originY = minY >> cellShift << cellShift;
+        columns = (int) ((maxX - originX) >> cellShift) + 1;
+        rows = (int) ((maxY - originY) >> cellShift) + 1;
+        expandX = table.maxWidth;
+        expandY = table.maxHeight;
+        
+        cellHead = new int[columns * rows];
+        Arrays.fill(cellHead, NONE);
+        next = new int[count];
+        previous = new int[count];
+        cellOf = new int[count];
+        Arrays.fill(cellOf, NONE);
+        left = new int[count];
+        top = new int[count];
+        widths = table.widths;
+        heights = table.heights;
+    }
+    
+    private int column(long x) {
+        return (int) Math.max(0, Math.min(columns - 1, (x - originX) >> cellShift));
+    }
+    
+    private int row(long y) {
+        return (int) Math.max(0, Math.min(rows - 1, (y - originY) >> cellShift));
+    }
+    
+    /**
+     * 设置实体的位置（左上角），不在网格中时加入；只有左上角换了格子时才移动链表节点
+     */
+    public void update(int id, int newLeft, int newTop) {
+        left[id] = newLeft;
+        top[id] = newTop;
+        int cell = row(newTop) * columns + column(newLeft);
+        if (cellOf[id] == cell) {
+            return;
+        }
+        remove(id);
+        int head = cellHead[cell];
+        next[id] = head;
+        previous[id] = NONE;
+        if (head != NONE) {
+            previous[head] = id;
+        }
+        cellHead[cell] = id;
+        cellOf[id] = cell;
+    }
+    
+    /**
+     * 把实体移出网格（例如落出屏幕的下落物块），位置保持最后的值
+     */
+    public void remove(int id) {
+        int cell = cellOf[id];
+        if (cell == NONE) {
+            return;
+        }
+        if (previous[id] != NONE) {
+            next[previous[id]] = next[id];
+        } else {
+            cellHead[cell] = next[id];
+        }
+        if (next[id] != NONE) {
+            previous[next[id]] = previous[id];
+        }
+        cellOf[id] = NONE;
+    }
+    
+    public boolean contains(int id) {
+        return cellOf[id] != NONE;
+    }
+    
+    /**
+     * 查询包围盒与矩形[queryLeft, queryRight] x [queryTop, queryBottom]（含边界）相交的实体，约定与CollisionGrid.query相同
+     * @param out 输出实体编号，最多写入out.length个
+     * @return 相交的实体总数，大于out.length时调用者需要换用更大的数组重新查询
+     */
+    public int query(int queryLeft, int queryTop, int queryRight, int queryBottom, int[] out) {
+        int count = 0;
+        int firstColumn = column((long) queryLeft - expandX), lastColumn = column(queryRight);
+        int firstRow = row((long) queryTop - expandY), lastRow = row(queryBottom);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                for (int id = cellHead[row * columns + column]; id != NONE; id = next[id]) {
+                    if (left[id] > queryRight || left[id] + widths[id] < queryLeft
+                            || top[id] > queryBottom || top[id] + heights[id] < queryTop) {
+                        continue;
+                    }
+                    if (count < out.length) {
+                        out[count] = id;
+                    }
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+    
+    public int getLeft(int id) { return left[id]; }
+    public int getTop(int id) { return top[id]; }
+    public int getRight(int id) { return left[id] + widths[id]; }
+    public int getBottom(int id) { return top[id] + heights[id]; }
+}
@@ -0,0 +1,100 @@
+// 简化项目结构，移除包声明
+
+/**
+ * 编译后的实体定义（只读）
+ * 把MapEntity按组件拆成以实体编号为下标的基本类型数组，坐标和尺寸换算为定点（1/256像素），
+ * WorldState每个tick推进实体时只顺序读取这些数组，不访问MapEntity对象。
+ * 同一张CompiledMap上的所有模拟共享一份EntityTable，数组不做复制，不能修改。
+ *
+ * 下落物块另有从0开始的连续编号，WorldState按这个编号保存它们的计时器，倒带和存档只需要遍历下落物块。
+ */
+public final class EntityTable {
+    static final int SUBPIXEL_SHIFT = 8;
+    // 实体坐标和尺寸的范围（像素），换算为定点后加减仍在int范围内
+    static final int MAX_COORDINATE = 1 << 22;
+    
+    final int count;
+    final byte[] kinds; // MapEntity.MOVING_PLATFORM等
+    final byte[] collisionKinds; // 碰撞时按哪种静态元素处理（CollisionGrid.PLATFORM等）
+    final int[] startX, startY; // 起点（左上角）
+    final int[] endX, endY; // 终点（左上角）
+    final int[] velocityX, velocityY; // 往返移动的每帧位移，向零取整，单程的实际终点与endX、endY相差不到period个定点单位
+    final int[] widths, heights;
+    final int[] periods; // 单程帧数
+    final int[] delays; // 下落物块被踩后开始下落前的帧数
+    final int[] fallingIndex; // 下落物块的编号，其他实体为-1
+    final int[] fallingBlocks; // 按下落物块编号排列的实体编号
+    final int[] movers; // 往返移动的实体（移动平台和巡逻尖刺）的编号
+    final int maxWidth, maxHeight;
+    
+    EntityTable(MapEntity[] entities) {
+        count = entities.length;
+        kinds = new byte[count];
+        collisionKinds = new byte[count];
+        startX = new int[count];
+        startY = new int[count];
+        endX = new int[count];
+        endY = new int[count];
+        velocityX = new int[count];
+        velocityY = new int[count];
+        widths = new int[count];
+        heights = new int[count];
+        periods = new int[count];
+        delays = new int[count];
+        fallingIndex = new int[count];
+        int fallingCount = 0;
+        int widest = 0, tallest = 0;
+        for (int i = 0; i < count; i++) {
+            MapEntity entity = entities[i];
+            checkRange(entity.getX(), entity.getY(), entity.getWidth(), entity.getHeight(), entity.getToX(), entity.getToY());
+            kinds[i] = (byte) entity.getKind();
+            startX[i] = entity.getX() << SUBPIXEL_SHIFT;
+            startY[i] = entity.getY() << SUBPIXEL_SHIFT;
+            widths[i] = entity.getWidth() << SUBPIXEL_SHIFT;
+            heights[i] = entity.getHeight() << SUBPIXEL_SHIFT;
+            periods[i] = entity.getPeriod();
+            delays[i] = entity.getDelay();
+            fallingIndex[i] = -1;
+            switch (entity.getKind()) {
+                case MapEntity.MOVING_PLATFORM:
+                    collisionKinds[i] = CollisionGrid.PLATFORM;
+                    break;
+                case MapEntity.FALLING_BLOCK:
+                    collisionKinds[i] = CollisionGrid.SOLID_BLOCK;
+                    fallingIndex[i] = fallingCount++;
+                    break;
+                default:
+                    collisionKinds[i] = CollisionGrid.SPIKE;
+                    break;
+            }
+            // 下落物块只在竖直方向移动，终点不使用
+            boolean moving = entity.getKind() != MapEntity.FALLING_BLOCK;
+            endX[i] = moving ? entity.getToX() << SUBPIXEL_SHIFT : startX[i];
+            endY[i] = moving ? entity.getToY() << SUBPIXEL_SHIFT : startY[i];
+            velocityX[i] = (endX[i] - startX[i]) / periods[i];
+            velocityY[i] = (endY[i] - startY[i]) / periods[i];
+            widest = Math.max(widest, widths[i]);
+            tallest = Math.max(tallest, heights[i]);
+        }
+        maxWidth = widest;
+        maxHeight = tallest;
+        fallingBlocks = new int[fallingCount];
+        movers = new int[count - fallingCount];
+        int moverCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (fallingIndex[i] >= 0) {
+                fallingBlocks[fallingIndex[i]] = i;
+            } else {
+                movers[moverCount++] = i;
+            }
+        }
+    }
+    
+    private static void checkRange(int... values) {
+        for (int value : values) {
+            if (value < -MAX_COORDINATE || value > MAX_COORDINATE) {
+                throw new IllegalArgumentException("实体的坐标或尺寸超出范围（±" + MAX_COORDINATE + "像素）: " + value);
+            }
+        }
+    }
+}
@@ -2,13 +2,27 @@
 
 import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.JFrame;
 import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 
 /**
  * 游戏主类 - 横版跳跃游戏
@@ -16,23 +30,83 @@ import javax.swing.SwingUtilities;
 public class Game extends JFrame implements KeyListener {
     private static final int WINDOW_WIDTH = 1920;
     private static final int WINDOW_HEIGHT = 1080;
-    private static final int FPS = 60;
+    // 画面卡顿后最多追赶的tick数，超过的部分直接跳过
+    private static final int MAX_CATCH_UP_TICKS = 5;
+    // 倒带：保存最近10秒的状态，按住倒带键时以2倍速回退
+    private static final int REWIND_SECONDS = 10;
+    private static final int REWIND_SPEED = 2;
+    
+    private static final String DEFAULT_MAP_PATH = "maps/default.json";
+    private static final String REPLAY_DIR = "replays";
+    private static final Path QUICK_SAVE_PATH = Paths.get("saves", "quicksave.jcs");
+    
+    // 启动计时（用于统计首帧耗时）
+    private static long launchTime;
     
     private final GamePanel gamePanel;
-    private final Player player;
-    private final boolean running = true;
-    private MapElement[] mapElements; // 统一的地图元素数组
-    private SolidBlock[] solidBlocks;
-    private Platform[] platforms;
-    private Spike[] spikes;
-    private Checkpoint[] checkpoints;
-    private EnergyBean[] energyBeans;
-    private MapDesign.MapData currentMap;
+    private Simulation simulation;
+    private Player player;
+    private CompiledMap compiledMap;
+    private WorldState world; // 重生点激活和能量豆消耗状态，渲染时读取
+    private final InputQueue inputQueue = new InputQueue(); // 按键事件从EDT传给游戏线程
+    private volatile boolean running = true;
+    private Thread gameThread;
+    
+    // 录制与回放：正常游戏时录制每个tick的输入，回放时从录像读取输入
+    private Replay recording;
+    private final Replay replay;
+    private Replay.Playback playback;
+    private final int ticksPerFrame; // 回放时每个tick周期推进的模拟步数
+    private boolean replayFinished = false;
+    private final boolean fixedPoint; // 是否使用定点物理模式（回放时由录像决定）
+    private RewindBuffer rewindBuffer;
+    private volatile boolean rewinding = false;
+    
+    // 快速存档：在游戏线程上编码，由后台线程写盘；最近一次存档同时保留在内存中，读档时不必访问磁盘
+    private final ExecutorService quickSaver = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "quick-saver");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private QuickSave lastQuickSave;
+    private int previousInput = 0; // 上一个tick的输入，用于检测存档/读档键的按下
+    
+    // 加载状态（仅在EDT上读写）
+    private boolean mapLoaded = false;
+    private int loadProgress = 0;
+    private String loadStage = "准备加载";
+    private String loadError = null;
+    private long loadFinishedTime;
+    private boolean firstFrameReported = false;
+    
+    // 试玩模式：从编辑器启动，指定起点，关闭窗口只结束本次试玩
+    private final boolean playtest;
+    private final long playtestStartTime;
+    private double startX, startY;
     
     public Game() {
-        setTitle("Java Celeste - 横版跳跃游戏");
+        this(DEFAULT_MAP_PATH);
+    }
+    
+    public Game(String mapPath) {
+        this(mapPath, null, 1, false);
+    }
+    
+    /**
+     * @param mapPath 地图文件路径
+     * @param replay 要回放的录像，为null时正常游戏并录制输入
+     * @param ticksPerFrame 回放速度（每个tick周期推进的模拟步数）
+     * @param fixedPoint 是否使用定点物理模式，回放时忽略，使用录像中记录的模式
+     */
+    public Game(String mapPath, Replay replay, int ticksPerFrame, boolean fixedPoint) {
+        setTitle(replay != null ? "Java Celeste - 回放" : "Java Celeste - 横版跳跃游戏");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setResizable(false);
+        playtest = false;
+        playtestStartTime = 0;
+        this.replay = replay;
+        this.ticksPerFrame = Math.max(1, ticksPerFrame);
+        this.fixedPoint = replay != null ? replay.isFixedPoint() : fixedPoint;
         
         // 创建游戏面板
         gamePanel = new GamePanel();
@@ -41,99 +115,388 @@ public class Game extends JFrame implements KeyListener {
         // 设置窗口大小
         pack();
         setLocationRelativeTo(null);
+        addCloseListener();
         
-        // 加载地图设计
-        loadMapFromJson("maps/default.json");
+        // 在后台线程加载地图设计，窗口先显示加载界面
+        loadMapInBackground(mapPath);
+    }
+    
+    /**
+     * 试玩构造函数：直接在编辑器内存中的地图上运行，不经过JSON读写
+     * 在EDT上只创建地图快照，编译为CompiledMap在后台线程进行，之后编辑器的修改不影响本次试玩；
+     * 重生点激活和能量豆消耗是每次试玩各自的WorldState。
+     * 必须在EDT上调用。
+     * @param editorMap 编辑器中的地图
+     * @param startX 玩家起点X坐标
+     * @param startY 玩家起点Y坐标
+     */
+    public Game(MapDesign.MapData editorMap, double startX, double startY) {
+        playtestStartTime = System.nanoTime();
+        setTitle("Java Celeste - 试玩: " + editorMap.name);
+        setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        setResizable(false);
+        playtest = true;
+        this.startX = startX;
+        this.startY = startY;
+        replay = null;
+        ticksPerFrame = 1;
+        fixedPoint = false;
         
-        // 获取初始重生点位置
-        Checkpoint initialCheckpoint = getLatestActivatedCheckpoint();
-        double initialX = 100; // 默认位置
-        double initialY = 900;
+        gamePanel = new GamePanel();
+        add(gamePanel);
+        pack();
+        setLocationRelativeTo(null);
+        addCloseListener();
         
-        if (initialCheckpoint != null) {
-            initialX = initialCheckpoint.getRespawnX();
-            initialY = initialCheckpoint.getRespawnY();
-            System.out.println("使用激活的重生点作为初始位置: (" + initialX + ", " + initialY + ")");
+        compileInBackground(new JsonMapLoader.MapSnapshot(editorMap, editorMap.name, editorMap.description));
+    }
+    
+    /**
+     * 关闭窗口时结束游戏循环并保存录像（试玩不保存录像）
+     */
+    private void addCloseListener() {
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                stopGameLoop();
+                if (!playtest) {
+                    saveRecording();
+                }
+                awaitQuickSaver();
+            }
+        });
+    }
+    
+    /**
+     * 在后台线程加载并编译地图，加载进度在EDT上更新到加载界面
+     */
+    private void loadMapInBackground(String jsonPath) {
+        SwingWorker<CompiledMap, Void> loader = new SwingWorker<CompiledMap, Void>() {
+            @Override
+            protected CompiledMap doInBackground() throws Exception {
+                System.out.println("正在加载地图: " + jsonPath);
+                MapDesign.MapData mapData = JsonMapLoader.loadMapFromJson(jsonPath, (percent, stage) -> {
+                    setProgress(percent);
+                    SwingUtilities.invokeLater(() -> loadStage = stage);
+                });
+                System.out.println(String.format("地图: %s - %s", mapData.name, mapData.description));
+                SwingUtilities.invokeLater(() -> loadStage = "编译地图");
+                return compileLoadedMap(mapData);
+            }
+            
+            @Override
+            protected void done() {
+                CompiledMap map;
+                try {
+                    map = get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    loadError = e.getCause().getMessage();
+                    System.err.println("加载地图失败: " + loadError);
+                    System.out.println("使用空地图");
+                    map = compileLoadedMap(MapDesign.createEmptyMap());
+                }
+                onMapLoaded(map);
+            }
+        };
+        loader.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) {
+                loadProgress = (Integer) e.getNewValue();
+                gamePanel.repaint();
+            }
+        });
+        loader.execute();
+    }
+    
+    /**
+     * 在后台线程编译试玩地图的快照
+     */
+    private void compileInBackground(JsonMapLoader.MapSnapshot snapshot) {
+        loadStage = "编译地图";
+        new SwingWorker<CompiledMap, Void>() {
+            @Override
+            protected CompiledMap doInBackground() {
+                return compileLoadedMap(snapshot.toMapData());
+            }
+            
+            @Override
+            protected void done() {
+                CompiledMap map;
+                try {
+                    map = get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    loadError = e.getCause().getMessage();
+                    System.err.println("编译地图失败: " + loadError);
+                    System.out.println("使用空地图");
+                    map = compileLoadedMap(MapDesign.createEmptyMap());
+                }
+                onMapLoaded(map);
+            }
+        }.execute();
+    }
+    
+    /**
+     * 打印地图统计信息并编译地图（地图只由加载线程持有，不需要复制元素）
+     */
+    private static CompiledMap compileLoadedMap(MapDesign.MapData mapData) {
+        System.out.println(MapDesign.getMapStats(mapData));
+        return CompiledMap.compileUnshared(mapData);
+    }
+    
+    /**
+     * 地图加载和编译完成后初始化玩家并启动游戏循环（在EDT上执行）
+     */
+    private void onMapLoaded(CompiledMap map) {
+        // 确定初始位置：回放使用录像中的起点，试玩使用指定起点，否则使用最近激活的默认重生点
+        double initialX;
+        double initialY;
+        if (replay != null) {
+            initialX = replay.getStartX();
+            initialY = replay.getStartY();
+            if (replay.getMapHash() != map.getHash()) {
+                System.err.println("警告: 录像录制时使用的地图与当前地图不同，回放结果可能不一致");
+            }
+            System.out.println("回放录像: " + replay.getTickCount() + " ticks, 速度 " + ticksPerFrame + "x");
+        } else if (playtest) {
+            initialX = startX;
+            initialY = startY;
+            System.out.println("试玩起点: (" + initialX + ", " + initialY + ")");
         } else {
-            System.out.println("没有激活的重生点，使用默认初始位置: (" + initialX + ", " + initialY + ")");
+            initialX = map.getDefaultStartX();
+            initialY = map.getDefaultStartY();
+            System.out.println("初始位置: (" + initialX + ", " + initialY + ")");
         }
         
-        // 初始化游戏对象
-        player = new Player(initialX, initialY);
-        
-        // 设置地图元素
-        player.setPlatforms(platforms);
-        player.setSolidBlocks(solidBlocks);
-        player.setSpikes(spikes);
-        player.setCheckpoints(checkpoints);
-        player.setEnergyBeans(energyBeans);
-        
-        // 设置统一的多态数组
-        if (mapElements != null) {
-            player.setMapElements(mapElements);
+        // 初始化游戏模拟
+        simulation = new Simulation(map, initialX, initialY, fixedPoint);
+        player = simulation.getPlayer();
+        compiledMap = simulation.getMap();
+        world = simulation.getWorld();
+        System.out.println("编译地图完成，包含 " + compiledMap.getMapElements().length + " 个元素");
+        if (replay != null) {
+            playback = replay.playback();
+        } else {
+            recording = new Replay(simulation.getMapHash(), initialX, initialY, fixedPoint);
+            rewindBuffer = new RewindBuffer(REWIND_SECONDS * Simulation.TICKS_PER_SECOND, world);
+            rewindBuffer.capture(simulation);
         }
         
-        // 设置初始重生点（选择时间上最近激活的重生点）
-        setInitialRespawnPoint();
-        
-        // 添加键盘监听
+        // 添加键盘监听，窗口失去焦点时松开所有按键
         addKeyListener(this);
+        addWindowFocusListener(new WindowAdapter() {
+            @Override
+            public void windowLostFocus(WindowEvent e) {
+                inputQueue.releaseAll();
+            }
+        });
         setFocusable(true);
+        requestFocus();
         
         // 显示按键绑定配置
         KeyBindings.printKeyBindings();
         
+        mapLoaded = true;
+        loadFinishedTime = System.nanoTime();
+        
         // 启动游戏循环
         startGameLoop();
     }
     
+    /**
+     * 以固定时间步长运行游戏循环：每个tick推进一次模拟，与渲染帧率无关，保证录像可以重现
+     */
     private void startGameLoop() {
-        Thread gameThread = new Thread(() -> {
-            long lastTime = System.nanoTime();
-            double nsPerFrame = 1000000000.0 / FPS;
+        gameThread = new Thread(() -> {
+            long nsPerTick = 1000000000L / Simulation.TICKS_PER_SECOND;
+            long nextTick = System.nanoTime();
             
             while (running) {
+                // 执行所有到期的tick，落后太多时跳过多余的时间
                 long now = System.nanoTime();
-                double deltaTime = (now - lastTime) / nsPerFrame;
-                lastTime = now;
-                
-                // 更新游戏逻辑
-                update(deltaTime);
+                int ticks = 0;
+                while (now - nextTick >= 0 && ticks < MAX_CATCH_UP_TICKS) {
+                    tick();
+                    nextTick += nsPerTick;
+                    ticks++;
+                }
+                if (now - nextTick >= 0) {
+                    nextTick = now + nsPerTick;
+                }
                 
                 // 重绘画面
                 repaint();
                 
-                // 控制帧率
-                try {
-                    Thread.sleep((long) (1000.0 / FPS));
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
+                // 等待下一个tick
+                long sleepNanos = nextTick - System.nanoTime();
+                if (sleepNanos > 0) {
+                    try {
+                        Thread.sleep(sleepNanos / 1000000, (int) (sleepNanos % 1000000));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
                 }
             }
-        });
+        }, "game-loop");
         
         gameThread.start();
     }
     
-    private void update(double deltaTime) {
-        player.update(deltaTime);
-        
-        // 更新能量豆
-        updateEnergyBeans(deltaTime);
-        
-        // 检查重生点激活
-        checkCheckpointActivation();
+    /**
+     * 推进一个tick：取出这一帧的输入（回放时从录像读取）并更新游戏逻辑
+     */
+    private void tick() {
+        if (playback == null) {
+            int input = inputQueue.poll();
+            int pressed = input & ~previousInput;
+            previousInput = input;
+            if ((pressed & KeyBindings.ACTION_QUICK_SAVE) != 0) {
+                quickSave();
+            }
+            if ((pressed & KeyBindings.ACTION_QUICK_LOAD) != 0) {
+                quickLoad();
+                return;
+            }
+            if ((input & KeyBindings.ACTION_REWIND) != 0) {
+                // 按住倒带键：回退到之前的状态，不推进模拟
+                rewinding = true;
+                rewindBuffer.rewind(simulation, REWIND_SPEED);
+                return;
+            }
+            if (rewinding) {
+                // 松开倒带键：从回退到的tick继续录制
+                rewinding = false;
+                recording.truncate(simulation.getTick());
+            }
+            input &= ~KeyBindings.COMMAND_MASK;
+            recording.record(input);
+            simulation.step(input);
+            rewindBuffer.capture(simulation);
+            return;
+        }
+        for (int i = 0; i < ticksPerFrame && !replayFinished; i++) {
+            if (playback.hasNext()) {
+                simulation.step(playback.next());
+            } else {
+                replayFinished = true;
+                System.out.println(String.format("回放结束: %d ticks, 玩家位置 (%.2f, %.2f)",
+                    simulation.getTick(), player.getX(), player.getY()));
+            }
+        }
+    }
+    
+    /**
+     * 快速存档（游戏线程）：立即保存当前状态，写盘交给后台线程
+     * 试玩的地图还没有保存，存档只保留在内存中，不覆盖正式游戏的存档
+     */
+    private void quickSave() {
+        if (rewinding) {
+            recording.truncate(simulation.getTick());
+        }
+        QuickSave save = QuickSave.capture(simulation, recording);
+        lastQuickSave = save;
+        if (playtest) {
+            System.out.println("快速存档已保存（试玩，仅在内存中）");
+            return;
+        }
+        quickSaver.execute(() -> {
+            try {
+                save.write(QUICK_SAVE_PATH);
+                System.out.println("快速存档已保存: " + QUICK_SAVE_PATH + " (" + save.size() + " 字节)");
+            } catch (IOException e) {
+                System.err.println("快速存档失败: " + e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * 快速读档（游戏线程）：在已加载的地图上恢复存档状态，不重新加载地图
+     * 本次运行中存过档时直接使用内存中的存档，否则从磁盘读取上次的存档（试玩只使用内存中的存档）
+     */
+    private void quickLoad() {
+        long startTime = System.nanoTime();
+        try {
+            QuickSave save = lastQuickSave;
+            if (save == null) {
+                if (playtest || !QUICK_SAVE_PATH.toFile().isFile()) {
+                    System.out.println("没有快速存档");
+                    return;
+                }
+                save = QuickSave.read(QUICK_SAVE_PATH);
+            }
+            Replay restored = save.restore(simulation);
+            lastQuickSave = save;
+            recording = restored != null ? restored
+                : new Replay(simulation.getMapHash(), simulation.getStartX(), simulation.getStartY(), fixedPoint);
+            rewinding = false;
+            rewindBuffer.clear();
+            rewindBuffer.capture(simulation);
+            System.out.println(String.format("快速读档: tick %d, 用时 %.2fms",
+                simulation.getTick(), (System.nanoTime() - startTime) / 1e6));
+        } catch (IOException e) {
+            System.err.println("快速读档失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 等待尚未完成的快速存档写盘
+     */
+    private void awaitQuickSaver() {
+        quickSaver.shutdown();
+        try {
+            if (!quickSaver.awaitTermination(5, TimeUnit.SECONDS)) {
+                System.err.println("快速存档仍在写入，放弃等待");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * 停止游戏循环并等待游戏线程结束
+     */
+    private void stopGameLoop() {
+        running = false;
+        if (gameThread != null) {
+            try {
+                gameThread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    /**
+     * 把本局的输入录像保存到replays目录
+     */
+    private void saveRecording() {
+        if (recording == null || recording.getTickCount() == 0) {
+            return;
+        }
+        String name = "replay-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".jcr";
+        File file = new File(REPLAY_DIR, name);
+        try {
+            recording.write(file);
+            System.out.println("录像已保存: " + file.getPath() + " (" + recording.getTickCount() + " ticks, "
+                + file.length() + " 字节)");
+        } catch (IOException e) {
+            System.err.println("保存录像失败: " + e.getMessage());
+        }
     }
     
     @Override
     public void keyPressed(KeyEvent e) {
-        player.keyPressed(e);
+        inputQueue.keyPressed(e.getKeyCode());
     }
     
     @Override
     public void keyReleased(KeyEvent e) {
-        player.keyReleased(e);
+        inputQueue.keyReleased(e.getKeyCode());
     }
     
     @Override
@@ -154,6 +517,12 @@ public class Game extends JFrame implements KeyListener {
         protected void paintComponent(Graphics g) {
             super.paintComponent(g);
             
+            // 地图尚未加载完成时显示加载界面
+            if (!mapLoaded) {
+                renderLoadingScreen(g);
+                return;
+            }
+            
             // 绘制背景
             g.setColor(new Color(135, 206, 235)); // 天蓝色
             g.fillRect(0, 0, getWidth(), getHeight());
@@ -167,168 +536,143 @@ public class Game extends JFrame implements KeyListener {
             
             // 绘制玩家
             player.render(g);
-        }
-    }
-    
-    public static void main(String[] args) {
-        SwingUtilities.invokeLater(() -> {
-            new Game().setVisible(true);
-        });
-    }
-    
-    /**
-     * 加载地图设计
-     */
-    private void loadMap(MapDesign.MapData mapData) {
-        currentMap = mapData;
-        
-        // 转换List为Array
-        platforms = mapData.platforms.toArray(new Platform[0]);
-        solidBlocks = mapData.solidBlocks.toArray(new SolidBlock[0]);
-        spikes = mapData.spikes.toArray(new Spike[0]);
-        checkpoints = mapData.checkpoints.toArray(new Checkpoint[0]);
-        energyBeans = mapData.energyBeans.toArray(new EnergyBean[0]);
-        
-        // 创建统一的多态数组
-        createUnifiedMapElementsArray();
-        
-        // 打印地图统计信息
-        System.out.println(MapDesign.getMapStats(mapData));
-    }
-    
-    /**
-     * 创建统一的多态地图元素数组
-     */
-    private void createUnifiedMapElementsArray() {
-        // 计算总元素数量
-        int totalElements = platforms.length + solidBlocks.length + spikes.length + 
-                          checkpoints.length + energyBeans.length;
-        
-        // 创建统一数组
-        mapElements = new MapElement[totalElements];
-        int index = 0;
-        
-        // 添加所有元素到统一数组
-        for (Platform platform : platforms) {
-            mapElements[index++] = platform;
-        }
-        
-        for (SolidBlock block : solidBlocks) {
-            mapElements[index++] = block;
-        }
-        
-        for (Spike spike : spikes) {
-            mapElements[index++] = spike;
-        }
-        
-        for (Checkpoint checkpoint : checkpoints) {
-            mapElements[index++] = checkpoint;
-        }
-        
-        for (EnergyBean energyBean : energyBeans) {
-            mapElements[index++] = energyBean;
+            
+            if (rewinding) {
+                g.setColor(Color.WHITE);
+                g.setFont(new Font(Font.DIALOG, Font.BOLD, 32));
+                g.drawString("<< 倒带", 40, 60);
+            }
+            
+            if (!firstFrameReported) {
+                firstFrameReported = true;
+                reportFirstFrame();
+            }
         }
         
-        System.out.println("创建统一地图元素数组，包含 " + totalElements + " 个元素");
-    }
-    
-    /**
-     * 从JSON文件加载地图
-     */
-    private void loadMapFromJson(String jsonPath) {
-        System.out.println("正在加载地图: " + jsonPath);
-        System.out.println(JsonMapLoader.getMapInfo(jsonPath));
-        
-        MapDesign.MapData mapData = MapDesign.createMapFromConfig(jsonPath);
-        loadMap(mapData);
-    }
-    
-    /**
-     * 设置初始重生点（选择时间上最近激活的重生点）
-     */
-    private void setInitialRespawnPoint() {
-        Checkpoint latestActivatedCheckpoint = getLatestActivatedCheckpoint();
-        
-        if (latestActivatedCheckpoint != null) {
-            player.setRespawnPoint(latestActivatedCheckpoint.getRespawnX(), latestActivatedCheckpoint.getRespawnY());
-            System.out.println("设置初始重生点: (" + latestActivatedCheckpoint.getRespawnX() + ", " + latestActivatedCheckpoint.getRespawnY() + ")");
-        } else {
-            // 如果没有激活的重生点，使用默认位置
-            player.setRespawnPoint(100, 900);
-            System.out.println("没有激活的重生点，使用默认重生点: (100, 900)");
+        /**
+         * 绘制加载界面
+         */
+        private void renderLoadingScreen(Graphics g) {
+            g.setColor(new Color(30, 30, 40));
+            g.fillRect(0, 0, getWidth(), getHeight());
+            
+            int barWidth = 600;
+            int barHeight = 24;
+            int barX = (WINDOW_WIDTH - barWidth) / 2;
+            int barY = WINDOW_HEIGHT / 2;
+            
+            g.setColor(Color.WHITE);
+            g.setFont(new Font("Arial", Font.BOLD, 24));
+            g.drawString("Java Celeste", barX, barY - 50);
+            g.setFont(g.getFont().deriveFont(Font.PLAIN, 16f));
+            g.drawString(loadStage + "... " + loadProgress + "%", barX, barY - 12);
+            
+            // 进度条
+            g.setColor(new Color(80, 80, 90));
+            g.fillRect(barX, barY, barWidth, barHeight);
+            g.setColor(new Color(100, 150, 255));
+            g.fillRect(barX, barY, barWidth * loadProgress / 100, barHeight);
+            g.setColor(Color.WHITE);
+            g.drawRect(barX, barY, barWidth, barHeight);
         }
     }
     
     /**
-     * 更新能量豆
+     * 报告启动指标：从启动到首帧画面的耗时
      */
-    private void updateEnergyBeans(double deltaTime) {
-        for (EnergyBean energyBean : energyBeans) {
-            energyBean.update(deltaTime);
+    private void reportFirstFrame() {
+        long now = System.nanoTime();
+        if (playtest) {
+            System.out.println(String.format("试玩指标: 从编辑器启动到首帧 %.1fms (初始化 %.1fms)",
+                (now - playtestStartTime) / 1e6, (loadFinishedTime - playtestStartTime) / 1e6));
+            return;
         }
+        System.out.println(String.format("启动指标: 首帧耗时 %.1fms (地图加载 %.1fms, 加载完成到首帧 %.1fms)%s",
+            (now - launchTime) / 1e6, (loadFinishedTime - launchTime) / 1e6, (now - loadFinishedTime) / 1e6,
+            loadError != null ? " [地图加载失败，使用空地图]" : ""));
     }
     
     /**
-     * 检查重生点激活
+     * 用法: Game [地图文件] [--replay 录像文件] [--speed 倍速] [--fixed-point] [--log-level debug|info|off] [--log-file 文件]
      */
-    private void checkCheckpointActivation() {
-        for (Checkpoint checkpoint : checkpoints) {
-            if (checkpoint.isPlayerInActivationBox(player.getX(), player.getY(), 30, 40)) {
-                if (!checkpoint.isActivated()) {
-                    checkpoint.activate();
-                    System.out.println("重生点已激活: (" + checkpoint.getRespawnX() + ", " + checkpoint.getRespawnY() + ")");
+    public static void main(String[] args) {
+        launchTime = System.nanoTime();
+        String mapPath = DEFAULT_MAP_PATH;
+        String replayPath = null;
+        int speed = 1;
+        boolean fixedPoint = false;
+        for (int i = 0; i < args.length; i++) {
+            if ("--replay".equals(args[i]) && i + 1 < args.length) {
+                replayPath = args[++i];
+            } else if ("--speed".equals(args[i]) && i + 1 < args.length) {
+                speed = Integer.parseInt(args[++i]);
+            } else if ("--fixed-point".equals(args[i])) {
+                fixedPoint = true;
+            } else if ("--log-level".equals(args[i]) && i + 1 < args.length) {
+                GameEventLog.setLevel(GameEventLog.parseLevel(args[++i]));
+            } else if ("--log-file".equals(args[i]) && i + 1 < args.length) {
+                try {
+                    GameEventLog.setFile(args[++i]);
+                } catch (IOException e) {
+                    System.err.println("无法打开事件日志文件: " + e.getMessage());
                 }
+            } else {
+                mapPath = args[i];
+            }
+        }
+        
+        Replay replay = null;
+        if (replayPath != null) {
+            try {
+                replay = Replay.read(new File(replayPath));
+            } catch (IOException e) {
+                System.err.println("读取录像失败: " + e.getMessage());
+                return;
             }
         }
+        
+        String finalMapPath = mapPath;
+        Replay finalReplay = replay;
+        int finalSpeed = speed;
+        boolean finalFixedPoint = fixedPoint;
+        SwingUtilities.invokeLater(() -> {
+            new Game(finalMapPath, finalReplay, finalSpeed, finalFixedPoint).setVisible(true);
+        });
     }
     
     /**
      * 获取时间上最近激活的重生点
      */
     public Checkpoint getLatestActivatedCheckpoint() {
-        Checkpoint latestCheckpoint = null;
-        long latestActivationTime = 0;
-        
-        for (Checkpoint checkpoint : checkpoints) {
-            if (checkpoint.isActivated() && checkpoint.getActivationTime() > latestActivationTime) {
-                latestActivationTime = checkpoint.getActivationTime();
-                latestCheckpoint = checkpoint;
-            }
-        }
-        
-        return latestCheckpoint;
+        return simulation.getLatestActivatedCheckpoint();
     }
     
     /**
-     * 使用多态统一渲染所有地图元素
+     * 渲染当前房间及其相邻房间中的地图元素：静态元素使用多态渲染，重生点、能量豆和实体按WorldState中的状态渲染
+     * 游戏线程可能同时切换房间，房间编号只读取一次，所有活动视图都取自同一个房间
      * @param g 图形上下文
      */
     private void renderMapElements(Graphics g) {
-        if (mapElements != null) {
-            // 使用多态渲染所有地图元素
-            for (MapElement element : mapElements) {
-                element.render(g);
-            }
-        } else {
-            // 回退到原有的分别渲染方式（保持兼容性）
-            for (Platform platform : platforms) {
-                platform.render(g);
-            }
-            
-            for (SolidBlock block : solidBlocks) {
-                block.render(g);
-            }
-            
-            for (Spike spike : spikes) {
-                spike.render(g);
-            }
-            
-            for (Checkpoint checkpoint : checkpoints) {
-                checkpoint.render(g);
-            }
-            
-            for (EnergyBean energyBean : energyBeans) {
-                energyBean.render(g);
+        RoomTable rooms = compiledMap.getRoomTable();
+        int room = world.getCurrentRoom();
+        for (MapElement element : rooms.activeStaticElements[room]) {
+            element.render(g);
+        }
+        Checkpoint[] checkpoints = compiledMap.getCheckpoints();
+        for (int i : rooms.activeCheckpoints[room]) {
+            checkpoints[i].render(g, world.isCheckpointActivated(i));
+        }
+        EnergyBean[] energyBeans = rooms.activeEnergyBeans[room];
+        int[] beanIndices = rooms.activeBeanIndices[room];
+        for (int i = 0; i < energyBeans.length; i++) {
+            energyBeans[i].render(g, world.isBeanConsumed(beanIndices[i]));
+        }
+        // 实体按WorldState中的当前位置渲染，落出屏幕的下落物块不渲染
+        MapEntity[] entities = compiledMap.getEntities();
+        for (int i : rooms.activeEntities[room]) {
+            if (world.isEntityActive(i)) {
+                entities[i].render(g, world.getEntityLeft(i) >> EntityTable.SUBPIXEL_SHIFT,
+                    world.getEntityTop(i) >> EntityTable.SUBPIXEL_SHIFT, world.getEntityFallTimer(i));
             }
         }
     }
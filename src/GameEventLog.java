@@ -0,0 +1,243 @@
+// 简化项目结构，移除包声明
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 游戏事件日志
+ * 游戏线程通过{@link #log(int, double, double, double)}记录结构化事件（冲刺、死亡、重生点激活等），
+ * 事件只包含类型和三个数值参数，写入预先分配的环形缓冲区，不拼接字符串、不做I/O；
+ * 后台线程把事件格式化为JSON行，写到控制台或文件。低于当前级别的事件在入口处直接返回。
+ *
+ * 缓冲区支持多个生产者（例如多个并行的模拟），缓冲区满时丢弃新事件并计数。
+ * 输出示例: {"time":1520.3,"level":"INFO","event":"dash","dx":1,"dy":-1,"dashes":1}
+ */
+public class GameEventLog {
+    // 级别
+    public static final int DEBUG = 0;
+    public static final int INFO = 1;
+    public static final int OFF = 2;
+    
+    // 事件类型
+    public static final int DASH = 0;
+    public static final int CLIMB_JUMP = 1;
+    public static final int ENERGY_BEAN = 2;
+    public static final int STAMINA_EXHAUSTED = 3;
+    public static final int CLIMB_RELEASED = 4;
+    public static final int DEATH = 5;
+    public static final int RESPAWN = 6;
+    public static final int RESPAWN_POINT = 7;
+    public static final int CHECKPOINT = 8;
+    
+    private static final String[] EVENT_NAMES = {
+        "dash", "climb_jump", "energy_bean", "stamina_exhausted", "climb_released",
+        "death", "respawn", "respawn_point", "checkpoint"
+    };
+    private static final int[] EVENT_LEVELS = {
+        INFO, INFO, INFO, INFO, DEBUG,
+        INFO, INFO, INFO, INFO
+    };
+    // 每种事件三个参数的字段名，null表示不输出
+    private static final String[][] FIELD_NAMES = {
+        {"dx", "dy", "dashes"},
+        {"vx", "vy", null},
+        {"x", "y", null},
+        {"x", "y", null},
+        {"x", "y", null},
+        {"x", "y", null},
+        {"x", "y", null},
+        {"x", "y", null},
+        {"x", "y", null}
+    };
+    private static final String[] LEVEL_NAMES = {"DEBUG", "INFO"};
+    
+    private static final int CAPACITY = 4096; // 必须是2的幂
+    private static final int MASK = CAPACITY - 1;
+    private static final long IDLE_PARK_NANOS = 10000000L; // 没有事件时后台线程休眠10ms
+    
+    private static volatile int level = INFO;
+    
+    // 环形缓冲区：published[slot]为写入完成的序号+1
+    private static final long[] times = new long[CAPACITY];
+    private static final int[] types = new int[CAPACITY];
+    private static final double[] args = new double[CAPACITY * 3];
+    private static final AtomicLongArray published = new AtomicLongArray(CAPACITY);
+    private static final AtomicLong claimed = new AtomicLong(); // 生产者申请到的位置
+    private static final AtomicLong consumed = new AtomicLong(); // 后台线程读取到的位置
+    private static final AtomicLong dropped = new AtomicLong();
+    
+    private static final long startTime = System.nanoTime();
+    private static final Writer CONSOLE = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+    private static Writer sink = CONSOLE;
+    private static final Thread writerThread;
+    
+    static {
+        writerThread = new Thread(GameEventLog::runWriter, "game-event-log");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        // 退出时写出剩余的事件
+        Runtime.getRuntime().addShutdownHook(new Thread(GameEventLog::flush));
+    }
+    
+    private GameEventLog() {
+    }
+    
+    /**
+     * 设置输出级别（DEBUG、INFO或OFF）
+     */
+    public static void setLevel(int newLevel) {
+        level = newLevel;
+    }
+    
+    /**
+     * 解析级别名称（debug/info/off，不区分大小写）
+     */
+    public static int parseLevel(String name) {
+        switch (name.toUpperCase()) {
+            case "DEBUG": return DEBUG;
+            case "INFO": return INFO;
+            case "OFF": return OFF;
+            default: throw new IllegalArgumentException("未知的日志级别: " + name);
+        }
+    }
+    
+    /**
+     * 把事件写到文件（追加），而不是控制台；之前打开的日志文件会被关闭
+     */
+    public static synchronized void setFile(String path) throws IOException {
+        Writer old = sink;
+        sink = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path, true), StandardCharsets.UTF_8));
+        if (old == CONSOLE) {
+            old.flush();
+        } else {
+            old.close();
+        }
+    }
+    
+    /**
+     * 某种事件当前是否会被记录
+     */
+    public static boolean isEnabled(int type) {
+        return EVENT_LEVELS[type] >= level;
+    }
+    
+    public static void log(int type, double a, double b) {
+        log(type, a, b, 0);
+    }
+    
+    /**
+     * 记录一个事件（任意线程，不阻塞）
+     * @param type 事件类型
+     * @param a 第一个参数
+     * @param b 第二个参数
+     * @param c 第三个参数
+     */
+    public static void log(int type, double a, double b, double c) {
+        if (EVENT_LEVELS[type] < level) {
+            return;
+        }
+        long position;
+        do {
+            position = claimed.get();
+            if (position - consumed.get() >= CAPACITY) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!claimed.compareAndSet(position, position + 1));
+        
+        int slot = (int) position & MASK;
+        times[slot] = System.nanoTime();
+        types[slot] = type;
+        args[slot * 3] = a;
+        args[slot * 3 + 1] = b;
+        args[slot * 3 + 2] = c;
+        published.lazySet(slot, position + 1);
+    }
+    
+    private static void runWriter() {
+        StringBuilder line = new StringBuilder(128);
+        while (true) {
+            if (drain(line) == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+    
+    /**
+     * 写出已发布的事件
+     * @return 写出的事件数
+     */
+    private static synchronized int drain(StringBuilder line) {
+        int count = 0;
+        long position = consumed.get();
+        try {
+            while (published.get((int) position & MASK) == position + 1) {
+                int slot = (int) position & MASK;
+                format(line, times[slot], types[slot], args[slot * 3], args[slot * 3 + 1], args[slot * 3 + 2]);
+                position++;
+                consumed.lazySet(position);
+                sink.write(line.toString());
+                count++;
+            }
+            long lost = dropped.getAndSet(0);
+            if (lost > 0) {
+                line.setLength(0);
+                line.append("{\"time\":").append(elapsedMillis(System.nanoTime()))
+                    .append(",\"level\":\"WARN\",\"event\":\"dropped\",\"count\":").append(lost).append("}\n");
+                sink.write(line.toString());
+                count++;
+            }
+            if (count > 0) {
+                sink.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("写入游戏事件失败: " + e.getMessage());
+        }
+        return count;
+    }
+    
+    private static void format(StringBuilder line, long time, int type, double a, double b, double c) {
+        String[] fields = FIELD_NAMES[type];
+        line.setLength(0);
+        line.append("{\"time\":").append(elapsedMillis(time))
+            .append(",\"level\":\"").append(LEVEL_NAMES[EVENT_LEVELS[type]])
+            .append("\",\"event\":\"").append(EVENT_NAMES[type]).append('"');
+        appendField(line, fields[0], a);
+        appendField(line, fields[1], b);
+        appendField(line, fields[2], c);
+        line.append("}\n");
+    }
+    
+    private static void appendField(StringBuilder line, String name, double value) {
+        if (name == null) {
+            return;
+        }
+        line.append(",\"").append(name).append("\":");
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            // JSON没有NaN和无穷大，写成字符串
+            line.append('"').append(value).append('"');
+        } else if (value == (long) value) {
+            line.append((long) value);
+        } else {
+            line.append(value);
+        }
+    }
+    
+    private static double elapsedMillis(long time) {
+        return Math.round((time - startTime) / 1e5) / 10.0;
+    }
+    
+    /**
+     * 立即写出所有已记录的事件
+     */
+    public static void flush() {
+        drain(new StringBuilder(128));
+    }
+}
@@ -0,0 +1,90 @@
+// 简化项目结构，移除包声明
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 输入队列：把界面线程的按键事件交给游戏线程
+ * 单生产者（EDT）单消费者（游戏线程）的无锁环形缓冲区，每一项是按键事件之后完整的输入位掩码。
+ * 游戏线程每个tick调用一次{@link #poll()}，取出这一帧的输入：结束时仍按住的键，
+ * 加上这一帧内按下过的键（按下又松开的短按也不会丢失）。按键处理过程中不分配对象。
+ */
+public class InputQueue {
+    private static final int CAPACITY = 256; // 必须是2的幂
+    private static final int MASK = CAPACITY - 1;
+    
+    private final int[] buffer = new int[CAPACITY];
+    private final AtomicLong head = new AtomicLong(); // 消费者读取位置
+    private final AtomicLong tail = new AtomicLong(); // 生产者写入位置
+    // 最新的输入状态；缓冲区满时事件被丢弃，消费者以它为准
+    private final AtomicInteger latest = new AtomicInteger();
+    private final AtomicBoolean overflowed = new AtomicBoolean();
+    
+    // 仅生产者使用
+    private int producerMask = 0;
+    private long cachedHead = 0;
+    
+    // 仅消费者使用
+    private int consumerMask = 0;
+    
+    /**
+     * 按键按下（界面线程）
+     */
+    public void keyPressed(int keyCode) {
+        publish(producerMask | KeyBindings.getActionBits(keyCode));
+    }
+    
+    /**
+     * 按键松开（界面线程）
+     */
+    public void keyReleased(int keyCode) {
+        publish(producerMask & ~KeyBindings.getActionBits(keyCode));
+    }
+    
+    /**
+     * 松开所有按键（窗口失去焦点时，界面线程）
+     */
+    public void releaseAll() {
+        publish(0);
+    }
+    
+    private void publish(int mask) {
+        // 按住按键时的自动重复不改变状态，不入队
+        if (mask == producerMask) {
+            return;
+        }
+        producerMask = mask;
+        latest.set(mask);
+        long position = tail.get();
+        if (position - cachedHead >= CAPACITY) {
+            cachedHead = head.get();
+            if (position - cachedHead >= CAPACITY) {
+                overflowed.set(true);
+                return;
+            }
+        }
+        buffer[(int) position & MASK] = mask;
+        tail.lazySet(position + 1);
+    }
+    
+    /**
+     * 取出这一帧的输入（游戏线程，每个tick调用一次）
+     * @return 输入位掩码，见KeyBindings.ACTION_*
+     */
+    public int poll() {
+        long position = head.get();
+        long end = tail.get();
+        int pressed = 0;
+        for (; position < end; position++) {
+            int mask = buffer[(int) position & MASK];
+            pressed |= mask & ~consumerMask;
+            consumerMask = mask;
+        }
+        head.lazySet(position);
+        if (overflowed.getAndSet(false)) {
+            consumerMask = latest.get();
+        }
+        return consumerMask | pressed;
+    }
+}
@@ -1,8 +1,18 @@
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
@@ -37,6 +47,12 @@ public class JsonMapLoader {
         
         @JsonProperty("energyBeans")
         public List<ElementData> energyBeans;
+        
+        @JsonProperty("entities")
+        public List<EntityData> entities;
+        
+        @JsonProperty("rooms")
+        public List<RoomData> rooms;
     }
     
     /**
@@ -88,17 +104,144 @@ public class JsonMapLoader {
         public String comment;
     }
     
+    /**
+     * 实体数据结构（移动平台、下落物块、巡逻尖刺）
+     * 终点省略时为起点（不移动），周期和延迟省略时使用MapEntity中的默认值
+     */
+    public static class EntityData {
+        @JsonProperty("type")
+        public String type;
+        
+        @JsonProperty("x")
+        public int x;
+        
+        @JsonProperty("y")
+        public int y;
+        
+        @JsonProperty("width")
+        public int width;
+        
+        @JsonProperty("height")
+        public int height;
+        
+        @JsonProperty("toX")
+        public Integer toX;
+        
+        @JsonProperty("toY")
+        public Integer toY;
+        
+        @JsonProperty("period")
+        public int period = MapEntity.DEFAULT_PERIOD;
+        
+        @JsonProperty("delay")
+        public int delay = MapEntity.DEFAULT_DELAY;
+        
+        @JsonProperty("comment")
+        public String comment;
+    }
+    
+    /**
+     * 房间数据结构，见MapRoom
+     */
+    public static class RoomData {
+        @JsonProperty("name")
+        public String name;
+        
+        @JsonProperty("x")
+        public int x;
+        
+        @JsonProperty("y")
+        public int y;
+        
+        @JsonProperty("width")
+        public int width;
+        
+        @JsonProperty("height")
+        public int height;
+        
+        @JsonProperty("comment")
+        public String comment;
+    }
+    
+    /**
+     * 加载进度监听器
+     * 解析JSON占0-50%，创建地图元素占50-100%
+     */
+    public interface ProgressListener {
+        void onProgress(int percent, String stage);
+    }
+    
+    private static final ProgressListener NO_PROGRESS = (percent, stage) -> { };
+    
     /**
      * 从JSON文件加载地图
      */
     public static MapDesign.MapData loadMapFromJson(String filePath) throws IOException {
+        return loadMapFromJson(filePath, NO_PROGRESS);
+    }
+    
+    /**
+     * 从JSON文件加载地图，并报告加载进度
+     * 可以在后台线程调用，监听器在调用线程上被回调
+     */
+    public static MapDesign.MapData loadMapFromJson(String filePath, ProgressListener listener) throws IOException {
         File file = new File(filePath);
         if (!file.exists()) {
             throw new IOException("地图文件不存在: " + filePath);
         }
         
-        MapConfig config = objectMapper.readValue(file, MapConfig.class);
-        return convertToMapData(config);
+        listener.onProgress(0, "解析地图文件");
+        MapConfig config;
+        try (InputStream in = new ProgressInputStream(Files.newInputStream(file.toPath()), file.length(), listener)) {
+            config = objectMapper.readValue(in, MapConfig.class);
+        }
+        
+        MapDesign.MapData mapData = convertToMapData(config, listener);
+        listener.onProgress(100, "加载完成");
+        return mapData;
+    }
+    
+    /**
+     * 按已读取字节数报告解析进度的输入流
+     */
+    private static class ProgressInputStream extends FilterInputStream {
+        private final long totalBytes;
+        private final ProgressListener listener;
+        private long readBytes = 0;
+        private int lastPercent = -1;
+        
+        ProgressInputStream(InputStream in, long totalBytes, ProgressListener listener) {
+            super(in);
+            this.totalBytes = Math.max(1, totalBytes);
+            this.listener = listener;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                advance(1);
+            }
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                advance(n);
+            }
+            return n;
+        }
+        
+        private void advance(int n) {
+            readBytes += n;
+            int percent = (int) (readBytes * 50 / totalBytes);
+            if (percent != lastPercent) {
+                lastPercent = percent;
+                listener.onProgress(percent, "解析地图文件");
+            }
+        }
     }
     
     /**
@@ -117,14 +260,21 @@ public class JsonMapLoader {
     /**
      * 将配置转换为地图数据
      */
-    private static MapDesign.MapData convertToMapData(MapConfig config) {
+    private static MapDesign.MapData convertToMapData(MapConfig config, ProgressListener listener) {
         MapDesign.MapBuilder builder = new MapDesign.MapBuilder();
+        int total = Math.max(1, size(config.platforms) + size(config.solidBlocks) + size(config.spikes)
+                + size(config.checkpoints) + size(config.energyBeans) + size(config.entities));
+        int done = 0;
+        
+        listener.onProgress(50, "创建地图元素");
         
         // 添加平台
         if (config.platforms != null) {
             for (ElementData platform : config.platforms) {
                 builder.addPlatform(platform.x, platform.y, platform.width, platform.height);
             }
+            done += config.platforms.size();
+            listener.onProgress(50 + done * 50 / total, "创建地图元素");
         }
         
         // 添加实心物块
@@ -132,6 +282,8 @@ public class JsonMapLoader {
             for (ElementData block : config.solidBlocks) {
                 builder.addSolidBlock(block.x, block.y, block.width, block.height);
             }
+            done += config.solidBlocks.size();
+            listener.onProgress(50 + done * 50 / total, "创建地图元素");
         }
         
         // 添加尖刺
@@ -139,6 +291,8 @@ public class JsonMapLoader {
             for (ElementData spike : config.spikes) {
                 builder.addSpike(spike.x, spike.y, spike.width, spike.height);
             }
+            done += config.spikes.size();
+            listener.onProgress(50 + done * 50 / total, "创建地图元素");
         }
         
         // 添加重生点
@@ -148,6 +302,8 @@ public class JsonMapLoader {
                                     checkpoint.respawnOffsetX, checkpoint.respawnOffsetY, 
                                     checkpoint.defaultActivated);
             }
+            done += config.checkpoints.size();
+            listener.onProgress(50 + done * 50 / total, "创建地图元素");
         }
         
         // 添加能量豆
@@ -156,9 +312,285 @@ public class JsonMapLoader {
                 // 能量豆只使用x,y坐标，大小固定
                 builder.addEnergyBean(energyBean.x, energyBean.y);
             }
+            done += config.energyBeans.size();
+            listener.onProgress(50 + done * 50 / total, "创建地图元素");
+        }
+        
+        // 添加实体
+        if (config.entities != null) {
+            for (EntityData entity : config.entities) {
+                int kind = MapEntity.kindOf(entity.type);
+                if (kind < 0) {
+                    System.err.println("跳过未知类型的实体: " + entity.type);
+                    continue;
+                }
+                builder.addEntity(kind, entity.x, entity.y, entity.width, entity.height,
+                                  entity.toX != null ? entity.toX : entity.x,
+                                  entity.toY != null ? entity.toY : entity.y,
+                                  entity.period, entity.delay);
+            }
+        }
+        
+        // 添加房间
+        if (config.rooms != null) {
+            for (RoomData room : config.rooms) {
+                builder.addRoom(room.name, room.x, room.y, room.width, room.height);
+            }
+        }
+        
+        MapDesign.MapData mapData = builder.build();
+        mapData.name = config.name;
+        mapData.description = config.description;
+        return mapData;
+    }
+    
+    private static int size(List<?> list) {
+        return list == null ? 0 : list.size();
+    }
+    
+    /**
+     * 保存用的地图快照
+     * 只保存坐标等原始数据（每个元素几个int），复制很快，
+     * 可以在界面线程上创建后交给后台线程写入，写入期间地图仍可继续编辑。
+     */
+    public static class MapSnapshot {
+        // 每个元素依次保存 x, y, width, height
+        private static final int ELEMENT_STRIDE = 4;
+        // 每个重生点依次保存 x, y, width, height, respawnOffsetX, respawnOffsetY, defaultActivated
+        private static final int CHECKPOINT_STRIDE = 7;
+        // 每个实体依次保存 kind, x, y, width, height, toX, toY, period, delay
+        private static final int ENTITY_STRIDE = 9;
+        // 每个房间依次保存 x, y, width, height，名称另存
+        private static final int ROOM_STRIDE = 4;
+        
+        final String name;
+        final String description;
+        final int[] platforms;
+        final int[] solidBlocks;
+        final int[] spikes;
+        final int[] checkpoints;
+        final int[] energyBeans;
+        final int[] entities;
+        final int[] rooms;
+        final String[] roomNames;
+        
+        public MapSnapshot(MapDesign.MapData mapData, String name, String description) {
+            this.name = name;
+            this.description = description;
+            this.platforms = copyBounds(mapData.platforms);
+            this.solidBlocks = copyBounds(mapData.solidBlocks);
+            this.spikes = copyBounds(mapData.spikes);
+            this.energyBeans = copyBounds(mapData.energyBeans);
+            
+            this.checkpoints = new int[mapData.checkpoints.size() * CHECKPOINT_STRIDE];
+            int i = 0;
+            for (Checkpoint c : mapData.checkpoints) {
+                checkpoints[i++] = c.getX();
+                checkpoints[i++] = c.getY();
+                checkpoints[i++] = c.getWidth();
+                checkpoints[i++] = c.getHeight();
+                checkpoints[i++] = c.getRespawnOffsetX();
+                checkpoints[i++] = c.getRespawnOffsetY();
+                checkpoints[i++] = c.isDefaultActivated() ? 1 : 0;
+            }
+            
+            this.entities = new int[mapData.entities.size() * ENTITY_STRIDE];
+            i = 0;
+            for (MapEntity e : mapData.entities) {
+                entities[i++] = e.getKind();
+                entities[i++] = e.getX();
+                entities[i++] = e.getY();
+                entities[i++] = e.getWidth();
+                entities[i++] = e.getHeight();
+                entities[i++] = e.getToX();
+                entities[i++] = e.getToY();
+                entities[i++] = e.getPeriod();
+                entities[i++] = e.getDelay();
+            }
+            
+            this.rooms = new int[mapData.rooms.size() * ROOM_STRIDE];
+            this.roomNames = new String[mapData.rooms.size()];
+            i = 0;
+            for (MapRoom room : mapData.rooms) {
+                roomNames[i / ROOM_STRIDE] = room.getName();
+                rooms[i++] = room.getX();
+                rooms[i++] = room.getY();
+                rooms[i++] = room.getWidth();
+                rooms[i++] = room.getHeight();
+            }
+        }
+        
+        private static int[] copyBounds(List<? extends MapElement> elements) {
+            int[] data = new int[elements.size() * ELEMENT_STRIDE];
+            int i = 0;
+            for (MapElement element : elements) {
+                data[i++] = element.getX();
+                data[i++] = element.getY();
+                data[i++] = element.getWidth();
+                data[i++] = element.getHeight();
+            }
+            return data;
+        }
+        
+        /**
+         * 元素总数
+         */
+        public int getElementCount() {
+            return (platforms.length + solidBlocks.length + spikes.length + energyBeans.length) / ELEMENT_STRIDE
+                + checkpoints.length / CHECKPOINT_STRIDE + entities.length / ENTITY_STRIDE;
+        }
+        
+        /**
+         * 按快照重新创建地图数据（可在后台线程调用，结果与编辑中的地图不共享任何对象）
+         */
+        public MapDesign.MapData toMapData() {
+            MapDesign.MapBuilder builder = new MapDesign.MapBuilder();
+            for (int i = 0; i < platforms.length; i += ELEMENT_STRIDE) {
+                builder.addPlatform(platforms[i], platforms[i + 1], platforms[i + 2], platforms[i + 3]);
+            }
+            for (int i = 0; i < solidBlocks.length; i += ELEMENT_STRIDE) {
+                builder.addSolidBlock(solidBlocks[i], solidBlocks[i + 1], solidBlocks[i + 2], solidBlocks[i + 3]);
+            }
+            for (int i = 0; i < spikes.length; i += ELEMENT_STRIDE) {
+                builder.addSpike(spikes[i], spikes[i + 1], spikes[i + 2], spikes[i + 3]);
+            }
+            for (int i = 0; i < checkpoints.length; i += CHECKPOINT_STRIDE) {
+                builder.addCheckpoint(checkpoints[i], checkpoints[i + 1], checkpoints[i + 2], checkpoints[i + 3],
+                    checkpoints[i + 4], checkpoints[i + 5], checkpoints[i + 6] != 0);
+            }
+            for (int i = 0; i < energyBeans.length; i += ELEMENT_STRIDE) {
+                builder.addEnergyBean(energyBeans[i], energyBeans[i + 1], energyBeans[i + 2]);
+            }
+            for (int i = 0; i < entities.length; i += ENTITY_STRIDE) {
+                builder.addEntity(entities[i], entities[i + 1], entities[i + 2], entities[i + 3], entities[i + 4],
+                    entities[i + 5], entities[i + 6], entities[i + 7], entities[i + 8]);
+            }
+            for (int i = 0; i < rooms.length; i += ROOM_STRIDE) {
+                builder.addRoom(roomNames[i / ROOM_STRIDE], rooms[i], rooms[i + 1], rooms[i + 2], rooms[i + 3]);
+            }
+            return builder.build();
         }
+    }
+    
+    /**
+     * 将地图数据保存为JSON文件
+     * 输出格式与loadMapFromJson读取的格式一致
+     */
+    public static void saveMapToJson(MapDesign.MapData mapData, String name, String description, File file) throws IOException {
+        saveSnapshotToJson(new MapSnapshot(mapData, name, description), file);
+    }
+    
+    /**
+     * 将地图快照保存为JSON文件（可在后台线程调用）
+     * 用JsonGenerator逐个元素流式写入，不创建中间对象；
+     * 先写入同目录下的临时文件，完成后原子替换目标文件，写入中途失败不会损坏原文件。
+     */
+    public static void saveSnapshotToJson(MapSnapshot snapshot, File file) throws IOException {
+        Path target = file.toPath().toAbsolutePath();
+        Path directory = target.getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
         
-        return builder.build();
+        try {
+            try (OutputStream out = Files.newOutputStream(temp);
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+                generator.setPrettyPrinter(new DefaultPrettyPrinter());
+                generator.writeStartObject();
+                generator.writeStringField("name", snapshot.name);
+                generator.writeStringField("description", snapshot.description);
+                writeElements(generator, "platforms", snapshot.platforms, "平台");
+                writeElements(generator, "solidBlocks", snapshot.solidBlocks, "实心物块");
+                writeElements(generator, "spikes", snapshot.spikes, "尖刺");
+                writeCheckpoints(generator, snapshot.checkpoints);
+                writeElements(generator, "energyBeans", snapshot.energyBeans, "能量豆");
+                // 没有实体、没有划分房间的地图不写对应的字段，保存结果与之前的版本相同
+                if (snapshot.entities.length > 0) {
+                    writeEntities(generator, snapshot.entities);
+                }
+                if (snapshot.rooms.length > 0) {
+                    writeRooms(generator, snapshot.rooms, snapshot.roomNames);
+                }
+                generator.writeEndObject();
+            }
+            
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    private static void writeElements(JsonGenerator generator, String field, int[] data, String comment) throws IOException {
+        generator.writeArrayFieldStart(field);
+        for (int i = 0; i < data.length; i += MapSnapshot.ELEMENT_STRIDE) {
+            generator.writeStartObject();
+            generator.writeNumberField("x", data[i]);
+            generator.writeNumberField("y", data[i + 1]);
+            generator.writeNumberField("width", data[i + 2]);
+            generator.writeNumberField("height", data[i + 3]);
+            generator.writeStringField("comment", comment);
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+    }
+    
+    private static void writeCheckpoints(JsonGenerator generator, int[] data) throws IOException {
+        generator.writeArrayFieldStart("checkpoints");
+        for (int i = 0; i < data.length; i += MapSnapshot.CHECKPOINT_STRIDE) {
+            generator.writeStartObject();
+            generator.writeNumberField("x", data[i]);
+            generator.writeNumberField("y", data[i + 1]);
+            generator.writeNumberField("width", data[i + 2]);
+            generator.writeNumberField("height", data[i + 3]);
+            generator.writeNumberField("respawnOffsetX", data[i + 4]);
+            generator.writeNumberField("respawnOffsetY", data[i + 5]);
+            generator.writeBooleanField("defaultActivated", data[i + 6] != 0);
+            generator.writeStringField("comment", "重生点");
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+    }
+    
+    private static void writeEntities(JsonGenerator generator, int[] data) throws IOException {
+        generator.writeArrayFieldStart("entities");
+        for (int i = 0; i < data.length; i += MapSnapshot.ENTITY_STRIDE) {
+            generator.writeStartObject();
+            generator.writeStringField("type", MapEntity.typeName(data[i]));
+            generator.writeNumberField("x", data[i + 1]);
+            generator.writeNumberField("y", data[i + 2]);
+            generator.writeNumberField("width", data[i + 3]);
+            generator.writeNumberField("height", data[i + 4]);
+            generator.writeNumberField("toX", data[i + 5]);
+            generator.writeNumberField("toY", data[i + 6]);
+            generator.writeNumberField("period", data[i + 7]);
+            generator.writeNumberField("delay", data[i + 8]);
+            generator.writeStringField("comment", "实体");
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+    }
+    
+    private static void writeRooms(JsonGenerator generator, int[] data, String[] names) throws IOException {
+        generator.writeArrayFieldStart("rooms");
+        for (int i = 0; i < data.length; i += MapSnapshot.ROOM_STRIDE) {
+            generator.writeStartObject();
+            String name = names[i / MapSnapshot.ROOM_STRIDE];
+            if (name != null) {
+                generator.writeStringField("name", name);
+            }
+            generator.writeNumberField("x", data[i]);
+            generator.writeNumberField("y", data[i + 1]);
+            generator.writeNumberField("width", data[i + 2]);
+            generator.writeNumberField("height", data[i + 3]);
+            generator.writeStringField("comment", "房间");
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
     }
     
     /**
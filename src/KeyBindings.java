@@ -14,12 +14,30 @@ import java.util.Map;
  */
 public class KeyBindings {
     
+    // 指令对应的输入位（一帧的输入状态保存为一个int）
+    public static final int ACTION_LEFT = 1;
+    public static final int ACTION_RIGHT = 1 << 1;
+    public static final int ACTION_UP = 1 << 2;
+    public static final int ACTION_DOWN = 1 << 3;
+    public static final int ACTION_JUMP = 1 << 4;
+    public static final int ACTION_DASH = 1 << 5;
+    public static final int ACTION_CLIMB = 1 << 6;
+    public static final int ACTION_REWIND = 1 << 7; // 倒带（不属于玩家操作，不写入录像）
+    public static final int ACTION_QUICK_SAVE = 1 << 8; // 快速存档（同上）
+    public static final int ACTION_QUICK_LOAD = 1 << 9; // 快速读档（同上）
+    
+    // 不属于玩家操作的输入位，交给模拟和写入录像之前要去掉
+    public static final int COMMAND_MASK = ACTION_REWIND | ACTION_QUICK_SAVE | ACTION_QUICK_LOAD;
+    
     // 指令到按键列表的映射表
     private static final Map<String, List<Integer>> actionToKeys = new HashMap<>();
     
     // 按键到指令的反向查询表（自动生成）
     private static final Map<Integer, String> keyToAction = new HashMap<>();
     
+    // 按键码 -> 输入位（自动生成），按键处理时不装箱、不查哈希表
+    private static int[] keyToBits = new int[256];
+    
     // 初始化默认按键绑定
     static {
         // 移动指令
@@ -37,6 +55,13 @@ public class KeyBindings {
         // 攀爬指令
         actionToKeys.put("CLIMB", Arrays.asList(KeyEvent.VK_L));
         
+        // 倒带指令（按住回退）
+        actionToKeys.put("REWIND", Arrays.asList(KeyEvent.VK_Q));
+        
+        // 快速存档/读档指令
+        actionToKeys.put("QUICK_SAVE", Arrays.asList(KeyEvent.VK_F5));
+        actionToKeys.put("QUICK_LOAD", Arrays.asList(KeyEvent.VK_F9));
+        
         // 可以添加更多指令
         // actionToKeys.put("PAUSE", Arrays.asList(KeyEvent.VK_ESCAPE));
         // actionToKeys.put("RESTART", Arrays.asList(KeyEvent.VK_R));
@@ -50,13 +75,50 @@ public class KeyBindings {
      */
     private static void generateReverseLookup() {
         keyToAction.clear();
+        int[] bits = new int[256];
         for (Map.Entry<String, List<Integer>> entry : actionToKeys.entrySet()) {
             String action = entry.getKey();
             List<Integer> keys = entry.getValue();
             for (Integer key : keys) {
                 keyToAction.put(key, action);
+                if (key >= bits.length) {
+                    bits = Arrays.copyOf(bits, key + 1);
+                }
+                bits[key] |= getActionBit(action);
             }
         }
+        keyToBits = bits;
+    }
+    
+    /**
+     * 获取指令对应的输入位
+     * @param action 指令名称
+     * @return 输入位，没有对应的输入位时返回0
+     */
+    public static int getActionBit(String action) {
+        switch (action) {
+            case "MOVE_LEFT": return ACTION_LEFT;
+            case "MOVE_RIGHT": return ACTION_RIGHT;
+            case "MOVE_UP": return ACTION_UP;
+            case "MOVE_DOWN": return ACTION_DOWN;
+            case "JUMP": return ACTION_JUMP;
+            case "DASH": return ACTION_DASH;
+            case "CLIMB": return ACTION_CLIMB;
+            case "REWIND": return ACTION_REWIND;
+            case "QUICK_SAVE": return ACTION_QUICK_SAVE;
+            case "QUICK_LOAD": return ACTION_QUICK_LOAD;
+            default: return 0;
+        }
+    }
+    
+    /**
+     * 获取按键对应的输入位
+     * @param keyCode 按键码
+     * @return 输入位，未绑定的按键返回0
+     */
+    public static int getActionBits(int keyCode) {
+        int[] bits = keyToBits;
+        return keyCode >= 0 && keyCode < bits.length ? bits[keyCode] : 0;
     }
     
     /**
@@ -81,49 +143,49 @@ public class KeyBindings {
      * 检查按键是否绑定到跳跃动作
      */
     public static boolean isJumpKey(int keyCode) {
-        return "JUMP".equals(getActionForKey(keyCode));
+        return (getActionBits(keyCode) & ACTION_JUMP) != 0;
     }
     
     /**
      * 检查按键是否绑定到冲刺动作
      */
     public static boolean isDashKey(int keyCode) {
-        return "DASH".equals(getActionForKey(keyCode));
+        return (getActionBits(keyCode) & ACTION_DASH) != 0;
     }
     
     /**
      * 检查按键是否绑定到攀爬动作
      */
     public static boolean isClimbKey(int keyCode) {
-        return "CLIMB".equals(getActionForKey(keyCode));
+        return (getActionBits(keyCode) & ACTION_CLIMB) != 0;
     }
     
     /**
      * 检查按键是否绑定到左移动作
      */
     public static boolean isLeftMoveKey(int keyCode) {
-        return "MOVE_LEFT".equals(getActionForKey(keyCode));
+        return (getActionBits(keyCode) & ACTION_LEFT) != 0;
     }
     
     /**
      * 检查按键是否绑定到右移动作
      */
     public static boolean isRightMoveKey(int keyCode) {
-        return "MOVE_RIGHT".equals(getActionForKey(keyCode));
+        return (getActionBits(keyCode) & ACTION_RIGHT) != 0;
     }
     
     /**
      * 检查按键是否绑定到上移动作
      */
     public static boolean isUpMoveKey(int keyCode) {
-        return "MOVE_UP".equals(getActionForKey(keyCode));
+        return (getActionBits(keyCode) & ACTION_UP) != 0;
     }
     
     /**
      * 检查按键是否绑定到下移动作
      */
     public static boolean isDownMoveKey(int keyCode) {
-        return "MOVE_DOWN".equals(getActionForKey(keyCode));
+        return (getActionBits(keyCode) & ACTION_DOWN) != 0;
     }
     
     
@@ -164,6 +226,9 @@ public class KeyBindings {
             case "JUMP": return "跳跃";
             case "DASH": return "冲刺";
             case "CLIMB": return "攀爬";
+            case "REWIND": return "倒带";
+            case "QUICK_SAVE": return "快速存档";
+            case "QUICK_LOAD": return "快速读档";
             case "PAUSE": return "暂停";
             case "RESTART": return "重启";
             default: return action;
@@ -13,11 +13,15 @@ public class MapDesign {
      * 地图数据类 - 包含所有地图元素
      */
     public static class MapData {
+        public String name;
+        public String description;
         public List<Platform> platforms;
         public List<SolidBlock> solidBlocks;
         public List<Spike> spikes;
         public List<Checkpoint> checkpoints;
         public List<EnergyBean> energyBeans;
+        public List<MapEntity> entities; // 移动平台、下落物块、巡逻尖刺（编辑器只保留，不编辑）
+        public List<MapRoom> rooms; // 房间划分，为空时整张地图是一个房间（编辑器只保留，不编辑）
         
         public MapData() {
             this.platforms = new ArrayList<>();
@@ -25,6 +29,8 @@ public class MapDesign {
             this.spikes = new ArrayList<>();
             this.checkpoints = new ArrayList<>();
             this.energyBeans = new ArrayList<>();
+            this.entities = new ArrayList<>();
+            this.rooms = new ArrayList<>();
         }
         
         /**
@@ -55,13 +61,24 @@ public class MapDesign {
             for (EnergyBean energyBean : energyBeans) {
                 energyBean.render(g);
             }
+            
+            // 渲染所有实体（起点位置）
+            for (MapEntity entity : entities) {
+                entity.render(g, entity.getX(), entity.getY(), -1);
+            }
+            
+            // 渲染房间边界
+            for (MapRoom room : rooms) {
+                room.render(g);
+            }
         }
         
         /**
          * 获取所有地图元素的总数
          */
         public int getTotalElementCount() {
-            return platforms.size() + solidBlocks.size() + spikes.size() + checkpoints.size() + energyBeans.size();
+            return platforms.size() + solidBlocks.size() + spikes.size() + checkpoints.size() + energyBeans.size()
+                + entities.size();
         }
         
         /**
@@ -96,6 +113,18 @@ public class MapDesign {
                 info.append("  ").append(i + 1).append(". ").append(energyBeans.get(i).getInfo()).append("\n");
             }
             
+            info.append("实体 (").append(entities.size()).append("个):\n");
+            for (int i = 0; i < entities.size(); i++) {
+                info.append("  ").append(i + 1).append(". ").append(entities.get(i).getInfo()).append("\n");
+            }
+            
+            if (!rooms.isEmpty()) {
+                info.append("房间 (").append(rooms.size()).append("个):\n");
+                for (int i = 0; i < rooms.size(); i++) {
+                    info.append("  ").append(i + 1).append(". ").append(rooms.get(i).getInfo()).append("\n");
+                }
+            }
+            
             return info.toString();
         }
     }
@@ -162,6 +191,23 @@ public class MapDesign {
             return this;
         }
         
+        /**
+         * 添加实体（移动平台、下落物块或巡逻尖刺），参数见MapEntity
+         */
+        public MapBuilder addEntity(int kind, int x, int y, int width, int height,
+                                    int toX, int toY, int period, int delay) {
+            mapData.entities.add(new MapEntity(kind, x, y, width, height, toX, toY, period, delay));
+            return this;
+        }
+        
+        /**
+         * 添加房间，见MapRoom
+         */
+        public MapBuilder addRoom(String name, int x, int y, int width, int height) {
+            mapData.rooms.add(new MapRoom(name, x, y, width, height));
+            return this;
+        }
+        
         /**
          * 构建地图
          */
@@ -190,12 +236,13 @@ public class MapDesign {
      * 获取地图统计信息
      */
     public static String getMapStats(MapData mapData) {
-        return String.format("地图统计: 平台%d个, 实心物块%d个, 尖刺%d个, 重生点%d个, 能量豆%d个, 总计%d个元素", 
+        return String.format("地图统计: 平台%d个, 实心物块%d个, 尖刺%d个, 重生点%d个, 能量豆%d个, 实体%d个, 总计%d个元素", 
             mapData.platforms.size(), 
             mapData.solidBlocks.size(), 
             mapData.spikes.size(),
             mapData.checkpoints.size(),
             mapData.energyBeans.size(),
+            mapData.entities.size(),
             mapData.getTotalElementCount());
     }
     
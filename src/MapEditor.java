@@ -1,23 +1,34 @@
+import java.awt.BasicStroke;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.awt.Font;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.GridLayout;
+import java.awt.Insets;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.AbstractAction;
 import javax.swing.ActionMap;
 import javax.swing.BorderFactory;
-import javax.swing.DefaultListModel;
 import javax.swing.InputMap;
 import javax.swing.JButton;
 import javax.swing.JComponent;
@@ -35,11 +46,9 @@ import javax.swing.JTextField;
 import javax.swing.KeyStroke;
 import javax.swing.ListSelectionModel;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-
 /**
  * 地图编辑器主类
  * 提供可视化地图编辑功能，与游戏相对独立
@@ -49,19 +58,81 @@ public class MapEditor extends JFrame {
     private static final int WINDOW_HEIGHT = 1200;
     private static final int CANVAS_WIDTH = 1920;
     private static final int CANVAS_HEIGHT = 1080;
+    private static final int RESIZE_HANDLE_SIZE = 8; // 调整尺寸手柄大小
+    private static final int SNAP_DISTANCE = 6; // 吸附距离（屏幕像素）
+    private static final Color GUIDE_COLOR = new Color(255, 0, 255); // 对齐参考线颜色
+    private static final Color PROBLEM_COLOR = new Color(255, 40, 40); // 校验问题标记颜色
+    private static final Color REACHABLE_COLOR = new Color(0, 200, 0, 60); // 可达区域颜色
+    private static final Color ENTITY_COLOR = new Color(70, 110, 160); // 地图实体轮廓颜色
+    private static final Color ROOM_COLOR = new Color(120, 120, 200); // 房间边界颜色
+    private static final int AUTOSAVE_INTERVAL_MS = 60_000; // 自动保存间隔
+    private static final File AUTOSAVE_FILE = new File("maps/autosave.json");
     
     // 编辑器状态
     private enum EditMode {
         PLATFORM, SOLID_BLOCK, SPIKE, CHECKPOINT, ENERGY_BEAN, SELECT, DELETE
     }
     
+    // 对齐与分布方式
+    private enum AlignMode {
+        LEFT, CENTER_X, RIGHT, TOP, CENTER_Y, BOTTOM, DISTRIBUTE_X, DISTRIBUTE_Y
+    }
+    
     private EditMode currentMode = EditMode.PLATFORM;
     private MapDesign.MapData currentMap;
-    private MapElement selectedElement = null;
+    private EditorModel model; // 元素编号和空间索引
+    private final BitSet selectedIds = new BitSet(); // 选中的元素编号
+    private final EditHistory history = new EditHistory(); // 撤销/重做历史
+    private MapValidator validator; // 后台校验
+    private MapValidator.Result validation = null; // 最近一次校验结果
+    private ReachabilityJob reachabilityJob = null; // 正在运行的可达性分析
+    private ReachabilitySolver.Result reachability = null; // 最近一次可达性分析结果
     private boolean isDragging = false;
+    private boolean isMovingSelection = false; // 选择模式下拖动选中的元素
+    private int[] movingIds = null; // 本次拖动的元素编号（同一次拖动的移动合并为一条历史）
+    private int resizingId = -1; // 正在调整尺寸的元素编号
+    private Rectangle resizeStartBounds = null; // 调整尺寸前的位置和尺寸
+    private Rectangle selectionBox = null; // 选择模式下的框选区域
     private Point dragStart = null;
     private Point lastMousePos = null;
     
+    // 保存在单独的后台线程中依次执行，界面线程只负责创建快照
+    private final ExecutorService saveExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "map-saver"));
+    // 可达性分析的调度线程：编译快照，然后在每次分析单独创建的ForkJoinPool中并行搜索，完成后关闭线程池
+    private final ExecutorService reachabilityExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "reachability");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // 地图被修改后分析结果不再对应当前地图，取消分析并清除显示
+    private final EditorModel.Listener reachabilityInvalidator = new EditorModel.Listener() {
+        @Override
+        public void elementAdded(int id) {
+            clearReachability();
+        }
+        
+        @Override
+        public void elementRemoved(int id, MapElement element) {
+            clearReachability();
+        }
+        
+        @Override
+        public void elementChanged(int id, int oldX, int oldY, int oldWidth, int oldHeight) {
+            clearReachability();
+        }
+        
+        @Override
+        public void batchChanged(BitSet ids, Rectangle region) {
+            clearReachability();
+        }
+    };
+    private int pendingSaves = 0;
+    // 上次自动保存时的地图状态，没有变化时跳过自动保存
+    private EditorModel autosavedModel;
+    private long autosavedModCount;
+    private String autosavedName;
+    private String autosavedDescription;
+    
     // UI组件
     private MapCanvas mapCanvas;
     private JPanel toolbar;
@@ -70,8 +141,8 @@ public class MapEditor extends JFrame {
     private JTextField mapDescField;
     
     // 地图元素列表
-    private JList<String> elementList;
-    private DefaultListModel<String> elementListModel;
+    private JList<MapElement> elementList;
+    private ElementListModel elementListModel;
     
     public MapEditor() {
         setTitle("Java Celeste 地图编辑器");
@@ -81,6 +152,7 @@ public class MapEditor extends JFrame {
         
         // 初始化地图数据
         currentMap = MapDesign.createEmptyMap();
+        model = new EditorModel(currentMap);
         
         // 创建UI
         createUI();
@@ -90,6 +162,27 @@ public class MapEditor extends JFrame {
         
         // 更新状态
         updateStatus();
+        
+        // 后台校验地图
+        validator = new MapValidator(model, this::onValidated);
+        model.addListener(reachabilityInvalidator);
+        
+        // 定时自动保存
+        markAutosaved();
+        new Timer(AUTOSAVE_INTERVAL_MS, e -> autosave()).start();
+        
+        // 关闭窗口前等待正在进行的保存完成
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                saveExecutor.shutdown();
+                try {
+                    saveExecutor.awaitTermination(30, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
     }
     
     /**
@@ -167,6 +260,27 @@ public class MapEditor extends JFrame {
         toolbar.add(loadBtn);
         toolbar.add(saveBtn);
         
+        // 试玩按钮
+        JButton playtestBtn = new JButton("测试地图");
+        playtestBtn.addActionListener(e -> playtest());
+        toolbar.add(playtestBtn);
+        
+        // 可达性分析按钮
+        JButton reachabilityBtn = new JButton("可达性分析");
+        reachabilityBtn.addActionListener(e -> analyzeReachability());
+        toolbar.add(reachabilityBtn);
+        
+        // 撤销/重做按钮
+        JButton undoBtn = new JButton("撤销");
+        undoBtn.addActionListener(e -> undo());
+        
+        JButton redoBtn = new JButton("重做");
+        redoBtn.addActionListener(e -> redo());
+        
+        toolbar.add(new JSeparator());
+        toolbar.add(undoBtn);
+        toolbar.add(redoBtn);
+        
         add(toolbar, BorderLayout.NORTH);
     }
     
@@ -200,11 +314,16 @@ public class MapEditor extends JFrame {
         // 元素列表
         JPanel elementPanel = new JPanel(new BorderLayout());
         elementPanel.setBorder(BorderFactory.createTitledBorder("地图元素"));
-        elementListModel = new DefaultListModel<>();
+        elementListModel = new ElementListModel(model);
         elementList = new JList<>(elementListModel);
         elementList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        elementList.setCellRenderer(new ElementListModel.Renderer());
+        // 固定行高和宽度，JList不必为测量尺寸而格式化每一行
+        elementList.setFixedCellHeight(18);
+        elementList.setFixedCellWidth(260);
         elementList.addListSelectionListener(e -> {
-            if (!e.getValueIsAdjusting()) {
+            // 只响应用户在列表中的操作，模型变化引起的行号偏移不改变画布选中
+            if (!e.getValueIsAdjusting() && elementList.isFocusOwner()) {
                 selectElementFromList();
             }
         });
@@ -219,7 +338,23 @@ public class MapEditor extends JFrame {
         duplicateElementBtn.addActionListener(e -> duplicateSelectedElement());
         elementButtonPanel.add(deleteElementBtn);
         elementButtonPanel.add(duplicateElementBtn);
-        elementPanel.add(elementButtonPanel, BorderLayout.SOUTH);
+        
+        // 对齐和分布按钮（作用于所有选中的元素）
+        JPanel alignPanel = new JPanel(new GridLayout(2, 4, 2, 2));
+        alignPanel.setBorder(BorderFactory.createTitledBorder("对齐与分布"));
+        addAlignButton(alignPanel, "左对齐", AlignMode.LEFT);
+        addAlignButton(alignPanel, "水平居中", AlignMode.CENTER_X);
+        addAlignButton(alignPanel, "右对齐", AlignMode.RIGHT);
+        addAlignButton(alignPanel, "水平分布", AlignMode.DISTRIBUTE_X);
+        addAlignButton(alignPanel, "顶对齐", AlignMode.TOP);
+        addAlignButton(alignPanel, "垂直居中", AlignMode.CENTER_Y);
+        addAlignButton(alignPanel, "底对齐", AlignMode.BOTTOM);
+        addAlignButton(alignPanel, "垂直分布", AlignMode.DISTRIBUTE_Y);
+        
+        JPanel elementActionPanel = new JPanel(new BorderLayout());
+        elementActionPanel.add(elementButtonPanel, BorderLayout.NORTH);
+        elementActionPanel.add(alignPanel, BorderLayout.SOUTH);
+        elementPanel.add(elementActionPanel, BorderLayout.SOUTH);
         
         rightPanel.add(mapInfoPanel, BorderLayout.NORTH);
         rightPanel.add(elementPanel, BorderLayout.CENTER);
@@ -294,7 +429,32 @@ public class MapEditor extends JFrame {
         inputMap.put(KeyStroke.getKeyStroke("ctrl N"), "new");
         inputMap.put(KeyStroke.getKeyStroke("ctrl O"), "open");
         inputMap.put(KeyStroke.getKeyStroke("ctrl S"), "save");
+        inputMap.put(KeyStroke.getKeyStroke("ctrl T"), "playtest");
+        inputMap.put(KeyStroke.getKeyStroke("ctrl 0"), "resetView");
+        inputMap.put(KeyStroke.getKeyStroke("ctrl A"), "selectAll");
+        inputMap.put(KeyStroke.getKeyStroke("ctrl D"), "duplicate");
+        inputMap.put(KeyStroke.getKeyStroke("DELETE"), "deleteSelected");
         
+        actionMap.put("playtest", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) { playtest(); }
+        });
+        actionMap.put("selectAll", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) { selectAll(); }
+        });
+        actionMap.put("duplicate", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) { duplicateSelectedElement(); }
+        });
+        actionMap.put("deleteSelected", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) { deleteSelectedElement(); }
+        });
+        actionMap.put("resetView", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) { mapCanvas.resetView(); }
+        });
         actionMap.put("new", new AbstractAction() {
             @Override
             public void actionPerformed(ActionEvent e) { newMap(); }
@@ -307,6 +467,20 @@ public class MapEditor extends JFrame {
             @Override
             public void actionPerformed(ActionEvent e) { saveMap(); }
         });
+        
+        // 撤销/重做快捷键
+        inputMap.put(KeyStroke.getKeyStroke("ctrl Z"), "undo");
+        inputMap.put(KeyStroke.getKeyStroke("ctrl Y"), "redo");
+        inputMap.put(KeyStroke.getKeyStroke("ctrl shift Z"), "redo");
+        
+        actionMap.put("undo", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) { undo(); }
+        });
+        actionMap.put("redo", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) { redo(); }
+        });
     }
     
     /**
@@ -314,7 +488,7 @@ public class MapEditor extends JFrame {
      */
     private void setEditMode(EditMode mode) {
         currentMode = mode;
-        selectedElement = null;
+        selectedIds.clear();
         updateStatus();
         mapCanvas.repaint();
     }
@@ -323,45 +497,26 @@ public class MapEditor extends JFrame {
      * 更新状态显示
      */
     private void updateStatus() {
-        statusLabel.setText(String.format("模式: %s | 元素总数: %d", 
-            currentMode.toString(), currentMap.getTotalElementCount()));
-        updateElementList();
+        statusLabel.setText(String.format("模式: %s | 元素总数: %d | 选中: %d | 缩放: %.0f%% | 问题: %s", 
+            currentMode.toString(), currentMap.getTotalElementCount(), selectedIds.cardinality(),
+            mapCanvas.getZoom() * 100, validation != null ? String.valueOf(validation.getProblemCount()) : "检查中"));
+        String tooltip = validation != null ? validation.describe() : null;
+        if (reachability != null) {
+            tooltip = (tooltip != null ? tooltip + " | " : "") + "可达性分析: " + reachability.describe();
+        }
+        statusLabel.setToolTipText(tooltip);
     }
     
     /**
-     * 更新元素列表
+     * 收到后台校验结果，重绘问题状态变化的区域
      */
-    private void updateElementList() {
-        elementListModel.clear();
-        
-        for (int i = 0; i < currentMap.platforms.size(); i++) {
-            Platform p = currentMap.platforms.get(i);
-            elementListModel.addElement(String.format("平台 %d: (%d,%d) %dx%d", 
-                i + 1, p.getX(), p.getY(), p.getWidth(), p.getHeight()));
-        }
-        
-        for (int i = 0; i < currentMap.solidBlocks.size(); i++) {
-            SolidBlock b = currentMap.solidBlocks.get(i);
-            elementListModel.addElement(String.format("实心物块 %d: (%d,%d) %dx%d", 
-                i + 1, b.getX(), b.getY(), b.getWidth(), b.getHeight()));
-        }
-        
-        for (int i = 0; i < currentMap.spikes.size(); i++) {
-            Spike s = currentMap.spikes.get(i);
-            elementListModel.addElement(String.format("尖刺 %d: (%d,%d) %dx%d", 
-                i + 1, s.getX(), s.getY(), s.getWidth(), s.getHeight()));
-        }
-        
-        for (int i = 0; i < currentMap.checkpoints.size(); i++) {
-            Checkpoint c = currentMap.checkpoints.get(i);
-            elementListModel.addElement(String.format("重生点 %d: (%d,%d) %dx%d", 
-                i + 1, c.getX(), c.getY(), c.getWidth(), c.getHeight()));
-        }
-        
-        for (int i = 0; i < currentMap.energyBeans.size(); i++) {
-            EnergyBean e = currentMap.energyBeans.get(i);
-            elementListModel.addElement(String.format("能量豆 %d: (%d,%d) %dx%d", 
-                i + 1, e.getX(), e.getY(), e.getWidth(), e.getHeight()));
+    private void onValidated(MapValidator.Result result) {
+        validation = result;
+        updateStatus();
+        if (result.getChangedRegion() != null) {
+            mapCanvas.repaintWorld(result.getChangedRegion());
+        } else {
+            mapCanvas.repaint();
         }
     }
     
@@ -371,45 +526,77 @@ public class MapEditor extends JFrame {
     private void selectElementFromList() {
         int selectedIndex = elementList.getSelectedIndex();
         if (selectedIndex >= 0) {
-            // 计算实际元素索引
-            int platformCount = currentMap.platforms.size();
-            int solidBlockCount = currentMap.solidBlocks.size();
-            int spikeCount = currentMap.spikes.size();
-            int checkpointCount = currentMap.checkpoints.size();
-            
-            if (selectedIndex < platformCount) {
-                selectedElement = currentMap.platforms.get(selectedIndex);
-            } else if (selectedIndex < platformCount + solidBlockCount) {
-                selectedElement = currentMap.solidBlocks.get(selectedIndex - platformCount);
-            } else if (selectedIndex < platformCount + solidBlockCount + spikeCount) {
-                selectedElement = currentMap.spikes.get(selectedIndex - platformCount - solidBlockCount);
-            } else if (selectedIndex < platformCount + solidBlockCount + spikeCount + checkpointCount) {
-                selectedElement = currentMap.checkpoints.get(selectedIndex - platformCount - solidBlockCount - spikeCount);
-            } else {
-                selectedElement = currentMap.energyBeans.get(selectedIndex - platformCount - solidBlockCount - spikeCount - checkpointCount);
-            }
+            int selectedId = elementListModel.getIdAt(selectedIndex);
             
+            selectedIds.clear();
+            selectedIds.set(selectedId);
             mapCanvas.repaint();
         }
     }
     
+    /**
+     * 撤销
+     */
+    private void undo() {
+        model.beginBatch();
+        boolean changed = history.undo(model);
+        model.endBatch();
+        if (changed) {
+            afterHistoryChange();
+        }
+    }
+    
+    /**
+     * 重做
+     */
+    private void redo() {
+        model.beginBatch();
+        boolean changed = history.redo(model);
+        model.endBatch();
+        if (changed) {
+            afterHistoryChange();
+        }
+    }
+    
+    /**
+     * 撤销/重做后清理已不存在的选中元素并刷新界面
+     */
+    private void afterHistoryChange() {
+        for (int id = selectedIds.nextSetBit(0); id >= 0; id = selectedIds.nextSetBit(id + 1)) {
+            if (!model.exists(id)) {
+                selectedIds.clear(id);
+            }
+        }
+        updateStatus();
+        mapCanvas.repaint();
+    }
+    
+    /**
+     * 添加元素并记录到编辑历史
+     */
+    private int addElement(MapElement element) {
+        int id = model.add(element);
+        history.record(new EditHistory.CreateCommand(id, element));
+        history.endMerge();
+        return id;
+    }
+    
     /**
      * 删除选中的元素
      */
     private void deleteSelectedElement() {
-        if (selectedElement != null) {
-            if (selectedElement instanceof Platform) {
-                currentMap.platforms.remove(selectedElement);
-            } else if (selectedElement instanceof SolidBlock) {
-                currentMap.solidBlocks.remove(selectedElement);
-            } else if (selectedElement instanceof Spike) {
-                currentMap.spikes.remove(selectedElement);
-            } else if (selectedElement instanceof Checkpoint) {
-                currentMap.checkpoints.remove(selectedElement);
-            } else if (selectedElement instanceof EnergyBean) {
-                currentMap.energyBeans.remove(selectedElement);
-            }
-            selectedElement = null;
+        if (!selectedIds.isEmpty()) {
+            EditHistory.Command[] commands = new EditHistory.Command[selectedIds.cardinality()];
+            int count = 0;
+            model.beginBatch();
+            for (int id = selectedIds.nextSetBit(0); id >= 0; id = selectedIds.nextSetBit(id + 1)) {
+                commands[count++] = new EditHistory.DeleteCommand(model, id);
+                model.remove(id);
+            }
+            model.endBatch();
+            history.record(new EditHistory.CompositeCommand(commands));
+            history.endMerge();
+            selectedIds.clear();
             updateStatus();
             mapCanvas.repaint();
         }
@@ -419,29 +606,130 @@ public class MapEditor extends JFrame {
      * 复制选中的元素
      */
     private void duplicateSelectedElement() {
-        if (selectedElement != null) {
-            if (selectedElement instanceof Platform) {
-                Platform p = (Platform) selectedElement;
-                currentMap.platforms.add(new Platform(p.getX() + 50, p.getY() + 50, p.getWidth(), p.getHeight()));
-            } else if (selectedElement instanceof SolidBlock) {
-                SolidBlock b = (SolidBlock) selectedElement;
-                currentMap.solidBlocks.add(new SolidBlock(b.getX() + 50, b.getY() + 50, b.getWidth(), b.getHeight()));
-            } else if (selectedElement instanceof Spike) {
-                Spike s = (Spike) selectedElement;
-                currentMap.spikes.add(new Spike(s.getX() + 50, s.getY() + 50, s.getWidth(), s.getHeight()));
-            } else if (selectedElement instanceof Checkpoint) {
-                Checkpoint c = (Checkpoint) selectedElement;
-                currentMap.checkpoints.add(new Checkpoint(c.getX() + 50, c.getY() + 50, c.getWidth(), c.getHeight(),
-                    c.getRespawnOffsetX(), c.getRespawnOffsetY(), c.isDefaultActivated()));
-            } else if (selectedElement instanceof EnergyBean) {
-                EnergyBean e = (EnergyBean) selectedElement;
-                currentMap.energyBeans.add(new EnergyBean(e.getX() + 50, e.getY() + 50, e.getWidth()));
+        if (!selectedIds.isEmpty()) {
+            BitSet copies = new BitSet();
+            EditHistory.Command[] commands = new EditHistory.Command[selectedIds.cardinality()];
+            int count = 0;
+            model.beginBatch();
+            for (int id = selectedIds.nextSetBit(0); id >= 0; id = selectedIds.nextSetBit(id + 1)) {
+                MapElement selectedElement = model.get(id);
+                MapElement copy = selectedElement.copy();
+                copy.setPosition(selectedElement.getX() + 50, selectedElement.getY() + 50);
+                int copyId = model.add(copy);
+                copies.set(copyId);
+                commands[count++] = new EditHistory.CreateCommand(copyId, copy);
             }
+            model.endBatch();
+            history.record(new EditHistory.CompositeCommand(commands));
+            history.endMerge();
+            // 选中新复制出的元素
+            selectedIds.clear();
+            selectedIds.or(copies);
             updateStatus();
             mapCanvas.repaint();
         }
     }
     
+    /**
+     * 选中所有元素
+     */
+    private void selectAll() {
+        selectedIds.clear();
+        for (int kind = 0; kind < EditorModel.KIND_COUNT; kind++) {
+            for (int i = 0; i < model.getCount(kind); i++) {
+                selectedIds.set(model.getId(kind, i));
+            }
+        }
+        updateStatus();
+        mapCanvas.repaint();
+    }
+    
+    private void addAlignButton(JPanel panel, String text, AlignMode mode) {
+        JButton button = new JButton(text);
+        button.setMargin(new Insets(2, 2, 2, 2));
+        button.addActionListener(e -> alignSelection(mode));
+        panel.add(button);
+    }
+    
+    /**
+     * 对齐或分布选中的元素
+     * 对齐以所有选中元素的外接矩形为基准；分布保持两端元素不动，使相邻元素的间距相等
+     */
+    private void alignSelection(AlignMode mode) {
+        int count = selectedIds.cardinality();
+        boolean distribute = mode == AlignMode.DISTRIBUTE_X || mode == AlignMode.DISTRIBUTE_Y;
+        if (count < (distribute ? 3 : 2)) {
+            return;
+        }
+        int[] ids = selectedIds.stream().toArray();
+        int[] oldX = new int[count];
+        int[] oldY = new int[count];
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        long totalWidth = 0, totalHeight = 0;
+        for (int i = 0; i < count; i++) {
+            MapElement element = model.get(ids[i]);
+            oldX[i] = element.getX();
+            oldY[i] = element.getY();
+            minX = Math.min(minX, element.getX());
+            minY = Math.min(minY, element.getY());
+            maxX = Math.max(maxX, element.getX() + element.getWidth());
+            maxY = Math.max(maxY, element.getY() + element.getHeight());
+            totalWidth += element.getWidth();
+            totalHeight += element.getHeight();
+        }
+        int[] newX = oldX.clone();
+        int[] newY = oldY.clone();
+        
+        if (distribute) {
+            boolean horizontal = mode == AlignMode.DISTRIBUTE_X;
+            // 按当前位置排序：高32位为坐标，低32位为数组下标
+            long[] order = new long[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = ((long) (horizontal ? oldX[i] : oldY[i]) << 32) | i;
+            }
+            Arrays.sort(order);
+            double gap = horizontal
+                ? (double) (maxX - minX - totalWidth) / (count - 1)
+                : (double) (maxY - minY - totalHeight) / (count - 1);
+            double cursor = horizontal ? minX : minY;
+            for (long key : order) {
+                int i = (int) key;
+                MapElement element = model.get(ids[i]);
+                if (horizontal) {
+                    newX[i] = (int) Math.round(cursor);
+                    cursor += element.getWidth() + gap;
+                } else {
+                    newY[i] = (int) Math.round(cursor);
+                    cursor += element.getHeight() + gap;
+                }
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                MapElement element = model.get(ids[i]);
+                switch (mode) {
+                    case LEFT: newX[i] = minX; break;
+                    case CENTER_X: newX[i] = (minX + maxX - element.getWidth()) / 2; break;
+                    case RIGHT: newX[i] = maxX - element.getWidth(); break;
+                    case TOP: newY[i] = minY; break;
+                    case CENTER_Y: newY[i] = (minY + maxY - element.getHeight()) / 2; break;
+                    case BOTTOM: newY[i] = maxY - element.getHeight(); break;
+                    default: break;
+                }
+            }
+        }
+        
+        model.beginBatch();
+        for (int i = 0; i < count; i++) {
+            model.move(ids[i], newX[i], newY[i]);
+        }
+        model.endBatch();
+        history.record(new EditHistory.PositionCommand(ids, oldX, oldY, newX, newY));
+        history.endMerge();
+        updateStatus();
+        mapCanvas.repaint();
+    }
+    
     /**
      * 新建地图
      */
@@ -451,15 +739,34 @@ public class MapEditor extends JFrame {
             "新建地图", JOptionPane.YES_NO_OPTION);
         
         if (result == JOptionPane.YES_OPTION) {
-            currentMap = MapDesign.createEmptyMap();
+            setMap(MapDesign.createEmptyMap());
             mapNameField.setText("新地图");
             mapDescField.setText("地图描述");
-            selectedElement = null;
+            markAutosaved();
+            selectedIds.clear();
             updateStatus();
             mapCanvas.repaint();
         }
     }
     
+    /**
+     * 切换当前编辑的地图，重建模型和元素列表并清空编辑历史
+     */
+    private void setMap(MapDesign.MapData map) {
+        currentMap = map;
+        model = new EditorModel(map);
+        history.clear();
+        elementListModel.dispose();
+        validator.dispose();
+        validator = new MapValidator(model, this::onValidated);
+        validation = null;
+        clearReachability();
+        model.addListener(reachabilityInvalidator);
+        elementListModel = new ElementListModel(model);
+        elementList.setModel(elementListModel);
+        mapCanvas.setModel(model);
+    }
+    
     /**
      * 加载地图
      */
@@ -470,12 +777,11 @@ public class MapEditor extends JFrame {
         if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
             try {
                 File file = fileChooser.getSelectedFile();
-                JsonMapLoader.MapConfig config = new ObjectMapper().readValue(file, JsonMapLoader.MapConfig.class);
-                
-                currentMap = MapDesign.createMapFromConfig(file.getPath());
-                mapNameField.setText(config.name);
-                mapDescField.setText(config.description);
-                selectedElement = null;
+                setMap(JsonMapLoader.loadMapFromJson(file.getPath()));
+                mapNameField.setText(currentMap.name);
+                mapDescField.setText(currentMap.description);
+                markAutosaved();
+                selectedIds.clear();
                 updateStatus();
                 mapCanvas.repaint();
                 
@@ -496,86 +802,185 @@ public class MapEditor extends JFrame {
         fileChooser.setSelectedFile(new File(mapNameField.getText() + ".json"));
         
         if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+            saveInBackground(fileChooser.getSelectedFile(), false);
+        }
+    }
+    
+    /**
+     * 在后台保存地图
+     * 在界面线程上创建地图快照，然后由保存线程流式写入文件，大地图保存时界面不会卡住
+     * @param autosave 是否为自动保存（自动保存不弹出对话框）
+     */
+    private void saveInBackground(File file, boolean autosave) {
+        JsonMapLoader.MapSnapshot snapshot = new JsonMapLoader.MapSnapshot(
+            currentMap, mapNameField.getText(), mapDescField.getText());
+        pendingSaves++;
+        saveExecutor.execute(() -> {
+            long start = System.nanoTime();
+            IOException error = null;
             try {
-                saveMapToFile(fileChooser.getSelectedFile());
-                JOptionPane.showMessageDialog(this, "地图保存成功！");
+                JsonMapLoader.saveSnapshotToJson(snapshot, file);
             } catch (IOException e) {
-                JOptionPane.showMessageDialog(this, "保存地图失败: " + e.getMessage(), 
+                error = e;
+            }
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            IOException result = error;
+            SwingUtilities.invokeLater(() -> onSaveFinished(file, autosave, snapshot.getElementCount(), elapsedMs, result));
+        });
+    }
+    
+    /**
+     * 保存完成（在界面线程上调用）
+     */
+    private void onSaveFinished(File file, boolean autosave, int elementCount, long elapsedMs, IOException error) {
+        pendingSaves--;
+        if (error != null) {
+            System.out.println((autosave ? "自动保存失败: " : "保存地图失败: ") + error.getMessage());
+            if (!autosave) {
+                JOptionPane.showMessageDialog(this, "保存地图失败: " + error.getMessage(), 
                     "错误", JOptionPane.ERROR_MESSAGE);
             }
+            return;
+        }
+        System.out.println((autosave ? "自动保存到: " : "地图已保存到: ") + file.getPath()
+            + " (" + elementCount + " 个元素, " + elapsedMs + "ms)");
+        if (!autosave) {
+            JOptionPane.showMessageDialog(this, "地图保存成功！");
         }
     }
     
     /**
-     * 保存地图到文件
+     * 自动保存：地图自上次自动保存以来没有变化，或者仍有保存在进行时跳过
      */
-    private void saveMapToFile(File file) throws IOException {
-        JsonMapLoader.MapConfig config = new JsonMapLoader.MapConfig();
-        config.name = mapNameField.getText();
-        config.description = mapDescField.getText();
-        
-        // 转换地图元素
-        config.platforms = new ArrayList<>();
-        for (Platform p : currentMap.platforms) {
-            JsonMapLoader.ElementData data = new JsonMapLoader.ElementData();
-            data.x = p.getX();
-            data.y = p.getY();
-            data.width = p.getWidth();
-            data.height = p.getHeight();
-            data.comment = "平台";
-            config.platforms.add(data);
+    private void autosave() {
+        if (pendingSaves > 0) {
+            return;
         }
-        
-        config.solidBlocks = new ArrayList<>();
-        for (SolidBlock b : currentMap.solidBlocks) {
-            JsonMapLoader.ElementData data = new JsonMapLoader.ElementData();
-            data.x = b.getX();
-            data.y = b.getY();
-            data.width = b.getWidth();
-            data.height = b.getHeight();
-            data.comment = "实心物块";
-            config.solidBlocks.add(data);
+        if (model == autosavedModel && model.getModCount() == autosavedModCount
+                && mapNameField.getText().equals(autosavedName)
+                && mapDescField.getText().equals(autosavedDescription)) {
+            return;
         }
-        
-        config.spikes = new ArrayList<>();
-        for (Spike s : currentMap.spikes) {
-            JsonMapLoader.ElementData data = new JsonMapLoader.ElementData();
-            data.x = s.getX();
-            data.y = s.getY();
-            data.width = s.getWidth();
-            data.height = s.getHeight();
-            data.comment = "尖刺";
-            config.spikes.add(data);
+        markAutosaved();
+        saveInBackground(AUTOSAVE_FILE, true);
+    }
+    
+    /**
+     * 试玩当前地图
+     * 游戏直接使用编辑器内存中的地图，不需要先保存；鼠标在画布上时从鼠标位置开始，
+     * 否则从最近激活的默认重生点（没有则从默认位置）开始
+     */
+    private void playtest() {
+        currentMap.name = mapNameField.getText();
+        currentMap.description = mapDescField.getText();
+        
+        double startX = 100;
+        double startY = 900;
+        Point hover = mapCanvas.getHoverPoint();
+        if (hover != null) {
+            startX = hover.x;
+            startY = hover.y;
+        } else {
+            for (Checkpoint checkpoint : currentMap.checkpoints) {
+                if (checkpoint.isDefaultActivated()) {
+                    startX = checkpoint.getRespawnX();
+                    startY = checkpoint.getRespawnY();
+                }
+            }
         }
         
-        config.checkpoints = new ArrayList<>();
-        for (Checkpoint c : currentMap.checkpoints) {
-            JsonMapLoader.CheckpointData data = new JsonMapLoader.CheckpointData();
-            data.x = c.getX();
-            data.y = c.getY();
-            data.width = c.getWidth();
-            data.height = c.getHeight();
-            data.respawnOffsetX = c.getRespawnOffsetX();
-            data.respawnOffsetY = c.getRespawnOffsetY();
-            data.defaultActivated = c.isDefaultActivated();
-            data.comment = "重生点";
-            config.checkpoints.add(data);
+        Game game = new Game(currentMap, startX, startY);
+        game.setVisible(true);
+        game.requestFocus();
+    }
+    
+    /**
+     * 可达性分析
+     * 在界面线程上创建地图快照，编译和搜索都在后台进行；再次点击时取消上一次分析
+     */
+    private void analyzeReachability() {
+        clearReachability();
+        JsonMapLoader.MapSnapshot snapshot = new JsonMapLoader.MapSnapshot(currentMap, currentMap.name, currentMap.description);
+        ReachabilityJob job = new ReachabilityJob();
+        reachabilityJob = job;
+        statusLabel.setText("可达性分析中...");
+        reachabilityExecutor.execute(() -> {
+            ReachabilitySolver solver = new ReachabilitySolver(CompiledMap.compileUnshared(snapshot.toMapData()));
+            if (!job.start(solver)) {
+                return;
+            }
+            // 每次分析使用单独的线程池，关闭后工作线程连同其中缓存的模拟一起释放
+            ForkJoinPool pool = new ForkJoinPool();
+            try {
+                ReachabilitySolver.Result result = solver.solve(pool);
+                SwingUtilities.invokeLater(() -> onReachabilityFinished(job, result));
+            } finally {
+                pool.shutdown();
+            }
+        });
+    }
+    
+    /**
+     * 可达性分析完成（在界面线程上调用），已被取消的分析结果直接丢弃
+     */
+    private void onReachabilityFinished(ReachabilityJob job, ReachabilitySolver.Result result) {
+        if (job != reachabilityJob) {
+            return;
         }
+        reachabilityJob = null;
+        reachability = result;
+        System.out.println("可达性分析: " + result.describe());
+        updateStatus();
+        mapCanvas.repaint();
+        JOptionPane.showMessageDialog(this, "可达性分析: " + result.describe()
+            + (result.getUnreachedCheckpointCount() > 0 ? "\n没有找到路线的重生点已用红框标出，请试玩确认" : ""));
+    }
+    
+    /**
+     * 取消正在运行的可达性分析并清除显示的结果
+     */
+    private void clearReachability() {
+        if (reachabilityJob != null) {
+            reachabilityJob.cancel();
+            reachabilityJob = null;
+        }
+        if (reachability != null) {
+            reachability = null;
+            mapCanvas.repaint();
+        }
+    }
+    
+    /**
+     * 一次可达性分析：搜索器在后台编译完地图后才创建，在此之前取消的分析不会开始搜索
+     */
+    private static class ReachabilityJob {
+        private ReachabilitySolver solver;
+        private boolean cancelled;
         
-        config.energyBeans = new ArrayList<>();
-        for (EnergyBean e : currentMap.energyBeans) {
-            JsonMapLoader.ElementData data = new JsonMapLoader.ElementData();
-            data.x = e.getX();
-            data.y = e.getY();
-            data.width = e.getWidth();
-            data.height = e.getHeight();
-            data.comment = "能量豆";
-            config.energyBeans.add(data);
+        /**
+         * 登记搜索器，分析已被取消时返回false
+         */
+        synchronized boolean start(ReachabilitySolver solver) {
+            this.solver = solver;
+            return !cancelled;
         }
         
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.enable(SerializationFeature.INDENT_OUTPUT);
-        mapper.writeValue(file, config);
+        synchronized void cancel() {
+            cancelled = true;
+            if (solver != null) {
+                solver.cancel();
+            }
+        }
+    }
+    
+    /**
+     * 记录当前地图状态为已自动保存
+     */
+    private void markAutosaved() {
+        autosavedModel = model;
+        autosavedModCount = model.getModCount();
+        autosavedName = mapNameField.getText();
+        autosavedDescription = mapDescField.getText();
     }
     
     
@@ -583,9 +988,30 @@ public class MapEditor extends JFrame {
      * 地图画布类
      */
     private class MapCanvas extends JPanel {
+        // 缩放和平移
+        private final EditorViewport viewport = new EditorViewport();
+        // 网格、地面和未选中元素的离屏缓存
+        private final EditorCanvasCache cache;
+        // 中键拖拽平移时上一次的鼠标位置（屏幕坐标）
+        private Point panLast = null;
+        // 鼠标悬停处的世界坐标（鼠标不在画布上时为null）
+        private Point hoverPoint = null;
+        
+        // 吸附对齐：边缘索引在拖拽开始时刷新，拖拽中被移动的元素不参与吸附
+        private EdgeIndex edgeIndex = null;
+        private BitSet snapExcluded = null;
+        private EdgeIndex.Snap guideX = null;
+        private EdgeIndex.Snap guideY = null;
+        // 移动开始时选中元素的外接矩形和已经移动的距离
+        private Rectangle moveStartBounds = null;
+        private Point moveOffset = null;
+        // 创建元素时拖拽的终点（吸附后）
+        private Point createEnd = null;
+        
         public MapCanvas() {
             setPreferredSize(new Dimension(CANVAS_WIDTH, CANVAS_HEIGHT));
             setBackground(new Color(135, 206, 235)); // 天蓝色背景
+            cache = new EditorCanvasCache(this, model, viewport);
             
             // 添加鼠标监听器
             addMouseListener(new MouseAdapter() {
@@ -598,35 +1024,170 @@ public class MapEditor extends JFrame {
                 public void mouseReleased(MouseEvent e) {
                     handleMouseReleased(e);
                 }
+                
+                @Override
+                public void mouseExited(MouseEvent e) {
+                    hoverPoint = null;
+                }
             });
             
             addMouseMotionListener(new MouseMotionAdapter() {
                 @Override
                 public void mouseDragged(MouseEvent e) {
+                    hoverPoint = toWorld(e.getPoint());
                     handleMouseDragged(e);
                 }
+                
+                @Override
+                public void mouseMoved(MouseEvent e) {
+                    hoverPoint = toWorld(e.getPoint());
+                }
             });
+            
+            // 滚轮以鼠标位置为中心缩放
+            addMouseWheelListener(this::handleMouseWheel);
+        }
+        
+        /**
+         * 当前缩放比例
+         */
+        public double getZoom() {
+            return viewport.getZoom();
+        }
+        
+        /**
+         * 鼠标悬停处的世界坐标，鼠标不在画布上时返回null
+         */
+        public Point getHoverPoint() {
+            return hoverPoint;
+        }
+        
+        /**
+         * 重绘世界坐标中的一块区域
+         */
+        public void repaintWorld(Rectangle world) {
+            Rectangle screen = viewport.toScreen(world);
+            screen.grow(4, 4);
+            repaint(screen);
+        }
+        
+        /**
+         * 恢复100%缩放并回到世界原点
+         */
+        public void resetView() {
+            viewport.reset();
+            cache.invalidateAll();
+            updateStatus();
+        }
+        
+        /**
+         * 屏幕坐标 -> 世界坐标
+         */
+        private Point toWorld(Point screen) {
+            return new Point((int) Math.floor(viewport.toWorldX(screen.x)), (int) Math.floor(viewport.toWorldY(screen.y)));
+        }
+        
+        /**
+         * 元素边界对应的屏幕矩形
+         */
+        private Rectangle toScreen(MapElement element) {
+            return viewport.toScreen(new Rectangle(element.getX(), element.getY(), element.getWidth(), element.getHeight()));
+        }
+        
+        /**
+         * 切换模型（新建或加载地图时）
+         */
+        public void setModel(EditorModel model) {
+            cache.setModel(model);
+            if (edgeIndex != null) {
+                edgeIndex.dispose();
+                edgeIndex = null;
+            }
         }
         
         @Override
         protected void paintComponent(Graphics g) {
-            super.paintComponent(g);
+            // 网格、地面和地图元素（选中的元素实时绘制在缓存之上）
+            cache.paint(g, selectedIds);
             
-            // 绘制网格
-            drawGrid(g);
+            // 可达性分析结果：玩家到达过的格子和没有找到路线的重生点
+            Rectangle clip = g.getClipBounds();
+            if (reachability != null) {
+                drawReachability(g, clip != null ? clip : new Rectangle(getSize()));
+            }
+            
+            // 地图实体：起点轮廓和移动路线（编辑器只显示，不能选择和编辑）
+            if (!currentMap.entities.isEmpty()) {
+                drawEntities(g);
+            }
+            
+            // 房间边界和名称（只显示，不能编辑）
+            if (!currentMap.rooms.isEmpty()) {
+                drawRooms(g);
+            }
             
-            // 绘制地面
-            g.setColor(new Color(34, 139, 34));
-            g.fillRect(0, CANVAS_HEIGHT - 50, CANVAS_WIDTH, 50);
+            // 标记校验发现问题的元素（简化显示时元素太小，只在状态栏显示数量）
+            if (validation != null && !cache.isLevelOfDetail()) {
+                g.setColor(PROBLEM_COLOR);
+                Rectangle world = viewport.toWorld(clip != null ? clip : new Rectangle(getSize()));
+                model.findInRect(world.x, world.y, world.width, world.height, id -> {
+                    if (validation.hasProblem(id)) {
+                        Rectangle bounds = toScreen(model.get(id));
+                        bounds.grow(1, 1);
+                        g.drawRect(bounds.x, bounds.y, bounds.width, bounds.height);
+                        g.drawRect(bounds.x + 1, bounds.y + 1, bounds.width - 2, bounds.height - 2);
+                    }
+                    return true;
+                });
+            }
             
-            // 绘制所有地图元素
-            currentMap.renderAll(g);
+            // 绘制选中的元素高亮（屏幕坐标，不随缩放变粗变细）
+            g.setColor(Color.YELLOW);
+            for (int id = selectedIds.nextSetBit(0); id >= 0; id = selectedIds.nextSetBit(id + 1)) {
+                Rectangle bounds = toScreen(model.get(id));
+                bounds.grow(2, 2);
+                if (clip == null || clip.intersects(bounds)) {
+                    g.drawRect(bounds.x, bounds.y, bounds.width, bounds.height);
+                }
+            }
             
-            // 绘制选中的元素高亮
-            if (selectedElement != null) {
-                g.setColor(Color.YELLOW);
-                g.drawRect(selectedElement.getX() - 2, selectedElement.getY() - 2, 
-                    selectedElement.getWidth() + 4, selectedElement.getHeight() + 4);
+            // 单选时绘制调整尺寸手柄（右下角）
+            if (currentMode == EditMode.SELECT && selectedIds.cardinality() == 1) {
+                Rectangle bounds = toScreen(model.get(selectedIds.nextSetBit(0)));
+                g.fillRect(bounds.x + bounds.width - RESIZE_HANDLE_SIZE / 2,
+                    bounds.y + bounds.height - RESIZE_HANDLE_SIZE / 2,
+                    RESIZE_HANDLE_SIZE, RESIZE_HANDLE_SIZE);
+            }
+            
+            // 绘制框选区域
+            if (selectionBox != null) {
+                Rectangle box = viewport.toScreen(selectionBox);
+                Graphics2D g2d = (Graphics2D) g.create();
+                g2d.setColor(new Color(255, 255, 0, 40));
+                g2d.fill(box);
+                g2d.setColor(Color.YELLOW);
+                g2d.setStroke(new BasicStroke(1.0f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER,
+                    10.0f, new float[]{4.0f, 4.0f}, 0.0f)); // 虚线
+                g2d.draw(box);
+                g2d.dispose();
+            }
+            
+            // 绘制正在创建的元素轮廓
+            if (createEnd != null) {
+                Rectangle outline = viewport.toScreen(createRect(dragStart, createEnd));
+                g.setColor(Color.WHITE);
+                g.drawRect(outline.x, outline.y, outline.width - 1, outline.height - 1);
+            }
+            
+            // 绘制对齐参考线
+            g.setColor(GUIDE_COLOR);
+            if (guideX != null) {
+                int x = viewport.toScreenX(guideX.guide);
+                g.drawLine(x, 0, x, getHeight());
+            }
+            if (guideY != null) {
+                int y = viewport.toScreenY(guideY.guide);
+                g.drawLine(0, y, getWidth(), y);
             }
             
             // 绘制当前模式提示
@@ -634,18 +1195,62 @@ public class MapEditor extends JFrame {
         }
         
         /**
-         * 绘制网格
+         * 绘制地图实体的起点轮廓，移动的实体再画出到终点的连线
          */
-        private void drawGrid(Graphics g) {
-            g.setColor(new Color(200, 200, 200, 100));
-            int gridSize = 20;
-            
-            for (int x = 0; x < CANVAS_WIDTH; x += gridSize) {
-                g.drawLine(x, 0, x, CANVAS_HEIGHT);
+        private void drawEntities(Graphics g) {
+            g.setColor(ENTITY_COLOR);
+            for (MapEntity entity : currentMap.entities) {
+                Rectangle bounds = viewport.toScreen(new Rectangle(entity.getX(), entity.getY(), entity.getWidth(), entity.getHeight()));
+                g.drawRect(bounds.x, bounds.y, bounds.width, bounds.height);
+                if (entity.getKind() != MapEntity.FALLING_BLOCK) {
+                    g.drawLine(bounds.x, bounds.y,
+                        viewport.toScreenX(entity.getToX()), viewport.toScreenY(entity.getToY()));
+                } else {
+                    g.drawLine(bounds.x, bounds.y, bounds.x + bounds.width, bounds.y + bounds.height);
+                }
+            }
+        }
+        
+        private void drawRooms(Graphics g) {
+            g.setColor(ROOM_COLOR);
+            for (MapRoom room : currentMap.rooms) {
+                Rectangle bounds = viewport.toScreen(new Rectangle(room.getX(), room.getY(), room.getWidth(), room.getHeight()));
+                g.drawRect(bounds.x, bounds.y, bounds.width, bounds.height);
+                if (room.getName() != null) {
+                    g.drawString(room.getName(), bounds.x + 4, bounds.y + 14);
+                }
+            }
+        }
+        
+        /**
+         * 绘制可达性分析结果（只绘制与裁剪区域相交的格子）
+         */
+        private void drawReachability(Graphics g, Rectangle clip) {
+            int cell = ReachabilitySolver.CELL_SIZE;
+            Rectangle world = viewport.toWorld(clip);
+            int fromX = Math.max(0, world.x / cell);
+            int fromY = Math.max(0, world.y / cell);
+            int toX = Math.min(reachability.getGridWidth() - 1, (world.x + world.width) / cell);
+            int toY = Math.min(reachability.getGridHeight() - 1, (world.y + world.height) / cell);
+            g.setColor(REACHABLE_COLOR);
+            for (int cy = fromY; cy <= toY; cy++) {
+                for (int cx = fromX; cx <= toX; cx++) {
+                    if (reachability.isCellReached(cx, cy)) {
+                        Rectangle bounds = viewport.toScreen(new Rectangle(cx * cell, cy * cell, cell, cell));
+                        g.fillRect(bounds.x, bounds.y, bounds.width, bounds.height);
+                    }
+                }
             }
             
-            for (int y = 0; y < CANVAS_HEIGHT; y += gridSize) {
-                g.drawLine(0, y, CANVAS_WIDTH, y);
+            g.setColor(PROBLEM_COLOR);
+            Checkpoint[] checkpoints = reachability.getCheckpoints();
+            for (int i = 0; i < checkpoints.length; i++) {
+                if (!reachability.isCheckpointReached(i)) {
+                    Rectangle bounds = toScreen(checkpoints[i]);
+                    bounds.grow(3, 3);
+                    g.drawRect(bounds.x, bounds.y, bounds.width, bounds.height);
+                    g.drawRect(bounds.x + 1, bounds.y + 1, bounds.width - 2, bounds.height - 2);
+                }
             }
         }
         
@@ -674,7 +1279,7 @@ public class MapEditor extends JFrame {
                     hint = "点击创建能量豆";
                     break;
                 case SELECT:
-                    hint = "点击选择元素";
+                    hint = "点击选择元素，拖拽移动，拖拽右下角调整尺寸，双击编辑重生点，在空白处拖拽框选";
                     break;
                 case DELETE:
                     hint = "点击删除元素";
@@ -682,33 +1287,74 @@ public class MapEditor extends JFrame {
             }
             
             g.drawString(hint, 10, 30);
+            
+            g.setFont(new Font("Arial", Font.PLAIN, 12));
+            g.drawString(String.format("缩放 %.0f%%（滚轮缩放，中键拖拽平移，Ctrl+0 恢复）", viewport.getZoom() * 100), 10, 50);
+        }
+        
+        /**
+         * 处理滚轮缩放
+         */
+        private void handleMouseWheel(MouseWheelEvent e) {
+            double factor = Math.pow(1.1, -e.getPreciseWheelRotation());
+            if (viewport.zoomAt(e.getX(), e.getY(), factor)) {
+                cache.invalidateAll();
+                updateStatus();
+            }
         }
         
         /**
          * 处理鼠标按下
          */
         private void handleMousePressed(MouseEvent e) {
-            Point mousePos = e.getPoint();
+            if (SwingUtilities.isMiddleMouseButton(e)) {
+                // 中键：开始平移
+                panLast = e.getPoint();
+                return;
+            }
+            Point mousePos = toWorld(e.getPoint());
             
             if (currentMode == EditMode.SELECT) {
-                // 选择模式：查找点击的元素
-                selectedElement = findElementAt(mousePos);
+                // 选择模式：点中调整手柄则调整尺寸，点中元素则开始拖动，点中空白处则开始框选
+                int id = model.findAt(mousePos.x, mousePos.y);
+                int handleId = findResizeHandleAt(e.getPoint());
+                if (handleId >= 0) {
+                    MapElement element = model.get(handleId);
+                    resizingId = handleId;
+                    resizeStartBounds = new Rectangle(element.getX(), element.getY(), element.getWidth(), element.getHeight());
+                    BitSet excluded = new BitSet();
+                    excluded.set(handleId);
+                    prepareSnapping(excluded);
+                } else if (id >= 0 && e.getClickCount() == 2 && model.get(id) instanceof Checkpoint) {
+                    // 双击重生点：编辑重生点属性
+                    editCheckpoint(id);
+                    return;
+                } else if (id >= 0) {
+                    if (!selectedIds.get(id)) {
+                        selectedIds.clear();
+                        selectedIds.set(id);
+                    }
+                    isMovingSelection = true;
+                    movingIds = selectedIds.stream().toArray();
+                    moveStartBounds = getBounds(movingIds);
+                    moveOffset = new Point();
+                    prepareSnapping((BitSet) selectedIds.clone());
+                } else {
+                    selectedIds.clear();
+                    selectionBox = new Rectangle(mousePos.x, mousePos.y, 0, 0);
+                }
+                isDragging = true;
+                dragStart = mousePos;
+                lastMousePos = mousePos;
                 repaint();
             } else if (currentMode == EditMode.DELETE) {
                 // 删除模式：删除点击的元素
-                MapElement element = findElementAt(mousePos);
-                if (element != null) {
-                    if (element instanceof Platform) {
-                        currentMap.platforms.remove(element);
-                    } else if (element instanceof SolidBlock) {
-                        currentMap.solidBlocks.remove(element);
-                    } else if (element instanceof Spike) {
-                        currentMap.spikes.remove(element);
-                    } else if (element instanceof Checkpoint) {
-                        currentMap.checkpoints.remove(element);
-                    } else if (element instanceof EnergyBean) {
-                        currentMap.energyBeans.remove(element);
-                    }
+                int id = model.findAt(mousePos.x, mousePos.y);
+                if (id >= 0) {
+                    history.record(new EditHistory.DeleteCommand(model, id));
+                    history.endMerge();
+                    model.remove(id);
+                    selectedIds.clear(id);
                     updateStatus();
                     repaint();
                 }
@@ -718,9 +1364,10 @@ public class MapEditor extends JFrame {
                 updateStatus();
                 repaint();
             } else {
-                // 创建模式：开始拖拽
+                // 创建模式：开始拖拽，起点吸附到附近的边缘
                 isDragging = true;
-                dragStart = mousePos;
+                prepareSnapping(null);
+                dragStart = snapPoint(mousePos, e);
                 lastMousePos = mousePos;
             }
         }
@@ -729,11 +1376,44 @@ public class MapEditor extends JFrame {
          * 处理鼠标释放
          */
         private void handleMouseReleased(MouseEvent e) {
+            if (SwingUtilities.isMiddleMouseButton(e)) {
+                panLast = null;
+                return;
+            }
             if (isDragging && dragStart != null) {
-                Point mousePos = e.getPoint();
+                Point mousePos = toWorld(e.getPoint());
+                if (currentMode != EditMode.SELECT) {
+                    mousePos = snapPoint(mousePos, e);
+                }
                 
-                // 创建新元素
-                if (currentMode == EditMode.PLATFORM) {
+                if (currentMode == EditMode.SELECT) {
+                    // 框选：选中与选择框相交的所有元素
+                    if (selectionBox != null) {
+                        model.findInRect(selectionBox.x, selectionBox.y, selectionBox.width, selectionBox.height, id -> {
+                            selectedIds.set(id);
+                            return true;
+                        });
+                        selectionBox = null;
+                    }
+                    if (resizingId >= 0) {
+                        // 调整尺寸结束：记录为一条历史
+                        MapElement element = model.get(resizingId);
+                        if (element.getX() != resizeStartBounds.x || element.getY() != resizeStartBounds.y
+                                || element.getWidth() != resizeStartBounds.width || element.getHeight() != resizeStartBounds.height) {
+                            history.record(new EditHistory.ResizeCommand(resizingId,
+                                resizeStartBounds.x, resizeStartBounds.y, resizeStartBounds.width, resizeStartBounds.height,
+                                element.getX(), element.getY(), element.getWidth(), element.getHeight()));
+                        }
+                        resizingId = -1;
+                        resizeStartBounds = null;
+                    }
+                    isMovingSelection = false;
+                    movingIds = null;
+                    moveStartBounds = null;
+                    moveOffset = null;
+                    history.endMerge();
+                } else if (currentMode == EditMode.PLATFORM) {
+                    // 创建新元素
                     createPlatform(dragStart, mousePos);
                 } else if (currentMode == EditMode.SOLID_BLOCK) {
                     createSolidBlock(dragStart, mousePos);
@@ -745,6 +1425,9 @@ public class MapEditor extends JFrame {
                 
                 isDragging = false;
                 dragStart = null;
+                createEnd = null;
+                snapExcluded = null;
+                setGuides(null, null);
                 updateStatus();
                 repaint();
             }
@@ -754,67 +1437,221 @@ public class MapEditor extends JFrame {
          * 处理鼠标拖拽
          */
         private void handleMouseDragged(MouseEvent e) {
-            if (isDragging && selectedElement != null) {
-                // 拖拽选中的元素
-                Point mousePos = e.getPoint();
-                int deltaX = mousePos.x - lastMousePos.x;
-                int deltaY = mousePos.y - lastMousePos.y;
+            if (panLast != null) {
+                // 平移画面，缓存滚动复用
+                int dx = e.getX() - panLast.x;
+                int dy = e.getY() - panLast.y;
+                panLast = e.getPoint();
+                viewport.pan(dx, dy);
+                cache.scroll(dx, dy);
+                return;
+            }
+            if (!isDragging) {
+                return;
+            }
+            Point mousePos = toWorld(e.getPoint());
+            
+            if (resizingId >= 0) {
+                // 拖拽右下角调整尺寸（最小5像素），右下角吸附到附近的边缘
+                mousePos = snapPoint(mousePos, e);
+                int width = Math.max(5, mousePos.x - resizeStartBounds.x);
+                int height = Math.max(5, mousePos.y - resizeStartBounds.y);
+                // 模型变化事件会重绘新旧范围
+                model.setBounds(resizingId, resizeStartBounds.x, resizeStartBounds.y, width, height);
+            } else if (isMovingSelection) {
+                // 拖拽选中的元素，外接矩形的边缘和中心吸附到附近的边缘
+                Point offset = snapMove(mousePos.x - dragStart.x, mousePos.y - dragStart.y, e);
+                int deltaX = offset.x - moveOffset.x;
+                int deltaY = offset.y - moveOffset.y;
+                moveOffset = offset;
+                if (deltaX == 0 && deltaY == 0) {
+                    return;
+                }
                 
-                selectedElement.setPosition(
-                    selectedElement.getX() + deltaX,
-                    selectedElement.getY() + deltaY
-                );
+                model.beginBatch();
+                for (int id : movingIds) {
+                    MapElement selectedElement = model.get(id);
+                    model.move(id, selectedElement.getX() + deltaX, selectedElement.getY() + deltaY);
+                }
+                model.endBatch();
+                // 同一次拖拽的移动合并为一条历史记录
+                history.record(new EditHistory.MoveCommand(movingIds, deltaX, deltaY));
                 
                 lastMousePos = mousePos;
-                repaint();
+            } else if (selectionBox != null) {
+                // 更新选择框，只重绘新旧选择框覆盖的区域
+                Rectangle dirty = viewport.toScreen(selectionBox);
+                selectionBox.setFrameFromDiagonal(dragStart, mousePos);
+                dirty.add(viewport.toScreen(selectionBox));
+                dirty.grow(2, 2);
+                repaint(dirty);
+            } else if (currentMode != EditMode.SELECT) {
+                // 创建元素：更新轮廓，只重绘新旧轮廓覆盖的区域
+                Point end = snapPoint(mousePos, e);
+                Rectangle dirty = viewport.toScreen(createRect(dragStart, createEnd != null ? createEnd : dragStart));
+                createEnd = end;
+                dirty.add(viewport.toScreen(createRect(dragStart, end)));
+                dirty.grow(2, 2);
+                repaint(dirty);
             }
         }
         
         /**
-         * 查找指定位置的地图元素
+         * 两个角点确定的矩形
+         */
+        private Rectangle createRect(Point start, Point end) {
+            Rectangle rect = new Rectangle(start);
+            rect.add(end);
+            return rect;
+        }
+        
+        /**
+         * 一组元素的外接矩形
          */
-        private MapElement findElementAt(Point pos) {
-            // 检查平台
-            for (Platform p : currentMap.platforms) {
-                if (pos.x >= p.getX() && pos.x <= p.getX() + p.getWidth() &&
-                    pos.y >= p.getY() && pos.y <= p.getY() + p.getHeight()) {
-                    return p;
+        private Rectangle getBounds(int[] ids) {
+            Rectangle bounds = null;
+            for (int id : ids) {
+                MapElement element = model.get(id);
+                Rectangle rect = new Rectangle(element.getX(), element.getY(), element.getWidth(), element.getHeight());
+                if (bounds == null) {
+                    bounds = rect;
+                } else {
+                    bounds.add(rect);
                 }
             }
-            
-            // 检查实心物块
-            for (SolidBlock b : currentMap.solidBlocks) {
-                if (pos.x >= b.getX() && pos.x <= b.getX() + b.getWidth() &&
-                    pos.y >= b.getY() && pos.y <= b.getY() + b.getHeight()) {
-                    return b;
-                }
+            return bounds;
+        }
+        
+        /**
+         * 拖拽开始时刷新边缘索引
+         * @param excluded 本次拖拽中不参与吸附的元素编号，可以为null
+         */
+        private void prepareSnapping(BitSet excluded) {
+            if (edgeIndex == null) {
+                edgeIndex = new EdgeIndex(model);
             }
-            
-            // 检查尖刺
-            for (Spike s : currentMap.spikes) {
-                if (pos.x >= s.getX() && pos.x <= s.getX() + s.getWidth() &&
-                    pos.y >= s.getY() && pos.y <= s.getY() + s.getHeight()) {
-                    return s;
-                }
+            edgeIndex.refresh();
+            snapExcluded = excluded;
+        }
+        
+        /**
+         * 吸附距离换算为世界坐标
+         */
+        private int snapThreshold() {
+            return Math.max(1, (int) Math.round(SNAP_DISTANCE / viewport.getZoom()));
+        }
+        
+        /**
+         * 把一个点吸附到附近的竖直和水平边缘（按住Alt时不吸附）
+         * @param pos 世界坐标
+         * @return 吸附后的世界坐标
+         */
+        private Point snapPoint(Point pos, MouseEvent e) {
+            if (e.isAltDown()) {
+                setGuides(null, null);
+                return pos;
             }
-            
-            // 检查重生点
-            for (Checkpoint c : currentMap.checkpoints) {
-                if (pos.x >= c.getX() && pos.x <= c.getX() + c.getWidth() &&
-                    pos.y >= c.getY() && pos.y <= c.getY() + c.getHeight()) {
-                    return c;
-                }
+            EdgeIndex index = edgeIndex;
+            int threshold = snapThreshold();
+            EdgeIndex.Snap snapX = index.snapX(new int[]{pos.x}, threshold, snapExcluded);
+            EdgeIndex.Snap snapY = index.snapY(new int[]{pos.y}, threshold, snapExcluded);
+            setGuides(snapX, snapY);
+            return new Point(pos.x + (snapX != null ? snapX.offset : 0), pos.y + (snapY != null ? snapY.offset : 0));
+        }
+        
+        /**
+         * 吸附移动：让选中元素外接矩形的左边、中心、右边（上边、中心、下边）对齐到附近的边缘
+         * @param deltaX 鼠标从按下位置移动的距离
+         * @param deltaY 鼠标从按下位置移动的距离
+         * @return 吸附后的移动距离
+         */
+        private Point snapMove(int deltaX, int deltaY, MouseEvent e) {
+            if (e.isAltDown()) {
+                setGuides(null, null);
+                return new Point(deltaX, deltaY);
             }
-            
-            // 检查能量豆
-            for (EnergyBean e : currentMap.energyBeans) {
-                if (pos.x >= e.getX() && pos.x <= e.getX() + e.getWidth() &&
-                    pos.y >= e.getY() && pos.y <= e.getY() + e.getHeight()) {
-                    return e;
-                }
+            Rectangle bounds = moveStartBounds;
+            int x = bounds.x + deltaX;
+            int y = bounds.y + deltaY;
+            EdgeIndex index = edgeIndex;
+            int threshold = snapThreshold();
+            EdgeIndex.Snap snapX = index.snapX(new int[]{x, x + bounds.width / 2, x + bounds.width}, threshold, snapExcluded);
+            EdgeIndex.Snap snapY = index.snapY(new int[]{y, y + bounds.height / 2, y + bounds.height}, threshold, snapExcluded);
+            setGuides(snapX, snapY);
+            return new Point(deltaX + (snapX != null ? snapX.offset : 0), deltaY + (snapY != null ? snapY.offset : 0));
+        }
+        
+        /**
+         * 更新对齐参考线，只重绘新旧参考线所在的细条
+         */
+        private void setGuides(EdgeIndex.Snap snapX, EdgeIndex.Snap snapY) {
+            int oldX = guideX != null ? guideX.guide : Integer.MIN_VALUE;
+            int oldY = guideY != null ? guideY.guide : Integer.MIN_VALUE;
+            int newX = snapX != null ? snapX.guide : Integer.MIN_VALUE;
+            int newY = snapY != null ? snapY.guide : Integer.MIN_VALUE;
+            guideX = snapX;
+            guideY = snapY;
+            if (oldX != newX) {
+                repaintGuideX(oldX);
+                repaintGuideX(newX);
+            }
+            if (oldY != newY) {
+                repaintGuideY(oldY);
+                repaintGuideY(newY);
             }
+        }
+        
+        private void repaintGuideX(int worldX) {
+            if (worldX != Integer.MIN_VALUE) {
+                repaint(viewport.toScreenX(worldX) - 1, 0, 3, getHeight());
+            }
+        }
+        
+        private void repaintGuideY(int worldY) {
+            if (worldY != Integer.MIN_VALUE) {
+                repaint(0, viewport.toScreenY(worldY) - 1, getWidth(), 3);
+            }
+        }
+        
+        /**
+         * 查找位于指定位置的调整尺寸手柄（仅单选时有效）
+         * @param pos 屏幕坐标
+         * @return 元素编号，没有时返回-1
+         */
+        private int findResizeHandleAt(Point pos) {
+            if (selectedIds.cardinality() != 1) {
+                return -1;
+            }
+            int id = selectedIds.nextSetBit(0);
+            Rectangle bounds = toScreen(model.get(id));
+            int handleX = bounds.x + bounds.width;
+            int handleY = bounds.y + bounds.height;
+            if (Math.abs(pos.x - handleX) <= RESIZE_HANDLE_SIZE && Math.abs(pos.y - handleY) <= RESIZE_HANDLE_SIZE) {
+                return id;
+            }
+            return -1;
+        }
+        
+        /**
+         * 编辑重生点属性
+         */
+        private void editCheckpoint(int id) {
+            Checkpoint checkpoint = (Checkpoint) model.get(id);
+            CheckpointDialog dialog = new CheckpointDialog(MapEditor.this,
+                checkpoint.getRespawnOffsetX(), checkpoint.getRespawnOffsetY(), checkpoint.isDefaultActivated());
+            dialog.setVisible(true);
             
-            return null;
+            if (dialog.isConfirmed()) {
+                EditHistory.CheckpointCommand command = new EditHistory.CheckpointCommand(id,
+                    checkpoint.getRespawnOffsetX(), checkpoint.getRespawnOffsetY(), checkpoint.isDefaultActivated(),
+                    dialog.getRespawnOffsetX(), dialog.getRespawnOffsetY(), dialog.isDefaultActivated());
+                model.setCheckpointProperties(id, dialog.getRespawnOffsetX(), dialog.getRespawnOffsetY(),
+                    dialog.isDefaultActivated());
+                history.record(command);
+                history.endMerge();
+                updateStatus();
+                repaint();
+            }
         }
         
         /**
@@ -827,7 +1664,7 @@ public class MapEditor extends JFrame {
             int height = Math.abs(end.y - start.y);
             
             if (width > 10 && height > 10) { // 最小尺寸限制
-                currentMap.platforms.add(new Platform(x, y, width, height));
+                addElement(new Platform(x, y, width, height));
             }
         }
         
@@ -841,7 +1678,7 @@ public class MapEditor extends JFrame {
             int height = Math.abs(end.y - start.y);
             
             if (width > 10 && height > 10) { // 最小尺寸限制
-                currentMap.solidBlocks.add(new SolidBlock(x, y, width, height));
+                addElement(new SolidBlock(x, y, width, height));
             }
         }
         
@@ -855,7 +1692,7 @@ public class MapEditor extends JFrame {
             int height = Math.abs(end.y - start.y);
             
             if (width > 5 && height > 5) { // 最小尺寸限制
-                currentMap.spikes.add(new Spike(x, y, width, height));
+                addElement(new Spike(x, y, width, height));
             }
         }
         
@@ -875,7 +1712,7 @@ public class MapEditor extends JFrame {
                 dialog.setVisible(true);
                 
                 if (dialog.isConfirmed()) {
-                    currentMap.checkpoints.add(new Checkpoint(x, y, width, height, 
+                    addElement(new Checkpoint(x, y, width, height, 
                         dialog.getRespawnOffsetX(), dialog.getRespawnOffsetY(), 
                         dialog.isDefaultActivated()));
                 }
@@ -887,7 +1724,7 @@ public class MapEditor extends JFrame {
          */
         private void createEnergyBean(Point pos) {
             // 能量豆大小固定，在点击位置创建
-            currentMap.energyBeans.add(new EnergyBean(pos.x - 10, pos.y - 10)); // 中心对齐
+            addElement(new EnergyBean(pos.x - 10, pos.y - 10)); // 中心对齐
         }
     }
     
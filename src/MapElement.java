@@ -34,6 +34,12 @@ public abstract class MapElement {
      */
     public abstract void render(Graphics g);
     
+    /**
+     * 复制元素（位置、尺寸和属性相同的新对象）
+     * @return 新元素
+     */
+    public abstract MapElement copy();
+    
     /**
      * 检查与玩家的碰撞
      * 子类可以重写此方法实现特定的碰撞逻辑
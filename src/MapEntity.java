@@ -0,0 +1,120 @@
+// 简化项目结构，移除包声明
+
+import java.awt.Color;
+import java.awt.Graphics;
+
+/**
+ * 地图实体的定义 - 会移动或会变化的地图元素
+ * 移动平台和巡逻尖刺在起点(x, y)和终点(toX, toY)之间往返，单程period帧；
+ * 下落物块被踩上后经过delay帧开始下落，落出屏幕后过一段时间回到原位。
+ *
+ * 这里只保存地图文件中的定义，运行时的位置和计时器在WorldState中，
+ * 编译地图时按组件拆成基本类型数组，见EntityTable。
+ */
+public class MapEntity {
+    public static final int MOVING_PLATFORM = 0;
+    public static final int FALLING_BLOCK = 1;
+    public static final int PATROL_SPIKE = 2;
+    // 地图文件中的类型名，下标为类型
+    private static final String[] TYPE_NAMES = {"movingPlatform", "fallingBlock", "patrolSpike"};
+    public static final int DEFAULT_PERIOD = 120; // 默认单程2秒
+    public static final int DEFAULT_DELAY = 30; // 默认被踩后0.5秒开始下落
+    
+    private final int kind;
+    private final int x, y;
+    private final int width, height;
+    private final int toX, toY;
+    private final int period;
+    private final int delay;
+    
+    /**
+     * @param kind 类型（MOVING_PLATFORM、FALLING_BLOCK或PATROL_SPIKE）
+     * @param toX 终点x（下落物块忽略）
+     * @param toY 终点y（下落物块忽略）
+     * @param period 单程帧数，至少为1（下落物块忽略）
+     * @param delay 被踩后开始下落前的帧数（只用于下落物块）
+     */
+    public MapEntity(int kind, int x, int y, int width, int height, int toX, int toY, int period, int delay) {
+        if (kind < 0 || kind >= TYPE_NAMES.length) {
+            throw new IllegalArgumentException("未知的实体类型: " + kind);
+        }
+        this.kind = kind;
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        this.toX = toX;
+        this.toY = toY;
+        this.period = Math.max(1, period);
+        this.delay = Math.max(0, delay);
+    }
+    
+    /**
+     * 按地图文件中的类型名查找类型
+     * @return 类型，未知的名称返回-1
+     */
+    public static int kindOf(String typeName) {
+        for (int i = 0; i < TYPE_NAMES.length; i++) {
+            if (TYPE_NAMES[i].equals(typeName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    public static String typeName(int kind) {
+        return TYPE_NAMES[kind];
+    }
+    
+    /**
+     * 在运行时的位置绘制实体
+     * @param fallTimer 下落物块被踩后经过的帧数，未被踩时为负数
+     */
+    public void render(Graphics g, int drawX, int drawY, int fallTimer) {
+        switch (kind) {
+            case MOVING_PLATFORM:
+                g.setColor(new Color(70, 110, 160)); // 蓝灰色，与固定平台区分
+                g.fillRect(drawX, drawY, width, height);
+                g.setColor(new Color(40, 70, 110));
+                g.drawRect(drawX, drawY, width, height);
+                break;
+            case FALLING_BLOCK:
+                boolean shaking = fallTimer >= 0 && fallTimer < delay;
+                if (shaking) {
+                    drawX += (fallTimer & 2) == 0 ? 1 : -1; // 等待下落时左右抖动
+                }
+                g.setColor(shaking ? new Color(170, 120, 70) : new Color(150, 105, 60));
+                g.fillRect(drawX, drawY, width, height);
+                g.setColor(new Color(90, 60, 30));
+                g.drawRect(drawX, drawY, width, height);
+                g.drawLine(drawX, drawY, drawX + width, drawY + height);
+                break;
+            default:
+                int[] xPoints = {drawX + width / 2, drawX, drawX + width};
+                int[] yPoints = {drawY, drawY + height, drawY + height};
+                g.setColor(new Color(220, 20, 60));
+                g.fillPolygon(xPoints, yPoints, 3);
+                g.setColor(new Color(101, 0, 0));
+                g.drawPolygon(xPoints, yPoints, 3);
+                break;
+        }
+    }
+    
+    public int getKind() { return kind; }
+    public String getTypeName() { return TYPE_NAMES[kind]; }
+    public int getX() { return x; }
+    public int getY() { return y; }
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public int getToX() { return toX; }
+    public int getToY() { return toY; }
+    public int getPeriod() { return period; }
+    public int getDelay() { return delay; }
+    
+    /**
+     * 获取实体信息字符串
+     */
+    public String getInfo() {
+        return String.format("%s: 位置(%d,%d) 尺寸(%dx%d) 终点(%d,%d)", getTypeName(), x, y, width, height, toX, toY);
+    }
+}
@@ -0,0 +1,337 @@
+// 简化项目结构，移除包声明
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * 压力测试地图生成器
+ * 使用固定随机种子生成大规模地图（1千到1百万个元素），
+ * 用于测试玩家碰撞、游戏渲染和地图编辑器在大地图下的表现。
+ * 游戏只有一个屏幕（玩家的x坐标限制在屏幕宽度以内，地面以下不可到达），所有元素都生成在这个范围内，
+ * 元素越多排列越密；生成的地图不含MapValidator会标出的问题：实心物块互不重叠，尖刺不嵌入实心物块，重生点不在实心物块内。
+ */
+public class MapGenerator {
+    private static final int SCREEN_WIDTH = 1920; // 与Player的x坐标限制保持一致
+    private static final int GROUND_Y = 1030; // 地面Y坐标，与Player保持一致
+    private static final int MIN_ELEMENT_COUNT = 1_000;
+    private static final int MAX_ELEMENT_COUNT = 1_000_000;
+    private static final int DEFAULT_CLUSTER_COUNT = 8;
+    // 出生点周围的保留区域（屏幕左下角），实心物块和尖刺不会生成在其中
+    private static final int SPAWN_AREA_RIGHT = 240;
+    private static final int SPAWN_AREA_TOP = GROUND_Y - 200;
+    private static final int PLAYER_WIDTH = 30;
+    private static final int PLAYER_HEIGHT = 40;
+    // 实心物块的尺寸范围，元素多时按比例缩小，使实心物块大约覆盖屏幕的这个比例
+    private static final int MIN_SOLID_SIZE = 20;
+    private static final int MAX_SOLID_SIZE = 200;
+    private static final double SOLID_COVERAGE = 0.3;
+    private static final int SMALLEST_SOLID_SIZE = 2;
+    // 位置会造成问题时重新选择的次数，用完时实心物块、尖刺和重生点改为平台；
+    // 连续多个实心物块放不下时说明屏幕已经放满，之后的实心物块直接改为平台
+    private static final int MAX_ATTEMPTS = 32;
+    private static final int MAX_SOLID_FAILURES = 64;
+    
+    /**
+     * 生成参数
+     */
+    public static class Options {
+        public long seed = 42;
+        public int elementCount = 10_000;
+        
+        // 各类元素的比例权重
+        public int platformWeight = 40;
+        public int solidBlockWeight = 25;
+        public int spikeWeight = 20;
+        public int checkpointWeight = 2;
+        public int energyBeanWeight = 13;
+        
+        // 聚集程度（0-1）：0为均匀分布，1为全部围绕聚集中心分布
+        public double clustering = 0.5;
+        
+        // 聚集中心数量（0表示默认数量）
+        public int clusterCount = 0;
+        
+        // 聚集半径（像素）
+        public int clusterSpread = 200;
+    }
+    
+    /**
+     * 按参数生成地图
+     * 所有元素都通过MapBuilder创建，保证与JSON加载的地图结构一致
+     */
+    public static MapDesign.MapData generate(Options options) {
+        if (options.elementCount < MIN_ELEMENT_COUNT || options.elementCount > MAX_ELEMENT_COUNT) {
+            throw new IllegalArgumentException("元素数量必须在" + MIN_ELEMENT_COUNT + "到" + MAX_ELEMENT_COUNT + "之间: " + options.elementCount);
+        }
+        if (!(options.clustering >= 0 && options.clustering <= 1)) {
+            throw new IllegalArgumentException("聚集程度必须在0到1之间: " + options.clustering);
+        }
+        if (options.clusterCount < 0) {
+            throw new IllegalArgumentException("聚集中心数量不能为负数: " + options.clusterCount);
+        }
+        if (options.clusterSpread < 0) {
+            throw new IllegalArgumentException("聚集半径不能为负数: " + options.clusterSpread);
+        }
+        if (options.platformWeight < 0 || options.solidBlockWeight < 0 || options.spikeWeight < 0
+                || options.checkpointWeight < 0 || options.energyBeanWeight < 0) {
+            throw new IllegalArgumentException("元素比例权重不能为负数");
+        }
+        long totalWeight = (long) options.platformWeight + options.solidBlockWeight + options.spikeWeight
+                + options.checkpointWeight + options.energyBeanWeight;
+        if (totalWeight <= 0 || totalWeight > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("元素比例权重之和必须在1到" + Integer.MAX_VALUE + "之间: " + totalWeight);
+        }
+        
+        Random random = new Random(options.seed);
+        MapDesign.MapBuilder builder = new MapDesign.MapBuilder();
+        Placer placer = new Placer(random, options);
+        
+        // 实心物块的尺寸缩放：按预期数量使总面积约为屏幕的SOLID_COVERAGE
+        double expectedSolids = (double) (options.elementCount - 1) * options.solidBlockWeight / totalWeight;
+        double meanArea = Math.pow((MIN_SOLID_SIZE + MAX_SOLID_SIZE) / 2.0, 2);
+        double solidScale = expectedSolids == 0 ? 1
+            : Math.min(1, Math.sqrt(SOLID_COVERAGE * SCREEN_WIDTH * GROUND_Y / (expectedSolids * meanArea)));
+        
+        int solidFailures = 0; // 连续放不下的实心物块数
+        
+        // 出生点：默认激活的重生点，位于屏幕左侧地面上的保留区域中
+        builder.addCheckpoint(60, GROUND_Y - 80, 80, 80, 25, 30, true);
+        int remaining = options.elementCount - 1;
+        
+        for (int i = 0; i < remaining; i++) {
+            int roll = random.nextInt((int) totalWeight);
+            
+            if (roll < options.platformWeight) {
+                addPlatform(builder, placer, random);
+            } else if ((roll -= options.platformWeight) < options.solidBlockWeight) {
+                int width = Math.max(SMALLEST_SOLID_SIZE,
+                    (int) ((MIN_SOLID_SIZE + random.nextInt(MAX_SOLID_SIZE - MIN_SOLID_SIZE)) * solidScale));
+                int height = Math.max(SMALLEST_SOLID_SIZE,
+                    (int) ((MIN_SOLID_SIZE + random.nextInt(MAX_SOLID_SIZE - MIN_SOLID_SIZE)) * solidScale));
+                if (solidFailures < MAX_SOLID_FAILURES && placer.place(width, height, Placer.SOLID)) {
+                    builder.addSolidBlock(placer.x, placer.y, width, height);
+                    solidFailures = 0;
+                } else {
+                    // 屏幕中已经放不下，改为平台，保持元素总数
+                    solidFailures++;
+                    addPlatform(builder, placer, random);
+                }
+            } else if ((roll -= options.solidBlockWeight) < options.spikeWeight) {
+                int width = 10 + random.nextInt(30);
+                int height = 10 + random.nextInt(20);
+                if (placer.place(width, height, Placer.SPIKE)) {
+                    builder.addSpike(placer.x, placer.y, width, height);
+                } else {
+                    addPlatform(builder, placer, random);
+                }
+            } else if ((roll -= options.spikeWeight) < options.checkpointWeight) {
+                // 重生点偏移到激活框中心，与编辑器默认值一致
+                int size = 60 + random.nextInt(60);
+                if (placer.place(size, size, Placer.CHECKPOINT)) {
+                    builder.addCheckpoint(placer.x, placer.y, size, size, size / 2, size / 2, false);
+                } else {
+                    addPlatform(builder, placer, random);
+                }
+            } else {
+                placer.place(20, 20, Placer.FREE);
+                builder.addEnergyBean(placer.x, placer.y);
+            }
+        }
+        
+        return builder.build();
+    }
+    
+    private static void addPlatform(MapDesign.MapBuilder builder, Placer placer, Random random) {
+        int width = 30 + random.nextInt(90);
+        int height = 10 + random.nextInt(10);
+        placer.place(width, height, Placer.FREE);
+        builder.addPlatform(placer.x, placer.y, width, height);
+    }
+    
+    /**
+     * 在屏幕范围内为元素选择位置：按聚集程度围绕聚集中心或均匀随机，
+     * 会造成MapValidator标出的问题的位置重新选择（边界相接不算重叠，与MapValidator一致）
+     */
+    private static class Placer {
+        static final int FREE = 0; // 平台和能量豆，可以与任何元素重叠
+        static final int SOLID = 1; // 不与实心物块、尖刺、出生点保留区域和重生点处的玩家重叠
+        static final int SPIKE = 2; // 不与实心物块和出生点保留区域重叠
+        static final int CHECKPOINT = 3; // 重生点处的玩家不与实心物块重叠
+        
+        private final Random random;
+        private final Options options;
+        private final int[] clusterX, clusterY;
+        private final QuadTree solids = new QuadTree(0, 0, 2048);
+        private final QuadTree spikes = new QuadTree(0, 0, 2048);
+        private final QuadTree respawns = new QuadTree(0, 0, 2048);
+        private int solidCount = 0, spikeCount = 0, respawnCount = 0;
+        int x, y; // 最近一次选择的位置
+        
+        Placer(Random random, Options options) {
+            this.random = random;
+            this.options = options;
+            int clusterCount = options.clusterCount > 0 ? options.clusterCount : DEFAULT_CLUSTER_COUNT;
+            clusterX = new int[clusterCount];
+            clusterY = new int[clusterCount];
+            for (int i = 0; i < clusterCount; i++) {
+                clusterX[i] = random.nextInt(SCREEN_WIDTH);
+                clusterY[i] = random.nextInt(GROUND_Y);
+            }
+            addRespawn(60 + 25, GROUND_Y - 80 + 30); // 出生点处的玩家，见generate
+        }
+        
+        /**
+         * 选择位置，结果在x、y中
+         * @return 是否找到了不造成问题的位置（FREE总是成功）
+         */
+        boolean place(int width, int height, int kind) {
+            for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+                choose(width, height);
+                switch (kind) {
+                    case SOLID:
+                        if (inSpawnArea(width, height) || overlaps(solids, x, y, width, height)
+                                || overlaps(spikes, x, y, width, height) || overlaps(respawns, x, y, width, height)) {
+                            continue;
+                        }
+                        solids.insert(solidCount++, x, y, width, height);
+                        return true;
+                    case SPIKE:
+                        if (inSpawnArea(width, height) || overlaps(solids, x, y, width, height)) {
+                            continue;
+                        }
+                        spikes.insert(spikeCount++, x, y, width, height);
+                        return true;
+                    case CHECKPOINT:
+                        if (overlaps(solids, x + width / 2, y + height / 2, PLAYER_WIDTH, PLAYER_HEIGHT)) {
+                            continue;
+                        }
+                        addRespawn(x + width / 2, y + height / 2);
+                        return true;
+                    default:
+                        return true;
+                }
+            }
+            return false;
+        }
+        
+        private void choose(int width, int height) {
+            int centerX, centerY;
+            if (random.nextDouble() < options.clustering) {
+                int cluster = random.nextInt(clusterX.length);
+                centerX = clusterX[cluster] + (int) (random.nextGaussian() * options.clusterSpread);
+                centerY = clusterY[cluster] + (int) (random.nextGaussian() * options.clusterSpread);
+            } else {
+                centerX = random.nextInt(SCREEN_WIDTH);
+                centerY = random.nextInt(GROUND_Y);
+            }
+            x = clamp(centerX - width / 2, 0, SCREEN_WIDTH - width);
+            y = clamp(centerY - height / 2, 0, GROUND_Y - height);
+        }
+        
+        private boolean inSpawnArea(int width, int height) {
+            return x < SPAWN_AREA_RIGHT && y + height > SPAWN_AREA_TOP;
+        }
+        
+        private void addRespawn(int respawnX, int respawnY) {
+            respawns.insert(respawnCount++, respawnX, respawnY, PLAYER_WIDTH, PLAYER_HEIGHT);
+        }
+        
+        /**
+         * 矩形内部是否与索引中的矩形重叠（只是边界相接不算）
+         */
+        private static boolean overlaps(QuadTree tree, int x, int y, int width, int height) {
+            return !tree.query(x, y, width, height, other -> x >= tree.getX(other) + tree.getWidth(other)
+                || tree.getX(other) >= x + width || y >= tree.getY(other) + tree.getHeight(other)
+                || tree.getY(other) >= y + height);
+        }
+    }
+    
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+    
+    /**
+     * 命令行入口
+     * 用法: MapGenerator [--count N] [--seed S] [--clustering C]
+     *       [--clusters K] [--spread PX] [--mix P,B,S,C,E] [--out 文件]
+     */
+    public static void main(String[] args) {
+        Options options = new Options();
+        String output = null;
+        long start;
+        MapDesign.MapData mapData;
+        
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException(arg.startsWith("--") ? "缺少参数值: " + arg : "未知参数: " + arg);
+                }
+                String value = args[++i];
+                switch (arg) {
+                    case "--count":
+                        options.elementCount = Integer.parseInt(value);
+                        break;
+                    case "--seed":
+                        options.seed = Long.parseLong(value);
+                        break;
+                    case "--clustering":
+                        options.clustering = Double.parseDouble(value);
+                        break;
+                    case "--clusters":
+                        options.clusterCount = Integer.parseInt(value);
+                        break;
+                    case "--spread":
+                        options.clusterSpread = Integer.parseInt(value);
+                        break;
+                    case "--mix":
+                        String[] weights = value.split(",");
+                        if (weights.length != 5) {
+                            throw new IllegalArgumentException("--mix 需要5个权重: 平台,实心物块,尖刺,重生点,能量豆");
+                        }
+                        options.platformWeight = Integer.parseInt(weights[0].trim());
+                        options.solidBlockWeight = Integer.parseInt(weights[1].trim());
+                        options.spikeWeight = Integer.parseInt(weights[2].trim());
+                        options.checkpointWeight = Integer.parseInt(weights[3].trim());
+                        options.energyBeanWeight = Integer.parseInt(weights[4].trim());
+                        break;
+                    case "--out":
+                        output = value;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("未知参数: " + arg);
+                }
+            }
+            
+            // 生成时检查参数范围，参数错误同样输出用法
+            start = System.nanoTime();
+            mapData = generate(options);
+        } catch (IllegalArgumentException e) {
+            System.err.println("参数错误: " + e.getMessage());
+            System.err.println("用法: MapGenerator [--count N] [--seed S] [--clustering C] "
+                    + "[--clusters K] [--spread PX] [--mix P,B,S,C,E] [--out 文件]");
+            System.exit(1);
+            return;
+        }
+        
+        if (output == null) {
+            output = "maps/stress-" + options.elementCount + ".json";
+        }
+        
+        long generated = System.nanoTime();
+        System.out.println(MapDesign.getMapStats(mapData));
+        System.out.println("生成耗时: " + (generated - start) / 1_000_000 + "ms");
+        
+        try {
+            String name = "stress-" + options.elementCount;
+            String description = String.format("压力测试地图 seed=%d clustering=%.2f",
+                options.seed, options.clustering);
+            JsonMapLoader.saveMapToJson(mapData, name, description, new File(output));
+            System.out.println("地图已保存到: " + output + " (" + (System.nanoTime() - generated) / 1_000_000 + "ms)");
+        } catch (IOException e) {
+            System.err.println("保存地图失败: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
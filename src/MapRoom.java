@@ -0,0 +1,53 @@
+// 简化项目结构，移除包声明
+
+import java.awt.Color;
+import java.awt.Graphics;
+
+/**
+ * 地图房间的定义 - 地图中的一块矩形区域
+ * 边界相接（或重叠）的两个房间互为相邻房间，玩家从一个房间走进另一个房间时切换当前房间。
+ * 运行时只模拟和绘制当前房间及其相邻房间中的元素，其余房间暂停，再次进入时按经过的帧数直接推算状态，见WorldState。
+ *
+ * 地图元素按中心点归入所在的房间，不在任何房间中的元素归入最近的房间；
+ * 没有划分房间的地图相当于只有一个覆盖整个地图的房间。
+ */
+public class MapRoom {
+    private final String name;
+    private final int x, y;
+    private final int width, height;
+    
+    /**
+     * @param name 房间名称，可以为null
+     */
+    public MapRoom(String name, int x, int y, int width, int height) {
+        this.name = name;
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+    
+    /**
+     * 绘制房间边界和名称
+     */
+    public void render(Graphics g) {
+        g.setColor(new Color(120, 120, 200));
+        g.drawRect(x, y, width, height);
+        if (name != null) {
+            g.drawString(name, x + 4, y + 14);
+        }
+    }
+    
+    public String getName() { return name; }
+    public int getX() { return x; }
+    public int getY() { return y; }
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    
+    /**
+     * 获取房间信息字符串
+     */
+    public String getInfo() {
+        return String.format("房间%s: 位置(%d,%d) 尺寸(%dx%d)", name != null ? name : "", x, y, width, height);
+    }
+}
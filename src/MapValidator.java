@@ -0,0 +1,434 @@
+// 简化项目结构，移除包声明
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * 地图后台校验
+ * 持续检查地图中的问题：实心物块互相重叠、尖刺嵌入实心物块、重生点处的玩家落在实心物块内、元素超出世界范围。
+ * 界面线程只记录变化的元素编号，并在事件处理结束后把这些元素的几何数据复制给校验线程；
+ * 校验线程维护地图的镜像和空间索引，只重新检查变化的元素及其周围受影响的元素，
+ * 结果合并为不可变的快照交回界面线程，校验跟不上编辑时多次结果只通知一次。
+ */
+public class MapValidator implements EditorModel.Listener {
+    public static final int PROBLEM_SOLID_OVERLAP = 1;
+    public static final int PROBLEM_SPIKE_IN_SOLID = 1 << 1;
+    public static final int PROBLEM_RESPAWN_IN_SOLID = 1 << 2;
+    public static final int PROBLEM_OUT_OF_BOUNDS = 1 << 3;
+    private static final String[] PROBLEM_NAMES = {"实心物块重叠", "尖刺嵌入实心物块", "重生点在实心物块内", "超出世界范围"};
+    
+    private static final int WORLD_BOTTOM = 1030; // 地面上沿，与Player保持一致
+    private static final int WORLD_RIGHT = 1920; // 世界右边界，玩家的x坐标限制在1920减去宽度以内，与Player保持一致
+    private static final int PLAYER_WIDTH = 30;
+    private static final int PLAYER_HEIGHT = 40;
+    
+    // 变化数据中每个元素占用的int个数：类型、x、y、宽、高、重生点x、重生点y
+    private static final int STRIDE = 7;
+    private static final int REMOVED = -1;
+    // 界面线程每次最多复制的元素个数，批量修改大量元素时分多轮复制，避免界面卡顿
+    private static final int FLUSH_CHUNK = 32768;
+    
+    /**
+     * 校验结果（不可变快照）
+     */
+    public static class Result {
+        private final BitSet problemIds;
+        private final int[] counts;
+        private final Rectangle changedRegion;
+        
+        Result(BitSet problemIds, int[] counts, Rectangle changedRegion) {
+            this.problemIds = problemIds;
+            this.counts = counts;
+            this.changedRegion = changedRegion;
+        }
+        
+        /**
+         * 有问题的元素个数
+         */
+        public int getProblemCount() {
+            return problemIds.cardinality();
+        }
+        
+        /**
+         * 元素是否有问题
+         */
+        public boolean hasProblem(int id) {
+            return problemIds.get(id);
+        }
+        
+        /**
+         * 问题状态发生变化的元素覆盖的范围（世界坐标），为null时表示需要整体刷新
+         */
+        public Rectangle getChangedRegion() {
+            return changedRegion;
+        }
+        
+        /**
+         * 按问题类型列出数量
+         */
+        public String describe() {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < PROBLEM_NAMES.length; i++) {
+                if (counts[i] > 0) {
+                    if (text.length() > 0) {
+                        text.append(", ");
+                    }
+                    text.append(PROBLEM_NAMES[i]).append(' ').append(counts[i]);
+                }
+            }
+            return text.length() > 0 ? text.toString() : "没有发现问题";
+        }
+    }
+    
+    /**
+     * 一批变化的元素（界面线程复制，校验线程读取）
+     */
+    private static class ChangeSet {
+        final int[] ids;
+        final int[] data;
+        // 复制时界面线程是否还有剩余的变化没有复制
+        final boolean partial;
+        
+        ChangeSet(int[] ids, int[] data, boolean partial) {
+            this.ids = ids;
+            this.data = data;
+            this.partial = partial;
+        }
+    }
+    
+    // ===== 界面线程 =====
+    private final EditorModel model;
+    private final Consumer<Result> callback;
+    private final BitSet pendingIds = new BitSet();
+    private boolean flushScheduled = false;
+    
+    // ===== 线程之间 =====
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "map-validator");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ConcurrentLinkedQueue<ChangeSet> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicReference<Result> published = new AtomicReference<>();
+    private volatile boolean disposed = false;
+    
+    // ===== 校验线程：地图镜像 =====
+    private final BitSet present = new BitSet();
+    private int[] kinds = new int[0];
+    private int[] boundsX = new int[0], boundsY = new int[0], boundsW = new int[0], boundsH = new int[0];
+    private int[] respawnX = new int[0], respawnY = new int[0];
+    // 实心物块；尖刺（按边界）和重生点（按重生时的玩家范围）
+    private final QuadTree solids = new QuadTree();
+    private final QuadTree hazards = new QuadTree();
+    private int[] problems = new int[0];
+    private final BitSet problemIds = new BitSet();
+    private final int[] counts = new int[PROBLEM_NAMES.length];
+    private Rectangle changedRegion = null;
+    private boolean publishedOnce = false;
+    // 已应用但还没有重新检查的元素编号
+    private final BitSet affected = new BitSet();
+    
+    /**
+     * 开始校验模型，首次结果包含整张地图
+     * @param callback 在界面线程上接收校验结果
+     */
+    public MapValidator(EditorModel model, Consumer<Result> callback) {
+        this.model = model;
+        this.callback = callback;
+        model.addListener(this);
+        pendingIds.set(0, model.getIdLimit());
+        flush();
+    }
+    
+    /**
+     * 停止校验（切换地图时调用）
+     */
+    public void dispose() {
+        disposed = true;
+        model.removeListener(this);
+        worker.shutdown();
+    }
+    
+    @Override
+    public void elementAdded(int id) {
+        markChanged(id);
+    }
+    
+    @Override
+    public void elementRemoved(int id, MapElement element) {
+        markChanged(id);
+    }
+    
+    @Override
+    public void elementChanged(int id, int oldX, int oldY, int oldWidth, int oldHeight) {
+        markChanged(id);
+    }
+    
+    @Override
+    public void batchChanged(BitSet ids, Rectangle region) {
+        pendingIds.or(ids);
+        scheduleFlush();
+    }
+    
+    private void markChanged(int id) {
+        pendingIds.set(id);
+        scheduleFlush();
+    }
+    
+    /**
+     * 同一轮事件处理中的多次修改合并为一批
+     */
+    private void scheduleFlush() {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            SwingUtilities.invokeLater(this::flush);
+        }
+    }
+    
+    /**
+     * 复制变化元素的当前几何数据并交给校验线程（界面线程）
+     * 超过FLUSH_CHUNK个元素时只复制一部分，其余的留到下一轮事件处理
+     */
+    private void flush() {
+        flushScheduled = false;
+        if (disposed || pendingIds.isEmpty()) {
+            return;
+        }
+        int[] ids = new int[Math.min(FLUSH_CHUNK, pendingIds.cardinality())];
+        int next = pendingIds.nextSetBit(0);
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = next;
+            next = pendingIds.nextSetBit(next + 1);
+        }
+        pendingIds.clear(0, ids[ids.length - 1] + 1);
+        boolean partial = !pendingIds.isEmpty();
+        if (partial) {
+            scheduleFlush();
+        }
+        int[] data = new int[ids.length * STRIDE];
+        for (int i = 0; i < ids.length; i++) {
+            MapElement element = model.get(ids[i]);
+            int offset = i * STRIDE;
+            if (element == null) {
+                data[offset] = REMOVED;
+                continue;
+            }
+            data[offset] = model.getKind(ids[i]);
+            data[offset + 1] = element.getX();
+            data[offset + 2] = element.getY();
+            data[offset + 3] = element.getWidth();
+            data[offset + 4] = element.getHeight();
+            if (element instanceof Checkpoint) {
+                data[offset + 5] = ((Checkpoint) element).getRespawnX();
+                data[offset + 6] = ((Checkpoint) element).getRespawnY();
+            }
+        }
+        queue.add(new ChangeSet(ids, data, partial));
+        worker.execute(this::process);
+    }
+    
+    /**
+     * 应用所有排队的变化并重新检查受影响的元素（校验线程）
+     */
+    private void process() {
+        ChangeSet changes;
+        boolean partial = false;
+        while ((changes = queue.poll()) != null) {
+            apply(changes, affected);
+            partial = changes.partial;
+        }
+        // 分多轮复制的批量修改全部到达后再检查，避免发布一半新一半旧的结果
+        if (disposed || partial || affected.isEmpty()) {
+            return;
+        }
+        for (int id = affected.nextSetBit(0); id >= 0; id = affected.nextSetBit(id + 1)) {
+            setProblems(id, check(id));
+        }
+        affected.clear();
+        publish();
+    }
+    
+    private void apply(ChangeSet changes, BitSet affected) {
+        for (int i = 0; i < changes.ids.length; i++) {
+            int id = changes.ids[i];
+            int offset = i * STRIDE;
+            ensureCapacity(id + 1);
+            if (present.get(id)) {
+                // 旧位置周围的元素需要重新检查
+                markNeighbours(id, affected);
+                solids.remove(id);
+                hazards.remove(id);
+                present.clear(id);
+            }
+            int kind = changes.data[offset];
+            if (kind != REMOVED) {
+                kinds[id] = kind;
+                boundsX[id] = changes.data[offset + 1];
+                boundsY[id] = changes.data[offset + 2];
+                boundsW[id] = changes.data[offset + 3];
+                boundsH[id] = changes.data[offset + 4];
+                respawnX[id] = changes.data[offset + 5];
+                respawnY[id] = changes.data[offset + 6];
+                present.set(id);
+                if (kind == EditorModel.KIND_SOLID_BLOCK) {
+                    solids.insert(id, boundsX[id], boundsY[id], boundsW[id], boundsH[id]);
+                } else if (kind == EditorModel.KIND_SPIKE) {
+                    hazards.insert(id, boundsX[id], boundsY[id], boundsW[id], boundsH[id]);
+                } else if (kind == EditorModel.KIND_CHECKPOINT) {
+                    hazards.insert(id, respawnX[id], respawnY[id], PLAYER_WIDTH, PLAYER_HEIGHT);
+                }
+                markNeighbours(id, affected);
+            }
+            affected.set(id);
+        }
+    }
+    
+    /**
+     * 只有实心物块会影响其他元素的检查结果：标记与它相接的实心物块、尖刺和重生点
+     */
+    private void markNeighbours(int id, BitSet affected) {
+        if (kinds[id] != EditorModel.KIND_SOLID_BLOCK) {
+            return;
+        }
+        solids.query(boundsX[id], boundsY[id], boundsW[id], boundsH[id], other -> {
+            affected.set(other);
+            return true;
+        });
+        hazards.query(boundsX[id], boundsY[id], boundsW[id], boundsH[id], other -> {
+            affected.set(other);
+            return true;
+        });
+    }
+    
+    /**
+     * 检查一个元素，返回问题标志
+     */
+    private int check(int id) {
+        if (!present.get(id)) {
+            return 0;
+        }
+        int x = boundsX[id], y = boundsY[id], width = boundsW[id], height = boundsH[id];
+        int flags = 0;
+        if (x < 0 || y < 0 || x + width > WORLD_RIGHT || y + height > WORLD_BOTTOM) {
+            flags |= PROBLEM_OUT_OF_BOUNDS;
+        }
+        switch (kinds[id]) {
+            case EditorModel.KIND_SOLID_BLOCK:
+                if (overlapsSolid(x, y, width, height, id)) {
+                    flags |= PROBLEM_SOLID_OVERLAP;
+                }
+                break;
+            case EditorModel.KIND_SPIKE:
+                if (overlapsSolid(x, y, width, height, id)) {
+                    flags |= PROBLEM_SPIKE_IN_SOLID;
+                }
+                break;
+            case EditorModel.KIND_CHECKPOINT:
+                if (overlapsSolid(respawnX[id], respawnY[id], PLAYER_WIDTH, PLAYER_HEIGHT, id)) {
+                    flags |= PROBLEM_RESPAWN_IN_SOLID;
+                }
+                break;
+            default:
+                break;
+        }
+        return flags;
+    }
+    
+    /**
+     * 矩形内部是否与其他实心物块重叠（只是边界相接不算）
+     */
+    private boolean overlapsSolid(int x, int y, int width, int height, int self) {
+        return !solids.query(x, y, width, height, other -> other == self
+            || x >= boundsX[other] + boundsW[other] || boundsX[other] >= x + width
+            || y >= boundsY[other] + boundsH[other] || boundsY[other] >= y + height);
+    }
+    
+    private void setProblems(int id, int flags) {
+        int old = problems[id];
+        if (old == flags) {
+            return;
+        }
+        problems[id] = flags;
+        for (int i = 0; i < counts.length; i++) {
+            int bit = 1 << i;
+            if ((old & bit) != 0) {
+                counts[i]--;
+            }
+            if ((flags & bit) != 0) {
+                counts[i]++;
+            }
+        }
+        problemIds.set(id, flags != 0);
+        Rectangle bounds = new Rectangle(boundsX[id], boundsY[id], boundsW[id], boundsH[id]);
+        if (changedRegion == null) {
+            changedRegion = bounds;
+        } else {
+            changedRegion.add(bounds);
+        }
+    }
+    
+    /**
+     * 发布结果；界面线程还没取走上一次的结果时与它合并，只通知一次
+     */
+    private void publish() {
+        if (changedRegion == null && publishedOnce) {
+            return;
+        }
+        Rectangle region = publishedOnce ? changedRegion : null;
+        publishedOnce = true;
+        changedRegion = null;
+        BitSet ids = (BitSet) problemIds.clone();
+        int[] countsCopy = counts.clone();
+        Result previous;
+        Result next;
+        do {
+            previous = published.get();
+            Rectangle merged = region;
+            if (previous != null) {
+                if (previous.changedRegion == null || region == null) {
+                    merged = null;
+                } else {
+                    merged = new Rectangle(region);
+                    merged.add(previous.changedRegion);
+                }
+            }
+            next = new Result(ids, countsCopy, merged);
+        } while (!published.compareAndSet(previous, next));
+        if (previous == null) {
+            SwingUtilities.invokeLater(this::deliver);
+        }
+    }
+    
+    /**
+     * 把最新的结果交给界面（界面线程）
+     */
+    private void deliver() {
+        Result result = published.getAndSet(null);
+        if (result != null && !disposed) {
+            callback.accept(result);
+        }
+    }
+    
+    private void ensureCapacity(int capacity) {
+        if (capacity <= kinds.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, kinds.length * 2);
+        kinds = Arrays.copyOf(kinds, newCapacity);
+        boundsX = Arrays.copyOf(boundsX, newCapacity);
+        boundsY = Arrays.copyOf(boundsY, newCapacity);
+        boundsW = Arrays.copyOf(boundsW, newCapacity);
+        boundsH = Arrays.copyOf(boundsH, newCapacity);
+        respawnX = Arrays.copyOf(respawnX, newCapacity);
+        respawnY = Arrays.copyOf(respawnY, newCapacity);
+        problems = Arrays.copyOf(problems, newCapacity);
+    }
+}
@@ -0,0 +1,516 @@
+// 简化项目结构，移除包声明
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 物理模糊测试
+ * 用随机生成和变异得到的输入序列驱动无界面的Simulation，每个tick之后检查不变量：
+ * 玩家不与实心物块重叠、不离开世界范围、在空中（没有攀爬和冲刺时）不会连续若干个tick原地不动。
+ * 每个线程有自己的模拟和随机数，所有线程共享区域覆盖位图和语料库：
+ * 到达新区域的输入序列加入语料库，之后的用例有一部分由语料库中的序列变异得到，逐渐深入地图。
+ *
+ * 发现违反不变量的输入时，在同一个线程上缩减为仍然违反同一不变量的最短输入。
+ * 每种不变量（与实心物块重叠时按物块区分，避免一个容易触发的物块掩盖其他问题）保留最短的一个，
+ * 结束时保存为录像（replays/fuzz/），可以用ReplayRunner或Game --replay重现。
+ *
+ * 用法: PhysicsFuzzer [地图文件] [--ticks 总tick数] [--threads 线程数] [--seed 随机种子]
+ *                     [--case-ticks 每个用例的tick数] [--stuck-ticks 卡住判定的tick数] [--fixed-point]
+ */
+public class PhysicsFuzzer {
+    private static final String DEFAULT_MAP_PATH = "maps/default.json";
+    private static final File OUTPUT_DIR = new File("replays/fuzz");
+    private static final int WORLD_WIDTH = 1920;
+    private static final int GROUND_Y = 1030;
+    private static final int PLAYER_WIDTH = 30;
+    private static final int PLAYER_HEIGHT = 40;
+    private static final int CELL_SIZE = 16; // 区域覆盖的格子大小（像素）
+    private static final int GRID_WIDTH = WORLD_WIDTH / CELL_SIZE;
+    private static final int GRID_HEIGHT = (GROUND_Y + CELL_SIZE - 1) / CELL_SIZE;
+    private static final int MAX_HOLD_TICKS = 20; // 随机输入保持同一按键组合的最大tick数
+    private static final int CORPUS_LIMIT = 1024;
+    private static final int SHRINK_ATTEMPTS = 4000; // 缩减一个失败用例时最多重新运行的次数
+    private static final int INPUT_MASK = KeyBindings.ACTION_CLIMB * 2 - 1; // 玩家操作的输入位
+    
+    /**
+     * 不变量
+     */
+    public enum Violation {
+        SOLID_OVERLAP("与实心物块重叠"),
+        OUT_OF_BOUNDS("超出世界范围"),
+        STUCK("在空中卡住");
+        
+        private final String description;
+        
+        Violation(String description) {
+            this.description = description;
+        }
+        
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+    
+    /**
+     * 缩减后的失败用例：输入的最后一个tick违反不变量
+     */
+    public static class Failure {
+        private final Violation violation;
+        private final int block;
+        private final int[] inputs;
+        private final String detail;
+        
+        Failure(Violation violation, int block, int[] inputs, String detail) {
+            this.violation = violation;
+            this.block = block;
+            this.inputs = inputs;
+            this.detail = detail;
+        }
+        
+        public Violation getViolation() { return violation; }
+        
+        /**
+         * 重叠的实心物块在CompiledMap.getSolidBlocks()中的下标，其他不变量为-1
+         */
+        public int getBlock() { return block; }
+        
+        public int[] getInputs() { return inputs; }
+        public String getDetail() { return detail; }
+        
+        long key() {
+            return failureKey(violation.ordinal(), block);
+        }
+    }
+    
+    private final CompiledMap map;
+    private final boolean fixedPoint;
+    private final int caseTicks;
+    private final int stuckTicks;
+    
+    // 各线程共享
+    private final AtomicLong ticksRun = new AtomicLong();
+    private final AtomicLong casesRun = new AtomicLong();
+    private final AtomicLongArray coverage = new AtomicLongArray((GRID_WIDTH * GRID_HEIGHT + 63) / 64);
+    private final List<int[]> corpus = new ArrayList<>(); // 访问时对自身加锁
+    private final AtomicIntegerArray failureCounts = new AtomicIntegerArray(Violation.values().length);
+    private final ConcurrentHashMap<Long, Failure> failures = new ConcurrentHashMap<>(); // 见failureKey
+    
+    /**
+     * @param map 要测试的地图
+     * @param fixedPoint 是否使用定点物理模式
+     * @param caseTicks 每个用例的tick数
+     * @param stuckTicks 在空中连续多少个tick原地不动视为卡住
+     */
+    public PhysicsFuzzer(CompiledMap map, boolean fixedPoint, int caseTicks, int stuckTicks) {
+        this.map = map;
+        this.fixedPoint = fixedPoint;
+        this.caseTicks = caseTicks;
+        this.stuckTicks = stuckTicks;
+    }
+    
+    /**
+     * 在线程池的每个线程上运行用例，总共约totalTicks个tick后返回
+     */
+    public void run(ForkJoinPool pool, long totalTicks, long seed) {
+        int threads = pool.getParallelism();
+        Worker[] workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(new SplittableRandom(seed + i * 0x9E3779B97F4A7C15L), totalTicks);
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(workers);
+            }
+        });
+    }
+    
+    /**
+     * 一个线程上的用例循环：生成输入、运行、记录覆盖、缩减失败用例
+     */
+    private class Worker extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private final SplittableRandom random;
+        private final long totalTicks;
+        private final Simulation simulation;
+        private final int[] failure = new int[3]; // 见runCase
+        
+        Worker(SplittableRandom random, long totalTicks) {
+            this.random = random;
+            this.totalTicks = totalTicks;
+            simulation = new Simulation(map, map.getDefaultStartX(), map.getDefaultStartY(), fixedPoint);
+            simulation.setEventLogging(false);
+        }
+        
+        @Override
+        protected void compute() {
+            while (ticksRun.get() < totalTicks) {
+                int[] inputs = nextInputs(random);
+                int ticks = runCase(simulation, inputs, failure, true);
+                ticksRun.addAndGet(ticks);
+                casesRun.incrementAndGet();
+                if (failure[0] < 0) {
+                    continue;
+                }
+                Violation violation = Violation.values()[failure[0]];
+                failureCounts.incrementAndGet(violation.ordinal());
+                Failure best = failures.get(failureKey(failure[0], failure[2]));
+                // 已有的失败用例更短时不再缩减
+                if (best == null || failure[1] + 1 < best.getInputs().length) {
+                    recordFailure(shrink(simulation, Arrays.copyOf(inputs, failure[1] + 1), violation, failure[2]));
+                }
+            }
+        }
+    }
+    
+    /**
+     * 从头运行一个用例并逐tick检查不变量
+     * @param failure 输出：违反的不变量（Violation.ordinal()，没有违反时为-1）、违反时的tick、重叠的实心物块下标
+     * @param trackCoverage 是否记录区域覆盖（缩减时不记录）
+     * @return 运行的tick数
+     */
+    private int runCase(Simulation simulation, int[] inputs, int[] failure, boolean trackCoverage) {
+        simulation.reset();
+        Player player = simulation.getPlayer();
+        SolidBlock[] solidBlocks = map.getSolidBlocks();
+        failure[0] = -1;
+        failure[2] = -1;
+        boolean newCoverage = false;
+        double lastX = player.getX();
+        double lastY = player.getY();
+        int stillTicks = 0;
+        for (int t = 0; t < inputs.length; t++) {
+            simulation.step(inputs[t]);
+            if (player.isDead()) {
+                stillTicks = 0;
+                continue;
+            }
+            double x = player.getX();
+            double y = player.getY();
+            
+            Violation violation = null;
+            if (x < 0 || x > WORLD_WIDTH - PLAYER_WIDTH || y > GROUND_Y - PLAYER_HEIGHT) {
+                violation = Violation.OUT_OF_BOUNDS;
+            } else {
+                for (int i = 0; i < solidBlocks.length; i++) {
+                    if (solidBlocks[i].checkCollision(x, y, PLAYER_WIDTH, PLAYER_HEIGHT)) {
+                        violation = Violation.SOLID_OVERLAP;
+                        failure[2] = i;
+                        break;
+                    }
+                }
+            }
+            // 在空中（不在地面上、没有攀爬和冲刺）时重力总会让玩家移动
+            if (!player.isOnGround() && !player.isClimbing() && !player.isDashing() && x == lastX && y == lastY) {
+                if (++stillTicks >= stuckTicks && violation == null) {
+                    violation = Violation.STUCK;
+                }
+            } else {
+                stillTicks = 0;
+            }
+            lastX = x;
+            lastY = y;
+            
+            if (trackCoverage) {
+                newCoverage |= markCell(x, y);
+            }
+            if (violation != null) {
+                failure[0] = violation.ordinal();
+                failure[1] = t;
+                return t + 1;
+            }
+        }
+        if (newCoverage) {
+            addToCorpus(inputs);
+        }
+        return inputs.length;
+    }
+    
+    /**
+     * 记录玩家中心所在的格子
+     * @return 是否是第一次到达这个格子
+     */
+    private boolean markCell(double x, double y) {
+        int cellX = ((int) x + PLAYER_WIDTH / 2) / CELL_SIZE;
+        int cellY = ((int) y + PLAYER_HEIGHT / 2) / CELL_SIZE;
+        if (cellX < 0 || cellY < 0 || cellX >= GRID_WIDTH || cellY >= GRID_HEIGHT) {
+            return false;
+        }
+        int bit = cellY * GRID_WIDTH + cellX;
+        long mask = 1L << bit;
+        if ((coverage.get(bit >> 6) & mask) != 0) {
+            return false;
+        }
+        return (coverage.getAndUpdate(bit >> 6, value -> value | mask) & mask) == 0;
+    }
+    
+    private void addToCorpus(int[] inputs) {
+        synchronized (corpus) {
+            if (corpus.size() < CORPUS_LIMIT) {
+                corpus.add(inputs);
+            } else {
+                corpus.set((int) (casesRun.get() % CORPUS_LIMIT), inputs);
+            }
+        }
+    }
+    
+    private int[] pickFromCorpus(SplittableRandom random) {
+        synchronized (corpus) {
+            return corpus.isEmpty() ? null : corpus.get(random.nextInt(corpus.size()));
+        }
+    }
+    
+    // ===== 输入生成 =====
+    
+    /**
+     * 下一个用例的输入：四分之一完全随机，其余由语料库中的序列变异得到
+     */
+    private int[] nextInputs(SplittableRandom random) {
+        int[] parent = random.nextInt(4) == 0 ? null : pickFromCorpus(random);
+        if (parent == null) {
+            int[] inputs = new int[caseTicks];
+            fillRandom(random, inputs, 0, caseTicks);
+            return inputs;
+        }
+        int[] inputs = Arrays.copyOf(parent, caseTicks);
+        int mutations = 1 + random.nextInt(4);
+        for (int i = 0; i < mutations; i++) {
+            mutate(random, inputs);
+        }
+        return inputs;
+    }
+    
+    private void mutate(SplittableRandom random, int[] inputs) {
+        int from = random.nextInt(inputs.length);
+        int to = Math.min(inputs.length, from + 1 + random.nextInt(MAX_HOLD_TICKS * 4));
+        switch (random.nextInt(4)) {
+            case 0:
+                // 重新随机一段
+                fillRandom(random, inputs, from, to);
+                break;
+            case 1:
+                // 在一段中翻转某个按键
+                int bit = 1 << random.nextInt(Integer.bitCount(INPUT_MASK));
+                for (int t = from; t < to; t++) {
+                    inputs[t] ^= bit;
+                }
+                break;
+            case 2:
+                // 删除一段，后面的输入前移，末尾补上随机输入
+                System.arraycopy(inputs, to, inputs, from, inputs.length - to);
+                fillRandom(random, inputs, inputs.length - (to - from), inputs.length);
+                break;
+            default:
+                // 从另一个序列的同一位置拼接后半段
+                int[] other = pickFromCorpus(random);
+                if (other != null && other.length > from) {
+                    System.arraycopy(other, from, inputs, from, Math.min(other.length, inputs.length) - from);
+                }
+                break;
+        }
+    }
+    
+    /**
+     * 用随机按键组合填充一段输入，每个组合保持1到MAX_HOLD_TICKS个tick
+     */
+    private static void fillRandom(SplittableRandom random, int[] inputs, int from, int to) {
+        int t = from;
+        while (t < to) {
+            int mask = random.nextInt() & INPUT_MASK;
+            int end = Math.min(to, t + 1 + random.nextInt(MAX_HOLD_TICKS));
+            Arrays.fill(inputs, t, end, mask);
+            t = end;
+        }
+    }
+    
+    // ===== 缩减 =====
+    
+    /**
+     * 缩减失败用例：依次尝试删除越来越短的片段、在片段中松开某个按键，
+     * 只要仍然违反同一不变量就保留修改，并截断到新的违反位置
+     */
+    private Failure shrink(Simulation simulation, int[] inputs, Violation violation, int block) {
+        int[] failure = new int[3];
+        int attempts = 0;
+        for (int chunk = inputs.length / 2; chunk >= 1 && attempts < SHRINK_ATTEMPTS; chunk /= 2) {
+            int start = 0;
+            while (start < inputs.length && attempts < SHRINK_ATTEMPTS) {
+                int end = Math.min(inputs.length, start + chunk);
+                int[] candidate = new int[inputs.length - (end - start)];
+                System.arraycopy(inputs, 0, candidate, 0, start);
+                System.arraycopy(inputs, end, candidate, start, inputs.length - end);
+                attempts++;
+                if (reproduces(simulation, candidate, failure, violation, block)) {
+                    inputs = Arrays.copyOf(candidate, failure[1] + 1);
+                } else {
+                    start = end;
+                }
+            }
+        }
+        for (int bit = 1; bit <= INPUT_MASK && attempts < SHRINK_ATTEMPTS; bit <<= 1) {
+            for (int chunk = inputs.length; chunk >= 1 && attempts < SHRINK_ATTEMPTS; chunk /= 2) {
+                for (int start = 0; start < inputs.length && attempts < SHRINK_ATTEMPTS; start += chunk) {
+                    int end = Math.min(inputs.length, start + chunk);
+                    int[] candidate = inputs.clone();
+                    boolean changed = false;
+                    for (int t = start; t < end; t++) {
+                        changed |= (candidate[t] & bit) != 0;
+                        candidate[t] &= ~bit;
+                    }
+                    if (!changed) {
+                        continue;
+                    }
+                    attempts++;
+                    if (reproduces(simulation, candidate, failure, violation, block)) {
+                        inputs = Arrays.copyOf(candidate, failure[1] + 1);
+                    }
+                }
+            }
+        }
+        
+        // 重新运行一次，记录违反时玩家的状态
+        runCase(simulation, inputs, failure, false);
+        Player player = simulation.getPlayer();
+        String detail = String.format("tick %d: 位置(%.2f, %.2f) 速度(%.2f, %.2f)%s%s%s",
+            inputs.length - 1, player.getX(), player.getY(), player.getVelocityX(), player.getVelocityY(),
+            player.isOnGround() ? " 着地" : "", player.isDashing() ? " 冲刺" : "", player.isTouchingWall() ? " 贴墙" : "");
+        if (block >= 0) {
+            SolidBlock solidBlock = map.getSolidBlocks()[block];
+            detail += String.format(", 实心物块(%d, %d, %dx%d)",
+                solidBlock.getX(), solidBlock.getY(), solidBlock.getWidth(), solidBlock.getHeight());
+        }
+        return new Failure(violation, block, inputs, detail);
+    }
+    
+    private boolean reproduces(Simulation simulation, int[] inputs, int[] failure, Violation violation, int block) {
+        runCase(simulation, inputs, failure, false);
+        return failure[0] == violation.ordinal() && failure[2] == block;
+    }
+    
+    private static long failureKey(int violation, int block) {
+        return (long) violation << 32 | (block + 1);
+    }
+    
+    private void recordFailure(Failure failure) {
+        failures.merge(failure.key(), failure,
+            (old, candidate) -> candidate.getInputs().length < old.getInputs().length ? candidate : old);
+    }
+    
+    /**
+     * 把失败用例保存为录像
+     */
+    public File saveReplay(Failure failure) throws IOException {
+        Replay replay = new Replay(map.getHash(), map.getDefaultStartX(), map.getDefaultStartY(), fixedPoint);
+        for (int input : failure.getInputs()) {
+            replay.record(input);
+        }
+        String name = "fuzz-" + failure.getViolation().name().toLowerCase()
+            + (failure.getBlock() >= 0 ? "-" + failure.getBlock() : "");
+        File file = new File(OUTPUT_DIR, name + ".jcr");
+        replay.write(file);
+        return file;
+    }
+    
+    public long getTicksRun() { return ticksRun.get(); }
+    public long getCasesRun() { return casesRun.get(); }
+    public int getFailureCount(Violation violation) { return failureCounts.get(violation.ordinal()); }
+    
+    /**
+     * 每种不变量（与实心物块重叠时每个物块）最短的失败用例，按不变量和物块排序
+     */
+    public List<Failure> getFailures() {
+        List<Failure> result = new ArrayList<>(failures.values());
+        result.sort((a, b) -> Long.compare(a.key(), b.key()));
+        return result;
+    }
+    
+    /**
+     * 到达过的格子数
+     */
+    public int getCoveredCells() {
+        int count = 0;
+        for (int i = 0; i < coverage.length(); i++) {
+            count += Long.bitCount(coverage.get(i));
+        }
+        return count;
+    }
+    
+    public static void main(String[] args) {
+        String mapPath = DEFAULT_MAP_PATH;
+        long totalTicks = 10_000_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = System.nanoTime();
+        int caseTicks = 10 * Simulation.TICKS_PER_SECOND;
+        int stuckTicks = 30;
+        boolean fixedPoint = false;
+        for (int i = 0; i < args.length; i++) {
+            if ("--ticks".equals(args[i]) && i + 1 < args.length) {
+                totalTicks = Long.parseLong(args[++i]);
+            } else if ("--threads".equals(args[i]) && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if ("--seed".equals(args[i]) && i + 1 < args.length) {
+                seed = Long.parseLong(args[++i]);
+            } else if ("--case-ticks".equals(args[i]) && i + 1 < args.length) {
+                caseTicks = Integer.parseInt(args[++i]);
+            } else if ("--stuck-ticks".equals(args[i]) && i + 1 < args.length) {
+                stuckTicks = Integer.parseInt(args[++i]);
+            } else if ("--fixed-point".equals(args[i])) {
+                fixedPoint = true;
+            } else {
+                mapPath = args[i];
+            }
+        }
+        GameEventLog.setLevel(GameEventLog.OFF);
+        
+        CompiledMap map;
+        try {
+            map = CompiledMap.compileUnshared(JsonMapLoader.loadMapFromJson(mapPath));
+        } catch (IOException e) {
+            System.err.println("加载地图失败: " + e.getMessage());
+            return;
+        }
+        System.out.println(String.format("地图: %s, %d 线程, %d ticks, 种子 %d, %s物理",
+            map.getName(), threads, totalTicks, seed, fixedPoint ? "定点" : "浮点"));
+        
+        PhysicsFuzzer fuzzer = new PhysicsFuzzer(map, fixedPoint, caseTicks, stuckTicks);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long startTime = System.nanoTime();
+        fuzzer.run(pool, totalTicks, seed);
+        long elapsed = System.nanoTime() - startTime;
+        pool.shutdown();
+        
+        System.out.println(String.format("%d 个用例, %d ticks, 耗时 %.1fs, %.0f ticks/s, 覆盖 %d 个格子",
+            fuzzer.getCasesRun(), fuzzer.getTicksRun(), elapsed / 1e9, fuzzer.getTicksRun() / (elapsed / 1e9),
+            fuzzer.getCoveredCells()));
+        for (Violation violation : Violation.values()) {
+            if (fuzzer.getFailureCount(violation) > 0) {
+                System.out.println(String.format("%s: %d 个用例", violation, fuzzer.getFailureCount(violation)));
+            }
+        }
+        List<Failure> failures = fuzzer.getFailures();
+        for (Failure failure : failures) {
+            System.out.println(String.format("%s: 最短 %d ticks, %s",
+                failure.getViolation(), failure.getInputs().length, failure.getDetail()));
+            try {
+                System.out.println("  录像: " + fuzzer.saveReplay(failure).getPath());
+            } catch (IOException e) {
+                System.out.println("  保存录像失败: " + e.getMessage());
+            }
+        }
+        if (!failures.isEmpty()) {
+            System.exit(1);
+        }
+    }
+}
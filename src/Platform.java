@@ -12,6 +12,11 @@ public class Platform extends MapElement {
         super(x, y, width, height, new Color(139, 69, 19)); // 棕色
     }
     
+    @Override
+    public MapElement copy() {
+        return new Platform(x, y, width, height);
+    }
+    
     @Override
     public void render(Graphics g) {
         g.setColor(color);
@@ -2,7 +2,7 @@
 
 import java.awt.Color;
 import java.awt.Graphics;
-import java.awt.event.KeyEvent;
+import java.util.Arrays;
 
 /**
  * 玩家角色类
@@ -20,13 +20,27 @@ public class Player {
     private double x, y;
     private double velocityX, velocityY;
     private boolean onGround;
-    private boolean leftPressed, rightPressed, upPressed, downPressed, jumpPressed, dashPressed, climbPressed;
-    private MapElement[] mapElements; // 统一的地图元素数组
+    private int input; // 这一帧的输入位掩码（见KeyBindings.ACTION_*），由游戏线程设置
     private SolidBlock[] solidBlocks; // 实心物块数组（保留用于特定逻辑）
     private Platform[] platforms; // 平台数组（保留用于特定逻辑）
     private Spike[] spikes; // 尖刺数组（保留用于特定逻辑）
     private Checkpoint[] checkpoints; // 重生点数组（保留用于特定逻辑）
-    private EnergyBean[] energyBeans; // 能量豆数组（保留用于特定逻辑）
+    private EnergyBean[] energyBeans; // 能量豆数组，下标为能量豆在WorldState中的编号
+    private WorldState world; // 重生点激活和能量豆消耗状态
+    private CollisionGrid collisionGrid; // 实心物块、平台和尖刺的宽相位，没有设置世界时为null
+    private CollisionGrid energyBeanGrid; // 能量豆的宽相位，没有设置世界时为null
+    // 按元素下标的所在房间，离散碰撞检测只检测活动房间中的元素，没有设置世界时为null
+    private int[] platformRooms, solidBlockRooms, spikeRooms, beanRooms;
+    // 碰撞候选：查询范围内的静态元素和实体，包围盒为定点，见collectCandidates
+    private int[] candidateIds = new int[16]; // 宽相位查询用的临时数组
+    private int[] candidateLeft = new int[16], candidateTop = new int[16];
+    private int[] candidateRight = new int[16], candidateBottom = new int[16];
+    private byte[] candidateKinds = new byte[16]; // CollisionGrid.SOLID_BLOCK、PLATFORM或SPIKE
+    private int[] candidateEntities = new int[16]; // 实体编号，静态元素为-1
+    // 离散碰撞检测：玩家包围盒接触到的某类元素，按检测顺序排列，见collectTouching
+    private int[] touchingIndices = new int[16]; // 元素下标
+    private long[] touchingKeys = new long[16]; // 排序键：房间编号、元素下标
+    private int touchLeft, touchTop, touchRight, touchBottom; // 最近一次查询的范围（像素，含边界）
     
     // 死亡和重生相关
     private boolean isDead = false;
@@ -43,7 +57,12 @@ public class Player {
     private int dashCount = 2; // 冲刺次数（最多2次）
     private static final int MAX_DASH_COUNT = 2; // 最大冲刺次数
     private double dashVelocityX = 0, dashVelocityY = 0; // 冲刺速度分量
-    private Color dashColor; // 冲刺时的颜色（基于冲刺前的状态）
+    private int dashColorIndex; // 冲刺时的颜色（基于冲刺前的状态），DASH_COLORS的下标
+    private static final Color[] DASH_COLORS = {
+        new Color(255, 192, 203), // 粉色
+        new Color(255, 50, 50), // 红色
+        new Color(50, 100, 255) // 蓝色
+    };
     
     // 攀爬相关
     private boolean isClimbing = false; // 是否正在攀爬
@@ -59,6 +78,37 @@ public class Player {
     private int jumpCooldownTimer = 0; // 跳跃冷却计时器
     private static final int JUMP_COOLDOWN_DURATION = 10; // 跳跃冷却持续帧数（约0.17秒）
     
+    // 定点物理模式：位置和速度以1/256像素为单位，体力以0.1为单位，全部使用整数运算，
+    // 结果与JVM和CPU无关，可以逐位比较；double字段在每个tick结束时由定点值换算，供渲染和查询使用
+    private static final int SUBPIXEL_SHIFT = 8;
+    private static final int SUBPIXEL = 1 << SUBPIXEL_SHIFT;
+    private static final int STAMINA_UNIT = 10;
+    private static final int FX_GRAVITY = 128; // 0.5
+    private static final int FX_FAST_FALL_GRAVITY = 512; // 2.0
+    private static final int FX_TERMINAL_VELOCITY = 1280; // 5.0
+    private static final int FX_JUMP_STRENGTH = -3072; // -12
+    private static final int FX_CLIMB_JUMP_STRENGTH = -2458; // -12 * 0.8
+    private static final int FX_MOVE_SPEED = 768; // 3
+    private static final int FX_DASH_SPEED = 3072; // 12
+    private static final int FX_DASH_DIAGONAL_SPEED = 2172; // 12 / sqrt(2)
+    private static final int FX_WALL_SLIDE_SPEED = 256; // 1
+    private static final int FX_CLIMB_MOVE_SPEED = 512; // 2
+    private static final int FX_WALL_TOLERANCE = 5 << SUBPIXEL_SHIFT;
+    private static final int FX_MAX_STAMINA = 1000; // 100
+    private static final int FX_STAMINA_DRAIN = 4; // 0.4
+    private static final int FX_WIDTH = PLAYER_WIDTH << SUBPIXEL_SHIFT;
+    private static final int FX_HEIGHT = PLAYER_HEIGHT << SUBPIXEL_SHIFT;
+    
+    private boolean fixedPoint = false;
+    private boolean eventLogging = true; // 是否把游戏事件写入GameEventLog
+    private int fx, fy, fvx, fvy;
+    private int fdashVX, fdashVY;
+    private int fstamina;
+    
+    // 状态快照的大小，见writeState()
+    public static final int STATE_DOUBLES = 11;
+    public static final int STATE_INTS = 15;
+    
     public Player(double x, double y) {
         this.x = x;
         this.y = y;
@@ -85,20 +135,61 @@ public class Player {
         this.spikes = spikes;
     }
     
-    public void setCheckpoints(Checkpoint[] checkpoints) {
-        this.checkpoints = checkpoints;
+    /**
+     * 设置所在的世界：地图元素来自编译后的地图，重生点和能量豆的状态读写WorldState
+     * 离散碰撞检测通过宽相位索引查询玩家周围的元素，只检测WorldState当前活动房间（当前房间及其相邻房间）中的元素，
+     * 切换房间后不需要通知玩家。
+     * @param world 世界状态
+     */
+    public void setWorld(WorldState world) {
+        CompiledMap map = world.getMap();
+        RoomTable rooms = map.getRoomTable();
+        this.world = world;
+        this.checkpoints = map.getCheckpoints();
+        this.platforms = map.getPlatforms();
+        this.solidBlocks = map.getSolidBlocks();
+        this.spikes = map.getSpikes();
+        this.energyBeans = map.getEnergyBeans();
+        this.collisionGrid = map.getCollisionGrid();
+        this.energyBeanGrid = map.getEnergyBeanGrid();
+        this.platformRooms = rooms.platformRooms;
+        this.solidBlockRooms = rooms.solidBlockRooms;
+        this.spikeRooms = rooms.spikeRooms;
+        this.beanRooms = rooms.beanRooms;
+    }
+    
+    /**
+     * 切换定点物理模式
+     * 定点模式下update()每次推进一个tick（忽略deltaTime），用于录像、回放和逐位一致的校验
+     */
+    public void setFixedPoint(boolean fixedPoint) {
+        this.fixedPoint = fixedPoint;
+        if (fixedPoint) {
+            loadFixedState();
+        }
     }
     
-    public void setEnergyBeans(EnergyBean[] energyBeans) {
-        this.energyBeans = energyBeans;
+    public boolean isFixedPoint() {
+        return fixedPoint;
     }
     
     /**
-     * 设置统一的地图元素数组
-     * @param mapElements 包含所有地图元素的数组
+     * 是否记录游戏事件（搜索、批量模拟等大量运行的模拟关闭）
      */
-    public void setMapElements(MapElement[] mapElements) {
-        this.mapElements = mapElements;
+    public void setEventLogging(boolean eventLogging) {
+        this.eventLogging = eventLogging;
+    }
+    
+    private void logEvent(int type, double a, double b) {
+        if (eventLogging) {
+            GameEventLog.log(type, a, b);
+        }
+    }
+    
+    private void logEvent(int type, double a, double b, double c) {
+        if (eventLogging) {
+            GameEventLog.log(type, a, b, c);
+        }
     }
     
     public void setRespawnPoint(double x, double y) {
@@ -110,24 +201,16 @@ public class Player {
      * 更新重生点到时间上最近激活的重生点
      */
     public void updateRespawnToNearestActivated() {
-        if (checkpoints == null || checkpoints.length == 0) {
+        if (world == null) {
             return;
         }
         
-        Checkpoint latestCheckpoint = null;
-        long latestActivationTime = 0;
-        
         // 寻找时间上最近激活的重生点
-        for (Checkpoint checkpoint : checkpoints) {
-            if (checkpoint.isActivated() && checkpoint.getActivationTime() > latestActivationTime) {
-                latestActivationTime = checkpoint.getActivationTime();
-                latestCheckpoint = checkpoint;
-            }
-        }
-        
-        if (latestCheckpoint != null) {
+        int latest = world.getLatestCheckpoint();
+        if (latest >= 0) {
+            Checkpoint latestCheckpoint = checkpoints[latest];
             setRespawnPoint(latestCheckpoint.getRespawnX(), latestCheckpoint.getRespawnY());
-            System.out.println("更新重生点到时间上最近激活的重生点: (" + latestCheckpoint.getRespawnX() + ", " + latestCheckpoint.getRespawnY() + ")");
+            logEvent(GameEventLog.RESPAWN_POINT, latestCheckpoint.getRespawnX(), latestCheckpoint.getRespawnY());
         }
     }
     
@@ -143,6 +226,11 @@ public class Player {
             return;
         }
         
+        if (fixedPoint) {
+            updateFixed();
+            return;
+        }
+        
         // 检查墙壁碰撞
         checkWallCollision();
         
@@ -150,7 +238,7 @@ public class Player {
         handleClimbing(deltaTime);
         
         // 处理冲刺（冲刺优先级高于攀爬）
-        if (dashPressed && dashCount > 0 && !isDashing) {
+        if (isPressed(KeyBindings.ACTION_DASH) && dashCount > 0 && !isDashing) {
             startDash();
         }
         
@@ -168,9 +256,9 @@ public class Player {
             // 正常移动逻辑
             // 处理水平移动（攀爬时屏蔽水平移动）
             if (!isClimbing) {
-                if (leftPressed && !rightPressed) {
+                if (isPressed(KeyBindings.ACTION_LEFT) && !isPressed(KeyBindings.ACTION_RIGHT)) {
                     velocityX = -MOVE_SPEED;
-                } else if (rightPressed && !leftPressed) {
+                } else if (isPressed(KeyBindings.ACTION_RIGHT) && !isPressed(KeyBindings.ACTION_LEFT)) {
                     velocityX = MOVE_SPEED;
                 } else {
                     velocityX = 0;
@@ -178,22 +266,22 @@ public class Player {
             }
             
             // 处理跳跃（攀爬时也可以跳跃）
-            if (jumpPressed && (onGround || isClimbing) && jumpCooldownTimer <= 0) {
+            if (isPressed(KeyBindings.ACTION_JUMP) && (onGround || isClimbing) && jumpCooldownTimer <= 0) {
                 if (isClimbing) {
                     // 攀爬跳跃：根据墙壁方向和移动方向决定跳跃方向
                     double jumpX = 0, jumpY = JUMP_STRENGTH;
                     
                     // 检查是否向外移动
-                    boolean movingAwayFromWall = (wallDirection == 1 && leftPressed) || (wallDirection == -1 && rightPressed);
+                    boolean movingAwayFromWall = (wallDirection == 1 && isPressed(KeyBindings.ACTION_LEFT)) || (wallDirection == -1 && isPressed(KeyBindings.ACTION_RIGHT));
                     
                     if (movingAwayFromWall) {
                         // 向外移动时，向斜上方跳跃
                         jumpX = wallDirection == 1 ? -MOVE_SPEED * 2 : MOVE_SPEED * 2; // 水平速度是移动速度的2倍
                         jumpY = JUMP_STRENGTH * 0.8; // 垂直速度稍微减少
-                        System.out.println("攀爬斜跳！方向: (" + jumpX + ", " + jumpY + ")");
+                        logEvent(GameEventLog.CLIMB_JUMP, jumpX, jumpY);
                     } else {
                         // 没有向外移动时，传统向上跳跃
-                        System.out.println("攀爬跳跃！");
+                        logEvent(GameEventLog.CLIMB_JUMP, jumpX, jumpY);
                     }
                     
                     velocityX = jumpX;
@@ -211,7 +299,7 @@ public class Player {
             // 应用重力（攀爬时不应用重力）
             if (!onGround && !isClimbing) {
                 // 检查是否加速下落（排除冲刺、攀墙、沿墙滑落状态）
-                if (downPressed && velocityY > 0 && !isDashing && !isTouchingWall) {
+                if (isPressed(KeyBindings.ACTION_DOWN) && velocityY > 0 && !isDashing && !isTouchingWall) {
                     // 自由落体时按S键，重力翻倍
                     velocityY += FAST_FALL_GRAVITY;
                 } else {
@@ -226,10 +314,6 @@ public class Player {
             }
         }
         
-        // 更新位置
-        x += velocityX;
-        y += velocityY;
-        
         // 更新跳跃冷却
         if (jumpCooldownTimer > 0) {
             jumpCooldownTimer--;
@@ -238,6 +322,9 @@ public class Player {
         // 先重置onGround状态，然后通过碰撞检测来设置
         onGround = false;
         
+        // 更新位置（连续碰撞检测，落到物块或平台上时设置onGround）
+        moveSwept();
+        
         // 地面碰撞检测
         if (y >= GROUND_Y - PLAYER_HEIGHT) {
             y = GROUND_Y - PLAYER_HEIGHT;
@@ -253,6 +340,9 @@ public class Player {
         // 实心物块碰撞检测
         checkSolidBlockCollision();
         
+        // 实体（移动平台、下落物块、巡逻尖刺）碰撞检测
+        checkEntityCollision();
+        
         // 尖刺碰撞检测
         checkSpikeCollision();
         
@@ -273,14 +363,895 @@ public class Player {
         }
     }
     
+    /**
+     * 定点模式的一个tick，流程与update()相同，只使用整数运算
+     */
+    private void updateFixed() {
+        // 检查墙壁碰撞
+        checkWallCollisionFixed();
+        
+        // 处理攀爬逻辑
+        handleClimbingFixed();
+        
+        // 处理冲刺（冲刺优先级高于攀爬）
+        if (isPressed(KeyBindings.ACTION_DASH) && dashCount > 0 && !isDashing) {
+            startDash();
+        }
+        
+        if (isDashing) {
+            dashTimer++;
+            if (dashTimer >= DASH_DURATION) {
+                endDash();
+            } else {
+                fvx = fdashVX;
+                fvy = fdashVY;
+            }
+        } else {
+            // 处理水平移动（攀爬时屏蔽水平移动）
+            if (!isClimbing) {
+                if (isPressed(KeyBindings.ACTION_LEFT) && !isPressed(KeyBindings.ACTION_RIGHT)) {
+                    fvx = -FX_MOVE_SPEED;
+                } else if (isPressed(KeyBindings.ACTION_RIGHT) && !isPressed(KeyBindings.ACTION_LEFT)) {
+                    fvx = FX_MOVE_SPEED;
+                } else {
+                    fvx = 0;
+                }
+            }
+            
+            // 处理跳跃（攀爬时也可以跳跃）
+            if (isPressed(KeyBindings.ACTION_JUMP) && (onGround || isClimbing) && jumpCooldownTimer <= 0) {
+                if (isClimbing) {
+                    boolean movingAwayFromWall = (wallDirection == 1 && isPressed(KeyBindings.ACTION_LEFT)) || (wallDirection == -1 && isPressed(KeyBindings.ACTION_RIGHT));
+                    if (movingAwayFromWall) {
+                        // 向外移动时，向斜上方跳跃
+                        fvx = wallDirection == 1 ? -FX_MOVE_SPEED * 2 : FX_MOVE_SPEED * 2;
+                        fvy = FX_CLIMB_JUMP_STRENGTH;
+                        logEvent(GameEventLog.CLIMB_JUMP, fvx / (double) SUBPIXEL, fvy / (double) SUBPIXEL);
+                    } else {
+                        fvx = 0;
+                        fvy = FX_JUMP_STRENGTH;
+                        logEvent(GameEventLog.CLIMB_JUMP, 0, fvy / (double) SUBPIXEL);
+                    }
+                    isClimbing = false;
+                } else {
+                    fvy = FX_JUMP_STRENGTH;
+                }
+                
+                onGround = false;
+                jumpCooldownTimer = JUMP_COOLDOWN_DURATION;
+            }
+            
+            // 应用重力（攀爬时不应用重力）
+            if (!onGround && !isClimbing) {
+                if (isPressed(KeyBindings.ACTION_DOWN) && fvy > 0 && !isTouchingWall) {
+                    fvy += FX_FAST_FALL_GRAVITY;
+                } else {
+                    fvy += FX_GRAVITY;
+                }
+                if (fvy > FX_TERMINAL_VELOCITY) {
+                    fvy = FX_TERMINAL_VELOCITY;
+                }
+            }
+        }
+        
+        if (jumpCooldownTimer > 0) {
+            jumpCooldownTimer--;
+        }
+        
+        onGround = false;
+        
+        // 更新位置（连续碰撞检测）
+        moveSweptFixed();
+        
+        // 地面碰撞检测
+        if (fy >= (GROUND_Y << SUBPIXEL_SHIFT) - FX_HEIGHT) {
+            fy = (GROUND_Y << SUBPIXEL_SHIFT) - FX_HEIGHT;
+            fvy = 0;
+            onGround = true;
+            dashCount = MAX_DASH_COUNT;
+        }
+        
+        checkPlatformCollisionFixed();
+        checkSolidBlockCollisionFixed();
+        checkEntityCollisionFixed();
+        checkSpikeCollisionFixed();
+        // 统一数组中的尖刺和能量豆与上面两个数组的检测重复，定点模式不再检测第二遍
+        checkEnergyBeanCollisionFixed();
+        
+        // 边界检测
+        if (fx < 0) fx = 0;
+        if (fx > (1920 - PLAYER_WIDTH) << SUBPIXEL_SHIFT) fx = (1920 - PLAYER_WIDTH) << SUBPIXEL_SHIFT;
+        
+        if (onGround) {
+            fstamina = FX_MAX_STAMINA;
+            isClimbing = false;
+        }
+        
+        syncFromFixed();
+    }
+    
+    private void checkWallCollisionFixed() {
+        isTouchingWall = false;
+        wallDirection = 0;
+        long right = (long) fx + FX_WIDTH;
+        long bottom = (long) fy + FX_HEIGHT;
+        int count = collectTouching(collisionGrid, CollisionGrid.SOLID_BLOCK, solidBlocks, solidBlockRooms, -1);
+        for (int k = 0; k < count; k++) {
+            SolidBlock block = solidBlocks[touchingIndices[k]];
+            long blockLeft = (long) block.getX() << SUBPIXEL_SHIFT;
+            long blockRight = (long) (block.getX() + block.getWidth()) << SUBPIXEL_SHIFT;
+            long blockTop = (long) block.getY() << SUBPIXEL_SHIFT;
+            long blockBottom = (long) (block.getY() + block.getHeight()) << SUBPIXEL_SHIFT;
+            if (fy >= blockBottom || bottom <= blockTop) {
+                continue;
+            }
+            if (right >= blockLeft && right <= blockLeft + FX_WALL_TOLERANCE) {
+                wallDirection = 1; // 右墙
+                isTouchingWall = true;
+                break;
+            }
+            if (fx <= blockRight && fx >= blockRight - FX_WALL_TOLERANCE) {
+                wallDirection = -1; // 左墙
+                isTouchingWall = true;
+                break;
+            }
+        }
+    }
+    
+    private void handleClimbingFixed() {
+        if (!isTouchingWall && !isClimbing) {
+            return;
+        }
+        
+        if (isClimbing && !isTouchingWall) {
+            isClimbing = false;
+            logEvent(GameEventLog.CLIMB_RELEASED, fx / (double) SUBPIXEL, fy / (double) SUBPIXEL);
+            return;
+        }
+        
+        if (!isClimbing) {
+            boolean movingTowardsWall = (wallDirection == 1 && isPressed(KeyBindings.ACTION_RIGHT)) || (wallDirection == -1 && isPressed(KeyBindings.ACTION_LEFT));
+            if (movingTowardsWall) {
+                fvy = FX_WALL_SLIDE_SPEED;
+                fvx = 0;
+            }
+            if (isPressed(KeyBindings.ACTION_CLIMB) && fstamina > 0) {
+                isClimbing = true;
+            }
+        }
+        
+        if (isClimbing) {
+            if (isPressed(KeyBindings.ACTION_UP) && !isPressed(KeyBindings.ACTION_DOWN)) {
+                fvy = -FX_CLIMB_MOVE_SPEED;
+            } else if (isPressed(KeyBindings.ACTION_DOWN) && !isPressed(KeyBindings.ACTION_UP)) {
+                fvy = FX_CLIMB_MOVE_SPEED;
+            } else {
+                fvy = 0;
+            }
+            fvx = 0;
+            
+            fstamina -= FX_STAMINA_DRAIN;
+            if (fstamina <= 0) {
+                fstamina = 0;
+                isClimbing = false;
+                logEvent(GameEventLog.STAMINA_EXHAUSTED, fx / (double) SUBPIXEL, fy / (double) SUBPIXEL);
+            }
+        }
+    }
+    
+    /**
+     * 按速度移动一个tick（连续碰撞检测）
+     * 沿移动路径求出最早碰到的实心物块、平台顶部或尖刺（扫掠AABB的碰撞时间）：停在接触位置，
+     * 再沿碰撞面移动剩余的位移。一个tick内的位移再大也不会穿过薄平台，也不会因为陷入物块太深
+     * 而被按最小重叠推到物块的另一侧。每个tick只按移动范围查询一次宽相位。
+     * 起点就已经重叠的元素（例如重生在物块中）不在这里处理，仍然由之后的离散碰撞检测推出。
+     */
+    private void moveSwept() {
+        double dx = velocityX;
+        double dy = velocityY;
+        if (collisionGrid == null || (dx == 0 && dy == 0)) {
+            x += dx;
+            y += dy;
+            return;
+        }
+        int count = collectCandidates((int) Math.floor(Math.min(x, x + dx)), (int) Math.floor(Math.min(y, y + dy)),
+            (int) Math.ceil(Math.max(x, x + dx)) + PLAYER_WIDTH, (int) Math.ceil(Math.max(y, y + dy)) + PLAYER_HEIGHT, true);
+    
+        // 每次碰撞消去一个方向的位移，最多碰撞两次
+        for (int pass = 0; pass < 2 && (dx != 0 || dy != 0); pass++) {
+            double hitTime = Double.POSITIVE_INFINITY;
+            int hit = -1;
+            boolean hitX = false;
+            for (int k = 0; k < count; k++) {
+                // 定点坐标换算为double是精确的
+                double left = candidateLeft[k] / (double) SUBPIXEL;
+                double top = candidateTop[k] / (double) SUBPIXEL;
+                double right = candidateRight[k] / (double) SUBPIXEL;
+                double bottom = candidateBottom[k] / (double) SUBPIXEL;
+    
+                if (candidateKinds[k] == CollisionGrid.PLATFORM) {
+                    // 平台只能从上方落上去：脚部经过平台顶部时水平方向重叠
+                    if (dy <= 0 || y + PLAYER_HEIGHT > top) {
+                        continue;
+                    }
+                    double time = (top - y - PLAYER_HEIGHT) / dy;
+                    double landX = x + dx * time;
+                    if (time <= 1 && time < hitTime && landX + PLAYER_WIDTH > left && landX < right) {
+                        hitTime = time;
+                        hit = k;
+                        hitX = false;
+                    }
+                    continue;
+                }
+    
+                // 每个方向上开始重叠和结束重叠的时间，不移动的方向上一直重叠或一直不重叠
+                double enterX, exitX, enterY, exitY;
+                if (dx > 0) {
+                    enterX = (left - x - PLAYER_WIDTH) / dx;
+                    exitX = (right - x) / dx;
+                } else if (dx < 0) {
+                    enterX = (right - x) / dx;
+                    exitX = (left - x - PLAYER_WIDTH) / dx;
+                } else if (x < right && x + PLAYER_WIDTH > left) {
+                    enterX = Double.NEGATIVE_INFINITY;
+                    exitX = Double.POSITIVE_INFINITY;
+                } else {
+                    continue;
+                }
+                if (dy > 0) {
+                    enterY = (top - y - PLAYER_HEIGHT) / dy;
+                    exitY = (bottom - y) / dy;
+                } else if (dy < 0) {
+                    enterY = (bottom - y) / dy;
+                    exitY = (top - y - PLAYER_HEIGHT) / dy;
+                } else if (y < bottom && y + PLAYER_HEIGHT > top) {
+                    enterY = Double.NEGATIVE_INFINITY;
+                    exitY = Double.POSITIVE_INFINITY;
+                } else {
+                    continue;
+                }
+                double enter = Math.max(enterX, enterY);
+                // 起点已经重叠，或者这个tick内碰不到
+                if (enter < 0 || enter >= 1 || enter >= Math.min(exitX, exitY)) {
+                    continue;
+                }
+                if (enter < hitTime) {
+                    hitTime = enter;
+                    hit = k;
+                    hitX = enterX >= enterY; // 后开始重叠的方向就是碰撞面
+                }
+            }
+            if (hit < 0) {
+                break;
+            }
+    
+            x += dx * hitTime;
+            y += dy * hitTime;
+            if (candidateKinds[hit] == CollisionGrid.SPIKE) {
+                die();
+                return;
+            }
+            if (hitX) {
+                // 撞到侧面，继续竖直方向的移动
+                x = dx > 0 ? candidateLeft[hit] / (double) SUBPIXEL - PLAYER_WIDTH : candidateRight[hit] / (double) SUBPIXEL;
+                velocityX = 0;
+                dx = 0;
+                dy *= 1 - hitTime;
+            } else {
+                if (dy > 0) {
+                    // 落到顶部
+                    y = candidateTop[hit] / (double) SUBPIXEL - PLAYER_HEIGHT;
+                    onGround = true;
+                    dashCount = MAX_DASH_COUNT;
+                } else {
+                    // 撞到底部
+                    y = candidateBottom[hit] / (double) SUBPIXEL;
+                }
+                velocityY = 0;
+                dy = 0;
+                dx *= 1 - hitTime;
+            }
+        }
+        x += dx;
+        y += dy;
+    }
+    
+    /**
+     * 定点模式的连续碰撞检测，与moveSwept()相同，碰撞时间用分数表示，只使用整数运算
+     */
+    private void moveSweptFixed() {
+        long dx = fvx;
+        long dy = fvy;
+        if (collisionGrid == null || (dx == 0 && dy == 0)) {
+            fx += fvx;
+            fy += fvy;
+            return;
+        }
+        int count = collectCandidates((int) (Math.min(fx, fx + dx) >> SUBPIXEL_SHIFT),
+            (int) (Math.min(fy, fy + dy) >> SUBPIXEL_SHIFT),
+            (int) ((Math.max(fx, fx + dx) + FX_WIDTH) >> SUBPIXEL_SHIFT) + 1,
+            (int) ((Math.max(fy, fy + dy) + FX_HEIGHT) >> SUBPIXEL_SHIFT) + 1, true);
+    
+        for (int pass = 0; pass < 2 && (dx != 0 || dy != 0); pass++) {
+            // 最早的碰撞时间为 hitNum / hitDen（分母为正）
+            long hitNum = 0, hitDen = 1;
+            int hit = -1;
+            boolean hitX = false;
+            for (int k = 0; k < count; k++) {
+                long left = candidateLeft[k];
+                long top = candidateTop[k];
+                long right = candidateRight[k];
+                long bottom = candidateBottom[k];
+    
+                if (candidateKinds[k] == CollisionGrid.PLATFORM) {
+                    long feet = (long) fy + FX_HEIGHT;
+                    if (dy <= 0 || feet > top || top - feet > dy) {
+                        continue;
+                    }
+                    long time = top - feet; // 碰撞时间为 time / dy
+                    long landX = fx + dx * time / dy;
+                    if ((hit < 0 || time * hitDen < hitNum * dy) && landX + FX_WIDTH > left && landX < right) {
+                        hitNum = time;
+                        hitDen = dy;
+                        hit = k;
+                        hitX = false;
+                    }
+                    continue;
+                }
+    
+                // 开始重叠的时间为 enter / |d|，结束重叠的时间为 exit / |d|；不移动的方向上一直重叠时标记为always
+                long enterX, exitX, enterY, exitY;
+                long denX = Math.abs(dx), denY = Math.abs(dy);
+                boolean alwaysX = false, alwaysY = false;
+                if (dx > 0) {
+                    enterX = left - fx - FX_WIDTH;
+                    exitX = right - fx;
+                } else if (dx < 0) {
+                    enterX = fx - right;
+                    exitX = fx + FX_WIDTH - left;
+                } else if (fx < right && fx + FX_WIDTH > left) {
+                    enterX = exitX = 0;
+                    alwaysX = true;
+                } else {
+                    continue;
+                }
+                if (dy > 0) {
+                    enterY = top - fy - FX_HEIGHT;
+                    exitY = bottom - fy;
+                } else if (dy < 0) {
+                    enterY = fy - bottom;
+                    exitY = fy + FX_HEIGHT - top;
+                } else if (fy < bottom && fy + FX_HEIGHT > top) {
+                    enterY = exitY = 0;
+                    alwaysY = true;
+                } else {
+                    continue;
+                }
+                boolean enteredX = alwaysY || (!alwaysX && enterX * denY >= enterY * denX);
+                long enter = enteredX ? enterX : enterY;
+                long enterDen = enteredX ? denX : denY;
+                boolean exitedX = alwaysY || (!alwaysX && exitX * denY <= exitY * denX);
+                long exit = exitedX ? exitX : exitY;
+                long exitDen = exitedX ? denX : denY;
+                if (enter < 0 || enter >= enterDen || enter * exitDen >= exit * enterDen) {
+                    continue;
+                }
+                if (hit < 0 || enter * hitDen < hitNum * enterDen) {
+                    hitNum = enter;
+                    hitDen = enterDen;
+                    hit = k;
+                    hitX = enteredX;
+                }
+            }
+            if (hit < 0) {
+                break;
+            }
+    
+            long movedX = dx * hitNum / hitDen;
+            long movedY = dy * hitNum / hitDen;
+            fx += movedX;
+            fy += movedY;
+            if (candidateKinds[hit] == CollisionGrid.SPIKE) {
+                die();
+                return;
+            }
+            if (hitX) {
+                fx = dx > 0 ? candidateLeft[hit] - FX_WIDTH : candidateRight[hit];
+                fvx = 0;
+                dx = 0;
+                dy -= movedY;
+            } else {
+                if (dy > 0) {
+                    fy = candidateTop[hit] - FX_HEIGHT;
+                    onGround = true;
+                    dashCount = MAX_DASH_COUNT;
+                } else {
+                    fy = candidateBottom[hit];
+                }
+                fvy = 0;
+                dy = 0;
+                dx -= movedX;
+            }
+        }
+        fx += dx;
+        fy += dy;
+    }
+    
+    /**
+     * 查询矩形（像素，含边界）范围内的静态元素和实体，结果在candidate*数组中，
+     * 包围盒统一换算为定点，碰撞检测不需要区分两者。数组不够大时扩大（之后一直沿用，稳定后不再分配）。
+     * @param includeStatic 是否包括静态元素（离散检测只需要实体，静态元素另有检测）
+     * @return 候选数
+     */
+    private int collectCandidates(int left, int top, int right, int bottom, boolean includeStatic) {
+        int count = 0;
+        if (includeStatic) {
+            int found = collisionGrid.query(left, top, right, bottom, candidateIds);
+            if (found > candidateIds.length) {
+                candidateIds = new int[Integer.highestOneBit(found) << 1];
+                found = collisionGrid.query(left, top, right, bottom, candidateIds);
+            }
+            ensureCandidateCapacity(found);
+            for (int k = 0; k < found; k++) {
+                int id = candidateIds[k];
+                candidateLeft[k] = toFixed(collisionGrid.getLeft(id));
+                candidateTop[k] = toFixed(collisionGrid.getTop(id));
+                candidateRight[k] = toFixed(collisionGrid.getRight(id));
+                candidateBottom[k] = toFixed(collisionGrid.getBottom(id));
+                candidateKinds[k] = (byte) collisionGrid.getKind(id);
+                candidateEntities[k] = -1;
+            }
+            count = found;
+        }
+        if (world == null || world.getEntityCount() == 0) {
+            return count;
+        }
+        int fixedLeft = toFixed(left), fixedTop = toFixed(top);
+        int fixedRight = toFixed(right), fixedBottom = toFixed(bottom);
+        int found = world.queryEntities(fixedLeft, fixedTop, fixedRight, fixedBottom, candidateIds);
+        if (found > candidateIds.length) {
+            candidateIds = new int[Integer.highestOneBit(found) << 1];
+            found = world.queryEntities(fixedLeft, fixedTop, fixedRight, fixedBottom, candidateIds);
+        }
+        ensureCandidateCapacity(count + found);
+        for (int k = 0; k < found; k++, count++) {
+            int entity = candidateIds[k];
+            candidateLeft[count] = world.getEntityLeft(entity);
+            candidateTop[count] = world.getEntityTop(entity);
+            candidateRight[count] = world.getEntityRight(entity);
+            candidateBottom[count] = world.getEntityBottom(entity);
+            candidateKinds[count] = (byte) world.getEntityCollisionKind(entity);
+            candidateEntities[count] = entity;
+        }
+        return count;
+    }
+    
+    /**
+     * 像素换算为定点，超出定点能表示的范围时取最近的边界（玩家的定点位置总在范围内，远处元素的相对位置不变）
+     */
+    private static int toFixed(int pixel) {
+        return Math.max(Integer.MIN_VALUE >> SUBPIXEL_SHIFT, Math.min(Integer.MAX_VALUE >> SUBPIXEL_SHIFT, pixel)) << SUBPIXEL_SHIFT;
+    }
+    
+    /**
+     * 找出包围盒与玩家当前包围盒（像素，含边界）相交的某类元素，按检测顺序把下标写入touchingIndices，
+     * 离散碰撞检测只逐个检测这些元素，结果与逐个检测整个活动视图相同。
+     * 设置了世界时按宽相位查询，只保留活动房间中的元素，按活动视图中的顺序（房间编号、元素下标）排列；
+     * 没有设置世界时按下标遍历数组。
+     * 检测中把玩家移出查询范围（见insideTouchRange）时，以刚检测的元素的排序键为after重新查询，
+     * 之前检测过的元素不再检测，顺序与逐个遍历相同。
+     * @param grid 宽相位索引，没有设置世界时为null
+     * @param kind 元素在索引中的类型
+     * @param elements 元素数组，下标与索引中的下标相同
+     * @param elementRooms 按元素下标的所在房间
+     * @param after 只保留排序键大于这个值的元素，-1表示全部
+     * @return 元素个数
+     */
+    private int collectTouching(CollisionGrid grid, int kind, MapElement[] elements, int[] elementRooms, long after) {
+        touchLeft = touchRangeLeft();
+        touchTop = touchRangeTop();
+        touchRight = touchRangeRight();
+        touchBottom = touchRangeBottom();
+        int count = 0;
+        if (grid == null) {
+            for (int i = (int) (after + 1); i < elements.length; i++) {
+                MapElement element = elements[i];
+                if (element.getX() <= touchRight && (long) element.getX() + element.getWidth() >= touchLeft
+                        && element.getY() <= touchBottom && (long) element.getY() + element.getHeight() >= touchTop) {
+                    ensureTouchingCapacity(count + 1);
+                    touchingKeys[count] = i;
+                    touchingIndices[count++] = i;
+                }
+            }
+            return count;
+        }
+        int found = grid.query(touchLeft, touchTop, touchRight, touchBottom, candidateIds);
+        if (found > candidateIds.length) {
+            candidateIds = new int[Integer.highestOneBit(found) << 1];
+            found = grid.query(touchLeft, touchTop, touchRight, touchBottom, candidateIds);
+        }
+        for (int k = 0; k < found; k++) {
+            int id = candidateIds[k];
+            if (grid.getKind(id) != kind) {
+                continue;
+            }
+            int index = grid.getIndex(id);
+            int room = elementRooms[index];
+            long key = (long) room << 32 | index;
+            if (key <= after || !world.isRoomActive(room)) {
+                continue;
+            }
+            // 按排序键插入，查询结果通常只有几个
+            ensureTouchingCapacity(count + 1);
+            int position = count++;
+            while (position > 0 && touchingKeys[position - 1] > key) {
+                touchingKeys[position] = touchingKeys[position - 1];
+                touchingIndices[position] = touchingIndices[position - 1];
+                position--;
+            }
+            touchingKeys[position] = key;
+            touchingIndices[position] = index;
+        }
+        return count;
+    }
+    
+    /**
+     * 玩家当前的包围盒是否仍在最近一次collectTouching的查询范围内
+     */
+    private boolean insideTouchRange() {
+        return touchRangeLeft() >= touchLeft && touchRangeTop() >= touchTop
+            && touchRangeRight() <= touchRight && touchRangeBottom() <= touchBottom;
+    }
+    
+    // 玩家包围盒向外取整到像素（定点模式使用定点位置）
+    private int touchRangeLeft() {
+        return fixedPoint ? fx >> SUBPIXEL_SHIFT : (int) Math.floor(x);
+    }
+    
+    private int touchRangeTop() {
+        return fixedPoint ? fy >> SUBPIXEL_SHIFT : (int) Math.floor(y);
+    }
+    
+    private int touchRangeRight() {
+        return fixedPoint ? (int) (((long) fx + FX_WIDTH + SUBPIXEL - 1) >> SUBPIXEL_SHIFT) : (int) Math.ceil(x) + PLAYER_WIDTH;
+    }
+    
+    private int touchRangeBottom() {
+        return fixedPoint ? (int) (((long) fy + FX_HEIGHT + SUBPIXEL - 1) >> SUBPIXEL_SHIFT) : (int) Math.ceil(y) + PLAYER_HEIGHT;
+    }
+    
+    private void ensureTouchingCapacity(int count) {
+        if (count <= touchingIndices.length) {
+            return;
+        }
+        int capacity = Integer.highestOneBit(count) << 1;
+        touchingIndices = Arrays.copyOf(touchingIndices, capacity);
+        touchingKeys = Arrays.copyOf(touchingKeys, capacity);
+    }
+    
+    private void ensureCandidateCapacity(int count) {
+        if (count <= candidateLeft.length) {
+            return;
+        }
+        int capacity = Integer.highestOneBit(count) << 1;
+        candidateLeft = new int[capacity];
+        candidateTop = new int[capacity];
+        candidateRight = new int[capacity];
+        candidateBottom = new int[capacity];
+        candidateKinds = new byte[capacity];
+        candidateEntities = new int[capacity];
+    }
+    
+    /**
+     * 玩家站在上面的实体（移动平台或下落物块）：没有向上运动，脚部正好贴着实体顶部且水平方向重叠
+     * 不要求onGround：站在实心物块上时没有竖直速度的tick不会重新着地，onGround会隔一个tick才设置一次
+     * 在实体推进之前调用，见Simulation.step
+     * @return 实体编号，没有时返回-1
+     */
+    public int findRiddenEntity() {
+        if (isDead || velocityY < 0 || world == null || world.getEntityCount() == 0) {
+            return -1;
+        }
+        int count = collectCandidates((int) Math.floor(x), (int) Math.floor(y) + PLAYER_HEIGHT,
+            (int) Math.ceil(x) + PLAYER_WIDTH, (int) Math.ceil(y) + PLAYER_HEIGHT, false);
+        for (int k = 0; k < count; k++) {
+            if (candidateKinds[k] == CollisionGrid.SPIKE) {
+                continue;
+            }
+            boolean standing = fixedPoint
+                ? fy + FX_HEIGHT == candidateTop[k] && fx + FX_WIDTH > candidateLeft[k] && fx < candidateRight[k]
+                : y + PLAYER_HEIGHT == candidateTop[k] / (double) SUBPIXEL
+                    && x + PLAYER_WIDTH > candidateLeft[k] / (double) SUBPIXEL && x < candidateRight[k] / (double) SUBPIXEL;
+            if (standing) {
+                return candidateEntities[k];
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * 随脚下的实体移动
+     * @param dx 水平位移（定点）
+     * @param dy 竖直位移（定点）
+     */
+    public void carry(int dx, int dy) {
+        if (fixedPoint) {
+            fx += dx;
+            fy += dy;
+            x = fx / (double) SUBPIXEL;
+            y = fy / (double) SUBPIXEL;
+        } else {
+            x += dx / (double) SUBPIXEL;
+            y += dy / (double) SUBPIXEL;
+        }
+    }
+    
+    /**
+     * 与实体的离散碰撞检测，规则与同类的静态元素相同：移动平台按平台、下落物块按实心物块、巡逻尖刺按尖刺处理
+     */
+    private void checkEntityCollision() {
+        if (world == null || world.getEntityCount() == 0) {
+            return;
+        }
+        int count = collectCandidates((int) Math.floor(x), (int) Math.floor(y),
+            (int) Math.ceil(x) + PLAYER_WIDTH, (int) Math.ceil(y) + PLAYER_HEIGHT, false);
+        for (int k = 0; k < count; k++) {
+            double left = candidateLeft[k] / (double) SUBPIXEL;
+            double top = candidateTop[k] / (double) SUBPIXEL;
+            double right = candidateRight[k] / (double) SUBPIXEL;
+            double bottom = candidateBottom[k] / (double) SUBPIXEL;
+            if (candidateKinds[k] == CollisionGrid.PLATFORM) {
+                if (x + PLAYER_WIDTH > left && x < right && y + PLAYER_HEIGHT >= top && y + PLAYER_HEIGHT <= bottom) {
+                    if (velocityY > 0) {
+                        y = top - PLAYER_HEIGHT;
+                        velocityY = 0;
+                    }
+                    onGround = true;
+                    dashCount = MAX_DASH_COUNT;
+                }
+                continue;
+            }
+            if (x >= right || x + PLAYER_WIDTH <= left || y >= bottom || y + PLAYER_HEIGHT <= top) {
+                continue;
+            }
+            if (candidateKinds[k] == CollisionGrid.SPIKE) {
+                die();
+                return;
+            }
+            // 实心物块：沿重叠最小的方向推出
+            double leftOverlap = x + PLAYER_WIDTH - left;
+            double rightOverlap = right - x;
+            double topOverlap = y + PLAYER_HEIGHT - top;
+            double bottomOverlap = bottom - y;
+            double minOverlap = Math.min(Math.min(leftOverlap, rightOverlap), Math.min(topOverlap, bottomOverlap));
+            if (minOverlap == leftOverlap) {
+                x = left - PLAYER_WIDTH;
+                velocityX = 0;
+            } else if (minOverlap == rightOverlap) {
+                x = right;
+                velocityX = 0;
+            } else if (minOverlap == topOverlap) {
+                y = top - PLAYER_HEIGHT;
+                velocityY = 0;
+                onGround = true;
+                dashCount = MAX_DASH_COUNT;
+            } else {
+                y = bottom;
+                velocityY = 0;
+                if (y > GROUND_Y - PLAYER_HEIGHT) {
+                    // 被下落物块压到地面以下
+                    die();
+                    return;
+                }
+            }
+        }
+    }
+    
+    /**
+     * 定点模式的实体离散碰撞检测，与checkEntityCollision()相同
+     */
+    private void checkEntityCollisionFixed() {
+        if (world == null || world.getEntityCount() == 0) {
+            return;
+        }
+        int count = collectCandidates(fx >> SUBPIXEL_SHIFT, fy >> SUBPIXEL_SHIFT,
+            ((fx + FX_WIDTH) >> SUBPIXEL_SHIFT) + 1, ((fy + FX_HEIGHT) >> SUBPIXEL_SHIFT) + 1, false);
+        for (int k = 0; k < count; k++) {
+            long left = candidateLeft[k];
+            long top = candidateTop[k];
+            long right = candidateRight[k];
+            long bottom = candidateBottom[k];
+            if (candidateKinds[k] == CollisionGrid.PLATFORM) {
+                long feet = (long) fy + FX_HEIGHT;
+                if ((long) fx + FX_WIDTH > left && fx < right && feet >= top && feet <= bottom) {
+                    if (fvy > 0) {
+                        fy = (int) (top - FX_HEIGHT);
+                        fvy = 0;
+                    }
+                    onGround = true;
+                    dashCount = MAX_DASH_COUNT;
+                }
+                continue;
+            }
+            if (!overlapsFixed(left, top, right, bottom)) {
+                continue;
+            }
+            if (candidateKinds[k] == CollisionGrid.SPIKE) {
+                die();
+                return;
+            }
+            long leftOverlap = (long) fx + FX_WIDTH - left;
+            long rightOverlap = right - fx;
+            long topOverlap = (long) fy + FX_HEIGHT - top;
+            long bottomOverlap = bottom - fy;
+            long minOverlap = Math.min(Math.min(leftOverlap, rightOverlap), Math.min(topOverlap, bottomOverlap));
+            if (minOverlap == leftOverlap) {
+                fx = (int) (left - FX_WIDTH);
+                fvx = 0;
+            } else if (minOverlap == rightOverlap) {
+                fx = (int) right;
+                fvx = 0;
+            } else if (minOverlap == topOverlap) {
+                fy = (int) (top - FX_HEIGHT);
+                fvy = 0;
+                onGround = true;
+                dashCount = MAX_DASH_COUNT;
+            } else {
+                fy = (int) bottom;
+                fvy = 0;
+                if (fy > (GROUND_Y << SUBPIXEL_SHIFT) - FX_HEIGHT) {
+                    die();
+                    return;
+                }
+            }
+        }
+    }
+    
+    private void checkPlatformCollisionFixed() {
+        int count = collectTouching(collisionGrid, CollisionGrid.PLATFORM, platforms, platformRooms, -1);
+        for (int k = 0; k < count; k++) {
+            Platform platform = platforms[touchingIndices[k]];
+            long right = (long) fx + FX_WIDTH;
+            long bottom = (long) fy + FX_HEIGHT;
+            long left = (long) platform.getX() << SUBPIXEL_SHIFT;
+            long top = (long) platform.getY() << SUBPIXEL_SHIFT;
+            if (right > left && fx < (long) (platform.getX() + platform.getWidth()) << SUBPIXEL_SHIFT
+                    && bottom >= top && bottom <= (long) (platform.getY() + platform.getHeight()) << SUBPIXEL_SHIFT) {
+                onGround = true;
+                dashCount = MAX_DASH_COUNT;
+                if (fvy > 0) {
+                    // 从上方着陆到平台
+                    fy = (int) (top - FX_HEIGHT);
+                    fvy = 0;
+                    if (!insideTouchRange()) {
+                        count = collectTouching(collisionGrid, CollisionGrid.PLATFORM, platforms, platformRooms, touchingKeys[k]);
+                        k = -1;
+                    }
+                }
+            }
+        }
+    }
+    
+    private void checkSolidBlockCollisionFixed() {
+        int count = collectTouching(collisionGrid, CollisionGrid.SOLID_BLOCK, solidBlocks, solidBlockRooms, -1);
+        for (int k = 0; k < count; k++) {
+            SolidBlock block = solidBlocks[touchingIndices[k]];
+            long blockLeft = (long) block.getX() << SUBPIXEL_SHIFT;
+            long blockRight = (long) (block.getX() + block.getWidth()) << SUBPIXEL_SHIFT;
+            long blockTop = (long) block.getY() << SUBPIXEL_SHIFT;
+            long blockBottom = (long) (block.getY() + block.getHeight()) << SUBPIXEL_SHIFT;
+            if (!overlapsFixed(blockLeft, blockTop, blockRight, blockBottom)) {
+                continue;
+            }
+            long leftOverlap = (long) fx + FX_WIDTH - blockLeft;
+            long rightOverlap = blockRight - fx;
+            long topOverlap = (long) fy + FX_HEIGHT - blockTop;
+            long bottomOverlap = blockBottom - fy;
+            long minOverlap = Math.min(Math.min(leftOverlap, rightOverlap), Math.min(topOverlap, bottomOverlap));
+            
+            if (minOverlap == leftOverlap) {
+                fx = (int) (blockLeft - FX_WIDTH);
+                fvx = 0;
+            } else if (minOverlap == rightOverlap) {
+                fx = (int) blockRight;
+                fvx = 0;
+            } else if (minOverlap == topOverlap) {
+                fy = (int) (blockTop - FX_HEIGHT);
+                fvy = 0;
+                onGround = true;
+                dashCount = MAX_DASH_COUNT;
+            } else {
+                fy = (int) blockBottom;
+                fvy = 0;
+            }
+            if (!insideTouchRange()) {
+                count = collectTouching(collisionGrid, CollisionGrid.SOLID_BLOCK, solidBlocks, solidBlockRooms, touchingKeys[k]);
+                k = -1;
+            }
+        }
+    }
+    
+    private void checkSpikeCollisionFixed() {
+        int count = collectTouching(collisionGrid, CollisionGrid.SPIKE, spikes, spikeRooms, -1);
+        for (int k = 0; k < count; k++) {
+            if (overlapsFixed(spikes[touchingIndices[k]])) {
+                die();
+                break;
+            }
+        }
+    }
+    
+    private void checkEnergyBeanCollisionFixed() {
+        int count = collectTouching(energyBeanGrid, 0, energyBeans, beanRooms, -1);
+        for (int k = 0; k < count; k++) {
+            int index = touchingIndices[k];
+            EnergyBean energyBean = energyBeans[index];
+            if (overlapsFixed(energyBean)) {
+                if (world.consumeBean(index)) {
+                    dashCount = MAX_DASH_COUNT;
+                    fstamina = FX_MAX_STAMINA;
+                    logEvent(GameEventLog.ENERGY_BEAN, energyBean.getX(), energyBean.getY());
+                }
+                break;
+            }
+        }
+    }
+    
+    private boolean overlapsFixed(MapElement element) {
+        return overlapsFixed((long) element.getX() << SUBPIXEL_SHIFT, (long) element.getY() << SUBPIXEL_SHIFT,
+            (long) (element.getX() + element.getWidth()) << SUBPIXEL_SHIFT,
+            (long) (element.getY() + element.getHeight()) << SUBPIXEL_SHIFT);
+    }
+    
+    private boolean overlapsFixed(long left, long top, long right, long bottom) {
+        return fx < right && (long) fx + FX_WIDTH > left && fy < bottom && (long) fy + FX_HEIGHT > top;
+    }
+    
+    /**
+     * 由double状态换算定点状态（切换模式、死亡和重生时）
+     */
+    private void loadFixedState() {
+        fx = toFixed(x);
+        fy = toFixed(y);
+        fvx = toFixed(velocityX);
+        fvy = toFixed(velocityY);
+        fdashVX = toFixed(dashVelocityX);
+        fdashVY = toFixed(dashVelocityY);
+        fstamina = (int) Math.round(stamina * STAMINA_UNIT);
+    }
+    
+    /**
+     * 由定点状态更新double字段，换算是精确的
+     */
+    private void syncFromFixed() {
+        x = fx / (double) SUBPIXEL;
+        y = fy / (double) SUBPIXEL;
+        velocityX = fvx / (double) SUBPIXEL;
+        velocityY = fvy / (double) SUBPIXEL;
+        dashVelocityX = fdashVX / (double) SUBPIXEL;
+        dashVelocityY = fdashVY / (double) SUBPIXEL;
+        stamina = fstamina / (double) STAMINA_UNIT;
+    }
+    
+    private static int toFixed(double value) {
+        return (int) Math.round(value * SUBPIXEL);
+    }
+    
     private void checkPlatformCollision() {
-        for (Platform platform : platforms) {
+        int count = collectTouching(collisionGrid, CollisionGrid.PLATFORM, platforms, platformRooms, -1);
+        for (int k = 0; k < count; k++) {
+            Platform platform = platforms[touchingIndices[k]];
             if (platform.checkLanding(x, y, PLAYER_WIDTH, PLAYER_HEIGHT, velocityY)) {
                 // 玩家从上方着陆到平台
                 y = platform.getTopY() - PLAYER_HEIGHT;
                 velocityY = 0;
                 onGround = true;
                 dashCount = MAX_DASH_COUNT; // 落地时恢复所有冲刺次数 // 着陆到平台时恢复冲刺能力
+                if (!insideTouchRange()) {
+                    // 着陆后离开了查询范围，从下一个平台开始重新查询
+                    count = collectTouching(collisionGrid, CollisionGrid.PLATFORM, platforms, platformRooms, touchingKeys[k]);
+                    k = -1;
+                }
             } else if (platform.isPlayerOnPlatform(x, y, PLAYER_WIDTH, PLAYER_HEIGHT)) {
                 // 玩家在平台上（但不是着陆）
                 onGround = true;
@@ -291,7 +1262,9 @@ public class Player {
     
     
     private void checkSolidBlockCollision() {
-        for (SolidBlock block : solidBlocks) {
+        int count = collectTouching(collisionGrid, CollisionGrid.SOLID_BLOCK, solidBlocks, solidBlockRooms, -1);
+        for (int k = 0; k < count; k++) {
+            SolidBlock block = solidBlocks[touchingIndices[k]];
             if (block.checkCollision(x, y, PLAYER_WIDTH, PLAYER_HEIGHT)) {
                 // 计算碰撞方向并调整位置
                 
@@ -324,13 +1297,19 @@ public class Player {
                     y = block.getY() + block.getHeight();
                     velocityY = 0;
                 }
+                if (!insideTouchRange()) {
+                    // 被推出了查询范围，从下一个物块开始重新查询
+                    count = collectTouching(collisionGrid, CollisionGrid.SOLID_BLOCK, solidBlocks, solidBlockRooms, touchingKeys[k]);
+                    k = -1;
+                }
             }
         }
     }
     
     private void checkSpikeCollision() {
-        for (Spike spike : spikes) {
-            if (spike.checkCollision(x, y, PLAYER_WIDTH, PLAYER_HEIGHT)) {
+        int count = collectTouching(collisionGrid, CollisionGrid.SPIKE, spikes, spikeRooms, -1);
+        for (int k = 0; k < count; k++) {
+            if (spikes[touchingIndices[k]].checkCollision(x, y, PLAYER_WIDTH, PLAYER_HEIGHT)) {
                 // 玩家碰到尖刺，死亡
                 die();
                 break;
@@ -339,14 +1318,17 @@ public class Player {
     }
     
     private void checkEnergyBeanCollision() {
-        for (EnergyBean energyBean : energyBeans) {
+        int count = collectTouching(energyBeanGrid, 0, energyBeans, beanRooms, -1);
+        for (int k = 0; k < count; k++) {
+            int index = touchingIndices[k];
+            EnergyBean energyBean = energyBeans[index];
             if (energyBean.checkCollision(x, y, PLAYER_WIDTH, PLAYER_HEIGHT)) {
                 // 玩家碰到能量豆，尝试消耗
-                if (energyBean.consume()) {
+                if (world.consumeBean(index)) {
                     // 成功消耗能量豆，恢复冲刺数和体力
                     dashCount = MAX_DASH_COUNT; // 恢复所有冲刺次数
                     stamina = MAX_STAMINA; // 恢复体力
-                    System.out.println("获得能量豆！冲刺数和体力已恢复！");
+                    logEvent(GameEventLog.ENERGY_BEAN, energyBean.getX(), energyBean.getY());
                 }
                 break;
             }
@@ -355,29 +1337,32 @@ public class Player {
     
     /**
      * 统一的多态碰撞检测方法
-     * 使用多态处理所有MapElement子类的碰撞检测
+     * 统一数组（静态元素、重生点、能量豆依次排列）中只有尖刺和能量豆需要处理，且尖刺都排在能量豆之前：
+     * 碰到任何尖刺时死亡，否则尝试消耗第一个碰到的能量豆，两类元素分别按宽相位查询
      */
     private void checkMapElementCollisions() {
-        if (mapElements == null) return;
+        if (world == null) return;
         
-        for (MapElement element : mapElements) {
-            if (element.checkCollision(x, y, PLAYER_WIDTH, PLAYER_HEIGHT)) {
-                // 根据元素类型进行不同的处理
-                if (element instanceof Spike) {
-                    // 尖刺碰撞 - 死亡
-                    die();
-                    break;
-                } else if (element instanceof EnergyBean) {
-                    // 能量豆碰撞 - 尝试消耗
-                    EnergyBean energyBean = (EnergyBean) element;
-                    if (energyBean.consume()) {
-                        dashCount = MAX_DASH_COUNT;
-                        stamina = MAX_STAMINA;
-                        System.out.println("获得能量豆！冲刺数和体力已恢复！");
-                    }
-                    break;
+        int count = collectTouching(collisionGrid, CollisionGrid.SPIKE, spikes, spikeRooms, -1);
+        for (int k = 0; k < count; k++) {
+            if (spikes[touchingIndices[k]].checkCollision(x, y, PLAYER_WIDTH, PLAYER_HEIGHT)) {
+                // 尖刺碰撞 - 死亡
+                die();
+                return;
+            }
+        }
+        count = collectTouching(energyBeanGrid, 0, energyBeans, beanRooms, -1);
+        for (int k = 0; k < count; k++) {
+            int index = touchingIndices[k];
+            EnergyBean energyBean = energyBeans[index];
+            if (energyBean.checkCollision(x, y, PLAYER_WIDTH, PLAYER_HEIGHT)) {
+                // 能量豆碰撞 - 尝试消耗
+                if (world.consumeBean(index)) {
+                    dashCount = MAX_DASH_COUNT;
+                    stamina = MAX_STAMINA;
+                    logEvent(GameEventLog.ENERGY_BEAN, energyBean.getX(), energyBean.getY());
                 }
-                // 其他类型的碰撞检测保持原有逻辑（实心物块、平台等）
+                return;
             }
         }
     }
@@ -390,8 +1375,9 @@ public class Player {
         wallDirection = 0;
         
         // 检查实心物块的墙壁碰撞
-        for (SolidBlock block : solidBlocks) {
-            if (isTouchingWall(block)) {
+        int count = collectTouching(collisionGrid, CollisionGrid.SOLID_BLOCK, solidBlocks, solidBlockRooms, -1);
+        for (int k = 0; k < count; k++) {
+            if (isTouchingWall(solidBlocks[touchingIndices[k]])) {
                 isTouchingWall = true;
                 break;
             }
@@ -435,14 +1421,14 @@ public class Player {
         // 2. 如果正在攀爬但不贴墙了，停止攀爬
         if (isClimbing && !isTouchingWall) {
             isClimbing = false;
-            System.out.println("离开墙壁，停止攀爬");
+            logEvent(GameEventLog.CLIMB_RELEASED, x, y);
             return;
         }
         
         // 3. 贴墙且非攀爬时：如果有向墙壁移动，会贴着墙壁匀速缓慢下落
         if (!isClimbing) {
             // 检查是否向墙壁移动
-            boolean movingTowardsWall = (wallDirection == 1 && rightPressed) || (wallDirection == -1 && leftPressed);
+            boolean movingTowardsWall = (wallDirection == 1 && isPressed(KeyBindings.ACTION_RIGHT)) || (wallDirection == -1 && isPressed(KeyBindings.ACTION_LEFT));
             
             if (movingTowardsWall) {
                 // 贴着墙壁匀速缓慢下落
@@ -452,7 +1438,7 @@ public class Player {
             // 如果没有向墙壁移动，则自由下落（重力会处理）
             
             // 检查是否可以开始攀爬（每帧都检查）
-            if (climbPressed && stamina > 0) {
+            if (isPressed(KeyBindings.ACTION_CLIMB) && stamina > 0) {
                 isClimbing = true;
             }
         }
@@ -460,11 +1446,11 @@ public class Player {
         // 4. 贴墙且攀爬时：可以上下移动
         if (isClimbing) {
             // 处理攀爬时的上下移动
-            if (upPressed && !downPressed) {
+            if (isPressed(KeyBindings.ACTION_UP) && !isPressed(KeyBindings.ACTION_DOWN)) {
                 // 向上攀爬
                 velocityY = -CLIMB_MOVE_SPEED;
                 velocityX = 0; // 停止水平移动
-            } else if (downPressed && !upPressed) {
+            } else if (isPressed(KeyBindings.ACTION_DOWN) && !isPressed(KeyBindings.ACTION_UP)) {
                 // 向下攀爬
                 velocityY = CLIMB_MOVE_SPEED;
                 velocityX = 0; // 停止水平移动
@@ -479,20 +1465,26 @@ public class Player {
             if (stamina <= 0) {
                 stamina = 0;
                 isClimbing = false; // 体力耗尽，停止攀爬
-                System.out.println("体力耗尽！停止攀爬");
+                logEvent(GameEventLog.STAMINA_EXHAUSTED, x, y);
             }
         }
         
     }
     
     private void die() {
+        if (fixedPoint) {
+            // 定点模式在tick中途死亡，先把定点位置同步到double字段
+            fvx = 0;
+            fvy = 0;
+            syncFromFixed();
+        }
         isDead = true;
         deathAnimationTimer = 0;
         deathX = x; // 记录死亡位置
         deathY = y;
         velocityX = 0;
         velocityY = 0;
-        System.out.println("玩家死亡！正在重生...");
+        logEvent(GameEventLog.DEATH, x, y);
     }
     
     private void respawn() {
@@ -508,7 +1500,10 @@ public class Player {
         isDashing = false;
         dashTimer = 0;
         isClimbing = false; // 重生时停止攀爬
-        System.out.println("玩家重生！");
+        if (fixedPoint) {
+            loadFixedState();
+        }
+        logEvent(GameEventLog.RESPAWN, x, y);
     }
     
     private void startDash() {
@@ -516,11 +1511,11 @@ public class Player {
         
         // 保存冲刺前的颜色
         if (dashCount >= 2) {
-            dashColor = new Color(255, 192, 203); // 粉色
+            dashColorIndex = 0; // 粉色
         } else if (dashCount == 1) {
-            dashColor = new Color(255, 50, 50); // 红色
+            dashColorIndex = 1; // 红色
         } else {
-            dashColor = new Color(50, 100, 255); // 蓝色
+            dashColorIndex = 2; // 蓝色
         }
         
         isDashing = true;
@@ -529,18 +1524,29 @@ public class Player {
         isClimbing = false; // 冲刺时停止攀爬
         
         // 根据当前按键状态确定冲刺方向
-        double dashX = 0, dashY = 0;
+        int directionX = 0, directionY = 0;
         
-        if (leftPressed) dashX = -1;
-        if (rightPressed) dashX = 1;
-        if (upPressed) dashY = -1;
-        if (downPressed) dashY = 1;
+        if (isPressed(KeyBindings.ACTION_LEFT)) directionX = -1;
+        if (isPressed(KeyBindings.ACTION_RIGHT)) directionX = 1;
+        if (isPressed(KeyBindings.ACTION_UP)) directionY = -1;
+        if (isPressed(KeyBindings.ACTION_DOWN)) directionY = 1;
         
         // 如果没有按任何方向键，默认向右冲刺
-        if (dashX == 0 && dashY == 0) {
-            dashX = 1;
+        if (directionX == 0 && directionY == 0) {
+            directionX = 1;
         }
         
+        if (fixedPoint) {
+            // 斜向冲刺使用预先换算好的速度，不做开方
+            int speed = directionX != 0 && directionY != 0 ? FX_DASH_DIAGONAL_SPEED : FX_DASH_SPEED;
+            fdashVX = directionX * speed;
+            fdashVY = directionY * speed;
+            logEvent(GameEventLog.DASH, directionX, directionY, dashCount);
+            return;
+        }
+        
+        double dashX = directionX, dashY = directionY;
+        
         // 标准化方向向量
         double length = Math.sqrt(dashX * dashX + dashY * dashY);
         dashX = dashX / length;
@@ -550,57 +1556,113 @@ public class Player {
         dashVelocityX = dashX * DASH_SPEED;
         dashVelocityY = dashY * DASH_SPEED;
         
-        System.out.println("冲刺！方向: (" + dashX + ", " + dashY + ") 剩余次数: " + dashCount);
+        logEvent(GameEventLog.DASH, dashX, dashY, dashCount);
     }
     
     private void endDash() {
         isDashing = false;
         dashTimer = 0;
         // 冲刺结束后保持当前速度，但会受到重力影响
+        if (fixedPoint) {
+            fvx = fdashVX / 2;
+            fvy = fdashVY / 2;
+            return;
+        }
         velocityX = dashVelocityX * 0.5; // 冲刺结束后速度减半
         velocityY = dashVelocityY * 0.5;
     }
     
-    public void keyPressed(KeyEvent e) {
-        int keyCode = e.getKeyCode();
-        
-        if (KeyBindings.isLeftMoveKey(keyCode)) {
-            leftPressed = true;
-        } else if (KeyBindings.isRightMoveKey(keyCode)) {
-            rightPressed = true;
-        } else if (KeyBindings.isUpMoveKey(keyCode)) {
-            upPressed = true;
-        } else if (KeyBindings.isDownMoveKey(keyCode)) {
-            downPressed = true;
-        } else if (KeyBindings.isJumpKey(keyCode)) {
-            jumpPressed = true;
-        } else if (KeyBindings.isDashKey(keyCode)) {
-            dashPressed = true;
-        } else if (KeyBindings.isClimbKey(keyCode)) {
-            climbPressed = true;
-        }
-    }
-    
-    public void keyReleased(KeyEvent e) {
-        int keyCode = e.getKeyCode();
-        
-        if (KeyBindings.isLeftMoveKey(keyCode)) {
-            leftPressed = false;
-        } else if (KeyBindings.isRightMoveKey(keyCode)) {
-            rightPressed = false;
-        } else if (KeyBindings.isUpMoveKey(keyCode)) {
-            upPressed = false;
-        } else if (KeyBindings.isDownMoveKey(keyCode)) {
-            downPressed = false;
-        } else if (KeyBindings.isJumpKey(keyCode)) {
-            jumpPressed = false;
-        } else if (KeyBindings.isDashKey(keyCode)) {
-            dashPressed = false;
-        } else if (KeyBindings.isClimbKey(keyCode)) {
-            climbPressed = false;
-            // 松开攀爬键时停止攀爬
+    /**
+     * 把玩家的完整状态写入基本类型数组（用于倒带快照），不分配对象
+     * 每个快照占用STATE_DOUBLES个double和STATE_INTS个int
+     */
+    public void writeState(double[] doubles, int doubleOffset, int[] ints, int intOffset) {
+        doubles[doubleOffset] = x;
+        doubles[doubleOffset + 1] = y;
+        doubles[doubleOffset + 2] = velocityX;
+        doubles[doubleOffset + 3] = velocityY;
+        doubles[doubleOffset + 4] = dashVelocityX;
+        doubles[doubleOffset + 5] = dashVelocityY;
+        doubles[doubleOffset + 6] = stamina;
+        doubles[doubleOffset + 7] = respawnX;
+        doubles[doubleOffset + 8] = respawnY;
+        doubles[doubleOffset + 9] = deathX;
+        doubles[doubleOffset + 10] = deathY;
+        
+        ints[intOffset] = input;
+        ints[intOffset + 1] = dashCount;
+        ints[intOffset + 2] = dashTimer;
+        ints[intOffset + 3] = jumpCooldownTimer;
+        ints[intOffset + 4] = deathAnimationTimer;
+        ints[intOffset + 5] = wallDirection;
+        ints[intOffset + 6] = dashColorIndex;
+        ints[intOffset + 7] = (onGround ? 1 : 0) | (isDead ? 2 : 0) | (isDashing ? 4 : 0)
+            | (isClimbing ? 8 : 0) | (isTouchingWall ? 16 : 0);
+        ints[intOffset + 8] = fx;
+        ints[intOffset + 9] = fy;
+        ints[intOffset + 10] = fvx;
+        ints[intOffset + 11] = fvy;
+        ints[intOffset + 12] = fdashVX;
+        ints[intOffset + 13] = fdashVY;
+        ints[intOffset + 14] = fstamina;
+    }
+    
+    /**
+     * 从基本类型数组恢复玩家状态
+     * @see #writeState(double[], int, int[], int)
+     */
+    public void readState(double[] doubles, int doubleOffset, int[] ints, int intOffset) {
+        x = doubles[doubleOffset];
+        y = doubles[doubleOffset + 1];
+        velocityX = doubles[doubleOffset + 2];
+        velocityY = doubles[doubleOffset + 3];
+        dashVelocityX = doubles[doubleOffset + 4];
+        dashVelocityY = doubles[doubleOffset + 5];
+        stamina = doubles[doubleOffset + 6];
+        respawnX = doubles[doubleOffset + 7];
+        respawnY = doubles[doubleOffset + 8];
+        deathX = doubles[doubleOffset + 9];
+        deathY = doubles[doubleOffset + 10];
+        
+        input = ints[intOffset];
+        dashCount = ints[intOffset + 1];
+        dashTimer = ints[intOffset + 2];
+        jumpCooldownTimer = ints[intOffset + 3];
+        deathAnimationTimer = ints[intOffset + 4];
+        wallDirection = ints[intOffset + 5];
+        dashColorIndex = ints[intOffset + 6];
+        int flags = ints[intOffset + 7];
+        onGround = (flags & 1) != 0;
+        isDead = (flags & 2) != 0;
+        isDashing = (flags & 4) != 0;
+        isClimbing = (flags & 8) != 0;
+        isTouchingWall = (flags & 16) != 0;
+        fx = ints[intOffset + 8];
+        fy = ints[intOffset + 9];
+        fvx = ints[intOffset + 10];
+        fvy = ints[intOffset + 11];
+        fdashVX = ints[intOffset + 12];
+        fdashVY = ints[intOffset + 13];
+        fstamina = ints[intOffset + 14];
+    }
+    
+    /**
+     * 设置这一帧的输入（游戏线程，每次update之前调用）
+     * @param input 输入位掩码，见KeyBindings.ACTION_*
+     */
+    public void setInput(int input) {
+        // 松开攀爬键时停止攀爬
+        if ((this.input & KeyBindings.ACTION_CLIMB) != 0 && (input & KeyBindings.ACTION_CLIMB) == 0) {
             isClimbing = false;
         }
+        this.input = input;
+    }
+    
+    /**
+     * 这一帧是否按下了指令对应的键
+     */
+    private boolean isPressed(int action) {
+        return (input & action) != 0;
     }
     
     public void render(Graphics g) {
@@ -642,7 +1704,7 @@ public class Player {
         }
         
         // 检查是否加速下落（自由落体时按S键，排除冲刺、攀墙、沿墙滑落状态）
-        boolean isFastFalling = !onGround && !isDashing && !isClimbing && !isTouchingWall && downPressed && velocityY > 0;
+        boolean isFastFalling = !onGround && !isDashing && !isClimbing && !isTouchingWall && isPressed(KeyBindings.ACTION_DOWN) && velocityY > 0;
         int renderWidth = isFastFalling ? PLAYER_WIDTH / 2 : PLAYER_WIDTH; // 加速下落时宽度减半
         int renderX = isFastFalling ? (int)x + PLAYER_WIDTH / 4 : (int)x; // 居中显示
         
@@ -661,6 +1723,7 @@ public class Player {
     
     private void renderDashingPlayer(Graphics g) {
         // 使用冲刺前的颜色
+        Color dashColor = DASH_COLORS[dashColorIndex];
         Color bodyColor = dashColor;
         Color headColor = new Color(
             Math.min(255, dashColor.getRed() + 30),
@@ -750,6 +1813,7 @@ public class Player {
     public int getDashCount() { return dashCount; }
     public boolean isClimbing() { return isClimbing; }
     public boolean isTouchingWall() { return isTouchingWall; }
+    public boolean isDead() { return isDead; }
     public double getStamina() { return stamina; }
 }
 
@@ -0,0 +1,381 @@
+// 简化项目结构，移除包声明
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * 松散四叉树空间索引
+ * 以整数编号保存矩形，支持插入、删除、移动以及点和矩形查询。
+ * 每个矩形按其尺寸放入固定深度的节点（节点边长不小于矩形尺寸），
+ * 按中心点选择子节点；节点的查询范围向外扩展半个边长，因此无需分裂和重新平衡。
+ * 每个节点记录子树中的矩形数量，用于缩小显示时按区域汇总密度。
+ */
+public class QuadTree {
+    // 默认根节点覆盖 [-2^26, 2^26) 的范围，远大于任何实际地图
+    private static final int DEFAULT_ROOT_MIN = -(1 << 26);
+    private static final int DEFAULT_ROOT_SIZE = 1 << 27;
+    private static final int MAX_DEPTH = 24;
+    
+    /**
+     * 密度查询回调
+     */
+    public interface DensityVisitor {
+        /**
+         * @param x 区域X坐标
+         * @param y 区域Y坐标
+         * @param size 区域边长
+         * @param count 中心位于该区域内的小矩形数量
+         */
+        void visit(int x, int y, int size, int count);
+    }
+    
+    /**
+     * 树节点
+     */
+    private static class Node {
+        final Node parent;
+        final int x, y, size;
+        final Node[] children = new Node[4];
+        int[] items = new int[4];
+        int itemCount = 0;
+        int childCount = 0;
+        int subtreeCount = 0; // 本节点及所有子节点中的矩形数量
+        
+        Node(Node parent, int x, int y, int size) {
+            this.parent = parent;
+            this.x = x;
+            this.y = y;
+            this.size = size;
+        }
+    }
+    
+    private final Node root;
+    private final int maxDepth;
+    
+    // 按编号保存的矩形和所在节点
+    private int[] boundsX = new int[0];
+    private int[] boundsY = new int[0];
+    private int[] boundsW = new int[0];
+    private int[] boundsH = new int[0];
+    private Node[] nodeOf = new Node[0];
+    private int[] slotOf = new int[0];
+    private int size = 0;
+    
+    // 超出根节点范围的矩形，查询时总是检查
+    private int[] overflow = new int[4];
+    private int overflowCount = 0;
+    private static final Node OVERFLOW = new Node(null, 0, 0, 0);
+    
+    public QuadTree() {
+        this(DEFAULT_ROOT_MIN, DEFAULT_ROOT_MIN, DEFAULT_ROOT_SIZE);
+    }
+    
+    /**
+     * 构造函数
+     * @param rootX 根节点X坐标
+     * @param rootY 根节点Y坐标
+     * @param rootSize 根节点边长（应为2的幂）
+     */
+    public QuadTree(int rootX, int rootY, int rootSize) {
+        this.root = new Node(null, rootX, rootY, rootSize);
+        this.maxDepth = Math.min(MAX_DEPTH, 31 - Integer.numberOfLeadingZeros(Math.max(1, rootSize)));
+    }
+    
+    /**
+     * 插入矩形
+     * @param id 编号（非负，建议紧凑分配）
+     */
+    public void insert(int id, int x, int y, int width, int height) {
+        ensureCapacity(id + 1);
+        if (nodeOf[id] != null) {
+            throw new IllegalArgumentException("编号已存在: " + id);
+        }
+        boundsX[id] = x;
+        boundsY[id] = y;
+        boundsW[id] = width;
+        boundsH[id] = height;
+        place(id);
+        size++;
+    }
+    
+    /**
+     * 删除矩形
+     */
+    public void remove(int id) {
+        if (!contains(id)) {
+            return;
+        }
+        unplace(id);
+        size--;
+    }
+    
+    /**
+     * 更新矩形位置和尺寸
+     * 如果所在节点不变，只更新保存的矩形
+     */
+    public void update(int id, int x, int y, int width, int height) {
+        if (!contains(id)) {
+            insert(id, x, y, width, height);
+            return;
+        }
+        boundsX[id] = x;
+        boundsY[id] = y;
+        boundsW[id] = width;
+        boundsH[id] = height;
+        
+        Node target = findTargetNode(id, false);
+        if (target != nodeOf[id]) {
+            unplace(id);
+            place(id);
+        }
+    }
+    
+    /**
+     * 是否包含指定编号
+     */
+    public boolean contains(int id) {
+        return id >= 0 && id < nodeOf.length && nodeOf[id] != null;
+    }
+    
+    /**
+     * 矩形总数
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * 清空索引
+     */
+    public void clear() {
+        Arrays.fill(root.children, null);
+        root.itemCount = 0;
+        root.childCount = 0;
+        root.subtreeCount = 0;
+        Arrays.fill(nodeOf, null);
+        overflowCount = 0;
+        size = 0;
+    }
+    
+    /**
+     * 查询与矩形相交的所有编号（边界相接也算相交）
+     * @param visitor 对每个结果调用，返回false时停止查询
+     * @return 查询是否完整执行（未被visitor中止）
+     */
+    public boolean query(int x, int y, int width, int height, IntPredicate visitor) {
+        long qx1 = x, qy1 = y;
+        long qx2 = (long) x + width, qy2 = (long) y + height;
+        
+        for (int i = 0; i < overflowCount; i++) {
+            int id = overflow[i];
+            if (intersects(id, qx1, qy1, qx2, qy2) && !visitor.test(id)) {
+                return false;
+            }
+        }
+        return queryNode(root, qx1, qy1, qx2, qy2, visitor);
+    }
+    
+    /**
+     * 查询包含指定点的所有编号
+     */
+    public boolean queryPoint(int x, int y, IntPredicate visitor) {
+        return query(x, y, 0, 0, visitor);
+    }
+    
+    /**
+     * 按密度查询：边长不超过cellSize的节点不再展开，整体作为一个区域汇报数量；
+     * 更大的节点中的矩形（尺寸大于cellSize的一半）逐个汇报。
+     * 查询开销只与区域内的网格数量有关，与矩形总数无关。
+     * @param cellSize 汇总区域的最大边长
+     * @param itemVisitor 对逐个汇报的矩形编号调用
+     * @param cellVisitor 对每个汇总区域调用
+     */
+    public void queryDensity(int x, int y, int width, int height, int cellSize,
+                             IntPredicate itemVisitor, DensityVisitor cellVisitor) {
+        long qx1 = x, qy1 = y;
+        long qx2 = (long) x + width, qy2 = (long) y + height;
+        
+        for (int i = 0; i < overflowCount; i++) {
+            int id = overflow[i];
+            if (intersects(id, qx1, qy1, qx2, qy2)) {
+                itemVisitor.test(id);
+            }
+        }
+        queryDensityNode(root, qx1, qy1, qx2, qy2, cellSize, itemVisitor, cellVisitor);
+    }
+    
+    public int getX(int id) { return boundsX[id]; }
+    public int getY(int id) { return boundsY[id]; }
+    public int getWidth(int id) { return boundsW[id]; }
+    public int getHeight(int id) { return boundsH[id]; }
+    
+    private boolean queryNode(Node node, long qx1, long qy1, long qx2, long qy2, IntPredicate visitor) {
+        // 松散边界：节点范围向外扩展半个边长
+        long half = node.size / 2;
+        if (qx2 < node.x - half || qx1 > (long) node.x + node.size + half
+                || qy2 < node.y - half || qy1 > (long) node.y + node.size + half) {
+            return true;
+        }
+        
+        for (int i = 0; i < node.itemCount; i++) {
+            int id = node.items[i];
+            if (intersects(id, qx1, qy1, qx2, qy2) && !visitor.test(id)) {
+                return false;
+            }
+        }
+        
+        if (node.childCount > 0) {
+            for (Node child : node.children) {
+                if (child != null && !queryNode(child, qx1, qy1, qx2, qy2, visitor)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    private void queryDensityNode(Node node, long qx1, long qy1, long qx2, long qy2, int cellSize,
+                                  IntPredicate itemVisitor, DensityVisitor cellVisitor) {
+        if (node.size <= cellSize) {
+            if (node.subtreeCount > 0 && qx2 >= node.x && qx1 < (long) node.x + node.size
+                    && qy2 >= node.y && qy1 < (long) node.y + node.size) {
+                cellVisitor.visit(node.x, node.y, node.size, node.subtreeCount);
+            }
+            return;
+        }
+        
+        long half = node.size / 2;
+        if (qx2 < node.x - half || qx1 > (long) node.x + node.size + half
+                || qy2 < node.y - half || qy1 > (long) node.y + node.size + half) {
+            return;
+        }
+        
+        for (int i = 0; i < node.itemCount; i++) {
+            int id = node.items[i];
+            if (intersects(id, qx1, qy1, qx2, qy2)) {
+                itemVisitor.test(id);
+            }
+        }
+        
+        if (node.childCount > 0) {
+            for (Node child : node.children) {
+                if (child != null) {
+                    queryDensityNode(child, qx1, qy1, qx2, qy2, cellSize, itemVisitor, cellVisitor);
+                }
+            }
+        }
+    }
+    
+    private boolean intersects(int id, long qx1, long qy1, long qx2, long qy2) {
+        long x1 = boundsX[id], y1 = boundsY[id];
+        return x1 <= qx2 && x1 + boundsW[id] >= qx1 && y1 <= qy2 && y1 + boundsH[id] >= qy1;
+    }
+    
+    /**
+     * 计算矩形应放入的节点
+     * @param create 是否创建沿途缺失的节点
+     * @return 目标节点；create为false且目标节点尚不存在时返回null
+     */
+    private Node findTargetNode(int id, boolean create) {
+        long centerX = boundsX[id] + (long) boundsW[id] / 2;
+        long centerY = boundsY[id] + (long) boundsH[id] / 2;
+        int extent = Math.max(1, Math.max(boundsW[id], boundsH[id]));
+        
+        if (centerX < root.x || centerX >= (long) root.x + root.size
+                || centerY < root.y || centerY >= (long) root.y + root.size
+                || extent > root.size) {
+            return OVERFLOW;
+        }
+        
+        Node node = root;
+        for (int depth = 0; depth < maxDepth; depth++) {
+            int childSize = node.size / 2;
+            if (childSize < extent) {
+                break;
+            }
+            int quadrant = (centerX >= node.x + childSize ? 1 : 0) + (centerY >= node.y + childSize ? 2 : 0);
+            Node child = node.children[quadrant];
+            if (child == null) {
+                if (!create) {
+                    return null;
+                }
+                child = new Node(node,
+                    node.x + ((quadrant & 1) != 0 ? childSize : 0),
+                    node.y + ((quadrant & 2) != 0 ? childSize : 0),
+                    childSize);
+                node.children[quadrant] = child;
+                node.childCount++;
+            }
+            node = child;
+        }
+        return node;
+    }
+    
+    private void place(int id) {
+        Node node = findTargetNode(id, true);
+        nodeOf[id] = node;
+        if (node == OVERFLOW) {
+            if (overflowCount == overflow.length) {
+                overflow = Arrays.copyOf(overflow, overflowCount * 2);
+            }
+            slotOf[id] = overflowCount;
+            overflow[overflowCount++] = id;
+            return;
+        }
+        if (node.itemCount == node.items.length) {
+            node.items = Arrays.copyOf(node.items, node.itemCount * 2);
+        }
+        slotOf[id] = node.itemCount;
+        node.items[node.itemCount++] = id;
+        for (Node n = node; n != null; n = n.parent) {
+            n.subtreeCount++;
+        }
+    }
+    
+    private void unplace(int id) {
+        Node node = nodeOf[id];
+        int slot = slotOf[id];
+        nodeOf[id] = null;
+        
+        if (node == OVERFLOW) {
+            int last = overflow[--overflowCount];
+            overflow[slot] = last;
+            slotOf[last] = slot;
+            return;
+        }
+        
+        // 与最后一个元素交换后删除，保持O(1)
+        int last = node.items[--node.itemCount];
+        node.items[slot] = last;
+        slotOf[last] = slot;
+        for (Node n = node; n != null; n = n.parent) {
+            n.subtreeCount--;
+        }
+        
+        // 回收空节点
+        while (node != root && node.itemCount == 0 && node.childCount == 0) {
+            Node parent = node.parent;
+            for (int i = 0; i < 4; i++) {
+                if (parent.children[i] == node) {
+                    parent.children[i] = null;
+                    parent.childCount--;
+                    break;
+                }
+            }
+            node = parent;
+        }
+    }
+    
+    private void ensureCapacity(int capacity) {
+        if (capacity <= nodeOf.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, Math.max(16, nodeOf.length * 2));
+        boundsX = Arrays.copyOf(boundsX, newCapacity);
+        boundsY = Arrays.copyOf(boundsY, newCapacity);
+        boundsW = Arrays.copyOf(boundsW, newCapacity);
+        boundsH = Arrays.copyOf(boundsH, newCapacity);
+        nodeOf = Arrays.copyOf(nodeOf, newCapacity);
+        slotOf = Arrays.copyOf(slotOf, newCapacity);
+    }
+}
@@ -0,0 +1,248 @@
+// 简化项目结构，移除包声明
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 快速存档
+ * 只保存游戏中会变化的状态：玩家状态、tick计数、重生点激活顺序、处于消耗状态的能量豆及其恢复计时器、
+ * 被踩过的下落物块及其计时器（其他实体的位置由tick计数算出），
+ * 以及到存档时为止的输入录像（读档后录像仍然可以从头重现整局游戏）。地图本身只记录哈希，
+ * 读档时直接在已加载的地图上恢复这些状态，不重新解析地图JSON。
+ *
+ * 存档在游戏线程上编码为字节数组（通常只有几百字节），写入磁盘可以交给后台线程：
+ * 先写同目录下的临时文件，再原子替换目标文件。
+ *
+ * 格式（大端序）：魔数"JCQS"、版本（1字节）、标志（1字节）、地图哈希（8字节）、tick、重生点激活计数，
+ * 玩家状态（Player.STATE_DOUBLES个double、Player.STATE_INTS个int），
+ * 激活的重生点数量和下标，消耗中的能量豆数量和（下标, 恢复计时器），
+ * 被踩过的下落物块数量和（下落物块编号, 计时器）（版本2起），录像长度和录像。
+ * 版本1的存档没有下落物块部分，读取时所有下落物块处于初始状态。
+ */
+public class QuickSave {
+    private static final int MAGIC = 0x4A435153; // "JCQS"
+    private static final int VERSION = 2;
+    private static final int FLAG_FIXED_POINT = 1;
+    
+    private final byte[] data;
+    
+    private QuickSave(byte[] data) {
+        this.data = data;
+    }
+    
+    /**
+     * 保存模拟的当前状态（游戏线程，在两个tick之间调用）
+     * @param recording 到目前为止的输入录像，可以为null
+     */
+    public static QuickSave capture(Simulation simulation, Replay recording) {
+        int[] activationOrder = simulation.getActivationOrder();
+        WorldState world = simulation.getWorld();
+        int beans = world.getEnergyBeanCount();
+        int consumed = 0;
+        for (int i = 0; i < beans; i++) {
+            if (world.isBeanConsumed(i)) {
+                consumed++;
+            }
+        }
+        int triggered = 0;
+        for (int i = 0; i < world.getFallingBlockCount(); i++) {
+            if (world.isFallingBlockTriggered(i)) {
+                triggered++;
+            }
+        }
+        byte[] replayData = recording != null ? recording.toByteArray() : new byte[0];
+        
+        double[] doubles = new double[Player.STATE_DOUBLES];
+        int[] ints = new int[Player.STATE_INTS];
+        simulation.getPlayer().writeState(doubles, 0, ints, 0);
+        
+        int size = 4 + 1 + 1 + 8 + 8 + 8
+            + doubles.length * 8 + ints.length * 4
+            + 4 + activationOrder.length * 4
+            + 4 + consumed * 8
+            + 4 + triggered * 8
+            + 4 + replayData.length;
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC);
+        buffer.put((byte) VERSION);
+        buffer.put((byte) (simulation.isFixedPoint() ? FLAG_FIXED_POINT : 0));
+        buffer.putLong(simulation.getMapHash());
+        buffer.putLong(simulation.getTick());
+        buffer.putLong(simulation.getActivationClock());
+        for (double value : doubles) {
+            buffer.putDouble(value);
+        }
+        for (int value : ints) {
+            buffer.putInt(value);
+        }
+        buffer.putInt(activationOrder.length);
+        for (int index : activationOrder) {
+            buffer.putInt(index);
+        }
+        buffer.putInt(consumed);
+        for (int i = 0; i < beans; i++) {
+            if (world.isBeanConsumed(i)) {
+                buffer.putInt(i);
+                buffer.putInt(world.getBeanRecoveryTimer(i));
+            }
+        }
+        buffer.putInt(triggered);
+        for (int i = 0; i < world.getFallingBlockCount(); i++) {
+            if (world.isFallingBlockTriggered(i)) {
+                buffer.putInt(i);
+                buffer.putInt(world.getFallingBlockTimer(i));
+            }
+        }
+        buffer.putInt(replayData.length);
+        buffer.put(replayData);
+        return new QuickSave(buffer.array());
+    }
+    
+    /**
+     * 把存档恢复到模拟中（游戏线程，在两个tick之间调用）
+     * @return 存档中的输入录像，存档时没有录像则返回null
+     * @throws IOException 存档损坏，或者与当前地图、物理模式不一致
+     */
+    public Replay restore(Simulation simulation) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("不是快速存档");
+            }
+            int version = buffer.get() & 0xFF;
+            if (version < 1 || version > VERSION) {
+                throw new IOException("不支持的存档版本: " + version);
+            }
+            boolean fixedPoint = (buffer.get() & FLAG_FIXED_POINT) != 0;
+            if (buffer.getLong() != simulation.getMapHash()) {
+                throw new IOException("存档不属于当前地图");
+            }
+            if (fixedPoint != simulation.isFixedPoint()) {
+                throw new IOException("存档使用的物理模式与当前不同");
+            }
+            long tick = buffer.getLong();
+            long activationClock = buffer.getLong();
+            
+            double[] doubles = new double[Player.STATE_DOUBLES];
+            int[] ints = new int[Player.STATE_INTS];
+            for (int i = 0; i < doubles.length; i++) {
+                doubles[i] = buffer.getDouble();
+            }
+            for (int i = 0; i < ints.length; i++) {
+                ints[i] = buffer.getInt();
+            }
+            
+            WorldState world = simulation.getWorld();
+            int checkpointCount = world.getMap().getCheckpoints().length;
+            int[] activationOrder = new int[buffer.getInt()];
+            if (activationOrder.length != activationClock - 1) {
+                throw new IOException("存档已损坏");
+            }
+            for (int i = 0; i < activationOrder.length; i++) {
+                activationOrder[i] = checkIndex(buffer.getInt(), checkpointCount);
+            }
+            
+            int consumed = buffer.getInt();
+            int[] beans = new int[consumed * 2];
+            for (int i = 0; i < beans.length; i += 2) {
+                beans[i] = checkIndex(buffer.getInt(), world.getEnergyBeanCount());
+                beans[i + 1] = buffer.getInt();
+            }
+            
+            int[] fallingBlocks = new int[version >= 2 ? buffer.getInt() * 2 : 0];
+            for (int i = 0; i < fallingBlocks.length; i += 2) {
+                fallingBlocks[i] = checkIndex(buffer.getInt(), world.getFallingBlockCount());
+                fallingBlocks[i + 1] = buffer.getInt();
+            }
+            
+            byte[] replayData = new byte[buffer.getInt()];
+            buffer.get(replayData);
+            Replay recording = replayData.length > 0 ? Replay.fromByteArray(replayData) : null;
+            
+            // 数据全部读完后再修改模拟，存档损坏时不会留下一半的状态
+            for (int i = 0; i < world.getEnergyBeanCount(); i++) {
+                world.restoreBean(i, false, 0);
+            }
+            for (int i = 0; i < beans.length; i += 2) {
+                world.restoreBean(beans[i], true, beans[i + 1]);
+            }
+            for (int i = 0; i < world.getFallingBlockCount(); i++) {
+                world.restoreFallingBlock(i, false, 0);
+            }
+            for (int i = 0; i < fallingBlocks.length; i += 2) {
+                world.restoreFallingBlock(fallingBlocks[i], true, fallingBlocks[i + 1]);
+            }
+            simulation.restoreState(tick, activationOrder);
+            simulation.restorePlayer(doubles, 0, ints, 0);
+            return recording;
+        } catch (RuntimeException e) {
+            // 数据被截断或长度字段越界
+            throw new IOException("存档已损坏", e);
+        }
+    }
+    
+    private static int checkIndex(int index, int length) throws IOException {
+        if (index < 0 || index >= length) {
+            throw new IOException("存档已损坏");
+        }
+        return index;
+    }
+    
+    /**
+     * 写入文件（可以在后台线程调用）：先写临时文件，再原子替换
+     */
+    public void write(Path file) throws IOException {
+        Path target = file.toAbsolutePath();
+        Path directory = target.getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+        
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+            
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    /**
+     * 从文件读取
+     */
+    public static QuickSave read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("存档文件过大: " + file);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // 继续读取
+            }
+            return new QuickSave(buffer.array());
+        }
+    }
+    
+    /**
+     * 存档大小（字节）
+     */
+    public int size() {
+        return data.length;
+    }
+}
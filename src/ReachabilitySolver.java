@@ -0,0 +1,410 @@
+// 简化项目结构，移除包声明
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 可达性分析
+ * 从地图的默认起点出发，搜索玩家能够到达的状态，判断每个重生点能否到达，以及玩家经过了哪些区域。
+ * 状态转移直接使用定点物理模式的Player：每一步把一种按键组合按住HOLD_TICKS个tick，
+ * 因此跳跃、冲刺、攀爬、蹬墙跳等规则与游戏完全一致。死亡的分支被剪掉。
+ *
+ * 搜索状态按 位置（8像素）、速度（2像素/tick）、冲刺次数、体力（25点）、
+ * 着地/冲刺/攀爬/贴墙 分桶去重，桶相同的状态只展开第一个。
+ * 搜索按广度优先逐层进行：同一层的状态分段交给ForkJoin线程池并行展开，展开期间已访问集合只读；
+ * 整层展开完后由调用solve的线程按（父状态，按键组合）的顺序合并新状态，桶相同时总是保留顺序最靠前的一个，
+ * 因此展开的状态、状态数和结论都与线程数无关。
+ *
+ * 这是启发式搜索，结论在两个方向上都不是证明：
+ * 桶相同的状态只展开第一个、按键只按HOLD_TICKS个tick的整数倍切换，会漏掉一些实际可行的路线，
+ * 所以"未找到路线"的重生点不代表无法到达；能量豆在每一步开始时都视为可用，又可能找到实际走不通的路线，
+ * 所以报告为可达的重生点仍建议试玩确认。结果用于提示地图作者检查，而不是作为通关与否的判定。
+ * 搜索状态不包含时间，实体（移动平台、下落物块、巡逻尖刺）在每一步开始时都回到第0个tick的位置，
+ * 有实体的地图上结果只作参考。
+ * 所有重生点都到达后，当前层展开完就结束搜索，此时区域覆盖只是已经搜索过的部分。
+ *
+ * 用法: ReachabilitySolver [地图文件] [--max-states 状态数] [--threads 线程数]
+ */
+public class ReachabilitySolver {
+    public static final int CELL_SIZE = 16; // 区域覆盖的格子大小（像素）
+    private static final String DEFAULT_MAP_PATH = "maps/default.json";
+    private static final int WORLD_WIDTH = 1920;
+    private static final int WORLD_HEIGHT = 1080;
+    private static final int PLAYER_WIDTH = 30;
+    private static final int PLAYER_HEIGHT = 40;
+    private static final int HOLD_TICKS = 6; // 每一步按住同一组按键的tick数
+    private static final int POSITION_BUCKET_SHIFT = 8 + 3; // 定点坐标 -> 8像素的桶
+    private static final int VELOCITY_BUCKET_SHIFT = 8 + 1; // 定点速度 -> 2像素/tick的桶
+    private static final int STAMINA_BUCKET = 250; // 定点体力 -> 25点的桶
+    private static final int DEFAULT_MAX_STATES = 500000;
+    private static final int LEAF_STATES = 16; // 每个展开任务至少处理的状态数
+    
+    // Player.writeState中int部分的下标
+    private static final int STATE_DASH_COUNT = 1;
+    private static final int STATE_FLAGS = 7;
+    private static final int STATE_FX = 8;
+    private static final int STATE_FY = 9;
+    private static final int STATE_FVX = 10;
+    private static final int STATE_FVY = 11;
+    private static final int STATE_FSTAMINA = 14;
+    
+    // 每一步可以选择的按键组合：左/右/不动 × 不按/跳跃/冲刺（八个方向）/攀爬（上下）
+    private static final int[] ACTIONS = createActions();
+    
+    /**
+     * 分析结果（不可变）
+     */
+    public static class Result {
+        private final Checkpoint[] checkpoints;
+        private final boolean[] checkpointReached;
+        private final long[] cells; // 到达过的格子，按行排列的位图
+        private final int gridWidth, gridHeight;
+        private final int stateCount;
+        private final boolean truncated;
+        private final long elapsedMillis;
+        
+        Result(Checkpoint[] checkpoints, boolean[] checkpointReached, long[] cells, int gridWidth, int gridHeight,
+               int stateCount, boolean truncated, long elapsedMillis) {
+            this.checkpoints = checkpoints;
+            this.checkpointReached = checkpointReached;
+            this.cells = cells;
+            this.gridWidth = gridWidth;
+            this.gridHeight = gridHeight;
+            this.stateCount = stateCount;
+            this.truncated = truncated;
+            this.elapsedMillis = elapsedMillis;
+        }
+        
+        /**
+         * 玩家中心是否到达过格子(cellX, cellY)（世界坐标除以CELL_SIZE）
+         */
+        public boolean isCellReached(int cellX, int cellY) {
+            if (cellX < 0 || cellY < 0 || cellX >= gridWidth || cellY >= gridHeight) {
+                return false;
+            }
+            int bit = cellY * gridWidth + cellX;
+            return (cells[bit >> 6] & (1L << bit)) != 0;
+        }
+        
+        public int getGridWidth() { return gridWidth; }
+        public int getGridHeight() { return gridHeight; }
+        
+        /**
+         * 分析时的重生点（与地图中重生点的顺序相同）
+         */
+        public Checkpoint[] getCheckpoints() { return checkpoints; }
+        
+        public boolean isCheckpointReached(int index) { return checkpointReached[index]; }
+        
+        public int getUnreachedCheckpointCount() {
+            int count = 0;
+            for (boolean reached : checkpointReached) {
+                if (!reached) {
+                    count++;
+                }
+            }
+            return count;
+        }
+        
+        /**
+         * 展开的状态数
+         */
+        public int getStateCount() { return stateCount; }
+        
+        /**
+         * 是否因为达到状态数上限而提前结束（此时搜索过的范围更小）
+         */
+        public boolean isTruncated() { return truncated; }
+        
+        public long getElapsedMillis() { return elapsedMillis; }
+        
+        public String describe() {
+            int unreached = getUnreachedCheckpointCount();
+            return String.format("%d 个状态, %dms, 找到路线的重生点 %d/%d%s", stateCount, elapsedMillis,
+                checkpoints.length - unreached, checkpoints.length, truncated ? " (达到状态数上限，结果不完整)" : "");
+        }
+    }
+    
+    private final CompiledMap map;
+    private final double startX, startY;
+    private final int maxStates;
+    private final int gridWidth = (WORLD_WIDTH + CELL_SIZE - 1) / CELL_SIZE;
+    private final int gridHeight = (WORLD_HEIGHT + CELL_SIZE - 1) / CELL_SIZE;
+    
+    // 已访问状态的分桶键，只在两层之间由solve的线程修改，展开时各线程只读
+    private final Set<Long> visited = new HashSet<>();
+    private int stateCount = 0;
+    // 当前层待展开的状态
+    private double[][] frontierDoubles;
+    private int[][] frontierInts;
+    // 当前层的展开结果：第i个状态的第a种按键组合在下标i * ACTIONS.length + a，死亡或已访问时为null
+    private double[][] childDoubles;
+    private int[][] childInts;
+    private long[] childKeys;
+    // 搜索期间各线程共享
+    private final AtomicLongArray cells = new AtomicLongArray((gridWidth * gridHeight + 63) / 64);
+    private final AtomicIntegerArray checkpointReached;
+    private boolean truncated = false;
+    private volatile boolean cancelled = false;
+    private final AtomicInteger unreachedCheckpoints;
+    // 每个线程各自的模拟，只用来推进，状态由任务携带
+    private final ThreadLocal<Simulation> scratch;
+    
+    /**
+     * @param map 要分析的地图
+     * @param maxStates 最多展开的状态数
+     */
+    public ReachabilitySolver(CompiledMap map, int maxStates) {
+        this.map = map;
+        this.startX = map.getDefaultStartX();
+        this.startY = map.getDefaultStartY();
+        this.maxStates = maxStates;
+        checkpointReached = new AtomicIntegerArray(map.getCheckpoints().length);
+        unreachedCheckpoints = new AtomicInteger(map.getCheckpoints().length);
+        scratch = ThreadLocal.withInitial(() -> {
+            Simulation simulation = new Simulation(map, startX, startY, true);
+            simulation.setEventLogging(false);
+            return simulation;
+        });
+    }
+    
+    public ReachabilitySolver(CompiledMap map) {
+        this(map, DEFAULT_MAX_STATES);
+    }
+    
+    /**
+     * 在线程池中搜索，返回时搜索已经结束（每个求解器只能运行一次）
+     */
+    public Result solve(ForkJoinPool pool) {
+        long startTime = System.nanoTime();
+        Simulation initial = new Simulation(map, startX, startY, true);
+        double[] doubles = new double[Player.STATE_DOUBLES];
+        int[] ints = new int[Player.STATE_INTS];
+        initial.getPlayer().writeState(doubles, 0, ints, 0);
+        markPosition(initial.getPlayer());
+        visited.add(stateKey(ints));
+        stateCount = 1;
+        frontierDoubles = new double[][] {doubles};
+        frontierInts = new int[][] {ints};
+        
+        // 所有重生点都已到达时地图已经证明可以通关，不再展开下一层
+        while (frontierInts.length > 0 && !truncated && !cancelled && unreachedCheckpoints.get() > 0) {
+            int slots = frontierInts.length * ACTIONS.length;
+            childDoubles = new double[slots][];
+            childInts = new int[slots][];
+            childKeys = new long[slots];
+            pool.invoke(new ExpandTask(0, frontierInts.length));
+            
+            List<double[]> nextDoubles = new ArrayList<>();
+            List<int[]> nextInts = new ArrayList<>();
+            for (int slot = 0; slot < slots; slot++) {
+                if (childInts[slot] == null || !visited.add(childKeys[slot])) {
+                    continue;
+                }
+                if (stateCount >= maxStates) {
+                    truncated = true;
+                    break;
+                }
+                stateCount++;
+                nextDoubles.add(childDoubles[slot]);
+                nextInts.add(childInts[slot]);
+            }
+            frontierDoubles = nextDoubles.toArray(new double[0][]);
+            frontierInts = nextInts.toArray(new int[0][]);
+        }
+        frontierDoubles = null;
+        frontierInts = null;
+        childDoubles = null;
+        childInts = null;
+        childKeys = null;
+        
+        boolean[] reached = new boolean[checkpointReached.length()];
+        for (int i = 0; i < reached.length; i++) {
+            reached[i] = checkpointReached.get(i) != 0;
+        }
+        long[] cellBits = new long[cells.length()];
+        for (int i = 0; i < cellBits.length; i++) {
+            cellBits[i] = cells.get(i);
+        }
+        return new Result(map.getCheckpoints(), reached, cellBits, gridWidth, gridHeight, stateCount,
+            truncated || cancelled, (System.nanoTime() - startTime) / 1000000);
+    }
+    
+    /**
+     * 停止搜索（任意线程），solve()尽快返回不完整的结果
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+    
+    /**
+     * 展开当前层中一段连续的状态：任务足够小时在当前线程上逐个展开，否则一分为二
+     */
+    private class ExpandTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private final int from, to;
+        
+        ExpandTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_STATES) {
+                for (int i = from; i < to && !cancelled; i++) {
+                    expand(i);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ExpandTask(from, middle), new ExpandTask(middle, to));
+        }
+    }
+    
+    /**
+     * 展开一个状态：对每种按键组合推进HOLD_TICKS个tick，没有死亡且桶未访问过的新状态写入展开结果
+     */
+    private void expand(int index) {
+        Simulation simulation = scratch.get();
+        Player player = simulation.getPlayer();
+        for (int a = 0; a < ACTIONS.length; a++) {
+            simulation.reset();
+            simulation.restorePlayer(frontierDoubles[index], 0, frontierInts[index], 0);
+            boolean dead = false;
+            for (int t = 0; t < HOLD_TICKS; t++) {
+                simulation.step(ACTIONS[a]);
+                if (player.isDead()) {
+                    dead = true;
+                    break;
+                }
+                markPosition(player);
+            }
+            if (dead) {
+                continue;
+            }
+            
+            double[] nextDoubles = new double[Player.STATE_DOUBLES];
+            int[] nextInts = new int[Player.STATE_INTS];
+            player.writeState(nextDoubles, 0, nextInts, 0);
+            long key = stateKey(nextInts);
+            if (visited.contains(key)) {
+                continue;
+            }
+            int slot = index * ACTIONS.length + a;
+            childDoubles[slot] = nextDoubles;
+            childInts[slot] = nextInts;
+            childKeys[slot] = key;
+        }
+    }
+    
+    /**
+     * 记录玩家所在的格子和接触到的重生点
+     */
+    private void markPosition(Player player) {
+        int cellX = ((int) player.getX() + PLAYER_WIDTH / 2) / CELL_SIZE;
+        int cellY = ((int) player.getY() + PLAYER_HEIGHT / 2) / CELL_SIZE;
+        if (cellX >= 0 && cellY >= 0 && cellX < gridWidth && cellY < gridHeight) {
+            int bit = cellY * gridWidth + cellX;
+            long mask = 1L << bit;
+            if ((cells.get(bit >> 6) & mask) == 0) {
+                cells.getAndUpdate(bit >> 6, value -> value | mask);
+            }
+        }
+        Checkpoint[] checkpoints = map.getCheckpoints();
+        for (int i = 0; i < checkpoints.length; i++) {
+            if (checkpointReached.get(i) == 0
+                    && checkpoints[i].isPlayerInActivationBox(player.getX(), player.getY(), PLAYER_WIDTH, PLAYER_HEIGHT)
+                    && checkpointReached.compareAndSet(i, 0, 1)) {
+                unreachedCheckpoints.decrementAndGet();
+            }
+        }
+    }
+    
+    /**
+     * 状态的分桶键：位置16+16位、速度5+5位、冲刺次数2位、体力4位、状态标志4位
+     */
+    private static long stateKey(int[] ints) {
+        long x = (ints[STATE_FX] >> POSITION_BUCKET_SHIFT) & 0xFFFF;
+        long y = (ints[STATE_FY] >> POSITION_BUCKET_SHIFT) & 0xFFFF;
+        long vx = clampBucket(ints[STATE_FVX] >> VELOCITY_BUCKET_SHIFT);
+        long vy = clampBucket(ints[STATE_FVY] >> VELOCITY_BUCKET_SHIFT);
+        long dashes = ints[STATE_DASH_COUNT] & 3;
+        long stamina = Math.min(15, ints[STATE_FSTAMINA] / STAMINA_BUCKET);
+        // 着地、冲刺、攀爬、贴墙（去掉死亡标志）
+        int flags = ints[STATE_FLAGS];
+        long state = (flags & 1) | ((flags >> 1) & 0xE);
+        return x | y << 16 | vx << 32 | vy << 37 | dashes << 42 | stamina << 44 | state << 48;
+    }
+    
+    private static long clampBucket(int value) {
+        return Math.max(-16, Math.min(15, value)) & 0x1F;
+    }
+    
+    private static int[] createActions() {
+        int[] horizontal = {0, KeyBindings.ACTION_LEFT, KeyBindings.ACTION_RIGHT};
+        int[] vertical = {0, KeyBindings.ACTION_UP, KeyBindings.ACTION_DOWN};
+        int[] actions = new int[horizontal.length * (2 + vertical.length * 2)];
+        int count = 0;
+        for (int h : horizontal) {
+            actions[count++] = h;
+            actions[count++] = h | KeyBindings.ACTION_JUMP;
+            for (int v : vertical) {
+                actions[count++] = h | v | KeyBindings.ACTION_DASH;
+                actions[count++] = h | v | KeyBindings.ACTION_CLIMB;
+            }
+        }
+        return actions;
+    }
+    
+    public static void main(String[] args) {
+        String mapPath = DEFAULT_MAP_PATH;
+        int maxStates = DEFAULT_MAX_STATES;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < args.length; i++) {
+            if ("--max-states".equals(args[i]) && i + 1 < args.length) {
+                maxStates = Integer.parseInt(args[++i]);
+            } else if ("--threads".equals(args[i]) && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                mapPath = args[i];
+            }
+        }
+        
+        CompiledMap map;
+        try {
+            map = CompiledMap.compileUnshared(JsonMapLoader.loadMapFromJson(mapPath));
+        } catch (IOException e) {
+            System.err.println("加载地图失败: " + e.getMessage());
+            return;
+        }
+        
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        Result result = new ReachabilitySolver(map, maxStates).solve(pool);
+        pool.shutdown();
+        
+        System.out.println(String.format("地图: %s, %d 线程", map.getName(), threads));
+        System.out.println("可达性分析: " + result.describe());
+        Checkpoint[] checkpoints = result.getCheckpoints();
+        for (int i = 0; i < checkpoints.length; i++) {
+            if (!result.isCheckpointReached(i)) {
+                System.out.println(String.format("  警告: 没有找到到达重生点的路线: 激活框(%d,%d) 重生点(%d,%d)",
+                    checkpoints[i].getX(), checkpoints[i].getY(),
+                    checkpoints[i].getRespawnX(), checkpoints[i].getRespawnY()));
+            }
+        }
+        // 搜索是启发式的，没有找到路线只作为警告，不作为失败的退出码
+        if (result.getUnreachedCheckpointCount() > 0) {
+            System.out.println("  以上重生点需要试玩确认（搜索没有覆盖所有按键时机和状态）");
+        }
+    }
+}
@@ -0,0 +1,288 @@
+// 简化项目结构，移除包声明
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * 输入回放
+ * 记录一局游戏每个tick的输入位掩码，连续相同的输入按游程编码（长度, 掩码）保存为变长整数，
+ * 加上地图哈希和起点，就可以在游戏或ReplayRunner中逐tick重现整局游戏。
+ * 录制只是在内存中追加几个字节，不分配对象、不做I/O，可以在游戏循环中直接调用。
+ *
+ * 文件格式：魔数"JCRP"、版本号（1字节）、标志（1字节，版本2起）、地图哈希（8字节）、起点x/y（double）、
+ * tick总数（变长整数），之后是若干游程，每个游程为 长度、掩码 两个变长整数。
+ */
+public class Replay {
+    private static final int MAGIC = 0x4A435250; // "JCRP"
+    private static final int VERSION = 2;
+    private static final int FLAG_FIXED_POINT = 1; // 使用定点物理模式录制
+    
+    private final long mapHash;
+    private final double startX, startY;
+    private final boolean fixedPoint;
+    
+    // 已完成的游程（变长整数编码）
+    private byte[] runs = new byte[256];
+    private int runsLength = 0;
+    private long tickCount = 0;
+    
+    // 正在录制的游程
+    private int runMask = 0;
+    private long runLength = 0;
+    
+    /**
+     * 开始录制
+     */
+    public Replay(long mapHash, double startX, double startY, boolean fixedPoint) {
+        this.mapHash = mapHash;
+        this.startX = startX;
+        this.startY = startY;
+        this.fixedPoint = fixedPoint;
+    }
+    
+    /**
+     * 记录一个tick的输入（游戏线程）
+     */
+    public void record(int mask) {
+        if (runLength > 0 && mask == runMask) {
+            runLength++;
+        } else {
+            if (runLength > 0) {
+                appendRun(runLength, runMask);
+            }
+            runMask = mask;
+            runLength = 1;
+        }
+        tickCount++;
+    }
+    
+    private void appendRun(long length, int mask) {
+        // 两个变长整数最多15字节
+        if (runsLength + 15 > runs.length) {
+            runs = Arrays.copyOf(runs, runs.length * 2);
+        }
+        runsLength = writeVarLong(runs, runsLength, length);
+        runsLength = writeVarLong(runs, runsLength, mask & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * 丢弃指定tick之后的输入（倒带后从较早的tick继续录制）
+     * @param ticks 保留的tick数
+     */
+    public void truncate(long ticks) {
+        if (ticks >= tickCount) {
+            return;
+        }
+        long[] value = new long[1];
+        int position = 0;
+        long counted = 0;
+        while (position < runsLength) {
+            int runStart = position;
+            position = readVarLong(runs, position, value);
+            long length = value[0];
+            position = readVarLong(runs, position, value);
+            if (counted + length >= ticks) {
+                // 截断点在这个游程中，把它变回正在录制的游程
+                runsLength = runStart;
+                runMask = (int) value[0];
+                runLength = ticks - counted;
+                tickCount = ticks;
+                return;
+            }
+            counted += length;
+        }
+        // 截断点在正在录制的游程中
+        runLength = ticks - counted;
+        tickCount = ticks;
+    }
+    
+    public long getMapHash() { return mapHash; }
+    public double getStartX() { return startX; }
+    public double getStartY() { return startY; }
+    public boolean isFixedPoint() { return fixedPoint; }
+    public long getTickCount() { return tickCount; }
+    
+    /**
+     * 从头开始逐tick读取输入
+     */
+    public Playback playback() {
+        return new Playback();
+    }
+    
+    /**
+     * 回放游标（只读取创建时已经录制的输入）
+     */
+    public class Playback {
+        private final int end = runsLength;
+        private final long lastRunLength = runLength;
+        private final int lastRunMask = runMask;
+        private int position = 0;
+        private long remaining = 0;
+        private int mask = 0;
+        private boolean lastRunRead = false;
+        
+        /**
+         * 是否还有下一个tick
+         */
+        public boolean hasNext() {
+            return remaining > 0 || position < end || (!lastRunRead && lastRunLength > 0);
+        }
+        
+        /**
+         * 下一个tick的输入
+         */
+        public int next() {
+            if (remaining == 0) {
+                if (position < end) {
+                    long[] value = new long[1];
+                    position = readVarLong(runs, position, value);
+                    remaining = value[0];
+                    position = readVarLong(runs, position, value);
+                    mask = (int) value[0];
+                } else if (!lastRunRead && lastRunLength > 0) {
+                    lastRunRead = true;
+                    remaining = lastRunLength;
+                    mask = lastRunMask;
+                } else {
+                    throw new IllegalStateException("回放已结束");
+                }
+            }
+            remaining--;
+            return mask;
+        }
+    }
+    
+    /**
+     * 保存到文件
+     */
+    public void write(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            writeTo(out);
+        }
+    }
+    
+    /**
+     * 编码为字节数组（与文件内容相同，用于嵌入快速存档）
+     */
+    public byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + runsLength);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+    
+    private void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(fixedPoint ? FLAG_FIXED_POINT : 0);
+        out.writeLong(mapHash);
+        out.writeDouble(startX);
+        out.writeDouble(startY);
+        byte[] buffer = new byte[30];
+        int length = writeVarLong(buffer, 0, tickCount);
+        out.write(buffer, 0, length);
+        out.write(runs, 0, runsLength);
+        if (runLength > 0) {
+            length = writeVarLong(buffer, 0, runLength);
+            length = writeVarLong(buffer, length, runMask & 0xFFFFFFFFL);
+            out.write(buffer, 0, length);
+        }
+    }
+    
+    /**
+     * 从文件读取
+     */
+    public static Replay read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return readFrom(in, file.getPath());
+        }
+    }
+    
+    /**
+     * 从{@link #toByteArray()}的结果解码
+     */
+    public static Replay fromByteArray(byte[] data) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            return readFrom(in, "快速存档中的录像");
+        }
+    }
+    
+    private static Replay readFrom(DataInputStream in, String name) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("不是回放文件: " + name);
+        }
+        int version = in.readUnsignedByte();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("不支持的回放版本: " + version);
+        }
+        int flags = version >= 2 ? in.readUnsignedByte() : 0;
+        Replay replay = new Replay(in.readLong(), in.readDouble(), in.readDouble(), (flags & FLAG_FIXED_POINT) != 0);
+        long tickCount = readVarLong(in);
+        long ticks = 0;
+        while (ticks < tickCount) {
+            long length = readVarLong(in);
+            int mask = (int) readVarLong(in);
+            if (length <= 0 || ticks + length > tickCount) {
+                throw new IOException("回放文件已损坏: " + name);
+            }
+            replay.appendRun(length, mask);
+            ticks += length;
+        }
+        replay.tickCount = tickCount;
+        return replay;
+    }
+    
+    private static int writeVarLong(byte[] buffer, int offset, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[offset++] = (byte) value;
+        return offset;
+    }
+    
+    private static int readVarLong(byte[] buffer, int offset, long[] result) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer[offset++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        result[0] = value;
+        return offset;
+    }
+    
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (shift > 63) {
+                throw new IOException("变长整数过长");
+            }
+            b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
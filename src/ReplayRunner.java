@@ -0,0 +1,57 @@
+// 简化项目结构，移除包声明
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 无界面回放工具
+ * 不创建窗口，以最快速度在Simulation中重现一段录像，输出玩家的最终状态，
+ * 可用于检查录像、比较物理改动前后的结果。
+ * 用法: ReplayRunner 录像文件 [地图文件]
+ */
+public class ReplayRunner {
+    private static final String DEFAULT_MAP_PATH = "maps/default.json";
+    
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("用法: ReplayRunner 录像文件 [地图文件]");
+            return;
+        }
+        String mapPath = args.length > 1 ? args[1] : DEFAULT_MAP_PATH;
+        
+        Replay replay;
+        MapDesign.MapData map;
+        try {
+            replay = Replay.read(new File(args[0]));
+            map = JsonMapLoader.loadMapFromJson(mapPath);
+        } catch (IOException e) {
+            System.err.println("加载失败: " + e.getMessage());
+            return;
+        }
+        if (replay.getMapHash() != Simulation.hashMap(map)) {
+            System.err.println("警告: 录像录制时使用的地图与 " + mapPath + " 不同，回放结果可能不一致");
+        }
+        
+        Simulation simulation = new Simulation(map, replay.getStartX(), replay.getStartY(), replay.isFixedPoint());
+        Replay.Playback playback = replay.playback();
+        long startTime = System.nanoTime();
+        while (playback.hasNext()) {
+            simulation.step(playback.next());
+        }
+        long elapsed = System.nanoTime() - startTime;
+        
+        Player player = simulation.getPlayer();
+        double seconds = elapsed / 1e9;
+        System.out.println(String.format("回放完成: %d ticks (游戏时间 %.1fs), 耗时 %.1fms, %.0f ticks/s (%.0f 倍速)",
+            simulation.getTick(), simulation.getTick() / (double) Simulation.TICKS_PER_SECOND, elapsed / 1e6,
+            simulation.getTick() / seconds, simulation.getTick() / seconds / Simulation.TICKS_PER_SECOND));
+        System.out.println(String.format("玩家最终状态: 位置 (%.4f, %.4f), 速度 (%.4f, %.4f), 体力 %.2f",
+            player.getX(), player.getY(), player.getVelocityX(), player.getVelocityY(), player.getStamina()));
+        System.out.println(String.format("物理模式: %s, 状态哈希: %016x",
+            replay.isFixedPoint() ? "定点" : "浮点", simulation.stateHash()));
+        Checkpoint checkpoint = simulation.getLatestActivatedCheckpoint();
+        if (checkpoint != null) {
+            System.out.println("最近激活的重生点: (" + checkpoint.getRespawnX() + ", " + checkpoint.getRespawnY() + ")");
+        }
+    }
+}
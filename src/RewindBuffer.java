@@ -0,0 +1,249 @@
+// 简化项目结构，移除包声明
+
+import java.util.Arrays;
+
+/**
+ * 倒带缓冲区
+ * 在预先分配的环形缓冲区中保存最近若干tick的模拟状态：玩家状态打包在基本类型数组中（见Player.writeState），
+ * 能量豆和下落物块只记录每个tick的变化（被消耗/被踩，以及恢复/回到原位），
+ * 重生点的激活由Simulation的激活记录撤销，其他实体的位置由tick计数算出。
+ *
+ * 能量豆被消耗、下落物块被踩之后，计时器每个tick加一（暂停的房间按经过的帧数推算，结果相同），
+ * 因此回到之前的tick时，没有变化的计时器减去回退的tick数即可；有变化的元素从最新的tick往前逐个撤销变化，
+ * 最早的一个变化决定它在目标tick的状态。
+ * 每个tick只检查WorldState记录的变化和当前处于消耗状态的元素，不遍历所有能量豆和下落物块。
+ * 存储按地图中能量豆和下落物块的数量预先分配，保存快照不分配对象，缓冲区满之前不会丢弃快照。
+ *
+ * 约定：模拟的当前状态总是等于最新的快照，即每次Simulation.step()之后调用{@link #capture(Simulation)}。
+ */
+public class RewindBuffer {
+    // 每个tick最多被消耗的能量豆和被踩的下落物块数（玩家每次更新最多消耗两个能量豆，最多踩一个下落物块）
+    private static final int CHANGES_PER_TICK = 3;
+    private static final int CONSUMED = 0; // 变化类型：被消耗/被踩
+    private static final int RECOVERED = 1; // 变化类型：恢复/回到原位
+    
+    private final int capacity;
+    private final double[] playerDoubles;
+    private final int[] playerInts;
+    private final long[] ticks;
+    private final long[] activationClocks;
+    private final int[] eventStart; // 快照的tick中发生的变化在eventPool中的起始位置
+    private final int[] eventCount;
+    
+    // 变化的环形存储，每项为 元素、类型 两个int；元素为能量豆编号，或按位取反的下落物块编号（负数）。
+    // 窗口内每次恢复之前都有一次被消耗，或者在窗口开始时已经处于消耗状态，
+    // 所以变化总数不超过 2 * capacity * CHANGES_PER_TICK + 能量豆数 + 下落物块数
+    private final int[] eventPool;
+    private int eventWrite = 0;
+    private int eventUsed = 0;
+    
+    // 当前处于消耗状态的能量豆和下落物块（元素同上），livePosition按能量豆编号、再按下落物块编号排列，不在其中时为-1
+    private final int[] live;
+    private final int[] livePosition;
+    private int liveCount = 0;
+    private final int beanCount;
+    
+    private int newest = -1; // 最新快照的位置
+    private int size = 0;
+    
+    /**
+     * @param capacity 最多保存的快照数（tick数）
+     * @param world 要保存的世界，按其中能量豆和下落物块的数量分配存储
+     */
+    public RewindBuffer(int capacity, WorldState world) {
+        this.capacity = capacity;
+        playerDoubles = new double[capacity * Player.STATE_DOUBLES];
+        playerInts = new int[capacity * Player.STATE_INTS];
+        ticks = new long[capacity];
+        activationClocks = new long[capacity];
+        eventStart = new int[capacity];
+        eventCount = new int[capacity];
+        beanCount = world.getEnergyBeanCount();
+        int elements = beanCount + world.getFallingBlockCount();
+        eventPool = new int[(2 * capacity * CHANGES_PER_TICK + elements) * 2];
+        live = new int[elements];
+        livePosition = new int[elements];
+        Arrays.fill(livePosition, -1);
+    }
+    
+    /**
+     * 保存模拟的当前状态，缓冲区已满时覆盖最旧的快照
+     * 缓冲区为空时（刚创建或clear之后）遍历一次所有能量豆和下落物块，找出处于消耗状态的元素
+     */
+    public void capture(Simulation simulation) {
+        WorldState world = simulation.getWorld();
+        if (size == capacity) {
+            dropOldest();
+        }
+        int slot = (newest + 1) % capacity;
+        simulation.getPlayer().writeState(playerDoubles, slot * Player.STATE_DOUBLES,
+            playerInts, slot * Player.STATE_INTS);
+        ticks[slot] = simulation.getTick();
+        activationClocks[slot] = simulation.getActivationClock();
+        eventStart[slot] = eventWrite;
+        eventCount[slot] = 0;
+        newest = slot;
+        
+        if (size == 0) {
+            clearLive();
+            for (int i = 0; i < beanCount; i++) {
+                if (world.isBeanConsumed(i)) {
+                    addLive(i);
+                }
+            }
+            for (int k = 0; k < livePosition.length - beanCount; k++) {
+                if (world.isFallingBlockTriggered(k)) {
+                    addLive(~k);
+                }
+            }
+        } else {
+            // 这个tick中被消耗的元素已经处于消耗状态，说明它在同一个tick中先恢复了
+            for (int c = 0; c < world.getChangeCount(); c++) {
+                int element = world.getChange(c);
+                if (livePosition[position(element)] >= 0) {
+                    addEvent(slot, element, RECOVERED);
+                } else {
+                    addLive(element);
+                }
+                addEvent(slot, element, CONSUMED);
+            }
+            for (int n = liveCount - 1; n >= 0; n--) {
+                int element = live[n];
+                if (!isConsumed(world, element)) {
+                    addEvent(slot, element, RECOVERED);
+                    removeLive(n);
+                }
+            }
+        }
+        size++;
+    }
+    
+    private void dropOldest() {
+        int oldest = (newest - size + 1 + capacity) % capacity;
+        eventUsed -= eventCount[oldest] * 2;
+        size--;
+    }
+    
+    private void addEvent(int slot, int element, int type) {
+        // 按上面的上限分配，只有玩家的规则改变、每个tick的变化超出CHANGES_PER_TICK时才需要丢弃旧的快照
+        while (eventUsed + 2 > eventPool.length && size > 0) {
+            dropOldest();
+        }
+        eventPool[eventWrite] = element;
+        eventPool[eventWrite + 1] = type;
+        eventWrite = (eventWrite + 2) % eventPool.length;
+        eventUsed += 2;
+        eventCount[slot]++;
+    }
+    
+    /**
+     * 回退若干tick，最多回退到最旧的快照
+     * @param steps 要回退的tick数
+     * @return 实际回退的tick数
+     */
+    public int rewind(Simulation simulation, int steps) {
+        steps = Math.min(steps, size - 1);
+        if (steps <= 0) {
+            return 0;
+        }
+        
+        // 暂停房间中的计时器先推算到当前tick，之后读到的计时器都是当前tick的值
+        WorldState world = simulation.getWorld();
+        world.fastForwardSuspendedRooms();
+        int target = (newest - steps + capacity) % capacity;
+        long targetTick = ticks[target];
+        int elapsed = (int) (ticks[newest] - targetTick);
+        
+        // 当前处于消耗状态的元素：计时器减去回退的tick数，窗口内有变化的元素随后被覆盖
+        for (int n = 0; n < liveCount; n++) {
+            int element = live[n];
+            if (element >= 0) {
+                world.restoreBean(element, true, world.getBeanRecoveryTimer(element) - elapsed);
+            } else {
+                world.restoreFallingBlock(~element, true, world.getFallingBlockTimer(~element) - elapsed);
+            }
+        }
+        // 从最新的tick往前撤销变化，同一个元素最早的变化最后写入
+        for (int i = 0; i < steps; i++) {
+            int slot = (newest - i + capacity) % capacity;
+            long tick = ticks[slot];
+            int position = (eventStart[slot] + eventCount[slot] * 2) % eventPool.length;
+            for (int e = 0; e < eventCount[slot]; e++) {
+                position = (position - 2 + eventPool.length) % eventPool.length;
+                int element = eventPool[position];
+                boolean recovered = eventPool[position + 1] == RECOVERED;
+                // 在tick中恢复的元素在前一个tick的计时器为持续时间减一
+                if (element >= 0) {
+                    world.restoreBean(element, recovered, EnergyBean.RECOVERY_TIME - (int) (tick - targetTick));
+                } else {
+                    int k = ~element;
+                    world.restoreFallingBlock(k, recovered, world.getFallingBlockDuration(k) - (int) (tick - targetTick));
+                }
+                if (livePosition[position(element)] < 0) {
+                    addLive(element);
+                }
+            }
+            eventUsed -= eventCount[slot] * 2;
+        }
+        eventWrite = (eventStart[target] + eventCount[target] * 2) % eventPool.length;
+        newest = target;
+        size -= steps;
+        
+        simulation.restoreCounters(targetTick, activationClocks[target]);
+        simulation.restorePlayer(playerDoubles, target * Player.STATE_DOUBLES,
+            playerInts, target * Player.STATE_INTS);
+        // 去掉在目标tick不处于消耗状态的元素
+        for (int n = liveCount - 1; n >= 0; n--) {
+            if (!isConsumed(world, live[n])) {
+                removeLive(n);
+            }
+        }
+        return steps;
+    }
+    
+    private boolean isConsumed(WorldState world, int element) {
+        return element >= 0 ? world.isBeanConsumed(element) : world.isFallingBlockTriggered(~element);
+    }
+    
+    private int position(int element) {
+        return element >= 0 ? element : beanCount + ~element;
+    }
+    
+    private void addLive(int element) {
+        livePosition[position(element)] = liveCount;
+        live[liveCount++] = element;
+    }
+    
+    private void removeLive(int n) {
+        livePosition[position(live[n])] = -1;
+        int last = live[--liveCount];
+        if (n < liveCount) {
+            live[n] = last;
+            livePosition[position(last)] = n;
+        }
+    }
+    
+    private void clearLive() {
+        for (int n = 0; n < liveCount; n++) {
+            livePosition[position(live[n])] = -1;
+        }
+        liveCount = 0;
+    }
+    
+    /**
+     * 已保存的快照数（可以回退的tick数为size-1）
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * 清空所有快照
+     */
+    public void clear() {
+        newest = -1;
+        size = 0;
+        eventWrite = 0;
+        eventUsed = 0;
+    }
+}
@@ -0,0 +1,279 @@
+// 简化项目结构，移除包声明
+
+import java.util.Arrays;
+
+/**
+ * 编译后的房间划分（只读）
+ * 编译地图时把每个元素按中心点归入一个房间，并为每个房间预先拼好"活动视图"：
+ * 这个房间及其相邻房间（按房间编号排列）中的平台、实心物块、尖刺、重生点、能量豆和实体。
+ * 玩家所在的房间改变时，模拟只需要换用新房间的视图，不需要临时拼数组，每个tick只遍历视图中的元素。
+ *
+ * 没有划分房间的地图编译为一个覆盖整个平面的房间，它的视图就是CompiledMap中的原数组，
+ * 元素的遍历顺序与划分房间之前完全相同。
+ * 同一张CompiledMap上的所有模拟共享一份RoomTable，数组不做复制，不能修改。
+ */
+public final class RoomTable {
+    final int count;
+    final String[] names;
+    final int[] left, top, right, bottom; // 房间边界（像素），右边界和下边界不包含在内
+    final int[][] neighbours; // 相邻房间的编号，从小到大
+    final int[][] activeRooms; // 房间自身和相邻房间的编号，从小到大
+    // 按房间：归入这个房间的元素
+    final int[][] beans; // 能量豆编号
+    final int[][] movers; // 往返移动的实体编号
+    final int[][] fallingBlocks; // 下落物块编号（见EntityTable.fallingIndex）
+    final int[][] entities; // 所有实体编号
+    // 按元素：所在的房间
+    final int[] platformRooms;
+    final int[] solidBlockRooms;
+    final int[] spikeRooms;
+    final int[] beanRooms;
+    final int[] fallingRooms; // 按下落物块编号
+    // 按房间：活动视图（房间自身和相邻房间中的元素）
+    final Platform[][] activePlatforms;
+    final SolidBlock[][] activeSolidBlocks;
+    final Spike[][] activeSpikes;
+    final EnergyBean[][] activeEnergyBeans;
+    final int[][] activeBeanIndices; // 活动视图中第i个能量豆的编号
+    final int[][] activeCheckpoints; // 重生点编号
+    final int[][] activeEntities; // 实体编号
+    final MapElement[][] activeStaticElements; // 平台、实心物块、尖刺依次排列
+    final MapElement[][] activeMapElements; // 静态元素、重生点、能量豆依次排列
+    
+    RoomTable(MapRoom[] rooms, Platform[] platforms, SolidBlock[] solidBlocks, Spike[] spikes,
+              Checkpoint[] checkpoints, EnergyBean[] energyBeans, MapEntity[] mapEntities, EntityTable entityTable,
+              MapElement[] staticElements, MapElement[] mapElements) {
+        count = Math.max(1, rooms.length);
+        names = new String[count];
+        left = new int[count];
+        top = new int[count];
+        right = new int[count];
+        bottom = new int[count];
+        if (rooms.length == 0) {
+            left[0] = Integer.MIN_VALUE;
+            top[0] = Integer.MIN_VALUE;
+            right[0] = Integer.MAX_VALUE;
+            bottom[0] = Integer.MAX_VALUE;
+        }
+        for (int r = 0; r < rooms.length; r++) {
+            names[r] = rooms[r].getName();
+            left[r] = rooms[r].getX();
+            top[r] = rooms[r].getY();
+            right[r] = rooms[r].getX() + rooms[r].getWidth();
+            bottom[r] = rooms[r].getY() + rooms[r].getHeight();
+        }
+        
+        // 边界相接或重叠的房间互为相邻房间
+        neighbours = new int[count][];
+        activeRooms = new int[count][];
+        int[] buffer = new int[count];
+        for (int r = 0; r < count; r++) {
+            int n = 0;
+            for (int other = 0; other < count; other++) {
+                if (other == r || (left[other] <= right[r] && left[r] <= right[other]
+                        && top[other] <= bottom[r] && top[r] <= bottom[other])) {
+                    buffer[n++] = other;
+                }
+            }
+            activeRooms[r] = Arrays.copyOf(buffer, n);
+            neighbours[r] = new int[n - 1];
+            int k = 0;
+            for (int other : activeRooms[r]) {
+                if (other != r) {
+                    neighbours[r][k++] = other;
+                }
+            }
+        }
+        
+        platformRooms = assign(platforms);
+        solidBlockRooms = assign(solidBlocks);
+        spikeRooms = assign(spikes);
+        int[][] platformsIn = group(platformRooms);
+        int[][] solidBlocksIn = group(solidBlockRooms);
+        int[][] spikesIn = group(spikeRooms);
+        int[][] checkpointsIn = group(assign(checkpoints));
+        beanRooms = assign(energyBeans);
+        beans = group(beanRooms);
+        int[] entityRooms = new int[mapEntities.length];
+        for (int i = 0; i < mapEntities.length; i++) {
+            MapEntity entity = mapEntities[i];
+            entityRooms[i] = roomOf(entity.getX() + entity.getWidth() / 2, entity.getY() + entity.getHeight() / 2);
+        }
+        entities = group(entityRooms);
+        fallingRooms = new int[entityTable.fallingBlocks.length];
+        for (int k = 0; k < fallingRooms.length; k++) {
+            fallingRooms[k] = entityRooms[entityTable.fallingBlocks[k]];
+        }
+        movers = new int[count][];
+        fallingBlocks = new int[count][];
+        for (int r = 0; r < count; r++) {
+            int moverCount = 0;
+            for (int i : entities[r]) {
+                if (entityTable.fallingIndex[i] < 0) {
+                    moverCount++;
+                }
+            }
+            movers[r] = new int[moverCount];
+            fallingBlocks[r] = new int[entities[r].length - moverCount];
+            int m = 0, f = 0;
+            for (int i : entities[r]) {
+                if (entityTable.fallingIndex[i] < 0) {
+                    movers[r][m++] = i;
+                } else {
+                    fallingBlocks[r][f++] = entityTable.fallingIndex[i];
+                }
+            }
+        }
+        
+        activePlatforms = new Platform[count][];
+        activeSolidBlocks = new SolidBlock[count][];
+        activeSpikes = new Spike[count][];
+        activeEnergyBeans = new EnergyBean[count][];
+        activeBeanIndices = new int[count][];
+        activeCheckpoints = new int[count][];
+        activeEntities = new int[count][];
+        activeStaticElements = new MapElement[count][];
+        activeMapElements = new MapElement[count][];
+        for (int r = 0; r < count; r++) {
+            int[] active = activeRooms[r];
+            activePlatforms[r] = gather(platforms, platformsIn, active);
+            activeSolidBlocks[r] = gather(solidBlocks, solidBlocksIn, active);
+            activeSpikes[r] = gather(spikes, spikesIn, active);
+            activeEnergyBeans[r] = gather(energyBeans, beans, active);
+            activeBeanIndices[r] = gatherIndices(beans, active);
+            activeCheckpoints[r] = gatherIndices(checkpointsIn, active);
+            activeEntities[r] = gatherIndices(entities, active);
+            if (count == 1) {
+                activeStaticElements[r] = staticElements;
+                activeMapElements[r] = mapElements;
+            } else {
+                activeStaticElements[r] = concat(activePlatforms[r], activeSolidBlocks[r], activeSpikes[r]);
+                activeMapElements[r] = concat(activeStaticElements[r], gather(checkpoints, checkpointsIn, active),
+                    activeEnergyBeans[r]);
+            }
+        }
+    }
+    
+    private int[] assign(MapElement[] elements) {
+        int[] rooms = new int[elements.length];
+        for (int i = 0; i < elements.length; i++) {
+            MapElement element = elements[i];
+            rooms[i] = roomOf(element.getX() + element.getWidth() / 2, element.getY() + element.getHeight() / 2);
+        }
+        return rooms;
+    }
+    
+    /**
+     * 包含点的房间，没有时为最近的房间（距离相同时取编号小的）
+     */
+    private int roomOf(int x, int y) {
+        int nearest = 0;
+        long nearestDistance = Long.MAX_VALUE;
+        for (int r = 0; r < count; r++) {
+            long dx = Math.max(0, Math.max((long) left[r] - x, (long) x - (right[r] - 1L)));
+            long dy = Math.max(0, Math.max((long) top[r] - y, (long) y - (bottom[r] - 1L)));
+            long distance = dx * dx + dy * dy;
+            if (distance < nearestDistance) {
+                nearest = r;
+                nearestDistance = distance;
+                if (distance == 0) {
+                    break;
+                }
+            }
+        }
+        return nearest;
+    }
+    
+    /**
+     * 按房间分组，组内保持元素编号的顺序
+     */
+    private int[][] group(int[] rooms) {
+        int[] sizes = new int[count];
+        for (int room : rooms) {
+            sizes[room]++;
+        }
+        int[][] groups = new int[count][];
+        for (int r = 0; r < count; r++) {
+            groups[r] = new int[sizes[r]];
+            sizes[r] = 0;
+        }
+        for (int i = 0; i < rooms.length; i++) {
+            groups[rooms[i]][sizes[rooms[i]]++] = i;
+        }
+        return groups;
+    }
+    
+    private static <T> T[] gather(T[] elements, int[][] groups, int[] active) {
+        if (active.length == 1 && groups[active[0]].length == elements.length) {
+            // 唯一的活动房间包含全部元素（例如没有划分房间的地图），直接使用原数组
+            return elements;
+        }
+        int size = 0;
+        for (int r : active) {
+            size += groups[r].length;
+        }
+        T[] result = Arrays.copyOf(elements, size);
+        int n = 0;
+        for (int r : active) {
+            for (int i : groups[r]) {
+                result[n++] = elements[i];
+            }
+        }
+        return result;
+    }
+    
+    private static int[] gatherIndices(int[][] groups, int[] active) {
+        if (active.length == 1) {
+            return groups[active[0]];
+        }
+        int size = 0;
+        for (int r : active) {
+            size += groups[r].length;
+        }
+        int[] result = new int[size];
+        int n = 0;
+        for (int r : active) {
+            System.arraycopy(groups[r], 0, result, n, groups[r].length);
+            n += groups[r].length;
+        }
+        return result;
+    }
+    
+    private static MapElement[] concat(MapElement[]... parts) {
+        int size = 0;
+        for (MapElement[] part : parts) {
+            size += part.length;
+        }
+        MapElement[] result = new MapElement[size];
+        int n = 0;
+        for (MapElement[] part : parts) {
+            System.arraycopy(part, 0, result, n, part.length);
+            n += part.length;
+        }
+        return result;
+    }
+    
+    /**
+     * 包含点(x, y)的房间：依次检查当前房间、相邻房间和其余房间，都不包含时仍为当前房间
+     */
+    int findRoom(int x, int y, int current) {
+        if (contains(current, x, y)) {
+            return current;
+        }
+        for (int r : neighbours[current]) {
+            if (contains(r, x, y)) {
+                return r;
+            }
+        }
+        for (int r = 0; r < count; r++) {
+            if (contains(r, x, y)) {
+                return r;
+            }
+        }
+        return current;
+    }
+    
+    private boolean contains(int r, int x, int y) {
+        return x >= left[r] && x < right[r] && y >= top[r] && y < bottom[r];
+    }
+}
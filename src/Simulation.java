@@ -0,0 +1,330 @@
+// 简化项目结构，移除包声明
+
+import java.util.List;
+
+/**
+ * 游戏模拟（不依赖界面）
+ * 以固定时间步长推进：每个tick对应60FPS下的一帧，输入为这一帧的按键位掩码（见KeyBindings.ACTION_*）。
+ * 重生点的激活顺序用模拟内部的计数器记录，不使用系统时间，
+ * 因此同样的地图、起点和输入序列总是得到同样的结果，可以用于回放和离线测试。
+ * 使用定点物理模式时结果只依赖整数运算，不同机器之间可以用{@link #stateHash()}逐tick比较。
+ *
+ * 地图几何来自只读的CompiledMap，重生点、能量豆和实体的状态保存在模拟自己的WorldState中，
+ * 多个模拟可以共享同一个CompiledMap并在不同线程上同时运行。
+ * 每个tick先推进实体（站在实体上的玩家随之移动），再推进玩家，玩家的碰撞检测总是针对实体在这个tick的新位置。
+ * 划分了房间的地图在每个tick结束时按玩家中心所在的位置切换当前房间，只有当前房间及其相邻房间参与模拟，见WorldState。
+ */
+public class Simulation {
+    public static final int TICKS_PER_SECOND = 60;
+    private static final double TICK_DELTA = 1.0; // 每个tick的时间增量（以60FPS的一帧为单位）
+    private static final double DEFAULT_START_X = 100;
+    private static final double DEFAULT_START_Y = 900;
+    private static final int PLAYER_WIDTH = 30;
+    private static final int PLAYER_HEIGHT = 40;
+    
+    private final CompiledMap map;
+    private final WorldState world;
+    private final Player player;
+    private final double startX, startY;
+    private final boolean fixedPoint;
+    private boolean eventLogging = true;
+    // 玩家的初始状态，重新开始时恢复
+    private final double[] initialPlayerDoubles = new double[Player.STATE_DOUBLES];
+    private final int[] initialPlayerInts = new int[Player.STATE_INTS];
+    
+    private long tick = 0;
+    
+    /**
+     * 从地图的默认起点（最近激活的默认重生点，没有时为默认位置）开始
+     */
+    public Simulation(MapDesign.MapData map) {
+        this(CompiledMap.compile(map));
+    }
+    
+    /**
+     * 从指定起点开始，没有激活的重生点时玩家死亡后回到起点
+     */
+    public Simulation(MapDesign.MapData map, double startX, double startY) {
+        this(map, startX, startY, false);
+    }
+    
+    /**
+     * @param fixedPoint 是否使用定点物理模式
+     */
+    public Simulation(MapDesign.MapData map, double startX, double startY, boolean fixedPoint) {
+        this(CompiledMap.compile(map), startX, startY, fixedPoint);
+    }
+    
+    /**
+     * 在已编译的地图上从默认起点开始
+     */
+    public Simulation(CompiledMap map) {
+        this(map, map.getDefaultStartX(), map.getDefaultStartY(), false);
+    }
+    
+    /**
+     * 在已编译的地图上运行，地图可以与其他模拟共享
+     * @param fixedPoint 是否使用定点物理模式
+     */
+    public Simulation(CompiledMap map, double startX, double startY, boolean fixedPoint) {
+        this.map = map;
+        this.startX = startX;
+        this.startY = startY;
+        this.fixedPoint = fixedPoint;
+        world = new WorldState(map);
+        
+        player = new Player(startX, startY);
+        world.enterRoom(findPlayerRoom());
+        player.setWorld(world);
+        player.setRespawnPoint(startX, startY);
+        player.setFixedPoint(fixedPoint);
+        player.writeState(initialPlayerDoubles, 0, initialPlayerInts, 0);
+    }
+    
+    /**
+     * 是否把游戏事件写入GameEventLog，默认记录
+     */
+    public void setEventLogging(boolean eventLogging) {
+        this.eventLogging = eventLogging;
+        player.setEventLogging(eventLogging);
+    }
+    
+    /**
+     * 回到第0个tick：地图状态恢复为初始值，玩家回到起点，不重新加载地图
+     */
+    public void reset() {
+        world.reset();
+        tick = 0;
+        restorePlayer(initialPlayerDoubles, 0, initialPlayerInts, 0);
+    }
+    
+    /**
+     * 把玩家恢复为保存的状态（见Player.writeState），并按玩家的新位置切换当前房间
+     * 倒带和读档时在restoreCounters/restoreState之后调用，房间切换按恢复后的tick计数推算
+     */
+    public void restorePlayer(double[] doubles, int doubleOffset, int[] ints, int intOffset) {
+        player.readState(doubles, doubleOffset, ints, intOffset);
+        world.enterRoom(findPlayerRoom());
+    }
+    
+    /**
+     * 地图的默认起点：时间上最近激活的默认重生点，没有时为(100, 900)
+     * @return {x, y}
+     */
+    public static double[] getDefaultStart(MapDesign.MapData map) {
+        // 默认激活的重生点激活时间相同，取第一个
+        for (Checkpoint checkpoint : map.checkpoints) {
+            if (checkpoint.isDefaultActivated()) {
+                return new double[]{checkpoint.getRespawnX(), checkpoint.getRespawnY()};
+            }
+        }
+        return new double[]{DEFAULT_START_X, DEFAULT_START_Y};
+    }
+    
+    /**
+     * 推进一个tick
+     * @param input 这一帧的输入位掩码
+     */
+    public void step(int input) {
+        // 先找出玩家脚下的实体（实体移动之前），推进实体后让玩家跟着移动
+        int riddenEntity = player.findRiddenEntity();
+        world.updateEntities(riddenEntity);
+        if (riddenEntity >= 0) {
+            player.carry(world.getEntityDeltaX(riddenEntity), world.getEntityDeltaY(riddenEntity));
+        }
+        
+        player.setInput(input);
+        player.update(TICK_DELTA);
+        
+        // 更新能量豆
+        world.updateBeans();
+        
+        // 检查重生点激活
+        checkCheckpointActivation();
+        tick++;
+        
+        // 玩家走进另一个房间时切换活动房间
+        updateRoom();
+    }
+    
+    /**
+     * 玩家中心所在的房间，不在任何房间中时为当前房间
+     */
+    private int findPlayerRoom() {
+        return map.getRoomTable().findRoom((int) Math.floor(player.getX()) + PLAYER_WIDTH / 2,
+            (int) Math.floor(player.getY()) + PLAYER_HEIGHT / 2, world.getCurrentRoom());
+    }
+    
+    private void updateRoom() {
+        int room = findPlayerRoom();
+        if (room != world.getCurrentRoom()) {
+            world.enterRoom(room);
+        }
+    }
+    
+    private void checkCheckpointActivation() {
+        Checkpoint[] checkpoints = map.getCheckpoints();
+        for (int i : world.getActiveCheckpoints()) {
+            Checkpoint checkpoint = checkpoints[i];
+            if (!world.isCheckpointActivated(i)
+                    && checkpoint.isPlayerInActivationBox(player.getX(), player.getY(), PLAYER_WIDTH, PLAYER_HEIGHT)) {
+                world.activateCheckpoint(i);
+                if (eventLogging) {
+                    GameEventLog.log(GameEventLog.CHECKPOINT, checkpoint.getRespawnX(), checkpoint.getRespawnY());
+                }
+            }
+        }
+    }
+    
+    /**
+     * 按激活顺序返回被激活的重生点下标（不含默认激活的重生点）
+     */
+    public int[] getActivationOrder() {
+        return world.getActivationOrder();
+    }
+    
+    /**
+     * 恢复tick计数和重生点激活顺序（读档），能量豆和下落物块的状态由调用者先行恢复，
+     * 玩家由调用者随后用{@link #restorePlayer}恢复，见QuickSave
+     * @param tick tick计数
+     * @param activationOrder 按激活顺序排列的重生点下标
+     */
+    public void restoreState(long tick, int[] activationOrder) {
+        world.restoreActivationOrder(activationOrder);
+        world.restoreEntities(tick);
+        this.tick = tick;
+    }
+    
+    /**
+     * 回到之前的tick（倒带）：撤销之后激活的重生点，并恢复tick计数
+     * 能量豆和下落物块的状态由调用者先行恢复，玩家由调用者随后用{@link #restorePlayer}恢复，见RewindBuffer
+     * @param tick 要回到的tick
+     * @param activationClock 那个tick时的重生点激活计数
+     */
+    public void restoreCounters(long tick, long activationClock) {
+        world.restoreActivationClock(activationClock);
+        world.restoreEntities(tick);
+        this.tick = tick;
+    }
+    
+    /**
+     * 获取时间上最近激活的重生点
+     */
+    public Checkpoint getLatestActivatedCheckpoint() {
+        int latest = world.getLatestCheckpoint();
+        return latest >= 0 ? map.getCheckpoints()[latest] : null;
+    }
+    
+    /**
+     * 当前模拟状态的哈希（玩家状态、重生点、能量豆和下落物块），用于比较两次运行是否逐位一致
+     * 实体的位置由tick计数和下落物块的计时器决定，不需要单独计入
+     */
+    public long stateHash() {
+        long hash = 0xcbf29ce484222325L;
+        hash = mixLong(hash, tick);
+        hash = mixLong(hash, Double.doubleToLongBits(player.getX()));
+        hash = mixLong(hash, Double.doubleToLongBits(player.getY()));
+        hash = mixLong(hash, Double.doubleToLongBits(player.getVelocityX()));
+        hash = mixLong(hash, Double.doubleToLongBits(player.getVelocityY()));
+        hash = mixLong(hash, Double.doubleToLongBits(player.getStamina()));
+        hash = mix(hash, player.getDashCount());
+        hash = mix(hash, (player.isOnGround() ? 1 : 0) | (player.isDashing() ? 2 : 0) | (player.isClimbing() ? 4 : 0));
+        for (int i = 0; i < map.getCheckpoints().length; i++) {
+            hash = mixLong(hash, world.getActivationTime(i));
+        }
+        for (int i = 0; i < world.getEnergyBeanCount(); i++) {
+            hash = mix(hash, world.isBeanConsumed(i) ? 1 : 0);
+        }
+        // 只计入被踩过的下落物块，没有实体的地图哈希与之前相同
+        for (int i = 0; i < world.getFallingBlockCount(); i++) {
+            if (world.isFallingBlockTriggered(i)) {
+                hash = mix(hash, i);
+                hash = mix(hash, world.getFallingBlockTimer(i));
+            }
+        }
+        return hash;
+    }
+    
+    /**
+     * 当前地图的哈希（编译地图时计算）
+     */
+    public long getMapHash() {
+        return map.getHash();
+    }
+    
+    /**
+     * 计算地图内容的哈希（FNV-1a），用于确认回放使用的是同一张地图
+     */
+    public static long hashMap(MapDesign.MapData map) {
+        long hash = 0xcbf29ce484222325L;
+        hash = hashElements(hash, map.platforms);
+        hash = hashElements(hash, map.solidBlocks);
+        hash = hashElements(hash, map.spikes);
+        hash = hashElements(hash, map.checkpoints);
+        hash = hashElements(hash, map.energyBeans);
+        // 没有实体、没有划分房间的地图哈希与之前相同，已有的录像和存档仍然有效
+        if (!map.entities.isEmpty()) {
+            hash = mix(hash, map.entities.size());
+            for (MapEntity entity : map.entities) {
+                hash = mix(hash, entity.getKind());
+                hash = mix(hash, entity.getX());
+                hash = mix(hash, entity.getY());
+                hash = mix(hash, entity.getWidth());
+                hash = mix(hash, entity.getHeight());
+                hash = mix(hash, entity.getToX());
+                hash = mix(hash, entity.getToY());
+                hash = mix(hash, entity.getPeriod());
+                hash = mix(hash, entity.getDelay());
+            }
+        }
+        if (!map.rooms.isEmpty()) {
+            hash = mix(hash, map.rooms.size());
+            for (MapRoom room : map.rooms) {
+                hash = mix(hash, room.getX());
+                hash = mix(hash, room.getY());
+                hash = mix(hash, room.getWidth());
+                hash = mix(hash, room.getHeight());
+            }
+        }
+        return hash;
+    }
+    
+    private static long hashElements(long hash, List<? extends MapElement> elements) {
+        hash = mix(hash, elements.size());
+        for (MapElement element : elements) {
+            hash = mix(hash, element.getX());
+            hash = mix(hash, element.getY());
+            hash = mix(hash, element.getWidth());
+            hash = mix(hash, element.getHeight());
+            if (element instanceof Checkpoint) {
+                Checkpoint checkpoint = (Checkpoint) element;
+                hash = mix(hash, checkpoint.getRespawnOffsetX());
+                hash = mix(hash, checkpoint.getRespawnOffsetY());
+                hash = mix(hash, checkpoint.isDefaultActivated() ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+    
+    private static long mixLong(long hash, long value) {
+        return mix(mix(hash, (int) value), (int) (value >>> 32));
+    }
+    
+    private static long mix(long hash, int value) {
+        for (int shift = 0; shift < 32; shift += 8) {
+            hash ^= (value >>> shift) & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+    
+    public CompiledMap getMap() { return map; }
+    public WorldState getWorld() { return world; }
+    public MapElement[] getMapElements() { return map.getMapElements(); }
+    public Player getPlayer() { return player; }
+    public long getTick() { return tick; }
+    public long getActivationClock() { return world.getActivationClock(); }
+    public double getStartX() { return startX; }
+    public double getStartY() { return startY; }
+    public boolean isFixedPoint() { return fixedPoint; }
+}
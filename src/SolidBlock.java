@@ -12,6 +12,11 @@ public class SolidBlock extends MapElement {
         super(x, y, width, height, new Color(101, 67, 33)); // 深棕色
     }
     
+    @Override
+    public MapElement copy() {
+        return new SolidBlock(x, y, width, height);
+    }
+    
     @Override
     public void render(Graphics g) {
         g.setColor(color);
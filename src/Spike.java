@@ -12,6 +12,11 @@ public class Spike extends MapElement {
         super(x, y, width, height, new Color(139, 0, 0)); // 深红色
     }
     
+    @Override
+    public MapElement copy() {
+        return new Spike(x, y, width, height);
+    }
+    
     @Override
     public void render(Graphics g) {
         // 绘制尖刺主体
@@ -0,0 +1,612 @@
+// 简化项目结构，移除包声明
+
+import java.util.Arrays;
+
+/**
+ * 一次运行中地图的可变状态
+ * 重生点的激活计数和能量豆的恢复计时器保存在以元素编号（在CompiledMap数组中的下标）为下标的基本类型数组中，
+ * 与地图几何分开：每个模拟拥有自己的WorldState，多个模拟可以共享同一个CompiledMap。
+ * 重新开始只需要把数组恢复为初始值，见{@link #reset()}。
+ *
+ * 重生点的激活计数：0表示未激活，默认激活的重生点为1，之后每次激活加一，
+ * 激活计数最大的重生点就是时间上最近激活的重生点。
+ *
+ * 实体（移动平台、下落物块、巡逻尖刺）的位置是tick计数和下落计时器的函数：往返移动的相位是tick计数对往返周期取模，
+ * 下落距离按被踩后经过的帧数直接算出。因此实体唯一需要保存的状态是下落物块的计时器，
+ * 倒带、读档时恢复计时器和tick计数后调用{@link #restoreEntities(long)}即可重新得到所有实体的位置。
+ * 逐帧推进时相位只做加一和回绕，不做除法；未被踩的下落物块不移动，逐帧推进时直接跳过。
+ *
+ * 划分了房间的地图只推进当前房间及其相邻房间（活动房间）中的能量豆和实体，其余房间暂停：
+ * 暂停时记下tick计数，实体移出宽相位索引；重新成为活动房间时按暂停期间经过的帧数直接推算能量豆和下落物块的计时器，
+ * 往返移动的相位按tick计数重新算出，结果与每帧都推进完全相同，因此每个tick的开销只与活动房间的大小有关。
+ * 读取能量豆和下落物块状态的方法对暂停的房间同样按经过的帧数推算，返回的总是当前tick的状态。
+ */
+public class WorldState {
+    // 能量豆未被消耗时的恢复计时器
+    private static final int BEAN_AVAILABLE = -1;
+    // 下落物块未被踩时的计时器
+    private static final int FALL_IDLE = -1;
+    private static final int FALL_GRAVITY = 128; // 下落物块的重力加速度（定点，0.5像素/帧²）
+    private static final int FALL_MAX_SPEED = 2560; // 下落物块的最大速度（定点，10像素/帧）
+    private static final int FALL_ACCELERATION_TICKS = FALL_MAX_SPEED / FALL_GRAVITY;
+    private static final int FALL_TICKS = 180; // 开始下落后经过的帧数，之后回到原位
+    private static final int FALL_LIMIT = 1080 << EntityTable.SUBPIXEL_SHIFT; // 落到屏幕底部以下后不再参与碰撞
+    
+    private final CompiledMap map;
+    private final long[] activationTimes;
+    private final int[] beanTimers; // 被消耗后经过的帧数，未被消耗时为BEAN_AVAILABLE
+    private long activationClock = 1;
+    // 按激活顺序记录被激活的重生点编号，第k个（从0开始）的激活计数为k+2，用于倒带时撤销激活
+    private int[] activationLog = new int[16];
+    private final EntityTable entities;
+    private final EntityGrid entityGrid; // 实体的当前包围盒和宽相位索引
+    private final int[] entityDeltaX, entityDeltaY; // 最近一个tick的位移（定点），用于带动站在上面的玩家
+    private final int[] fallTimers; // 按下落物块编号：被踩后经过的帧数，未被踩时为FALL_IDLE
+    // 当前tick中被消耗的能量豆（编号）和被踩的下落物块（下落物块编号按位取反），见RewindBuffer
+    private int[] changeLog = new int[4];
+    private int changeCount = 0;
+    private final int[] phases; // 往返移动的相位（0到2*period-1），等于tick计数对往返周期取模
+    private final RoomTable rooms;
+    private final boolean[] roomActive;
+    private final long[] suspendedAt; // 房间暂停时的tick计数
+    private int currentRoom;
+    private int[] activeRooms; // 当前房间及其相邻房间的编号，从小到大
+    private long tick; // 推进实体的次数，在每个tick结束时与Simulation的tick计数相同
+    
+    public WorldState(CompiledMap map) {
+        this.map = map;
+        activationTimes = new long[map.getCheckpoints().length];
+        beanTimers = new int[map.getEnergyBeans().length];
+        entities = map.getEntityTable();
+        entityGrid = new EntityGrid(entities, FALL_LIMIT);
+        entityDeltaX = new int[entities.count];
+        entityDeltaY = new int[entities.count];
+        fallTimers = new int[entities.fallingBlocks.length];
+        phases = new int[entities.count];
+        rooms = map.getRoomTable();
+        roomActive = new boolean[rooms.count];
+        suspendedAt = new long[rooms.count];
+        reset();
+    }
+    
+    /**
+     * 恢复到地图的初始状态：只有默认激活的重生点处于激活状态，所有能量豆可用，实体回到起点
+     * 当前房间为第0个房间，调用者随后按玩家的位置调用{@link #enterRoom(int)}
+     */
+    public void reset() {
+        long[] defaults = map.getDefaultActivationTimes();
+        System.arraycopy(defaults, 0, activationTimes, 0, defaults.length);
+        Arrays.fill(beanTimers, BEAN_AVAILABLE);
+        activationClock = 1;
+        Arrays.fill(fallTimers, FALL_IDLE);
+        changeCount = 0;
+        currentRoom = 0;
+        activeRooms = rooms.activeRooms[0];
+        Arrays.fill(roomActive, false);
+        for (int r : activeRooms) {
+            roomActive[r] = true;
+        }
+        restoreEntities(0);
+    }
+    
+    public CompiledMap getMap() {
+        return map;
+    }
+    
+    // ===== 重生点 =====
+    
+    public boolean isCheckpointActivated(int index) {
+        return activationTimes[index] != 0;
+    }
+    
+    /**
+     * 重生点的激活计数，未激活时为0
+     */
+    public long getActivationTime(int index) {
+        return activationTimes[index];
+    }
+    
+    /**
+     * 激活重生点，激活计数加一
+     */
+    public void activateCheckpoint(int index) {
+        int logIndex = (int) (activationClock - 1);
+        if (logIndex == activationLog.length) {
+            activationLog = Arrays.copyOf(activationLog, logIndex * 2);
+        }
+        activationLog[logIndex] = index;
+        activationTimes[index] = ++activationClock;
+    }
+    
+    /**
+     * 当前的重生点激活计数
+     */
+    public long getActivationClock() {
+        return activationClock;
+    }
+    
+    /**
+     * 按激活顺序返回被激活的重生点编号（不含默认激活的重生点）
+     */
+    public int[] getActivationOrder() {
+        return Arrays.copyOf(activationLog, (int) (activationClock - 1));
+    }
+    
+    /**
+     * 撤销激活计数之后的激活（倒带）
+     * @param activationClock 要回到的激活计数，不能大于当前值
+     */
+    public void restoreActivationClock(long activationClock) {
+        long[] defaults = map.getDefaultActivationTimes();
+        while (this.activationClock > activationClock) {
+            this.activationClock--;
+            int index = activationLog[(int) (this.activationClock - 1)];
+            activationTimes[index] = defaults[index];
+        }
+    }
+    
+    /**
+     * 按给定顺序重新激活重生点（读档），之前的激活全部撤销
+     * @param activationOrder 按激活顺序排列的重生点编号
+     */
+    public void restoreActivationOrder(int[] activationOrder) {
+        restoreActivationClock(1);
+        for (int index : activationOrder) {
+            activateCheckpoint(index);
+        }
+    }
+    
+    /**
+     * 时间上最近激活的重生点的编号，没有激活的重生点时返回-1
+     */
+    public int getLatestCheckpoint() {
+        int latest = -1;
+        long latestActivationTime = 0;
+        for (int i = 0; i < activationTimes.length; i++) {
+            if (activationTimes[i] > latestActivationTime) {
+                latestActivationTime = activationTimes[i];
+                latest = i;
+            }
+        }
+        return latest;
+    }
+    
+    // ===== 能量豆 =====
+    
+    public boolean isBeanConsumed(int index) {
+        return beanTimer(index) != BEAN_AVAILABLE;
+    }
+    
+    /**
+     * 被消耗后经过的帧数，未被消耗时为0
+     */
+    public int getBeanRecoveryTimer(int index) {
+        int timer = beanTimer(index);
+        return timer == BEAN_AVAILABLE ? 0 : timer;
+    }
+    
+    /**
+     * 恢复进度（0.0-1.0）
+     */
+    public double getBeanRecoveryProgress(int index) {
+        int timer = beanTimer(index);
+        return timer != BEAN_AVAILABLE ? (double) timer / EnergyBean.RECOVERY_TIME : 1.0;
+    }
+    
+    /**
+     * 当前的恢复计时器，所在房间暂停时加上暂停期间经过的帧数
+     */
+    private int beanTimer(int index) {
+        int timer = beanTimers[index];
+        int room = rooms.beanRooms[index];
+        if (timer == BEAN_AVAILABLE || roomActive[room]) {
+            return timer;
+        }
+        return recoverBean(timer, tick - suspendedAt[room]);
+    }
+    
+    private static int recoverBean(int timer, long elapsed) {
+        return elapsed >= EnergyBean.RECOVERY_TIME - timer ? BEAN_AVAILABLE : timer + (int) elapsed;
+    }
+    
+    /**
+     * 消耗能量豆（只用于活动房间中的能量豆）
+     * @return 是否成功消耗（只有未被消耗时才能消耗）
+     */
+    public boolean consumeBean(int index) {
+        if (beanTimers[index] != BEAN_AVAILABLE) {
+            return false;
+        }
+        beanTimers[index] = 0;
+        logChange(index);
+        return true;
+    }
+    
+    /**
+     * 恢复到指定的消耗状态（倒带和读档），之后需要调用restoreEntities
+     * @param consumed 是否被消耗
+     * @param recoveryTimer 被消耗后经过的帧数
+     */
+    public void restoreBean(int index, boolean consumed, int recoveryTimer) {
+        beanTimers[index] = consumed ? recoveryTimer : BEAN_AVAILABLE;
+    }
+    
+    /**
+     * 推进一帧：活动房间中被消耗的能量豆经过EnergyBean.RECOVERY_TIME帧后恢复
+     */
+    public void updateBeans() {
+        for (int r : activeRooms) {
+            for (int i : rooms.beans[r]) {
+                if (beanTimers[i] != BEAN_AVAILABLE && ++beanTimers[i] >= EnergyBean.RECOVERY_TIME) {
+                    beanTimers[i] = BEAN_AVAILABLE;
+                }
+            }
+        }
+    }
+    
+    public int getEnergyBeanCount() {
+        return beanTimers.length;
+    }
+    
+    // ===== 实体 =====
+    
+    public int getEntityCount() {
+        return entities.count;
+    }
+    
+    /**
+     * 推进一帧：活动房间中往返移动的实体相位加一，被踩的下落物块开始计时，然后把位置变化的实体移到新的位置并更新宽相位索引
+     * 未被踩的下落物块不移动，不需要处理
+     * @param riddenEntity 推进之前玩家站在上面的实体，没有时为-1
+     */
+    public void updateEntities(int riddenEntity) {
+        tick++;
+        changeCount = 0;
+        for (int r : activeRooms) {
+            int[] movers = rooms.movers[r];
+            for (int m = 0; m < movers.length; m++) {
+                int i = movers[m];
+                if (++phases[i] == 2 * entities.periods[i]) {
+                    phases[i] = 0;
+                }
+                placeMover(i);
+            }
+            int[] fallingBlocks = rooms.fallingBlocks[r];
+            for (int f = 0; f < fallingBlocks.length; f++) {
+                int k = fallingBlocks[f];
+                if (fallTimers[k] == FALL_IDLE) {
+                    continue;
+                }
+                int i = entities.fallingBlocks[k];
+                if (++fallTimers[k] >= entities.delays[i] + FALL_TICKS) {
+                    // 回到原位，不算作位移
+                    fallTimers[k] = FALL_IDLE;
+                    placeFallingBlock(i, k);
+                    entityDeltaX[i] = 0;
+                    entityDeltaY[i] = 0;
+                } else {
+                    placeFallingBlock(i, k);
+                }
+            }
+        }
+        if (riddenEntity >= 0) {
+            int k = entities.fallingIndex[riddenEntity];
+            if (k >= 0 && fallTimers[k] == FALL_IDLE) {
+                fallTimers[k] = 0;
+                logChange(~k);
+            }
+        }
+    }
+    
+    /**
+     * 按tick计数和当前的下落计时器重新放置活动房间中的实体（重新开始、倒带和读档），位移清零
+     * 能量豆和下落物块的计时器都按这个tick的状态解释，暂停的房间从这个tick开始重新计算暂停时间
+     */
+    public void restoreEntities(long tick) {
+        this.tick = tick;
+        changeCount = 0;
+        for (int r = 0; r < rooms.count; r++) {
+            if (roomActive[r]) {
+                placeRoomEntities(r);
+            } else {
+                suspendedAt[r] = tick;
+                for (int i : rooms.entities[r]) {
+                    entityGrid.remove(i);
+                }
+            }
+        }
+    }
+    
+    /**
+     * 按当前的tick计数和下落计时器放置房间中的实体，位移清零
+     */
+    private void placeRoomEntities(int room) {
+        for (int i : rooms.entities[room]) {
+            int k = entities.fallingIndex[i];
+            if (k >= 0) {
+                placeFallingBlock(i, k);
+            } else {
+                phases[i] = (int) (tick % (2L * entities.periods[i]));
+                placeMover(i);
+            }
+            entityDeltaX[i] = 0;
+            entityDeltaY[i] = 0;
+        }
+    }
+    
+    /**
+     * 往返移动：前半个周期从起点走向终点，后半个周期走回来
+     */
+    private void placeMover(int i) {
+        int period = entities.periods[i];
+        int progress = phases[i] <= period ? phases[i] : 2 * period - phases[i];
+        moveEntity(i, entities.startX[i] + entities.velocityX[i] * progress,
+            entities.startY[i] + entities.velocityY[i] * progress);
+    }
+    
+    /**
+     * 下落物块：被踩后等待delay帧，然后按下落距离下移，落出屏幕后移出宽相位索引
+     */
+    private void placeFallingBlock(int i, int k) {
+        int fallTicks = fallTimers[k] == FALL_IDLE ? 0 : fallTimers[k] - entities.delays[i] + 1;
+        moveEntity(i, entities.startX[i], entities.startY[i] + fallDistance(fallTicks));
+    }
+    
+    private void moveEntity(int i, int x, int y) {
+        entityDeltaX[i] = x - entityGrid.getLeft(i);
+        entityDeltaY[i] = y - entityGrid.getTop(i);
+        if (y >= FALL_LIMIT) {
+            entityGrid.remove(i);
+        } else {
+            entityGrid.update(i, x, y);
+        }
+    }
+    
+    /**
+     * 开始下落后ticks帧的下落距离（定点）：每帧速度增加FALL_GRAVITY，直到FALL_MAX_SPEED
+     */
+    private static int fallDistance(int ticks) {
+        if (ticks <= 0) {
+            return 0;
+        }
+        if (ticks <= FALL_ACCELERATION_TICKS) {
+            return FALL_GRAVITY * ticks * (ticks + 1) / 2;
+        }
+        return FALL_GRAVITY * FALL_ACCELERATION_TICKS * (FALL_ACCELERATION_TICKS + 1) / 2
+            + (ticks - FALL_ACCELERATION_TICKS) * FALL_MAX_SPEED;
+    }
+    
+    /**
+     * 查询包围盒与矩形（定点，含边界）相交、仍参与碰撞的实体，约定与CollisionGrid.query相同
+     */
+    public int queryEntities(int left, int top, int right, int bottom, int[] out) {
+        return entityGrid.query(left, top, right, bottom, out);
+    }
+    
+    /**
+     * 实体的当前包围盒（定点）
+     */
+    public int getEntityLeft(int index) { return entityGrid.getLeft(index); }
+    public int getEntityTop(int index) { return entityGrid.getTop(index); }
+    public int getEntityRight(int index) { return entityGrid.getRight(index); }
+    public int getEntityBottom(int index) { return entityGrid.getBottom(index); }
+    
+    /**
+     * 实体最近一个tick的位移（定点）
+     */
+    public int getEntityDeltaX(int index) { return entityDeltaX[index]; }
+    public int getEntityDeltaY(int index) { return entityDeltaY[index]; }
+    
+    /**
+     * 实体碰撞时按哪种静态元素处理（CollisionGrid.SOLID_BLOCK、PLATFORM或SPIKE）
+     */
+    public int getEntityCollisionKind(int index) {
+        return entities.collisionKinds[index];
+    }
+    
+    /**
+     * 实体是否参与碰撞和绘制（落出屏幕的下落物块不参与）
+     */
+    public boolean isEntityActive(int index) {
+        return entityGrid.contains(index);
+    }
+    
+    /**
+     * 下落物块被踩后经过的帧数，未被踩或不是下落物块时为-1
+     */
+    public int getEntityFallTimer(int index) {
+        int k = entities.fallingIndex[index];
+        return k >= 0 ? fallTimer(k) : FALL_IDLE;
+    }
+    
+    public int getFallingBlockCount() {
+        return fallTimers.length;
+    }
+    
+    /**
+     * 下落物块（按下落物块编号）是否已被踩
+     */
+    public boolean isFallingBlockTriggered(int fallingIndex) {
+        return fallTimer(fallingIndex) != FALL_IDLE;
+    }
+    
+    /**
+     * 下落物块被踩后经过的帧数，未被踩时为0
+     */
+    public int getFallingBlockTimer(int fallingIndex) {
+        int timer = fallTimer(fallingIndex);
+        return timer == FALL_IDLE ? 0 : timer;
+    }
+    
+    /**
+     * 当前的下落计时器，所在房间暂停时加上暂停期间经过的帧数
+     */
+    private int fallTimer(int k) {
+        int timer = fallTimers[k];
+        int room = rooms.fallingRooms[k];
+        if (timer == FALL_IDLE || roomActive[room]) {
+            return timer;
+        }
+        return advanceFall(k, timer, tick - suspendedAt[room]);
+    }
+    
+    private int advanceFall(int k, int timer, long elapsed) {
+        int duration = entities.delays[entities.fallingBlocks[k]] + FALL_TICKS;
+        return elapsed >= duration - timer ? FALL_IDLE : timer + (int) elapsed;
+    }
+    
+    /**
+     * 恢复下落物块的计时器（倒带和读档），之后需要调用restoreEntities重新放置实体
+     * @param triggered 是否已被踩
+     * @param timer 被踩后经过的帧数
+     */
+    public void restoreFallingBlock(int fallingIndex, boolean triggered, int timer) {
+        fallTimers[fallingIndex] = triggered ? timer : FALL_IDLE;
+    }
+    
+    /**
+     * 下落物块从被踩到回到原位经过的帧数
+     */
+    public int getFallingBlockDuration(int fallingIndex) {
+        return entities.delays[entities.fallingBlocks[fallingIndex]] + FALL_TICKS;
+    }
+    
+    // ===== 变化记录 =====
+    
+    /**
+     * 当前tick（从updateEntities开始）中被消耗的能量豆和被踩的下落物块个数
+     */
+    public int getChangeCount() {
+        return changeCount;
+    }
+    
+    /**
+     * 当前tick中第i个变化：能量豆编号，或按位取反的下落物块编号（负数）
+     */
+    public int getChange(int i) {
+        return changeLog[i];
+    }
+    
+    private void logChange(int code) {
+        if (changeCount == changeLog.length) {
+            changeLog = Arrays.copyOf(changeLog, changeCount * 2);
+        }
+        changeLog[changeCount++] = code;
+    }
+    
+    // ===== 房间 =====
+    
+    /**
+     * 当前房间的编号，没有划分房间的地图总是0
+     */
+    public int getCurrentRoom() {
+        return currentRoom;
+    }
+    
+    public int getRoomCount() {
+        return rooms.count;
+    }
+    
+    /**
+     * 房间是否在模拟中（当前房间或它的相邻房间）
+     */
+    public boolean isRoomActive(int room) {
+        return roomActive[room];
+    }
+    
+    /**
+     * 切换当前房间：离开活动范围的房间暂停，新进入活动范围的房间按暂停期间经过的帧数推算状态
+     * 在tick之间调用（Simulation在每个tick结束时按玩家的位置调用）
+     */
+    public void enterRoom(int room) {
+        if (room == currentRoom) {
+            return;
+        }
+        int[] next = rooms.activeRooms[room];
+        for (int r : activeRooms) {
+            if (Arrays.binarySearch(next, r) < 0) {
+                suspendRoom(r);
+            }
+        }
+        for (int r : next) {
+            if (!roomActive[r]) {
+                resumeRoom(r);
+            }
+        }
+        currentRoom = room;
+        activeRooms = next;
+    }
+    
+    private void suspendRoom(int room) {
+        roomActive[room] = false;
+        suspendedAt[room] = tick;
+        for (int i : rooms.entities[room]) {
+            entityGrid.remove(i);
+            entityDeltaX[i] = 0;
+            entityDeltaY[i] = 0;
+        }
+    }
+    
+    private void resumeRoom(int room) {
+        fastForward(room);
+        roomActive[room] = true;
+        placeRoomEntities(room);
+    }
+    
+    /**
+     * 把暂停期间经过的帧数计入房间中能量豆和下落物块的计时器，暂停时间从当前tick重新开始计算
+     */
+    private void fastForward(int room) {
+        long elapsed = tick - suspendedAt[room];
+        if (elapsed == 0) {
+            return;
+        }
+        for (int i : rooms.beans[room]) {
+            if (beanTimers[i] != BEAN_AVAILABLE) {
+                beanTimers[i] = recoverBean(beanTimers[i], elapsed);
+            }
+        }
+        for (int k : rooms.fallingBlocks[room]) {
+            if (fallTimers[k] != FALL_IDLE) {
+                fallTimers[k] = advanceFall(k, fallTimers[k], elapsed);
+            }
+        }
+        suspendedAt[room] = tick;
+    }
+    
+    /**
+     * 把所有暂停房间的计时器推算到当前tick（倒带之前调用），之后保存的计时器都是当前tick的值
+     */
+    public void fastForwardSuspendedRooms() {
+        for (int r = 0; r < rooms.count; r++) {
+            if (!roomActive[r]) {
+                fastForward(r);
+            }
+        }
+    }
+    
+    /**
+     * 活动视图：当前房间及其相邻房间中的元素，见RoomTable
+     */
+    public Platform[] getActivePlatforms() { return rooms.activePlatforms[currentRoom]; }
+    public SolidBlock[] getActiveSolidBlocks() { return rooms.activeSolidBlocks[currentRoom]; }
+    public Spike[] getActiveSpikes() { return rooms.activeSpikes[currentRoom]; }
+    public EnergyBean[] getActiveEnergyBeans() { return rooms.activeEnergyBeans[currentRoom]; }
+    public MapElement[] getActiveStaticElements() { return rooms.activeStaticElements[currentRoom]; }
+    public MapElement[] getActiveMapElements() { return rooms.activeMapElements[currentRoom]; }
+    
+    /**
+     * 活动视图中第i个能量豆的编号
+     */
+    public int[] getActiveBeanIndices() { return rooms.activeBeanIndices[currentRoom]; }
+    
+    /**
+     * 活动房间中的重生点编号
+     */
+    public int[] getActiveCheckpoints() { return rooms.activeCheckpoints[currentRoom]; }
+    
+    /**
+     * 活动房间中的实体编号
+     */
+    public int[] getActiveEntities() { return rooms.activeEntities[currentRoom]; }
+}